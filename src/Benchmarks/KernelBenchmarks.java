@@ -0,0 +1,236 @@
+package Benchmarks;
+
+import Lights.Light;
+import Lights.LightIntersection;
+import Lights.PointLight;
+import Materials.Texture;
+import Materials.TextureFilter;
+import Objects.Cube;
+import Objects.ObjObject;
+import Objects.Object3D;
+import Objects.Sphere;
+import Objects.Triangle;
+import Objects.WrapperBoxes.BVHBuildMethod;
+import Objects.WrapperBoxes.BVHGenerator;
+import Objects.WrapperBoxes.LinearBVH;
+import Objects.WrapperBoxes.SceneBVH;
+import ResuableElements.TipicalMaterials;
+import vectors.Intersection;
+import vectors.Ray;
+import vectors.Vector3D;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks of the ray tracing kernels: ray-primitive tests, mesh BVH traversal
+ * (closest hit and occlusion) on the bundled OBJ files, BVH construction and refitting,
+ * texture sampling and direct lighting. Refitting first checks that a refit without motion
+ * keeps the SAH cost of every build method. Run from the repository root so the OBJ and
+ * texture paths resolve:
+ * <pre>
+ *     java -cp out Benchmarks.KernelBenchmarks [filter] [warmup] [iterations] [iterationMillis]
+ * </pre>
+ * Only benchmarks whose name contains {@code filter} are run. Inputs are generated from a
+ * fixed seed, so numbers are comparable between commits on the same machine.
+ * Allocation is measured on the benchmark thread only; work done by the BVH builder's
+ * worker threads is not included in B/op.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public class KernelBenchmarks {
+    /** Bundled meshes used for traversal and construction benchmarks */
+    private static final String[][] MESHES = {
+            {"SmallTeapot", "ObjFiles/Objs/SmallTeapot.obj"},
+            {"parrot", "ObjFiles/Objs/parrot.obj"},
+            {"heavyParrot", "ObjFiles/Objs/heavyParrot.obj"},
+            {"Jabali", "ObjFiles/OfficeObjs/Jabali.obj"},
+            {"CoastScan", "ObjFiles/templeObjs/CoastScan.obj"},
+            {"muroRoca", "ObjFiles/templeObjs/muroRoca.obj"}
+    };
+
+    /** Bundled texture used for the sampling benchmarks */
+    private static final String TEXTURE = "Textures/Stone.jpg";
+
+    /** Number of precomputed inputs each benchmark cycles through (power of two) */
+    private static final int INPUTS = 1024;
+
+    private static final double NEAR = 1e-4;
+    private static final double FAR = 1e6;
+    private static final double EPSILON = 1e-4;
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        long iterationMillis = args.length > 3 ? Long.parseLong(args[3]) : 500;
+
+        MicroBenchmark harness = new MicroBenchmark(warmup, iterations, iterationMillis);
+        List<MicroBenchmark.Result> results = new ArrayList<>();
+
+        // Silence loader logging while fixtures are built
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+        List<ObjObject> meshes = new ArrayList<>();
+        for (String[] mesh : MESHES) {
+            ObjObject object = new ObjObject(TipicalMaterials.SILVER, new Vector3D(200, 200, 200),
+                    new Vector3D(0, 0, 0), new Vector3D(0, 0, 0), new Vector3D(1, 1, 1), mesh[1]);
+            object.startBVHBuild();
+            meshes.add(object);
+        }
+        System.setOut(out);
+
+        Random random = new Random(42);
+
+        // Ray-primitive kernels
+        Sphere sphere = new Sphere(new Vector3D(255, 0, 0), new Vector3D(0, 0, 0),
+                new Vector3D(0, 0, -10), new Vector3D(1, 1, 1), 2);
+        Triangle triangle = new Triangle(new Vector3D(255, 0, 0), new Vector3D(0, 0, 0), new Vector3D(0, 0, 0),
+                new Vector3D(1, 1, 1), new Vector3D(-2, -2, -10), new Vector3D(2, -2, -10), new Vector3D(0, 2, -10),
+                new Vector3D(0, 0, 1), new Vector3D(0, 0, 1), new Vector3D(0, 0, 1));
+        Cube cube = new Cube(new Vector3D(-2, -2, -12), new Vector3D(2, 2, -8));
+        Ray[] primitiveRays = raysTowards(random, new Vector3D(-3, -3, -12), new Vector3D(3, 3, -8));
+
+        run(harness, results, filter, "Intersection.sphere",
+                i -> Intersection.sphere(primitiveRays[i & (INPUTS - 1)], sphere, NEAR, FAR));
+        run(harness, results, filter, "Intersection.triangle",
+                i -> Intersection.triangle(primitiveRays[i & (INPUTS - 1)], triangle, NEAR, FAR, EPSILON));
+        run(harness, results, filter, "Intersection.cube",
+                i -> Intersection.cube(primitiveRays[i & (INPUTS - 1)], cube) ? 1 : 0);
+
+        // Texture sampling
+        double[] uvs = new double[INPUTS * 2];
+        for (int i = 0; i < uvs.length; i++) {
+            uvs[i] = random.nextDouble() * 4 - 2;
+        }
+        for (TextureFilter textureFilter : TextureFilter.values()) {
+            Texture filtered = new Texture(TEXTURE);
+            filtered.setFilter(textureFilter);
+            run(harness, results, filter, "Texture.getColorAt/" + textureFilter, i -> {
+                int k = (i & (INPUTS - 1)) * 2;
+                return filtered.getColorAt(uvs[k], uvs[k + 1]);
+            });
+        }
+
+        // Mesh BVH traversal
+        for (int m = 0; m < MESHES.length; m++) {
+            ObjObject mesh = meshes.get(m);
+            if (!mesh.isLoaded()) continue;
+            Cube bounds = mesh.getCube();
+            Ray[] rays = raysTowards(random, bounds.getMin(), bounds.getMax());
+
+            run(harness, results, filter, "Intersection.obj/" + MESHES[m][0],
+                    i -> Intersection.obj(rays[i & (INPUTS - 1)], mesh, NEAR, FAR, EPSILON));
+            run(harness, results, filter, "Intersection.objOccluded/" + MESHES[m][0],
+                    i -> Intersection.objOccluded(rays[i & (INPUTS - 1)], mesh, NEAR, FAR, EPSILON) ? 1 : 0);
+        }
+
+        // BVH construction
+        for (int m = 0; m < MESHES.length; m++) {
+            ObjObject mesh = meshes.get(m);
+            if (!mesh.isLoaded()) continue;
+            List<Triangle> triangles = mesh.getTriangleList();
+
+            for (BVHBuildMethod method : BVHBuildMethod.values()) {
+                run(harness, results, filter, "BVHGenerator.buildBVH/" + method + "/" + MESHES[m][0], i -> {
+                    BVHGenerator generator = new BVHGenerator(triangles);
+                    generator.setBuildMethod(method);
+                    return generator.buildBVH() != null ? 1 : 0;
+                });
+
+                // Refitting unmoved triangles must keep every box, clipped spatial splits included
+                if (!("LinearBVH.refit/" + method + "/" + MESHES[m][0]).contains(filter)) continue;
+                BVHGenerator generator = new BVHGenerator(triangles);
+                generator.setBuildMethod(method);
+                LinearBVH bvh = new LinearBVH(generator.buildBVH(), generator.getTriangleVertices());
+                double[] vertices = generator.getTriangleVertices();
+                double builtCost = bvh.getSAHCost();
+                bvh.refit(vertices);
+                if (bvh.getSAHCost() != builtCost) {
+                    throw new IllegalStateException("Refit without motion changed the SAH cost of the "
+                            + method + " BVH of " + MESHES[m][0] + ": " + builtCost + " -> " + bvh.getSAHCost());
+                }
+                run(harness, results, filter, "LinearBVH.refit/" + method + "/" + MESHES[m][0], i -> {
+                    bvh.refit(vertices);
+                    return bvh.getNodeCount();
+                });
+            }
+        }
+
+        // Direct lighting with shadow rays through the scene BVH
+        ObjObject teapot = meshes.get(0);
+        if (teapot.isLoaded()) {
+            List<Object3D> objects = new ArrayList<>();
+            objects.add(teapot);
+            objects.add(sphere);
+            SceneBVH sceneBVH = new SceneBVH(objects);
+
+            List<Light> lights = new ArrayList<>();
+            Vector3D center = teapot.getCenter();
+            lights.add(new PointLight(center.add(new Vector3D(10, 20, 10)), new Vector3D(255, 255, 255), 40));
+            lights.add(new PointLight(center.add(new Vector3D(-15, 10, 5)), new Vector3D(60, 110, 255), 30));
+
+            List<Triangle> hitTriangles = new ArrayList<>();
+            List<Vector3D> hitPoints = new ArrayList<>();
+            for (Ray ray : raysTowards(random, teapot.getCube().getMin(), teapot.getCube().getMax())) {
+                Triangle hit = Intersection.objTriangleIntersected(ray, teapot, NEAR, FAR, EPSILON);
+                if (hit != null) {
+                    hitTriangles.add(hit);
+                    hitPoints.add(ray.getPoint(Intersection.triangle(ray, hit, NEAR, FAR, EPSILON)));
+                }
+            }
+
+            if (!hitTriangles.isEmpty()) {
+                Vector3D cameraOrigin = center.add(new Vector3D(0, 0, 30));
+                LightIntersection lighting = new LightIntersection(objects, lights, teapot,
+                        cameraOrigin, new Vector3D(0, 0, -1), cameraOrigin, sceneBVH);
+                int hits = hitTriangles.size();
+
+                run(harness, results, filter, "LightIntersection.lightsIntersection",
+                        i -> lighting.lightsIntersection(hitTriangles.get(i % hits), hitPoints.get(i % hits)));
+            }
+        }
+
+        System.out.println();
+        System.out.println(MicroBenchmark.HEADER);
+        for (MicroBenchmark.Result result : results) {
+            System.out.println(result);
+        }
+    }
+
+    /**
+     * Runs a benchmark if its name matches the filter and prints its result.
+     */
+    private static void run(MicroBenchmark harness, List<MicroBenchmark.Result> results, String filter,
+                            String name, MicroBenchmark.Operation operation) {
+        if (!name.contains(filter)) return;
+
+        System.out.println("Running " + name + "...");
+        MicroBenchmark.Result result = harness.run(name, operation);
+        System.out.println(result);
+        results.add(result);
+    }
+
+    /**
+     * Generates rays from points around a box aimed at random points inside it.
+     */
+    private static Ray[] raysTowards(Random random, Vector3D min, Vector3D max) {
+        Vector3D size = max.subtract(min);
+        Vector3D center = min.add(size.scale(0.5));
+        double radius = Math.max(size.length(), 1e-3) * 2;
+
+        Ray[] rays = new Ray[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            Vector3D target = new Vector3D(
+                    min.getX() + random.nextDouble() * size.getX(),
+                    min.getY() + random.nextDouble() * size.getY(),
+                    min.getZ() + random.nextDouble() * size.getZ());
+            Vector3D origin = center.add(new Vector3D(
+                    random.nextGaussian(), random.nextGaussian(), random.nextGaussian()).normalize().scale(radius));
+            rays[i] = new Ray(origin, target.subtract(origin));
+        }
+        return rays;
+    }
+}
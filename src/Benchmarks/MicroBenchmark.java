@@ -0,0 +1,191 @@
+package Benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Minimal, dependency free micro-benchmark harness.
+ * Each benchmark runs a number of warmup iterations (so the JIT compiles the kernel)
+ * followed by measured iterations of a fixed duration. For every measured iteration it
+ * records the time per operation and the bytes allocated by the benchmark thread, using
+ * the HotSpot specific {@link com.sun.management.ThreadMXBean}.
+ * Results of the kernels are folded into a sink so the JIT cannot discard the work.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public class MicroBenchmark {
+    /**
+     * A benchmarked operation. Implementations run the kernel once and return any value
+     * derived from its result, which the harness consumes.
+     */
+    @FunctionalInterface
+    public interface Operation {
+        /**
+         * Runs the kernel once.
+         *
+         * @param iteration Index of the invocation, useful to cycle through inputs
+         * @return A value derived from the kernel's result
+         */
+        double run(int iteration);
+    }
+
+    /**
+     * Measured numbers of one benchmark.
+     */
+    public static class Result {
+        private final String name;
+        private final double nanosPerOp;
+        private final double nanosPerOpError;
+        private final double bytesPerOp;
+        private final long operations;
+
+        /**
+         * @param name            Benchmark name
+         * @param nanosPerOp      Mean time per operation in nanoseconds
+         * @param nanosPerOpError Standard deviation of the time per operation across iterations
+         * @param bytesPerOp      Mean bytes allocated per operation
+         * @param operations      Total measured operations
+         */
+        public Result(String name, double nanosPerOp, double nanosPerOpError, double bytesPerOp, long operations) {
+            this.name = name;
+            this.nanosPerOp = nanosPerOp;
+            this.nanosPerOpError = nanosPerOpError;
+            this.bytesPerOp = bytesPerOp;
+            this.operations = operations;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getNanosPerOp() {
+            return nanosPerOp;
+        }
+
+        public double getNanosPerOpError() {
+            return nanosPerOpError;
+        }
+
+        public double getBytesPerOp() {
+            return bytesPerOp;
+        }
+
+        public long getOperations() {
+            return operations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-40s %14.1f +- %-10.1f %12.1f %14d",
+                    name, nanosPerOp, nanosPerOpError, bytesPerOp, operations);
+        }
+    }
+
+    /** Header matching {@link Result#toString()} */
+    public static final String HEADER = String.format(Locale.ROOT, "%-40s %14s    %-10s %12s %14s",
+            "Benchmark", "ns/op", "error", "B/op", "ops");
+
+    /** Consumes benchmark results so they are not optimized away */
+    private static volatile double sink;
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    /**
+     * Creates a harness.
+     *
+     * @param warmupIterations      Number of unmeasured iterations
+     * @param measurementIterations Number of measured iterations
+     * @param iterationMillis       Duration of every iteration in milliseconds
+     */
+    public MicroBenchmark(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (threadBean.isThreadAllocatedMemorySupported()) {
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    /**
+     * Runs one benchmark.
+     *
+     * @param name      Benchmark name
+     * @param operation Kernel to measure
+     * @return The measured result
+     */
+    public Result run(String name, Operation operation) {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(operation);
+        }
+
+        double[] nanosPerOp = new double[measurementIterations];
+        double totalBytes = 0;
+        long totalOperations = 0;
+
+        for (int i = 0; i < measurementIterations; i++) {
+            long bytesBefore = allocatedBytes();
+            long[] measured = iteration(operation);
+            long bytes = allocatedBytes() - bytesBefore;
+
+            nanosPerOp[i] = (double) measured[1] / measured[0];
+            totalBytes += bytes;
+            totalOperations += measured[0];
+        }
+
+        double mean = 0;
+        for (double value : nanosPerOp) {
+            mean += value;
+        }
+        mean /= nanosPerOp.length;
+
+        double variance = 0;
+        for (double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = nanosPerOp.length > 1 ? Math.sqrt(variance / (nanosPerOp.length - 1)) : 0;
+
+        return new Result(name, mean, error, totalBytes / totalOperations, totalOperations);
+    }
+
+    /**
+     * Runs the operation in batches until the iteration time is used up.
+     *
+     * @return {operations, elapsed nanoseconds}
+     */
+    private long[] iteration(Operation operation) {
+        long operations = 0;
+        int batch = 1;
+        double accumulator = 0;
+        long start = System.nanoTime();
+        long elapsed;
+
+        do {
+            for (int i = 0; i < batch; i++) {
+                accumulator += operation.run((int) (operations + i));
+            }
+            operations += batch;
+            elapsed = System.nanoTime() - start;
+            // Grow batches so timer calls stay negligible for fast kernels
+            if (batch < 1 << 16) {
+                batch <<= 1;
+            }
+        } while (elapsed < iterationNanos);
+
+        sink += accumulator;
+        return new long[]{operations, elapsed};
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or 0 if unsupported.
+     */
+    private long allocatedBytes() {
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            return 0;
+        }
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
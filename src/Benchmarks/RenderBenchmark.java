@@ -0,0 +1,299 @@
+package Benchmarks;
+
+import Lights.Light;
+import Lights.PointLight;
+import Materials.Texture;
+import Materials.TextureFilter;
+import Objects.Camera;
+import Objects.MeshInstance;
+import Objects.ObjObject;
+import Objects.Object3D;
+import Objects.RenderStats;
+import Objects.WrapperBoxes.BVHBuildMethod;
+import Objects.WrapperBoxes.BVHGenerator;
+import PreBuildScenes.HunterScene;
+import PreBuildScenes.MuseumAngels;
+import PreBuildScenes.Office;
+import PreBuildScenes.Temple;
+import Samplers.Sampler;
+import Samplers.SamplerType;
+import Tools.MeshCache;
+import vectors.Vector3D;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Headless end-to-end render benchmark over the scenes in {@code PreBuildScenes}.
+ * Every scene is loaded and rendered with the same camera {@code Raytracer} uses, and
+ * the results are reported as JSON: load time, BVH build time, render time, rays by kind,
+ * rays per second, Mrays/s per core, traversal work, per-stage times, peak heap and GC
+ * time. Nothing is written to disk unless an output file is given.
+ * <pre>
+ *     java -cp out Benchmarks.RenderBenchmark [--scenes Temple,Office] [--width 640] [--height 360]
+ *                                             [--bounces 3] [--repeat 1] [--bvh BINNED_SAH] [--mesh-cache true]
+ *                                             [--texture-filter NEAREST] [--sampler STRATIFIED] [--spp 1]
+ *                                             [--out results.json]
+ * </pre>
+ * Run from the repository root so the OBJ and texture paths resolve. A scene whose
+ * assets fail to load is reported with an error and the remaining scenes still run.
+ * Meshes load through {@code MeshCache} unless {@code --mesh-cache false} is given, so the
+ * load time of a second run measures cache reads rather than OBJ parsing. Textures are
+ * shared through {@code TextureCache}, so repeated runs of a scene in one process skip
+ * decoding them too.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public class RenderBenchmark {
+    /** Scenes that can be benchmarked, by name */
+    private static final String[] SCENES = {"Temple", "Office", "MuseumAngels", "HunterScene"};
+
+    public static void main(String[] args) throws IOException {
+        List<String> scenes = new ArrayList<>(Arrays.asList(SCENES));
+        int width = 640;
+        int height = 360;
+        int bounces = 3;
+        int repeat = 1;
+        SamplerType samplerType = SamplerType.STRATIFIED;
+        int samplesPerPixel = 1;
+        String outputFile = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--scenes" -> scenes = Arrays.asList(args[++i].split(","));
+                case "--width" -> width = Integer.parseInt(args[++i]);
+                case "--height" -> height = Integer.parseInt(args[++i]);
+                case "--bounces" -> bounces = Integer.parseInt(args[++i]);
+                case "--repeat" -> repeat = Integer.parseInt(args[++i]);
+                case "--bvh" -> BVHGenerator.setDefaultBuildMethod(BVHBuildMethod.valueOf(args[++i]));
+                case "--mesh-cache" -> MeshCache.setEnabled(Boolean.parseBoolean(args[++i]));
+                case "--texture-filter" -> Texture.setDefaultFilter(TextureFilter.valueOf(args[++i]));
+                case "--sampler" -> samplerType = SamplerType.valueOf(args[++i]);
+                case "--spp" -> samplesPerPixel = Integer.parseInt(args[++i]);
+                case "--out" -> outputFile = args[++i];
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"javaVersion\": ").append(quote(System.getProperty("java.version"))).append(",\n");
+        json.append("  \"cores\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        json.append("  \"maxHeapBytes\": ").append(Runtime.getRuntime().maxMemory()).append(",\n");
+        json.append("  \"width\": ").append(width).append(",\n");
+        json.append("  \"height\": ").append(height).append(",\n");
+        json.append("  \"bounces\": ").append(bounces).append(",\n");
+        json.append("  \"bvhBuildMethod\": ").append(quote(BVHGenerator.getDefaultBuildMethod().name())).append(",\n");
+        json.append("  \"meshCache\": ").append(MeshCache.isEnabled()).append(",\n");
+        json.append("  \"textureFilter\": ").append(quote(Texture.getDefaultFilter().name())).append(",\n");
+        json.append("  \"sampler\": ").append(quote(samplerType.name())).append(",\n");
+        json.append("  \"samplesPerPixel\": ").append(samplerType.create(samplesPerPixel).getSamplesPerPixel()).append(",\n");
+        json.append("  \"results\": [\n");
+
+        boolean first = true;
+        for (String scene : scenes) {
+            for (int run = 0; run < repeat; run++) {
+                System.err.println("Benchmarking " + scene + " (run " + (run + 1) + "/" + repeat + ")...");
+                String result = runScene(scene.trim(), run, width, height, bounces, samplerType.create(samplesPerPixel));
+                if (!first) json.append(",\n");
+                json.append(result);
+                first = false;
+            }
+        }
+
+        json.append("\n  ]\n}\n");
+
+        System.out.print(json);
+        if (outputFile != null) {
+            Files.write(Paths.get(outputFile), json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Loads and renders one scene and returns its JSON entry.
+     */
+    private static String runScene(String scene, int run, int width, int height, int bounces, Sampler sampler) {
+        Supplier<List<Object3D>> objectsSupplier;
+        Supplier<List<Light>> lightsSupplier;
+        switch (scene) {
+            case "Temple" -> {
+                objectsSupplier = Temple::getObjects;
+                lightsSupplier = Temple::getLights;
+            }
+            case "Office" -> {
+                objectsSupplier = Office::getObjects;
+                lightsSupplier = Office::getLights;
+            }
+            case "MuseumAngels" -> {
+                objectsSupplier = MuseumAngels::getObjects;
+                lightsSupplier = MuseumAngels::getLights;
+            }
+            case "HunterScene" -> {
+                objectsSupplier = HunterScene::getObjects;
+                // HunterScene defines no lights; light it from the camera
+                lightsSupplier = () -> List.of(new PointLight(new Vector3D(0, 0, 0), new Vector3D(255, 255, 255), 40));
+            }
+            default -> {
+                return entry(scene, run, "\"error\": " + quote("Unknown scene"));
+            }
+        }
+
+        System.gc();
+        resetHeapPeaks();
+        long gcTimeBefore = gcTime();
+        long gcCountBefore = gcCount();
+
+        // Loader logging is noise here; keep stdout for the JSON report
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+        try {
+            long loadStart = System.nanoTime();
+            List<Object3D> objects = objectsSupplier.get();
+            List<Light> lights = lightsSupplier.get();
+            // Meshes build their BVHs in the background; the scene is ready once all are done
+            for (Object3D object : objects) {
+                if (object instanceof ObjObject objObject) {
+                    objObject.awaitBVH();
+                } else if (object instanceof MeshInstance instance) {
+                    instance.awaitBVH();
+                }
+            }
+            long loadNanos = System.nanoTime() - loadStart;
+
+            // Shared meshes are built once however many instances place them
+            long meshBVHNanos = 0;
+            long triangles = 0;
+            Set<ObjObject> builtMeshes = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Object3D object : objects) {
+                if (object instanceof ObjObject objObject) {
+                    triangles += objObject.getTriangleCount();
+                    if (builtMeshes.add(objObject)) meshBVHNanos += objObject.getBVHBuildNanos();
+                } else if (object instanceof MeshInstance instance) {
+                    triangles += instance.getTriangleCount();
+                    if (builtMeshes.add(instance.getMesh())) meshBVHNanos += instance.getMesh().getBVHBuildNanos();
+                }
+            }
+
+            Camera camera = new Camera(new Vector3D(0, 0, 0), new Vector3D(0, 0, 0), 1.5, 600, width, height, 60);
+            camera.setBounces(bounces);
+            camera.setShowProgress(false);
+            camera.setSampler(sampler);
+
+            long renderStart = System.nanoTime();
+            camera.shot(objects, lights);
+            long renderNanos = System.nanoTime() - renderStart;
+
+            // Rays per second count every ray cast, shadow rays included
+            RenderStats stats = camera.getStats();
+            double raysPerSecond = stats.getTotalRays() / (renderNanos / 1e9);
+            int cores = Runtime.getRuntime().availableProcessors();
+
+            return entry(scene, run, String.format(Locale.ROOT,
+                    "\"objects\": %d, \"triangles\": %d, \"lights\": %d, " +
+                            "\"loadMs\": %.3f, \"meshBvhBuildMs\": %.3f, \"sceneBvhBuildMs\": %.3f, " +
+                            "\"renderMs\": %.3f, \"primaryRays\": %d, \"reflectionRays\": %d, " +
+                            "\"refractionRays\": %d, \"shadowRays\": %d, \"totalRays\": %d, " +
+                            "\"nodesVisited\": %d, \"triangleTests\": %d, " +
+                            "\"intersectionMs\": %.3f, \"shadingMs\": %.3f, \"shadowMs\": %.3f, \"textureMs\": %.3f, " +
+                            "\"raysPerSecond\": %.1f, \"mraysPerSecondPerCore\": %.4f, " +
+                            "\"peakHeapBytes\": %d, \"gcTimeMs\": %d, \"gcCount\": %d",
+                    objects.size(), triangles, lights.size(),
+                    loadNanos / 1e6, meshBVHNanos / 1e6, camera.getSceneBVHBuildNanos() / 1e6,
+                    renderNanos / 1e6, stats.getPrimaryRays(), stats.getReflectionRays(),
+                    stats.getRefractionRays(), stats.getShadowRays(), stats.getTotalRays(),
+                    stats.getNodesVisited(), stats.getTriangleTests(),
+                    stats.getIntersectionNanos() / 1e6, stats.getShadingNanos() / 1e6,
+                    stats.getShadowNanos() / 1e6, stats.getTextureNanos() / 1e6,
+                    raysPerSecond, raysPerSecond / cores / 1e6,
+                    peakHeap(), gcTime() - gcTimeBefore, gcCount() - gcCountBefore));
+        } catch (RuntimeException e) {
+            return entry(scene, run, "\"error\": " + quote(String.valueOf(e.getMessage())));
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * Wraps the fields of one result into a JSON object.
+     */
+    private static String entry(String scene, int run, String fields) {
+        return "    {\"scene\": " + quote(scene) + ", \"run\": " + run + ", " + fields + "}";
+    }
+
+    /**
+     * Quotes a string as a JSON literal.
+     */
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static void resetHeapPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Sum of the peak usage of every heap pool since the last reset. Pools peak at
+     * different moments, so this is an upper bound of the real peak.
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+}
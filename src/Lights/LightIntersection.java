@@ -1,10 +1,14 @@
 package Lights;
 
 import Materials.BlingPhongMaterial;
+import Objects.MeshInstance;
 import Objects.ObjObject;
 import Objects.Object3D;
+import Objects.RenderStats;
 import Objects.Sphere;
 import Objects.Triangle;
+import Objects.WrapperBoxes.SceneBVH;
+import vectors.HitRecord;
 import vectors.Intersection;
 import vectors.Ray;
 import vectors.Vector3D;
@@ -37,6 +41,10 @@ public class LightIntersection {
     private Vector3D direction;
     /** Position of the camera/viewer */
     private Vector3D cameraOrigin;
+    /** Top-level BVH of the scene used for shadow rays (null falls back to a linear scan) */
+    private SceneBVH sceneBVH;
+    /** Statistics updated with shadow rays and texture time (null when not collected) */
+    private RenderStats stats;
 
     // Lighting calculation constants
     /** Base ambient light intensity (5%) */
@@ -147,6 +155,38 @@ public class LightIntersection {
         this.cameraOrigin = cameraOrigin;
     }
 
+    /**
+     * Gets the top-level BVH used for shadow rays
+     * @return The scene BVH, or null if shadow rays scan the object list
+     */
+    public SceneBVH getSceneBVH() {
+        return sceneBVH;
+    }
+
+    /**
+     * Sets the top-level BVH used for shadow rays
+     * @param sceneBVH The scene BVH, or null to scan the object list
+     */
+    public void setSceneBVH(SceneBVH sceneBVH) {
+        this.sceneBVH = sceneBVH;
+    }
+
+    /**
+     * Gets the statistics updated while shading
+     * @return The render statistics, or null if none are collected
+     */
+    public RenderStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Sets the statistics updated while shading
+     * @param stats The render statistics, or null to skip collection
+     */
+    public void setStats(RenderStats stats) {
+        this.stats = stats;
+    }
+
     /**
      * Creates a new LightIntersection instance
      * @param object3DList List of objects in the scene
@@ -167,6 +207,23 @@ public class LightIntersection {
         setCameraOrigin(cameraOrigin);
     }
 
+    /**
+     * Creates a new LightIntersection instance that resolves shadow rays through a top-level BVH
+     * @param object3DList List of objects in the scene
+     * @param lightList List of lights in the scene
+     * @param objectHit The intersected object
+     * @param origin Ray origin point
+     * @param direction Ray direction (will be normalized)
+     * @param cameraOrigin Camera position
+     * @param sceneBVH Top-level BVH built over object3DList
+     */
+    public LightIntersection(List<Object3D> object3DList, List<Light> lightList,
+                             Object3D objectHit, Vector3D origin, Vector3D direction,
+                             Vector3D cameraOrigin, SceneBVH sceneBVH) {
+        this(object3DList, lightList, objectHit, origin, direction, cameraOrigin);
+        setSceneBVH(sceneBVH);
+    }
+
     /**
      * Calculates the final color at an intersection point considering all light sources
      * @param object The intersected object
@@ -174,17 +231,66 @@ public class LightIntersection {
      * @return Final color as packed RGB integer (0xRRGGBB)
      */
     public int lightsIntersection(Object3D object, Vector3D point) {
-        // Determine base color and shading model
-        boolean useBlinnPhong = object.getMaterial() instanceof BlingPhongMaterial;
-        int objectColor = useBlinnPhong ? object.getMaterial().getColor() : object.getColorInt();
+        int objectColor = getBaseColor(object);
+        if (!(object instanceof Triangle triangle)) {
+            return shade(object, point, null, objectColor);
+        }
+
+        // Apply texture if available
+        if (triangle.getTexture() != null) {
+            long textureStart = stats != null ? System.nanoTime() : 0;
+            objectColor = triangle.getTextureColor(point);
+            if (stats != null) {
+                stats.addTextureTime(System.nanoTime() - textureStart);
+            }
+        }
+
+        return shade(triangle, point, triangle.getNormal(point), objectColor);
+    }
+
+    /**
+     * Calculates the final color of a closest hit considering all light sources.
+     * The normal and texture coordinates are interpolated from the hit's barycentric
+     * coordinates once and shared by every light, instead of projecting the point again.
+     * @param hit The closest hit returned by the intersection query
+     * @param point The intersection point in world coordinates
+     * @return Final color as packed RGB integer (0xRRGGBB)
+     */
+    public int lightsIntersection(HitRecord hit, Vector3D point) {
+        Triangle triangle = hit.getTriangle();
+        if (triangle == null) {
+            return lightsIntersection(hit.getObject(), point);
+        }
+
+        int objectColor = getBaseColor(triangle);
 
         // Apply texture if available
-        if (object instanceof Triangle) {
-            if (((Triangle) object).getTexture() != null) {
-                objectColor = ((Triangle) object).getTextureColor(point);
+        if (triangle.getTexture() != null) {
+            long textureStart = stats != null ? System.nanoTime() : 0;
+            objectColor = hit.getTextureColor();
+            if (stats != null) {
+                stats.addTextureTime(System.nanoTime() - textureStart);
             }
         }
 
+        return shade(triangle, point, hit.getNormal(), objectColor);
+    }
+
+    /**
+     * Gets the untextured color of an object, depending on its shading model
+     */
+    private int getBaseColor(Object3D object) {
+        return object.getMaterial() instanceof BlingPhongMaterial
+                ? object.getMaterial().getColor() : object.getColorInt();
+    }
+
+    /**
+     * Adds the ambient term and the contribution of every unblocked light
+     * @param normal Interpolated shading normal, or null for non-triangle objects
+     */
+    private int shade(Object3D object, Vector3D point, Vector3D normal, int objectColor) {
+        boolean useBlinnPhong = object.getMaterial() instanceof BlingPhongMaterial;
+
         // Start with ambient lighting
         int ambientColor = calculateAmbientLight(objectColor, AMBIENT_INTENSITY);
         int finalColor = ambientColor;
@@ -194,7 +300,7 @@ public class LightIntersection {
         for (Light light : lightList) {
             // Skip lights with insignificant contribution
             if (!(light instanceof DirectionalLight)) {
-                double distance = point.subtract(light.getPosition()).length();
+                double distance = point.distance(light.getPosition());
                 double attenuatedIntensity = calculateAttenuatedIntensity(light, distance);
                 if (attenuatedIntensity < MIN_LIGHT_INTENSITY) {
                     continue;
@@ -208,15 +314,15 @@ public class LightIntersection {
 
             // Calculate light contribution based on type and shading model
             int lightContribution = 0;
-            if (useBlinnPhong && object instanceof Triangle triangle) {
-                lightContribution = calculateBlinnPhongLighting(triangle, point, light, objectColor);
-            } else if (object instanceof Triangle triangle) {
+            if (useBlinnPhong && normal != null) {
+                lightContribution = calculateBlinnPhongLighting(object, normal, point, light, objectColor);
+            } else if (normal != null) {
                 if (light instanceof DirectionalLight directionalLight) {
-                    lightContribution = calculateDirectionalLighting(triangle, point, directionalLight, objectColor);
+                    lightContribution = calculateDirectionalLighting(normal, directionalLight, objectColor);
                 } else if (light instanceof SpotLight spotLight && isInSpotlightCone(spotLight, point)) {
-                    lightContribution = calculateSpotLighting(triangle, point, spotLight, objectColor);
+                    lightContribution = calculateSpotLighting(normal, point, spotLight, objectColor);
                 } else if (light instanceof PointLight pointLight) {
-                    lightContribution = calculatePointLighting(triangle, point, pointLight, objectColor);
+                    lightContribution = calculatePointLighting(normal, point, pointLight, objectColor);
                 }
             }
 
@@ -250,11 +356,34 @@ public class LightIntersection {
             return false;
         }
 
-        // Calculate vector from point to light
-        Vector3D lightVector = light.getPosition().subtract(point);
-        double lightDistance = lightVector.length();
-        Vector3D rayDirection = lightVector.normalize();
-        Ray ray = new Ray(point, rayDirection);
+        // Calculate vector from point to light on primitives; the ray normalizes it
+        Vector3D lightPosition = light.getPosition();
+        double lx = lightPosition.x - point.x;
+        double ly = lightPosition.y - point.y;
+        double lz = lightPosition.z - point.z;
+        double lightDistance = Vector3D.length(lx, ly, lz);
+        Ray ray = new Ray(point, lx, ly, lz);
+
+        if (stats == null) {
+            return isRayBlocked(ray, lightDistance, currentObject);
+        }
+
+        stats.addShadowRay();
+        long start = System.nanoTime();
+        boolean blocked = isRayBlocked(ray, lightDistance, currentObject);
+        stats.addShadowTime(System.nanoTime() - start);
+        return blocked;
+    }
+
+    /**
+     * Check if any object blocks a shadow ray before it reaches the light
+     */
+    private boolean isRayBlocked(Ray ray, double lightDistance, Object3D currentObject) {
+        // Walk the top-level BVH when available, stopping at the first blocker
+        if (sceneBVH != null) {
+            return Intersection.sceneOccluded(ray, sceneBVH, SHADOW_BIAS, lightDistance, TRIANGLE_EPSILON,
+                    currentObject, stats);
+        }
 
         // Check for intersections with all objects
         for (Object3D obj : getObject3DList()) {
@@ -268,7 +397,14 @@ public class LightIntersection {
             } else if (obj instanceof Triangle triangle) {
                 dist = Intersection.triangle(ray, triangle, SHADOW_BIAS, lightDistance, TRIANGLE_EPSILON);
             } else if (obj instanceof ObjObject objObject) {
-                dist = Intersection.obj(ray, objObject, SHADOW_BIAS, lightDistance, TRIANGLE_EPSILON);
+                // Any hit before the light is enough, no need for the closest one
+                if (Intersection.objOccluded(ray, objObject, SHADOW_BIAS, lightDistance, TRIANGLE_EPSILON)) {
+                    return true;
+                }
+            } else if (obj instanceof MeshInstance instance) {
+                if (Intersection.meshInstanceOccluded(ray, instance, SHADOW_BIAS, lightDistance, TRIANGLE_EPSILON)) {
+                    return true;
+                }
             }
 
             // If intersection found between point and light
@@ -283,10 +419,11 @@ public class LightIntersection {
     /**
      * Calculate Blinn-Phong lighting model contribution
      */
-    private int calculateBlinnPhongLighting(Triangle triangle, Vector3D point, Light light, int objectColor) {
+    private int calculateBlinnPhongLighting(Object3D object, Vector3D normal, Vector3D point, Light light,
+                                            int objectColor) {
         // Calculate diffuse and specular factors
-        double diffuseFactor = calculateDiffuseFactor(triangle, point, light);
-        double specularFactor = calculateSpecularFactor(triangle, point, light);
+        double diffuseFactor = calculateDiffuseFactor(normal, point, light);
+        double specularFactor = calculateSpecularFactor(object, normal, point, light);
 
         // Apply diffuse lighting to object color
         int lightColor = applyDiffuseToColor(objectColor, light.getColorint(), diffuseFactor);
@@ -301,9 +438,8 @@ public class LightIntersection {
     /**
      * Calculate diffuse factor (Lambert's cosine law)
      */
-    private double calculateDiffuseFactor(Triangle triangle, Vector3D point, Light light) {
-        Vector3D normal = triangle.getNormal(point).normalize();
-        Vector3D lightDir = calculateLightDirection(triangle, point, light).multiplyByScalar(-1);
+    private double calculateDiffuseFactor(Vector3D normal, Vector3D point, Light light) {
+        Vector3D lightDir = calculateLightDirection(point, light).scaleInPlace(-1);
         double intensity = calculateLightIntensity(point, light);
 
         // Cosine of angle between normal and light direction
@@ -316,18 +452,17 @@ public class LightIntersection {
     /**
      * Calculate specular factor using Blinn-Phong model
      */
-    private double calculateSpecularFactor(Triangle triangle, Vector3D point, Light light) {
+    private double calculateSpecularFactor(Object3D object, Vector3D normal, Vector3D point, Light light) {
         // Only calculate specular if the object has a Blinn-Phong material
-        if (!(triangle.getMaterial() instanceof BlingPhongMaterial material)) {
+        if (!(object.getMaterial() instanceof BlingPhongMaterial material)) {
             return 0.0;
         }
 
-        Vector3D normal = triangle.getNormal(point).normalize();
-        Vector3D lightDir = calculateLightDirection(triangle, point, light).multiplyByScalar(-1);
-        Vector3D viewDir = cameraOrigin.subtract(point).normalize().multiplyByScalar(-1);
+        Vector3D lightDir = calculateLightDirection(point, light).scaleInPlace(-1);
+        Vector3D viewDir = new Vector3D().setSubtract(cameraOrigin, point).normalizeInPlace().scaleInPlace(-1);
 
-        // Calculate half-vector between light and view direction
-        Vector3D halfway = lightDir.add(viewDir).normalize();
+        // Calculate half-vector between light and view direction (reusing viewDir's storage)
+        Vector3D halfway = viewDir.setAdd(lightDir, viewDir).normalizeInPlace();
 
         // Skip specular calculation if light is behind the surface
         if (normal.dot(lightDir) <= 0) {
@@ -355,13 +490,12 @@ public class LightIntersection {
     /**
      * Calculate directional light contribution
      */
-    private int calculateDirectionalLighting(Triangle triangle, Vector3D point, DirectionalLight light, int objectColor) {
-        Vector3D normal = triangle.getNormal(point).normalize().multiplyByScalar(-1);
-        Vector3D lightDir = light.getDirection().normalize().multiplyByScalar(-1);
+    private int calculateDirectionalLighting(Vector3D normal, DirectionalLight light, int objectColor) {
+        Vector3D lightDir = new Vector3D(light.getDirection()).normalizeInPlace().scaleInPlace(-1);
         double intensity = light.getIntensity();
 
-        // Calculate cosine of angle between normal and light
-        double dotNL = normal.dot(lightDir);
+        // Calculate cosine of angle between the flipped normal and light
+        double dotNL = -normal.dot(lightDir);
 
         // Return black if light is behind the surface
         if (dotNL <= 0) {
@@ -375,13 +509,12 @@ public class LightIntersection {
     /**
      * Calculate spotlight contribution
      */
-    private int calculateSpotLighting(Triangle triangle, Vector3D point, SpotLight light, int objectColor) {
-        Vector3D normal = triangle.getNormal(point).normalize().multiplyByScalar(-1);
-        Vector3D lightDir = calculateLightDirection(triangle, point, light);
+    private int calculateSpotLighting(Vector3D normal, Vector3D point, SpotLight light, int objectColor) {
+        Vector3D lightDir = calculateLightDirection(point, light);
         double intensity = calculateLightIntensity(point, light);
 
-        // Calculate cosine of angle between normal and light
-        double dotNL = normal.dot(lightDir);
+        // Calculate cosine of angle between the flipped normal and light
+        double dotNL = -normal.dot(lightDir);
 
         // Return black if light is behind the surface
         if (dotNL <= 0) {
@@ -395,13 +528,12 @@ public class LightIntersection {
     /**
      * Calculate point light contribution
      */
-    private int calculatePointLighting(Triangle triangle, Vector3D point, PointLight light, int objectColor) {
-        Vector3D normal = triangle.getNormal(point).normalize().multiplyByScalar(-1);
-        Vector3D lightDir = calculateLightDirection(triangle, point, light);
+    private int calculatePointLighting(Vector3D normal, Vector3D point, PointLight light, int objectColor) {
+        Vector3D lightDir = calculateLightDirection(point, light);
         double intensity = calculateLightIntensity(point, light);
 
-        // Calculate cosine of angle between normal and light
-        double dotNL = normal.dot(lightDir);
+        // Calculate cosine of angle between the flipped normal and light
+        double dotNL = -normal.dot(lightDir);
 
         // Return black if light is behind the surface
         if (dotNL <= 0) {
@@ -417,10 +549,10 @@ public class LightIntersection {
      */
     private boolean isInSpotlightCone(SpotLight spotLight, Vector3D point) {
         // Direction FROM light TO point (consistent with lighting calculations)
-        Vector3D lightToPoint = point.subtract(spotLight.getPosition()).normalize();
+        Vector3D lightToPoint = new Vector3D().setSubtract(point, spotLight.getPosition()).normalizeInPlace();
 
         // Direction that the spotlight is pointing (FROM the light)
-        Vector3D spotDirection = spotLight.getDirection().normalize();
+        Vector3D spotDirection = new Vector3D(spotLight.getDirection()).normalizeInPlace();
 
         // Calculate the cosine of the angle between the two vectors
         double cosAngle = lightToPoint.dot(spotDirection);
@@ -444,8 +576,7 @@ public class LightIntersection {
         }
 
         // Calculate distance for attenuation
-        Vector3D lightVector = light.getPosition().subtract(point);
-        double distance = lightVector.length();
+        double distance = light.getPosition().distance(point);
 
         // Apply inverse square law attenuation
         return baseIntensity / (1.0 + ATTENUATION_FACTOR * distance * distance);
@@ -454,13 +585,13 @@ public class LightIntersection {
     /**
      * Calculate direction from a point to a light source
      */
-    private Vector3D calculateLightDirection(Triangle object, Vector3D point, Light light) {
+    private Vector3D calculateLightDirection(Vector3D point, Light light) {
         if (light instanceof DirectionalLight directionalLight) {
             // For directional lights, use the light's direction
-            return directionalLight.getDirection().normalize();
+            return new Vector3D(directionalLight.getDirection()).normalizeInPlace();
         } else {
             // For point and spotlights, calculate direction from point to light
-            return light.getPosition().subtract(point).normalize();
+            return new Vector3D().setSubtract(light.getPosition(), point).normalizeInPlace();
         }
     }
 
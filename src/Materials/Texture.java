@@ -1,27 +1,49 @@
 package Materials;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 import vectors.Vector3D;
 
 /**
  * Handles texture loading and sampling for materials.
  * Supports reading image files and providing color information
  * based on UV coordinates (texture coordinates).
+ * The decoded image is copied into a packed array of ARGB texels at load time and the
+ * image itself is dropped, so a lookup is a few arithmetic operations and an array read.
+ * Textures filtered with {@link TextureFilter#TRILINEAR} also keep a mip chain, built at
+ * load time, and are sampled at the level of detail of the hit, see
+ * {@link #getColorAt(double, double, double)}.
+ * <p>
+ * Images of {@link #getTiledThreshold()} texels or more are not decoded into memory but
+ * read through {@link TiledTexels}, which keeps a bounded set of 64x64 tiles on the heap.
+ * Tiled textures have no mip chain and sample {@link TextureFilter#TRILINEAR} bilinearly.
  *
  * @author José Eduardo Moreno Paredes
  */
 public class Texture {
-    /** The loaded image data */
-    private BufferedImage image;
+    private static volatile TextureFilter defaultFilter = TextureFilter.NEAREST;
+    /** Texel count from which images are tiled, 8192x8192 unless set */
+    private static volatile long tiledThreshold = 8192L * 8192L;
+
+    /** Texels packed as 0xAARRGGBB, row by row from the top of the image; null if tiled */
+    private int[] pixels;
+    /** Tiles of a large image, null unless it is tiled */
+    private TiledTexels tiles;
     /** Width of the texture in pixels */
     private int width;
     /** Height of the texture in pixels */
     private int height;
     /** Path to the texture file */
     private String filePath;
+    /** How colors between texels are reconstructed */
+    private volatile TextureFilter filter = defaultFilter;
+    /** Mip levels, only built for {@link TextureFilter#TRILINEAR} */
+    private volatile MipChain mipChain;
 
     /**
      * Creates a new texture from an image file.
@@ -34,32 +56,63 @@ public class Texture {
     }
 
     /**
-     * Loads the texture image from disk.
+     * Loads the texture image from disk and unpacks it into the texel array, or opens its
+     * tiles if the image is at least {@link #getTiledThreshold()} texels.
      * @param filePath Path to the image file
      * @throws RuntimeException if the image cannot be loaded
      */
     private void loadTexture(String filePath) {
         try {
             File file = new File(filePath);
-            image = ImageIO.read(file);
-            if (image == null) {
-                throw new IOException("Unsupported image format");
+            BufferedImage image;
+            try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+                Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+                if (readers == null || !readers.hasNext()) {
+                    throw new IOException("Unsupported image format");
+                }
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(input, true, true);
+                    // The header is enough to tell whether the image is tiled
+                    if ((long) reader.getWidth(0) * reader.getHeight(0) >= tiledThreshold) {
+                        tiles = TiledTexels.open(filePath);
+                        if (tiles != null) {
+                            width = tiles.getWidth();
+                            height = tiles.getHeight();
+                            return;
+                        }
+                        System.err.println("Decoding " + filePath + " into memory instead");
+                    }
+                    image = reader.read(0);
+                } finally {
+                    reader.dispose();
+                }
             }
             width = image.getWidth();
             height = image.getHeight();
+            // Same conversion getRGB(x, y) does, once for every texel
+            pixels = image.getRGB(0, 0, width, height, null, 0, width);
+            if (filter == TextureFilter.TRILINEAR) {
+                mipChain = buildMipChain();
+            }
         } catch (IOException e) {
             throw new RuntimeException("Failed to load texture: " + filePath, e);
         }
     }
 
     /**
-     * Gets the color at specific UV coordinates.
+     * Gets the color at specific UV coordinates with the texture's filter, at full
+     * resolution (trilinear filtering falls back to bilinear).
      * Handles texture wrapping (repeats texture outside [0,1] range).
      * @param u Horizontal texture coordinate (0-1)
      * @param v Vertical texture coordinate (0-1)
      * @return The color at (u,v) packed as 0xRRGGBB
      */
     public int getColorAt(double u, double v) {
+        if (filter != TextureFilter.NEAREST) {
+            return getColorBilinear(u, v);
+        }
+
         // Normalize coordinates to [0,1] range with wrapping
         u = u - Math.floor(u);
         v = v - Math.floor(v);
@@ -71,7 +124,162 @@ public class Texture {
         int x = Math.min(Math.max((int)(u * width), 0), width - 1);
         int y = Math.min(Math.max((int)((1 - v) * height), 0), height - 1);  // Flip V coordinate
 
-        return image.getRGB(x, y);
+        return pixels != null ? pixels[y * width + x] : tiles.getTexel(x, y);
+    }
+
+    /**
+     * Gets the color at specific UV coordinates, blending the four nearest texels.
+     * Texel centers sit at half-texel offsets and the neighbours wrap around the borders,
+     * like the coordinates themselves.
+     * @param u Horizontal texture coordinate (0-1)
+     * @param v Vertical texture coordinate (0-1)
+     * @return The filtered color at (u,v) packed as 0xRRGGBB
+     */
+    public int getColorBilinear(double u, double v) {
+        return bilinear(pixels, tiles, width, height, u, v);
+    }
+
+    /**
+     * Gets the color at specific UV coordinates for a sample covering an area of the
+     * texture. With {@link TextureFilter#TRILINEAR} the two mip levels around the level of
+     * detail are sampled bilinearly and blended; the other filters sample the full
+     * resolution texture, as {@link #getColorAt(double, double)} does.
+     * @param u   Horizontal texture coordinate (0-1)
+     * @param v   Vertical texture coordinate (0-1)
+     * @param lod Level of detail: log2 of the sample's footprint in texels, 0 or less for full resolution
+     * @return The color at (u,v) packed as 0xRRGGBB
+     */
+    public int getColorAt(double u, double v, double lod) {
+        MipChain chain = mipChain;
+        if (filter != TextureFilter.TRILINEAR || chain == null) {
+            return getColorAt(u, v);
+        }
+        if (!(lod > 0)) {
+            return bilinear(pixels, null, width, height, u, v);
+        }
+
+        int last = chain.texels.length - 1;
+        if (lod >= last) {
+            return bilinear(chain.texels[last], null, chain.widths[last], chain.heights[last], u, v);
+        }
+
+        int level = (int) lod;
+        double t = lod - level;
+        int fine = bilinear(chain.texels[level], null, chain.widths[level], chain.heights[level], u, v);
+        int coarse = bilinear(chain.texels[level + 1], null, chain.widths[level + 1], chain.heights[level + 1], u, v);
+
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            double channel = ((fine >>> shift) & 0xFF) * (1 - t) + ((coarse >>> shift) & 0xFF) * t;
+            result |= Math.min((int) (channel + 0.5), 255) << shift;
+        }
+        return result;
+    }
+
+    /**
+     * Bilinear lookup in one level of the texture, see {@link #getColorBilinear(double, double)}.
+     * The texels come from the tiles when the array is null.
+     */
+    private static int bilinear(int[] texels, TiledTexels tiles, int width, int height, double u, double v) {
+        double fx = (u - Math.floor(u)) * width - 0.5;
+        double fy = (1 - (v - Math.floor(v))) * height - 0.5;  // Flip V coordinate
+        if (Double.isNaN(fx) || Double.isNaN(fy)) {
+            return texels != null ? texels[0] : tiles.getTexel(0, 0);
+        }
+
+        double floorX = Math.floor(fx);
+        double floorY = Math.floor(fy);
+        double tx = fx - floorX;
+        double ty = fy - floorY;
+
+        int x0 = wrap((int) floorX, width);
+        int y0 = wrap((int) floorY, height);
+        int x1 = x0 + 1 == width ? 0 : x0 + 1;
+        int y1 = y0 + 1 == height ? 0 : y0 + 1;
+
+        int c00, c10, c01, c11;
+        if (texels != null) {
+            c00 = texels[y0 * width + x0];
+            c10 = texels[y0 * width + x1];
+            c01 = texels[y1 * width + x0];
+            c11 = texels[y1 * width + x1];
+        } else {
+            c00 = tiles.getTexel(x0, y0);
+            c10 = tiles.getTexel(x1, y0);
+            c01 = tiles.getTexel(x0, y1);
+            c11 = tiles.getTexel(x1, y1);
+        }
+
+        double w00 = (1 - tx) * (1 - ty);
+        double w10 = tx * (1 - ty);
+        double w01 = (1 - tx) * ty;
+        double w11 = tx * ty;
+
+        // Blend every 8-bit channel, alpha included
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            double channel = ((c00 >>> shift) & 0xFF) * w00 + ((c10 >>> shift) & 0xFF) * w10
+                    + ((c01 >>> shift) & 0xFF) * w01 + ((c11 >>> shift) & 0xFF) * w11;
+            result |= Math.min((int) (channel + 0.5), 255) << shift;
+        }
+        return result;
+    }
+
+    /**
+     * Builds the mip chain: every level halves the previous one, averaging 2x2 texels
+     * (the last row or column of an odd sized level is reused), down to 1x1.
+     */
+    private MipChain buildMipChain() {
+        int levels = 1;
+        for (int size = Math.max(width, height); size > 1; size = (size + 1) / 2) levels++;
+
+        int[][] texels = new int[levels][];
+        int[] widths = new int[levels];
+        int[] heights = new int[levels];
+        texels[0] = pixels;
+        widths[0] = width;
+        heights[0] = height;
+
+        for (int level = 1; level < levels; level++) {
+            int[] source = texels[level - 1];
+            int sourceWidth = widths[level - 1];
+            int sourceHeight = heights[level - 1];
+            int w = Math.max(1, (sourceWidth + 1) / 2);
+            int h = Math.max(1, (sourceHeight + 1) / 2);
+            int[] target = new int[w * h];
+
+            for (int y = 0; y < h; y++) {
+                int row0 = Math.min(y * 2, sourceHeight - 1) * sourceWidth;
+                int row1 = Math.min(y * 2 + 1, sourceHeight - 1) * sourceWidth;
+                for (int x = 0; x < w; x++) {
+                    int x0 = Math.min(x * 2, sourceWidth - 1);
+                    int x1 = Math.min(x * 2 + 1, sourceWidth - 1);
+                    int c00 = source[row0 + x0], c10 = source[row0 + x1];
+                    int c01 = source[row1 + x0], c11 = source[row1 + x1];
+
+                    int averaged = 0;
+                    for (int shift = 0; shift < 32; shift += 8) {
+                        int sum = ((c00 >>> shift) & 0xFF) + ((c10 >>> shift) & 0xFF)
+                                + ((c01 >>> shift) & 0xFF) + ((c11 >>> shift) & 0xFF);
+                        averaged |= ((sum + 2) >> 2) << shift;
+                    }
+                    target[y * w + x] = averaged;
+                }
+            }
+
+            texels[level] = target;
+            widths[level] = w;
+            heights[level] = h;
+        }
+        return new MipChain(texels, widths, heights);
+    }
+
+    /**
+     * Wraps a texel coordinate into [0, size).
+     */
+    private static int wrap(int coordinate, int size) {
+        coordinate %= size;
+        return coordinate < 0 ? coordinate + size : coordinate;
     }
 
     /**
@@ -105,6 +313,108 @@ public class Texture {
         return height;
     }
 
+    /**
+     * Gets the memory taken by the decoded pixels; for a tiled texture, the most its
+     * resident tiles can take.
+     * @return Size of the image data in bytes
+     */
+    public long getMemoryBytes() {
+        if (tiles != null) {
+            return tiles.getMaxResidentBytes();
+        }
+        MipChain chain = mipChain;
+        if (chain == null) {
+            return (long) pixels.length * Integer.BYTES;
+        }
+        long bytes = 0;
+        for (int[] level : chain.texels) {
+            bytes += (long) level.length * Integer.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the number of mip levels, the full resolution one included.
+     * @return Number of levels, 1 unless the texture is filtered trilinearly and not tiled
+     */
+    public int getMipLevels() {
+        MipChain chain = mipChain;
+        return chain != null ? chain.texels.length : 1;
+    }
+
+    /**
+     * Gets the filter used by {@link #getColorAt(double, double)}.
+     * @return The texture filter
+     */
+    public TextureFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Sets the filter used by {@link #getColorAt(double, double)}. Switching to
+     * {@link TextureFilter#TRILINEAR} builds the mip chain first, unless the texture is tiled,
+     * and the {@link TextureCache} counts its memory. Textures from the cache are shared, so
+     * this affects every object using this texture.
+     * @param filter The texture filter
+     */
+    public synchronized void setFilter(TextureFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Texture filter cannot be null");
+        }
+        if (filter == TextureFilter.TRILINEAR && mipChain == null && tiles == null) {
+            mipChain = buildMipChain();
+            TextureCache.updateBytes(this);
+        }
+        this.filter = filter;
+    }
+
+    /**
+     * Gets the filter textures are created with.
+     * @return The default texture filter
+     */
+    public static TextureFilter getDefaultFilter() {
+        return defaultFilter;
+    }
+
+    /**
+     * Sets the filter textures loaded from now on are created with.
+     * @param filter The default texture filter
+     */
+    public static void setDefaultFilter(TextureFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Texture filter cannot be null");
+        }
+        defaultFilter = filter;
+    }
+
+    /**
+     * Checks if the texture is read through tiles instead of held in memory.
+     * @return true if the texture is tiled
+     */
+    public boolean isTiled() {
+        return tiles != null;
+    }
+
+    /**
+     * Gets the texel count from which images are tiled instead of decoded into memory.
+     * @return Minimum width * height of tiled textures
+     */
+    public static long getTiledThreshold() {
+        return tiledThreshold;
+    }
+
+    /**
+     * Sets the texel count from which images loaded from now on are tiled instead of
+     * decoded into memory, see {@link TiledTexels}.
+     * @param texels Minimum width * height of tiled textures, 1 or more
+     */
+    public static void setTiledThreshold(long texels) {
+        if (texels < 1) {
+            throw new IllegalArgumentException("Tiled texture threshold must be positive");
+        }
+        tiledThreshold = texels;
+    }
+
     /**
      * Gets the path to the texture file.
      * @return Original file path used to load the texture
@@ -112,4 +422,19 @@ public class Texture {
     public String getFilePath() {
         return filePath;
     }
-}
\ No newline at end of file
+
+    /**
+     * Texels of every mip level, level 0 being the full resolution texture.
+     */
+    private static class MipChain {
+        private final int[][] texels;
+        private final int[] widths;
+        private final int[] heights;
+
+        private MipChain(int[][] texels, int[] widths, int[] heights) {
+            this.texels = texels;
+            this.widths = widths;
+            this.heights = heights;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package Materials;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Process-wide cache of decoded textures, so an image used by several objects or scenes
+ * is decoded once and shared. Textures are keyed by the canonical path of their file; a
+ * file modified on disk since it was decoded is decoded again.
+ * <p>
+ * The cache holds at most {@link #getMaxBytes()} of decoded pixels and evicts the least
+ * recently requested textures beyond that. Evicting or {@link #release(String) releasing}
+ * a texture only drops the cache's reference: objects that use it keep a valid texture,
+ * and its memory is reclaimed once none does. Concurrent requests for the same file wait
+ * for a single decode.
+ * <pre>
+ *     Texture stone = TextureCache.get("Textures/Stone.jpg");
+ * </pre>
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public class TextureCache {
+    /** Cached textures by canonical path, least recently used first */
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Decoded bytes of the textures in the cache */
+    private static long cachedBytes;
+    /** Eviction threshold, a quarter of the maximum heap unless set */
+    private static long maxBytes = Runtime.getRuntime().maxMemory() / 4;
+    private static long hits;
+    private static long misses;
+
+    /**
+     * Returns the texture of an image file, decoding it only if it is not cached.
+     *
+     * @param path Path to the texture image file
+     * @return The shared texture
+     * @throws RuntimeException if the texture fails to load, see {@link Texture#Texture(String)}
+     */
+    public static Texture get(String path) {
+        String key = canonicalPath(path);
+        long lastModified = new File(key).lastModified();
+
+        Entry entry;
+        boolean decode = false;
+        synchronized (TextureCache.class) {
+            entry = entries.get(key);
+            if (entry != null && entry.lastModified != lastModified) {
+                remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(lastModified);
+                entries.put(key, entry);
+                decode = true;
+                misses++;
+            } else {
+                hits++;
+            }
+        }
+
+        if (decode) {
+            try {
+                Texture texture = new Texture(path);
+                entry.texture.complete(texture);
+                synchronized (TextureCache.class) {
+                    // The entry may have been released while decoding
+                    if (entries.get(key) == entry) {
+                        // The texture may already have been refiltered through updateBytes
+                        long bytes = texture.getMemoryBytes();
+                        cachedBytes += bytes - entry.bytes;
+                        entry.bytes = bytes;
+                        evict(entry);
+                    }
+                }
+                return texture;
+            } catch (RuntimeException | Error e) {
+                entry.texture.completeExceptionally(e);
+                synchronized (TextureCache.class) {
+                    if (entries.get(key) == entry) {
+                        entries.remove(key);
+                    }
+                }
+                throw e;
+            }
+        }
+
+        try {
+            return entry.texture.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the cached texture of an image file. Objects already using it are unaffected;
+     * the next {@link #get(String)} decodes the file again.
+     *
+     * @param path Path to the texture image file
+     * @return true if the texture was cached
+     */
+    public static synchronized boolean release(String path) {
+        return remove(canonicalPath(path));
+    }
+
+    /**
+     * Drops every cached texture.
+     */
+    public static synchronized void clear() {
+        entries.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * Gets the number of cached textures.
+     *
+     * @return Number of textures in the cache
+     */
+    public static synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the decoded size of the cached textures.
+     *
+     * @return Bytes of pixel data held by the cache
+     */
+    public static synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Gets the size beyond which the least recently used textures are evicted.
+     *
+     * @return Maximum bytes of pixel data
+     */
+    public static synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the size beyond which the least recently used textures are evicted, and evicts
+     * right away if the cache is already larger. A texture larger than the limit is still
+     * cached until the next texture is decoded.
+     *
+     * @param maxBytes Maximum bytes of pixel data, 0 or more
+     */
+    public static synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Texture cache size cannot be negative");
+        }
+        TextureCache.maxBytes = maxBytes;
+        evict(null);
+    }
+
+    /**
+     * Gets the number of requests served from the cache.
+     *
+     * @return Cache hits since startup
+     */
+    public static synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of requests that decoded a file.
+     *
+     * @return Cache misses since startup
+     */
+    public static synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Recounts the bytes of a cached texture whose memory changed, such as a mip chain built
+     * by {@link Texture#setFilter(TextureFilter)}, and evicts if the cache no longer fits.
+     * Textures not held by the cache are ignored.
+     *
+     * @param texture The texture whose memory changed
+     */
+    static synchronized void updateBytes(Texture texture) {
+        Entry entry = entries.get(canonicalPath(texture.getFilePath()));
+        if (entry == null || entry.texture.getNow(null) != texture) return;
+        long bytes = texture.getMemoryBytes();
+        cachedBytes += bytes - entry.bytes;
+        entry.bytes = bytes;
+        evict(entry);
+    }
+
+    /**
+     * Removes an entry and its bytes from the cache. Callers hold the class lock.
+     */
+    private static boolean remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) return false;
+        cachedBytes -= entry.bytes;
+        return true;
+    }
+
+    /**
+     * Evicts least recently used entries until the cache fits, never the given one and
+     * never a texture still being decoded. Callers hold the class lock.
+     */
+    private static void evict(Entry keep) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry == keep || !entry.texture.isDone()) continue;
+            iterator.remove();
+            cachedBytes -= entry.bytes;
+        }
+    }
+
+    /**
+     * Resolves the path a texture is cached under; files that cannot be resolved are
+     * keyed by their absolute path and fail when decoded.
+     */
+    private static String canonicalPath(String path) {
+        File file = new File(path);
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /**
+     * A cached texture, complete once decoded.
+     */
+    private static class Entry {
+        private final CompletableFuture<Texture> texture = new CompletableFuture<>();
+        private final long lastModified;
+        private long bytes;
+
+        private Entry(long lastModified) {
+            this.lastModified = lastModified;
+        }
+    }
+}
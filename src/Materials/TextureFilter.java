@@ -0,0 +1,26 @@
+package Materials;
+
+/**
+ * Ways {@link Texture} can reconstruct a color between texels.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public enum TextureFilter {
+    /**
+     * The texel under the sample point. Fastest, but magnified textures look blocky.
+     */
+    NEAREST,
+
+    /**
+     * Weighted average of the four texels around the sample point, wrapping across the
+     * texture borders. Smooth under magnification for about four times the memory reads.
+     */
+    BILINEAR,
+
+    /**
+     * Bilinear samples of the two mip levels closest to the sample's footprint, blended.
+     * Distant and grazing surfaces no longer alias; costs a third more memory for the mip
+     * chain and two bilinear lookups per sample.
+     */
+    TRILINEAR
+}
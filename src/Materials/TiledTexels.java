@@ -0,0 +1,427 @@
+package Materials;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32C;
+
+/**
+ * Out-of-core storage for very large textures. The image is converted once into a tile
+ * file next to it, {@code <image>.<key>.rttex}, holding 64x64 texel tiles; the file is
+ * memory-mapped and only the tiles that are sampled are copied onto the heap, at most
+ * {@link #getMaxResidentTiles()} of them. When the limit is reached the clock algorithm
+ * (an approximation of least recently used) picks the tile to drop, so lookups of resident
+ * tiles take no lock.
+ * <p>
+ * The tile file holds a 32 byte header (magic, version, key, width, height, tile size) and
+ * then the tiles row by row, each as 64x64 ARGB texels, little-endian. Tiles past the right
+ * and bottom edges repeat the last column and row. The key hashes the image file contents,
+ * so a changed image is converted again. The image is decoded in horizontal strips, so
+ * converting never holds the whole image in memory either.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public class TiledTexels {
+    /** Width and height of a tile in texels */
+    public static final int TILE_SIZE = 64;
+    private static final int TILE_TEXELS = TILE_SIZE * TILE_SIZE;
+    private static final int TILE_BYTES = TILE_TEXELS * Integer.BYTES;
+    /** "RTTX" */
+    private static final int MAGIC = 0x52545458;
+    /** Bumped whenever the layout changes */
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final String EXTENSION = ".rttex";
+    /** Tiles mapped per buffer, keeping every mapping under 2 GB */
+    private static final int TILES_PER_SEGMENT = (1 << 30) / TILE_BYTES;
+    /** Decoded texels held at once while converting an image */
+    private static final long STRIP_TEXELS = 16L << 20;
+
+    private static volatile int defaultMaxResidentTiles = 4096;
+
+    private final int width;
+    private final int height;
+    private final int tilesX;
+    /** Mapped tile file, one buffer per {@link #TILES_PER_SEGMENT} tiles */
+    private final IntBuffer[] segments;
+    /** Tiles copied onto the heap, by tile index */
+    private final AtomicReferenceArray<int[]> resident;
+    /** Clock bits, set whenever a tile is sampled */
+    private final boolean[] referenced;
+    private final int maxResidentTiles;
+    private int residentCount;
+    private int clockHand;
+    private long tileLoads;
+
+    private TiledTexels(int width, int height, IntBuffer[] segments, int maxResidentTiles) {
+        this.width = width;
+        this.height = height;
+        this.tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tileCount = tilesX * ((height + TILE_SIZE - 1) / TILE_SIZE);
+        this.segments = segments;
+        this.resident = new AtomicReferenceArray<>(tileCount);
+        this.referenced = new boolean[tileCount];
+        this.maxResidentTiles = maxResidentTiles;
+    }
+
+    /**
+     * Opens the tiled form of an image, converting the image first if its tile file is
+     * missing or out of date. Only problems with the image itself throw; if the tile file
+     * cannot be created, written, moved into place or mapped, the problem is reported and
+     * null is returned so the caller can decode the image into memory instead.
+     *
+     * @param imagePath Path to the image file
+     * @return The tiled texels, or null if no tile file could be written or read
+     * @throws IOException if the image cannot be read or decoded
+     */
+    public static TiledTexels open(String imagePath) throws IOException {
+        long key = key(imagePath);
+        Path file = tileFile(imagePath, key);
+        TiledTexels texels = read(file, key);
+        if (texels != null) {
+            return texels;
+        }
+        if (!write(imagePath, file, key)) {
+            return null;
+        }
+        return read(file, key);
+    }
+
+    /**
+     * Gets the tile file of an image.
+     *
+     * @param imagePath Path to the image file
+     * @param key       Key from {@link #key(String)}
+     * @return Path of the tile file, next to the image
+     */
+    public static Path tileFile(String imagePath, long key) {
+        return Paths.get(imagePath + "." + String.format("%016x", key) + EXTENSION);
+    }
+
+    /**
+     * Computes the key of an image: the CRC32C of its contents combined with its size,
+     * the tile size and the format version.
+     *
+     * @param imagePath Path to the image file
+     * @return The key
+     * @throws IOException if the image cannot be read
+     */
+    public static long key(String imagePath) throws IOException {
+        CRC32C crc = new CRC32C();
+        long size;
+        try (FileChannel channel = FileChannel.open(Paths.get(imagePath), StandardOpenOption.READ)) {
+            size = channel.size();
+            for (long offset = 0; offset < size; offset += Integer.MAX_VALUE) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(Integer.MAX_VALUE, size - offset)));
+            }
+        }
+        long key = mix(0x9E3779B97F4A7C15L, VERSION);
+        key = mix(key, TILE_SIZE);
+        key = mix(key, size);
+        return mix(key, crc.getValue());
+    }
+
+    /**
+     * Gets a texel, copying its tile onto the heap if it is not resident.
+     *
+     * @param x Column, 0 to width - 1
+     * @param y Row from the top, 0 to height - 1
+     * @return The texel packed as 0xAARRGGBB
+     */
+    public int getTexel(int x, int y) {
+        int tile = (y / TILE_SIZE) * tilesX + x / TILE_SIZE;
+        int[] texels = resident.get(tile);
+        if (texels == null) {
+            texels = load(tile);
+        }
+        referenced[tile] = true;
+        return texels[(y % TILE_SIZE) * TILE_SIZE + x % TILE_SIZE];
+    }
+
+    /**
+     * Copies a tile from the mapped file, dropping another tile first if the limit is
+     * reached.
+     */
+    private synchronized int[] load(int tile) {
+        int[] texels = resident.get(tile);
+        if (texels != null) {
+            return texels;
+        }
+
+        while (residentCount >= maxResidentTiles) {
+            // Sweep the clock: referenced tiles get a second chance, the first unreferenced one goes
+            if (resident.get(clockHand) != null) {
+                if (referenced[clockHand]) {
+                    referenced[clockHand] = false;
+                } else {
+                    resident.set(clockHand, null);
+                    residentCount--;
+                }
+            }
+            clockHand = (clockHand + 1) % referenced.length;
+        }
+
+        texels = new int[TILE_TEXELS];
+        segments[tile / TILES_PER_SEGMENT].get((tile % TILES_PER_SEGMENT) * TILE_TEXELS, texels);
+        resident.set(tile, texels);
+        residentCount++;
+        tileLoads++;
+        return texels;
+    }
+
+    /**
+     * Gets the width of the image.
+     *
+     * @return Width in texels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the image.
+     *
+     * @return Height in texels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the number of tiles that can be on the heap at once.
+     *
+     * @return Maximum resident tiles
+     */
+    public int getMaxResidentTiles() {
+        return maxResidentTiles;
+    }
+
+    /**
+     * Gets the heap the resident tiles can take at most.
+     *
+     * @return Maximum bytes of resident texels
+     */
+    public long getMaxResidentBytes() {
+        return (long) Math.min(maxResidentTiles, referenced.length) * TILE_BYTES;
+    }
+
+    /**
+     * Gets the number of tiles on the heap.
+     *
+     * @return Resident tiles
+     */
+    public synchronized int getResidentTiles() {
+        return residentCount;
+    }
+
+    /**
+     * Gets the number of tiles copied from the file so far, reloads included.
+     *
+     * @return Tile loads
+     */
+    public synchronized long getTileLoads() {
+        return tileLoads;
+    }
+
+    /**
+     * Gets the number of tiles tiled textures opened from now on keep on the heap.
+     *
+     * @return Default maximum resident tiles
+     */
+    public static int getDefaultMaxResidentTiles() {
+        return defaultMaxResidentTiles;
+    }
+
+    /**
+     * Sets the number of tiles tiled textures opened from now on keep on the heap; every
+     * tile takes 16 KB.
+     *
+     * @param maxResidentTiles Maximum resident tiles, 1 or more
+     */
+    public static void setDefaultMaxResidentTiles(int maxResidentTiles) {
+        if (maxResidentTiles < 1) {
+            throw new IllegalArgumentException("At least one tile must be resident");
+        }
+        defaultMaxResidentTiles = maxResidentTiles;
+    }
+
+    /**
+     * Maps a tile file.
+     *
+     * @return The tiled texels, or null if there is no valid tile file for the key
+     */
+    private static TiledTexels read(Path file, long key) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                return invalid(file, "unexpected size");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != key) {
+                return invalid(file, "header mismatch");
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            if (header.getInt() != TILE_SIZE || width <= 0 || height <= 0) {
+                return invalid(file, "unexpected dimensions");
+            }
+
+            long tileCount = (long) ((width + TILE_SIZE - 1) / TILE_SIZE) * ((height + TILE_SIZE - 1) / TILE_SIZE);
+            if (tileCount > Integer.MAX_VALUE || HEADER_BYTES + tileCount * TILE_BYTES != size) {
+                return invalid(file, "inconsistent lengths");
+            }
+
+            IntBuffer[] segments = new IntBuffer[(int) ((tileCount + TILES_PER_SEGMENT - 1) / TILES_PER_SEGMENT)];
+            for (int s = 0; s < segments.length; s++) {
+                long first = (long) s * TILES_PER_SEGMENT;
+                long tiles = Math.min(TILES_PER_SEGMENT, tileCount - first);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + first * TILE_BYTES, tiles * TILE_BYTES);
+                segments[s] = segment.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            }
+            return new TiledTexels(width, height, segments, defaultMaxResidentTiles);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return invalid(file, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Converts an image into a tile file, decoding it a strip of tile rows at a time. The
+     * file is written under a temporary name and then moved into place. Failures to create,
+     * write or move the file are reported and the partial file is deleted.
+     *
+     * @return true if the tile file was written, false if it could not be
+     * @throws IOException if the image cannot be read or decoded
+     */
+    private static boolean write(String imagePath, Path file, long key) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(imagePath))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return write(reader, file, key);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static boolean write(ImageReader reader, Path file, long key) throws IOException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int stripRows = (int) Math.max(TILE_SIZE, STRIP_TEXELS / width / TILE_SIZE * TILE_SIZE);
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(VERSION).putLong(key);
+                buffer.putInt(width).putInt(height).putInt(TILE_SIZE).putInt(0);
+
+                int[] strip = null;
+                for (int stripY = 0; stripY < height; stripY += stripRows) {
+                    int rows = Math.min(stripRows, height - stripY);
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    param.setSourceRegion(new Rectangle(0, stripY, width, rows));
+                    BufferedImage image;
+                    try {
+                        image = reader.read(0, param);
+                    } catch (IOException e) {
+                        // Kept apart from write failures, which only skip tiling
+                        throw new UncheckedIOException(e);
+                    }
+                    strip = image.getRGB(0, 0, width, rows, strip, 0, width);
+
+                    for (int tileY = 0; tileY < rows; tileY += TILE_SIZE) {
+                        for (int tileX = 0; tileX < tilesX; tileX++) {
+                            for (int y = 0; y < TILE_SIZE; y++) {
+                                int row = Math.min(tileY + y, rows - 1) * width;
+                                for (int x = 0; x < TILE_SIZE; x++) {
+                                    if (buffer.remaining() < Integer.BYTES) flush(channel, buffer);
+                                    buffer.putInt(strip[row + Math.min(tileX * TILE_SIZE + x, width - 1)]);
+                                }
+                            }
+                        }
+                    }
+                }
+                flush(channel, buffer);
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (UncheckedIOException e) {
+            delete(temporary);
+            throw e.getCause();
+        } catch (IOException e) {
+            delete(temporary);
+            System.err.println("Could not write texture tiles " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Deletes a partly written tile file, if one was created.
+     */
+    private static void delete(Path temporary) {
+        if (temporary == null) return;
+        try {
+            Files.deleteIfExists(temporary);
+        } catch (IOException ignored) {
+            // Nothing else to clean up
+        }
+    }
+
+    /**
+     * Reports a tile file that cannot be used.
+     */
+    private static TiledTexels invalid(Path file, String reason) {
+        System.err.println("Ignoring texture tiles " + file + ": " + reason);
+        return null;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= 0xff51afd7ed558ccdL;
+        return hash ^ (hash >>> 33);
+    }
+}
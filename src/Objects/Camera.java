@@ -4,6 +4,10 @@ import Lights.Light;
 import Lights.LightIntersection;
 import Materials.BlingPhongMaterial;
 import Materials.Material;
+import Objects.WrapperBoxes.SceneBVH;
+import Samplers.Sampler;
+import Samplers.StratifiedSampler;
+import vectors.HitRecord;
 import vectors.Intersection;
 import vectors.Vector3D;
 import vectors.Ray;
@@ -19,6 +23,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  * It casts rays through a view frustum to detect object intersections and calculates
  * pixel colors using lighting information. Rendering is performed in parallel using tiles.
  * The camera supports features like reflection, refraction, and multi-bounce light tracing.
+ * Every pixel averages the samples of a {@link Sampler}, one centered sample by default, and
+ * with depth of field enabled the samples also spread over a thin lens.
  *
  * @author José Eduardo Moreno Paredes
  */
@@ -38,10 +44,15 @@ public class Camera {
     private double focalDistance;      // Distancia al plano de enfoque perfecto
     private double aperture;          // Tamaño de la apertura (simulación f-stop)
     private boolean enableDepthOfField; // Activar/desactivar el efecto
-    private int dofSamples;           // Número de muestras para el blur
 
     private final int TileSize = 64;
-    private final int SAMPLES_PER_PIXEL= 9;
+
+    // Sample positions inside the pixel and on the lens, copied for every tile
+    private Sampler sampler = new StratifiedSampler(1);
+    private static final int PIXEL_X_DIMENSION = 0;
+    private static final int PIXEL_Y_DIMENSION = 1;
+    private static final int LENS_U_DIMENSION = 2;
+    private static final int LENS_V_DIMENSION = 3;
 
     // Progress tracking
     private AtomicInteger completedTiles = new AtomicInteger(0);
@@ -49,6 +60,20 @@ public class Camera {
     private boolean showProgress = true;
     private long renderStartTime;
 
+    // Angle one pixel subtends, spread of the ray cones used to pick texture detail
+    private double pixelSpreadAngle;
+    // Smallest cosine the footprint of a grazing hit is stretched by
+    private static final double MIN_FOOTPRINT_COSINE = 0.05;
+
+    // Top-level acceleration structure over the objects being rendered
+    private SceneBVH sceneBVH;
+    private long sceneBVHBuildNanos;
+
+    // Ray counts and per-stage times of the last shot (null while collection is disabled)
+    private final RenderStats stats = new RenderStats();
+    private boolean collectStats = true;
+    private RenderStats activeStats;
+
     /**
      * Gets the maximum number of reflection/refraction bounces.
      * @return The current bounce limit.
@@ -201,6 +226,124 @@ public class Camera {
         this.showProgress = showProgress;
     }
 
+    /**
+     * Enables or disables statistics collection. When disabled, rendering skips the
+     * counters and timers entirely and {@link #getStats()} stays empty.
+     *
+     * @param collectStats true to collect statistics during {@link #shot(List, List)}.
+     */
+    public void setCollectStats(boolean collectStats) {
+        this.collectStats = collectStats;
+    }
+
+    public boolean isCollectStats() {
+        return collectStats;
+    }
+
+    /**
+     * Gets the statistics of the last {@link #shot(List, List)}: rays by kind, BVH nodes
+     * visited, triangle tests and time spent in intersection, shading and texture sampling.
+     *
+     * @return Render statistics.
+     */
+    public RenderStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Gets the number of rays traced by the last {@link #shot(List, List)}: primary rays
+     * plus reflection and refraction rays. Shadow rays are not included.
+     *
+     * @return Traced ray count.
+     */
+    public long getTracedRays() {
+        return stats.getTracedRays();
+    }
+
+    /**
+     * Gets the time spent building the top-level BVH in the last {@link #shot(List, List)}.
+     *
+     * @return Build time in nanoseconds.
+     */
+    public long getSceneBVHBuildNanos() {
+        return sceneBVHBuildNanos;
+    }
+
+    /**
+     * Gets the sampler that places the samples of every pixel.
+     * @return The pixel sampler.
+     */
+    public Sampler getSampler() {
+        return sampler;
+    }
+
+    /**
+     * Sets the sampler that places the samples of every pixel; its sample count is the
+     * number of primary rays per pixel.
+     * @param sampler The pixel sampler.
+     */
+    public void setSampler(Sampler sampler) {
+        if (sampler == null) {
+            throw new IllegalArgumentException("Sampler cannot be null");
+        }
+        this.sampler = sampler;
+    }
+
+    /**
+     * Gets the number of primary rays traced per pixel.
+     * @return Samples per pixel of the sampler.
+     */
+    public int getSamplesPerPixel() {
+        return sampler.getSamplesPerPixel();
+    }
+
+    /**
+     * Enables depth of field: rays start on a thin lens and converge on the focal plane,
+     * so only objects at the focal distance are sharp. The blur is as smooth as the
+     * sampler's sample count allows.
+     * @param focalDistance Distance from the camera to the plane in focus.
+     * @param aperture      Diameter of the lens, 0 for a pinhole.
+     */
+    public void setDepthOfField(double focalDistance, double aperture) {
+        if (focalDistance <= 0 || aperture < 0) {
+            throw new IllegalArgumentException("Focal distance must be positive and aperture cannot be negative");
+        }
+        this.focalDistance = focalDistance;
+        this.aperture = aperture;
+        this.enableDepthOfField = true;
+    }
+
+    /**
+     * Disables depth of field, every ray starts at the camera origin.
+     */
+    public void disableDepthOfField() {
+        this.enableDepthOfField = false;
+    }
+
+    /**
+     * Checks if depth of field is enabled.
+     * @return true if rays start on the lens.
+     */
+    public boolean isDepthOfFieldEnabled() {
+        return enableDepthOfField;
+    }
+
+    /**
+     * Gets the distance to the plane in focus.
+     * @return The focal distance.
+     */
+    public double getFocalDistance() {
+        return focalDistance;
+    }
+
+    /**
+     * Gets the diameter of the lens.
+     * @return The aperture.
+     */
+    public double getAperture() {
+        return aperture;
+    }
+
     /**
      * Constructs a Camera object with specified parameters.
      *
@@ -236,6 +379,16 @@ public class Camera {
     public void shot(List<Object3D> objects, List<Light> lights) {
         ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
 
+        // Build the top-level BVH once so every ray walks it instead of looping over all objects
+        long bvhStart = System.nanoTime();
+        sceneBVH = new SceneBVH(objects);
+        sceneBVHBuildNanos = System.nanoTime() - bvhStart;
+        // Every sample covers its share of the pixel
+        pixelSpreadAngle = 2.0 * Math.tan(Math.toRadians(fov * 0.5)) / height
+                / Math.sqrt(sampler.getSamplesPerPixel());
+        stats.reset();
+        activeStats = collectStats ? stats : null;
+
         int TILE_SIZE = getTileSize();
 
         // Calculate total number of tiles for progress tracking
@@ -273,6 +426,9 @@ public class Camera {
                 System.out.println("Total time: " + formatTime(totalTime));
                 System.out.println("Resolution: " + width + "x" + height + " pixels");
                 System.out.println("Bounce depth: " + bounces);
+                if (activeStats != null) {
+                    System.out.println(activeStats);
+                }
             }
         } catch (InterruptedException e) {
             System.out.println("Interrupted on parallelization of ray shooting");
@@ -329,56 +485,51 @@ public class Camera {
      * @param objects The list of 3D objects to test for intersections.
      * @param lights  The list of light sources for illumination.
      * @param bounces The remaining number of reflection/refraction bounces allowed.
+     * @param coneWidth Width of the ray's cone at its origin: 0 for primary rays, the
+     *                  footprint of the previous hits for reflected and refracted rays.
      * @return The final RGB color as an integer (0xRRGGBB).
      */
-    private int traceRay(Ray ray, List<Object3D> objects, List<Light> lights, int bounces) {
-        double closestDist = Double.MAX_VALUE;
-        Object3D closestObject = null;
-        Object3D triangleHit = null;
-        Triangle triaAux = null;
-
-        // Find closest intersection with objects in the scene
-        for (Object3D obj : objects) {
-            double dist = -1.0;
-
-            if (obj instanceof Sphere sphere) {
-                dist = Intersection.sphere(ray, sphere, nearplane, farplane);
-            } else if (obj instanceof Triangle triangle) {
-                dist = Intersection.triangle(ray, triangle, nearplane, farplane, 1e-4);
-                triaAux = triangle;
-            } else if (obj instanceof ObjObject objObject) {
-                triaAux = Intersection.objTriangleIntersected(ray, objObject, nearplane, farplane, 1e-4);
-
-                if (triaAux != null) {
-                    dist = Intersection.triangle(ray, triaAux, nearplane, farplane, 1e-4);
-                }
-            }
-
-            if (dist > nearplane && dist < farplane && dist < closestDist) {
-                closestDist = dist;
-                closestObject = obj;
-                triangleHit = triaAux;
-            }
+    private int traceRay(Ray ray, List<Object3D> objects, List<Light> lights, int bounces, double coneWidth) {
+        RenderStats stats = activeStats;
+
+        // Find closest intersection with objects in the scene through the top-level BVH
+        long intersectionStart = stats != null ? System.nanoTime() : 0;
+        HitRecord hit = Intersection.scene(ray, sceneBVH, nearplane, farplane, 1e-4, stats);
+        if (stats != null) {
+            stats.addIntersectionTime(System.nanoTime() - intersectionStart);
         }
 
-        if (closestObject == null) {
+        if (hit == null) {
             return 0x000000; // No intersection, return black
         }
 
-        Vector3D intersectionPoint = ray.getOrigin().add(ray.getDirection().scale(closestDist));
+        double closestDist = hit.getDistance();
+        Object3D closestObject = hit.getObject();
+        Triangle triangleHit = hit.getTriangle();
+
+        Vector3D intersectionPoint = ray.getPoint(closestDist);
 
-        // View direction - from intersection point to camera/ray origin
-        Vector3D viewDirection = ray.getOrigin().subtract(intersectionPoint).normalize();
+        // The cone widens by one pixel's angle per unit of distance travelled
+        double hitConeWidth = coneWidth + pixelSpreadAngle * closestDist;
+        if (triangleHit != null && triangleHit.getTexture() != null) {
+            double cosine = Math.abs(hit.getNormal().dot(ray.getDirection()));
+            hit.setFootprint(hitConeWidth / Math.max(cosine, MIN_FOOTPRINT_COSINE));
+        }
 
         LightIntersection lightIntersection = new LightIntersection(
-                objects, lights, closestObject, ray.getOrigin(), ray.getDirection(), getOrigin());
+                objects, lights, closestObject, ray.getOrigin(), ray.getDirection(), getOrigin(), sceneBVH);
+        lightIntersection.setStats(stats);
 
         // Calculate direct lighting
         int directColor;
         if (triangleHit == null) {
             directColor = closestObject.getColorInt();
         } else {
-            directColor = lightIntersection.lightsIntersection(triangleHit, intersectionPoint);
+            long shadingStart = stats != null ? System.nanoTime() : 0;
+            directColor = lightIntersection.lightsIntersection(hit, intersectionPoint);
+            if (stats != null) {
+                stats.addShadingTime(System.nanoTime() - shadingStart);
+            }
         }
 
         // If no more bounces or not a material with reflection/refraction, return direct color
@@ -390,16 +541,14 @@ public class Camera {
         Material material = null;
         Vector3D normal = null;
 
-        if (closestObject instanceof Triangle) {
-            material = closestObject.getMaterial();
-            normal = ((Triangle) closestObject).getNormal(intersectionPoint);
-        } else if (triangleHit != null) {
+        if (triangleHit != null) {
+            // Standalone triangles and mesh triangles alike, interpolated from the hit's barycentrics
             material = triangleHit.getMaterial();
-            normal = ((Triangle) triangleHit).getNormal(intersectionPoint);
+            normal = hit.getNormal();
         } else if (closestObject instanceof Sphere) {
             material = closestObject.getMaterial();
             // For spheres, calculate normal as normalized vector from center to intersection point
-            normal = intersectionPoint.subtract(((Sphere) closestObject).getPosition()).normalize();
+            normal = new Vector3D().setSubtract(intersectionPoint, ((Sphere) closestObject).getPosition()).normalizeInPlace();
         }
 
         // If no material or normal, return direct color
@@ -409,7 +558,7 @@ public class Camera {
 
         // Ensure normal is pointing in the correct direction (facing the ray)
         if (normal.dot(ray.getDirection()) > 0) {
-            normal = normal.scale(-1);
+            normal = normal.scale(-1); // the hit's normal is shared with shading, flip a copy
         }
 
         int finalColor = directColor;
@@ -422,14 +571,14 @@ public class Camera {
             // Calculate reflection if material is reflective
             if (reflectivity > 0.0) {
                 int reflectionColor = calculateReflection(ray, intersectionPoint, normal,
-                        objects, lights, bounces);
+                        objects, lights, bounces, hitConeWidth);
                 finalColor = blendColors(directColor, reflectionColor, reflectivity);
             }
 
             // Calculate refraction if material has refraction
             if (refractionIndex > 0.0) {
                 int refractionColor = calculateRefraction(ray, intersectionPoint, normal, refractionIndex,
-                        objects, lights, bounces);
+                        objects, lights, bounces, hitConeWidth);
 
                 // Blend with existing color (which may already include reflection)
                 finalColor = blendColors(finalColor, refractionColor, refractionIndex);
@@ -448,20 +597,28 @@ public class Camera {
      * @param objects The list of scene objects.
      * @param lights The list of light sources.
      * @param bounces Remaining bounce count.
+     * @param coneWidth Width of the ray cone at the intersection point.
      * @return The reflected color as RGB integer.
      */
     private int calculateReflection(Ray ray, Vector3D intersectionPoint, Vector3D normal,
-                                    List<Object3D> objects, List<Light> lights, int bounces) {
+                                    List<Object3D> objects, List<Light> lights, int bounces, double coneWidth) {
         // Calculate reflection direction using R = I - 2(N·I)N
-        Vector3D reflectionDir = ray.getDirection().subtract(
-                normal.scale(2 * ray.getDirection().dot(normal))).normalize();
+        Vector3D direction = ray.getDirection();
+        double scale = 2 * direction.dot(normal);
+        Vector3D reflectionDir = new Vector3D(
+                direction.x - normal.x * scale,
+                direction.y - normal.y * scale,
+                direction.z - normal.z * scale).normalizeInPlace();
 
         // Create reflection ray with a small offset to avoid self-intersection
-        Vector3D offsetPoint = intersectionPoint.add(reflectionDir.scale(1e-4));
+        Vector3D offsetPoint = new Vector3D().setPointAt(intersectionPoint, reflectionDir, 1e-4);
         Ray reflectRay = new Ray(offsetPoint, reflectionDir);
+        if (activeStats != null) {
+            activeStats.addReflectionRay();
+        }
 
         // Trace the reflection ray (recursive call with one less bounce)
-        return traceRay(reflectRay, objects, lights, bounces - 1);
+        return traceRay(reflectRay, objects, lights, bounces - 1, coneWidth);
     }
 
     /**
@@ -475,10 +632,12 @@ public class Camera {
      * @param objects The list of scene objects.
      * @param lights The list of light sources.
      * @param bounces Remaining bounce count.
+     * @param coneWidth Width of the ray cone at the intersection point.
      * @return The refracted color as RGB integer.
      */
     private int calculateRefraction(Ray ray, Vector3D intersectionPoint, Vector3D normal,
-                                    double refractionIndex, List<Object3D> objects, List<Light> lights, int bounces) {
+                                    double refractionIndex, List<Object3D> objects, List<Light> lights, int bounces,
+                                    double coneWidth) {
 
         // Normalize the incident direction vector
         Vector3D incident = ray.getDirection().normalize();
@@ -503,7 +662,7 @@ public class Camera {
         // Total internal reflection check
         if (sinTheta2Squared > 1.0) {
             // Total internal reflection, return only reflection color
-            return calculateReflection(ray, intersectionPoint, surfaceNormal, objects, lights, bounces);
+            return calculateReflection(ray, intersectionPoint, surfaceNormal, objects, lights, bounces, coneWidth);
         }
 
         // Calculate cosine of refracted angle
@@ -511,22 +670,28 @@ public class Camera {
 
         // Calculate refracted ray direction
         // Using formula: T = η * I + (η * cosθ₁ - cosθ₂) * N
-        Vector3D refractionDir = incident.scale(eta)
-                .add(surfaceNormal.scale(eta * cosTheta1 - cosTheta2));
-        refractionDir = refractionDir.normalize();
+        double normalScale = eta * cosTheta1 - cosTheta2;
+        Vector3D refractionDir = new Vector3D(
+                incident.x * eta + surfaceNormal.x * normalScale,
+                incident.y * eta + surfaceNormal.y * normalScale,
+                incident.z * eta + surfaceNormal.z * normalScale).normalizeInPlace();
 
         // Slightly offset intersection point in refraction direction
         // to avoid self-intersection
-        Vector3D offsetPoint = intersectionPoint.add(refractionDir.scale(1e-4));
+        Vector3D offsetPoint = new Vector3D().setPointAt(intersectionPoint, refractionDir, 1e-4);
 
         // Create refracted ray
         Ray refractRay = new Ray(offsetPoint, refractionDir);
+        if (activeStats != null) {
+            activeStats.addRefractionRay();
+        }
 
         // Trace the refracted ray
-        int refractionColor = traceRay(refractRay, objects, lights, bounces - 1);
+        int refractionColor = traceRay(refractRay, objects, lights, bounces - 1, coneWidth);
 
         // Also calculate reflection (Fresnel effect)
-        int reflectionColor = calculateReflection(ray, intersectionPoint, surfaceNormal, objects, lights, bounces);
+        int reflectionColor = calculateReflection(ray, intersectionPoint, surfaceNormal, objects, lights, bounces,
+                coneWidth);
 
         // Calculate Fresnel coefficient to blend refraction and reflection
         double fresnel = calculateFresnelTerm(cosTheta1, n1, n2);
@@ -585,28 +750,62 @@ public class Camera {
     }
 
     /**
-     * Generates a primary ray from the camera through a specific pixel.
+     * Generates a primary ray from the camera through a point of the image plane.
      * The ray direction is calculated using the camera's field of view and aspect ratio.
+     * With depth of field enabled the ray starts at the sampler's point on the lens and
+     * passes through the point of the focal plane the pinhole ray would reach.
      *
-     * @param pixelX The x-coordinate of the pixel (0 to width-1).
-     * @param pixelY The y-coordinate of the pixel (0 to height-1).
-     * @return A Ray object originating from the camera through the specified pixel.
+     * @param imageX  The x-coordinate on the image, in pixels (0 to width).
+     * @param imageY  The y-coordinate on the image, in pixels (0 to height).
+     * @param sampler The sampler positioned at the current sample, for the lens coordinates.
+     * @return A Ray object originating from the camera through the specified point.
      */
-    private Ray generateRay(int pixelX, int pixelY) {
+    private Ray generateRay(double imageX, double imageY, Sampler sampler) {
         double aspectRatio = (double) width / height;
         double fovScale = Math.tan(Math.toRadians(fov * 0.5));
-        double ndcX = (2.0 * (pixelX + 0.5) / width - 1.0);
-        double ndcY = 1.0 - (2.0 * (pixelY + 0.5) / height);
+        double ndcX = (2.0 * imageX / width - 1.0);
+        double ndcY = 1.0 - (2.0 * imageY / height);
         double cameraX = ndcX * aspectRatio * fovScale;
         double cameraY = ndcY * fovScale;
+        boolean rotated = rotation != null && (rotation.getX() != 0 || rotation.getY() != 0 || rotation.getZ() != 0);
 
-        Vector3D direction = new Vector3D(cameraX, cameraY, -1).normalize();
+        if (!enableDepthOfField || aperture <= 0) {
+            Vector3D direction = new Vector3D(cameraX, cameraY, -1).normalizeInPlace();
+            if (rotated) {
+                direction = direction.rotateVector(rotation);
+            }
+            return new Ray(origin, direction);
+        }
 
-        if (rotation != null && (rotation.getX() != 0 || rotation.getY() != 0 || rotation.getZ() != 0)) {
-            direction = direction.rotateVector(rotation);
+        // Concentric mapping of the square sample onto the lens disk keeps the strata compact
+        double a = 2.0 * sampler.get(LENS_U_DIMENSION) - 1.0;
+        double b = 2.0 * sampler.get(LENS_V_DIMENSION) - 1.0;
+        double lensX = 0;
+        double lensY = 0;
+        if (a != 0 || b != 0) {
+            double radius;
+            double theta;
+            if (Math.abs(a) > Math.abs(b)) {
+                radius = a;
+                theta = Math.PI / 4 * (b / a);
+            } else {
+                radius = b;
+                theta = Math.PI / 2 - Math.PI / 4 * (a / b);
+            }
+            radius *= aperture * 0.5;
+            lensX = radius * Math.cos(theta);
+            lensY = radius * Math.sin(theta);
         }
 
-        return new Ray(origin, direction);
+        // The pinhole ray reaches the focal plane (z = -focalDistance) at direction * focalDistance
+        Vector3D lensOffset = new Vector3D(lensX, lensY, 0);
+        Vector3D direction = new Vector3D(cameraX * focalDistance - lensX, cameraY * focalDistance - lensY,
+                -focalDistance).normalizeInPlace();
+        if (rotated) {
+            lensOffset = lensOffset.rotateVector(rotation);
+            direction = direction.rotateVector(rotation);
+        }
+        return new Ray(origin.add(lensOffset), direction);
     }
 
     /**
@@ -621,6 +820,7 @@ public class Camera {
 
     /**
      * Renders a specific tile of the image by generating and tracing rays for each pixel.
+     * Every pixel averages the samples of a copy of the camera's sampler, made for the tile.
      * This method is designed to be called by worker threads during parallel rendering.
      *
      * @param startX  The starting x-coordinate of the tile (left edge).
@@ -633,11 +833,32 @@ public class Camera {
         int endX = Math.min(startX + tileSize, width);
         int endY = Math.min(startY + tileSize, height);
         int bounces = getBounces();
+        Sampler tileSampler = sampler.copy();
+        int samples = tileSampler.getSamplesPerPixel();
         for (int y = startY; y < endY; y++) {
             for (int x = startX; x < endX; x++) {
-                Ray ray = generateRay(x, y);
+                tileSampler.startPixel(x, y);
+                int red = 0;
+                int green = 0;
+                int blue = 0;
+                for (int s = 0; s < samples; s++) {
+                    tileSampler.startSample(s);
+                    Ray ray = generateRay(x + tileSampler.get(PIXEL_X_DIMENSION),
+                            y + tileSampler.get(PIXEL_Y_DIMENSION), tileSampler);
+                    if (activeStats != null) {
+                        activeStats.addPrimaryRay();
+                    }
+
+                    int sampleColor = traceRay(ray, objectslist, lights, bounces, 0.0);
+                    red += (sampleColor >> 16) & 0xFF;
+                    green += (sampleColor >> 8) & 0xFF;
+                    blue += sampleColor & 0xFF;
+                }
 
-                int pixelColor = traceRay(ray, objectslist, lights,bounces);
+                // Box filter, rounded to the nearest 8-bit value
+                int half = samples / 2;
+                int pixelColor = ((red + half) / samples << 16) | ((green + half) / samples << 8)
+                        | (blue + half) / samples;
 
                 image.setRGB(x, y, pixelColor);
             }
@@ -0,0 +1,300 @@
+package Objects;
+
+import Materials.Material;
+import Materials.Texture;
+import vectors.Ray;
+import vectors.Vector3D;
+
+/**
+ * Places a shared {@link ObjObject} in the scene with a transform and material of its own.
+ * The triangles and the BVH stay in the shared object, in its space; rays are transformed
+ * into that space when they reach the instance, so any number of placements cost one
+ * parse and one BVH build. Only the hit triangle is transformed back to world space for
+ * shading.
+ * <pre>
+ *     ObjObject angel = new ObjObject(null, color, rotation, new Vector3D(0, 0, 0), scale, "ObjFiles/Objs/Angle.obj");
+ *     MeshInstance left = new MeshInstance(angel, GOLD, color, new Vector3D(0, 0, 0),
+ *             new Vector3D(25, -20, -50), new Vector3D(1, 1, 1));
+ * </pre>
+ * The transform is applied to the shared object's space in the same order as everywhere
+ * else: scale, rotate, translate. The shared object itself does not need to be in the scene.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public class MeshInstance extends Object3D {
+    /** Mesh shared by every instance, in its own space */
+    private final ObjObject mesh;
+    private Texture texture;
+    /** Object to world matrix, row-major 3x3 followed by the translation */
+    private final double[] toWorld = new double[12];
+    /** World to object matrix, row-major 3x3 followed by the translation */
+    private final double[] toObject = new double[12];
+    /** Transforms normals to world space: the inverse transpose of the linear part */
+    private final double[] normalMatrix = new double[9];
+    private Cube cube;
+
+    /**
+     * Constructs an instance of a shared mesh.
+     *
+     * @param mesh     The shared mesh.
+     * @param material Material of this instance.
+     * @param color    The base color of this instance.
+     * @param rotation Rotation in degrees, applied after the mesh's own transform.
+     * @param position Translation, applied after the mesh's own transform.
+     * @param scale    Scale, applied after the mesh's own transform.
+     */
+    public MeshInstance(ObjObject mesh, Material material, Vector3D color, Vector3D rotation,
+                        Vector3D position, Vector3D scale) {
+        super(color, rotation, position, scale);
+        if (mesh == null) {
+            throw new IllegalArgumentException("Instanced mesh cannot be null");
+        }
+        this.mesh = mesh;
+        this.texture = mesh.getTexture();
+        setMaterial(material);
+        updateTransform();
+    }
+
+    /**
+     * Returns the mesh shared by this instance.
+     *
+     * @return The shared mesh.
+     */
+    public ObjObject getMesh() {
+        return mesh;
+    }
+
+    /**
+     * Sets the texture of this instance, independently of the shared mesh.
+     *
+     * @param texture The texture, or null for none.
+     */
+    public void setTexture(Texture texture) {
+        this.texture = texture;
+    }
+
+    /**
+     * Returns the texture of this instance.
+     *
+     * @return The texture, or null if none was set.
+     */
+    public Texture getTexture() {
+        return texture;
+    }
+
+    @Override
+    public void setRotation(Vector3D rotation) {
+        super.setRotation(rotation);
+        updateTransform();
+    }
+
+    @Override
+    public void setPosition(Vector3D position) {
+        super.setPosition(position);
+        updateTransform();
+    }
+
+    @Override
+    public void setScale(Vector3D scale) {
+        super.setScale(scale);
+        updateTransform();
+    }
+
+    /**
+     * Checks if the shared mesh has triangles.
+     *
+     * @return true if loaded, false otherwise.
+     */
+    public boolean isLoaded() {
+        return mesh.isLoaded();
+    }
+
+    /**
+     * Returns the number of triangles of the shared mesh.
+     *
+     * @return Triangle count.
+     */
+    public int getTriangleCount() {
+        return mesh.getTriangleCount();
+    }
+
+    /**
+     * Waits for the BVH of the shared mesh, see {@link ObjObject#awaitBVH()}.
+     */
+    public void awaitBVH() {
+        mesh.awaitBVH();
+    }
+
+    /**
+     * Returns the world space bounding box of this instance.
+     *
+     * @return A Cube enclosing the transformed bounding box of the shared mesh.
+     */
+    public Cube getCube() {
+        return cube;
+    }
+
+    /**
+     * Transforms a ray into the space of the shared mesh. The direction is normalized
+     * again, so distances along the returned ray are {@link #getDistanceScale(Ray)} times
+     * the distances along the world ray.
+     *
+     * @param ray Ray in world space.
+     * @return The same ray in the space of the shared mesh.
+     */
+    public Ray toObjectSpace(Ray ray) {
+        Vector3D o = ray.getOrigin();
+        Vector3D d = ray.getDirection();
+        double[] m = toObject;
+        Vector3D origin = new Vector3D(
+                m[0] * o.x + m[1] * o.y + m[2] * o.z + m[9],
+                m[3] * o.x + m[4] * o.y + m[5] * o.z + m[10],
+                m[6] * o.x + m[7] * o.y + m[8] * o.z + m[11]);
+        return new Ray(origin,
+                m[0] * d.x + m[1] * d.y + m[2] * d.z,
+                m[3] * d.x + m[4] * d.y + m[5] * d.z,
+                m[6] * d.x + m[7] * d.y + m[8] * d.z);
+    }
+
+    /**
+     * Returns how much longer a unit of distance along a world ray becomes in the space
+     * of the shared mesh, to convert distances between both rays.
+     *
+     * @param ray Ray in world space, with a normalized direction.
+     * @return Length of the ray direction in the space of the shared mesh.
+     */
+    public double getDistanceScale(Ray ray) {
+        Vector3D d = ray.getDirection();
+        double[] m = toObject;
+        double x = m[0] * d.x + m[1] * d.y + m[2] * d.z;
+        double y = m[3] * d.x + m[4] * d.y + m[5] * d.z;
+        double z = m[6] * d.x + m[7] * d.y + m[8] * d.z;
+        return Math.sqrt(x * x + y * y + z * z);
+    }
+
+    /**
+     * Returns a triangle of the shared mesh in world space, with the material and texture
+     * of this instance. A new triangle is created on every call, so callers should only
+     * request triangles that were hit.
+     *
+     * @param index Triangle index in the shared mesh.
+     * @return The transformed triangle.
+     */
+    public Triangle getTriangle(int index) {
+        Triangle local = mesh.getTriangle(index);
+        Triangle triangle = new Triangle(getColor(), new Vector3D(0, 0, 0), new Vector3D(0, 0, 0), new Vector3D(1, 1, 1),
+                transformPoint(local.getVertex1()), transformPoint(local.getVertex2()), transformPoint(local.getVertex3()),
+                transformNormal(local.getNormalEdge1()), transformNormal(local.getNormalEdge2()),
+                transformNormal(local.getNormalEdge3()));
+        triangle.setMaterial(getMaterial());
+        triangle.setTexture(texture);
+        triangle.setTextures(local.getTexture1(), local.getTexture2(), local.getTexture3());
+        return triangle;
+    }
+
+    /**
+     * Transforms a point from the space of the shared mesh to world space.
+     *
+     * @param point Point in the space of the shared mesh.
+     * @return The point in world space.
+     */
+    public Vector3D transformPoint(Vector3D point) {
+        double[] m = toWorld;
+        return new Vector3D(
+                m[0] * point.x + m[1] * point.y + m[2] * point.z + m[9],
+                m[3] * point.x + m[4] * point.y + m[5] * point.z + m[10],
+                m[6] * point.x + m[7] * point.y + m[8] * point.z + m[11]);
+    }
+
+    /**
+     * Transforms a normal from the space of the shared mesh to world space, keeping it
+     * perpendicular to the surface under non-uniform scales.
+     *
+     * @param normal Normal in the space of the shared mesh.
+     * @return The normalized normal in world space.
+     */
+    public Vector3D transformNormal(Vector3D normal) {
+        double[] n = normalMatrix;
+        return new Vector3D(
+                n[0] * normal.x + n[1] * normal.y + n[2] * normal.z,
+                n[3] * normal.x + n[4] * normal.y + n[5] * normal.z,
+                n[6] * normal.x + n[7] * normal.y + n[8] * normal.z).normalizeInPlace();
+    }
+
+    /**
+     * Recomputes the matrices and the world bounds from the rotation, position and scale.
+     */
+    private void updateTransform() {
+        // Columns of the linear part are the scaled and rotated basis vectors
+        Vector3D[] columns = {
+                new Vector3D(getScale().getX(), 0, 0).rotateVector(getRotation()),
+                new Vector3D(0, getScale().getY(), 0).rotateVector(getRotation()),
+                new Vector3D(0, 0, getScale().getZ()).rotateVector(getRotation())
+        };
+        for (int c = 0; c < 3; c++) {
+            toWorld[c] = columns[c].getX();
+            toWorld[3 + c] = columns[c].getY();
+            toWorld[6 + c] = columns[c].getZ();
+        }
+        toWorld[9] = getPosition().getX();
+        toWorld[10] = getPosition().getY();
+        toWorld[11] = getPosition().getZ();
+
+        double[] m = toWorld;
+        double c00 = m[4] * m[8] - m[5] * m[7];
+        double c01 = m[5] * m[6] - m[3] * m[8];
+        double c02 = m[3] * m[7] - m[4] * m[6];
+        double determinant = m[0] * c00 + m[1] * c01 + m[2] * c02;
+        if (Math.abs(determinant) < 1e-12) {
+            throw new IllegalArgumentException("Instance scale cannot be zero");
+        }
+        double invDet = 1.0 / determinant;
+
+        // Inverse of the linear part, from its cofactors
+        toObject[0] = c00 * invDet;
+        toObject[1] = (m[2] * m[7] - m[1] * m[8]) * invDet;
+        toObject[2] = (m[1] * m[5] - m[2] * m[4]) * invDet;
+        toObject[3] = c01 * invDet;
+        toObject[4] = (m[0] * m[8] - m[2] * m[6]) * invDet;
+        toObject[5] = (m[2] * m[3] - m[0] * m[5]) * invDet;
+        toObject[6] = c02 * invDet;
+        toObject[7] = (m[1] * m[6] - m[0] * m[7]) * invDet;
+        toObject[8] = (m[0] * m[4] - m[1] * m[3]) * invDet;
+        for (int r = 0; r < 3; r++) {
+            toObject[9 + r] = -(toObject[r * 3] * m[9] + toObject[r * 3 + 1] * m[10] + toObject[r * 3 + 2] * m[11]);
+        }
+
+        for (int r = 0; r < 3; r++) {
+            for (int c = 0; c < 3; c++) {
+                normalMatrix[r * 3 + c] = toObject[c * 3 + r];
+            }
+        }
+
+        updateCube();
+    }
+
+    /**
+     * Bounds the eight transformed corners of the shared mesh's bounding box.
+     */
+    private void updateCube() {
+        Cube local = mesh.getCube();
+        if (local == null) {
+            this.cube = new Cube(new Vector3D(0, 0, 0), new Vector3D(0, 0, 0));
+            return;
+        }
+
+        Vector3D min = new Vector3D(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+        Vector3D max = new Vector3D(-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE);
+        for (int corner = 0; corner < 8; corner++) {
+            Vector3D point = transformPoint(new Vector3D(
+                    (corner & 1) == 0 ? local.getMin().getX() : local.getMax().getX(),
+                    (corner & 2) == 0 ? local.getMin().getY() : local.getMax().getY(),
+                    (corner & 4) == 0 ? local.getMin().getZ() : local.getMax().getZ()));
+            min = new Vector3D(Math.min(min.getX(), point.getX()), Math.min(min.getY(), point.getY()),
+                    Math.min(min.getZ(), point.getZ()));
+            max = new Vector3D(Math.max(max.getX(), point.getX()), Math.max(max.getY(), point.getY()),
+                    Math.max(max.getZ(), point.getZ()));
+        }
+        this.cube = new Cube(min, max);
+    }
+}
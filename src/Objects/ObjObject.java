@@ -2,24 +2,47 @@ package Objects;
 
 import Materials.Material;
 import Materials.Texture;
+import Tools.MeshCache;
 import Tools.ObjReader;
 import vectors.Vector3D;
 import Objects.WrapperBoxes.*;
 
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.UnaryOperator;
 
 /**
  * Represents a 3D object loaded from an OBJ file.
  * This object consists of a list of triangles and includes
  * an AABB (Axis-Aligned Bounding Box) and BVH (Bounding Volume Hierarchy)
  * for optimized spatial queries.
+ * The constructors return once the file is loaded, without a BVH. {@link #startBVHBuild()}
+ * builds it in the background on {@link BVHGenerator#getBuildPool()}, so a scene's objects
+ * build concurrently; otherwise it is built on first use. Every method that needs it
+ * waits for it. The build is never started from a constructor, so the pool never sees a
+ * partly constructed object.
  *
  * @author José Eduardo Moreno Paredes
  */
 public class ObjObject extends Object3D {
     private List<Triangle> triangleList;
+    private TriangleMesh mesh;
+    private Texture texture;
     private Cube cube;
-    private BVHNode bvhRoot;
+    private LinearBVH linearBVH;
+    private long bvhBuildNanos;
+    private BVHBuildMethod bvhBuildMethod;
+    private double bvhBuildCost;
+    private int bvhTriangleCount;
+    private long bvhRefitNanos;
+    private double bvhRebuildThreshold = 1.5;
+    private volatile ForkJoinTask<?> pendingBVH;
+    /** Set from loading until the first BVH is built or read from the cache */
+    private volatile boolean bvhMissing;
+    /** Mesh parsed on a cache miss, written to the cache once its BVH is built */
+    private TriangleMesh uncachedMesh;
+    private String cachePath;
+    private long cacheKey;
 
     /**
      * Constructs an ObjObject using basic geometric transformations.
@@ -32,10 +55,7 @@ public class ObjObject extends Object3D {
      */
     public ObjObject(Vector3D color, Vector3D rotation, Vector3D position, Vector3D scale, String objPath) {
         super(color, rotation, position, scale);
-        loadFromObjFile(objPath);
-        rotateNormals();
-        setCube();
-        buildBVH();
+        load(objPath, false);
     }
 
     /**
@@ -51,10 +71,44 @@ public class ObjObject extends Object3D {
     public ObjObject(Material material, Vector3D color, Vector3D rotation, Vector3D position, Vector3D scale, String objPath) {
         super(color, rotation, position, scale);
         setMaterial(material);
-        loadFromObjFile(objPath);
+        load(objPath, false);
+    }
+
+    /**
+     * Constructs an ObjObject that can keep its mesh in packed primitive arrays.
+     * With compact storage no Triangle objects are kept; they are created on demand
+     * by {@link #getTriangle(int)}, which cuts memory per triangle substantially.
+     *
+     * @param material       Material to apply to the object.
+     * @param color          The base color of the object.
+     * @param rotation       The rotation vector of the object.
+     * @param position       The position vector of the object.
+     * @param scale          The scale vector of the object.
+     * @param objPath        The path to the OBJ file to load.
+     * @param compactStorage true to store the mesh as a {@link TriangleMesh}.
+     */
+    public ObjObject(Material material, Vector3D color, Vector3D rotation, Vector3D position, Vector3D scale,
+                     String objPath, boolean compactStorage) {
+        super(color, rotation, position, scale);
+        setMaterial(material);
+        load(objPath, compactStorage);
+    }
+
+    /**
+     * Loads the mesh, through the {@link MeshCache} when it is enabled. Unless the cache
+     * provided a BVH, one is needed before the first traversal.
+     */
+    private void load(String objPath, boolean compactStorage) {
+        if (!MeshCache.isEnabled() || !loadThroughCache(objPath, compactStorage)) {
+            if (compactStorage) {
+                loadMeshFromObjFile(objPath);
+            } else {
+                loadFromObjFile(objPath);
+            }
+        }
         rotateNormals();
         setCube();
-        buildBVH();
+        bvhMissing = isLoaded() && linearBVH == null;
     }
 
     /**
@@ -63,15 +117,33 @@ public class ObjObject extends Object3D {
      * @param texture The texture to set.
      */
     public void setTexture(Texture texture) {
+        this.texture = texture;
+        if (triangleList == null) return;
+
         for (Triangle triangle : triangleList) {
             triangle.setTexture(texture);
         }
     }
 
+    /**
+     * Returns the texture applied to the object.
+     *
+     * @return The texture, or null if none was set.
+     */
+    public Texture getTexture() {
+        return texture;
+    }
+
     /**
      * Rotates the normals of each triangle according to the object's rotation.
      */
     private void rotateNormals() {
+        if (mesh != null) {
+            mesh.rotateNormals(getRotation());
+            return;
+        }
+        if (triangleList == null) return;
+
         for (Triangle triangle : triangleList) {
             Vector3D normal1 = triangle.getNormalEdge1();
             Vector3D normal2 = triangle.getNormalEdge2();
@@ -109,31 +181,142 @@ public class ObjObject extends Object3D {
         }
     }
 
+    /**
+     * Loads the mesh and its BVH from the cache file for this OBJ file and transform. On a
+     * miss the OBJ file is parsed into packed arrays, which are kept until the BVH is built
+     * and then written to the cache.
+     *
+     * @param objPath        Path to the OBJ file.
+     * @param compactStorage true to keep the packed arrays instead of a triangle list.
+     * @return true if the object was loaded, false to fall back to the regular loaders.
+     */
+    private boolean loadThroughCache(String objPath, boolean compactStorage) {
+        BVHBuildMethod method = bvhBuildMethod != null ? bvhBuildMethod : BVHGenerator.getDefaultBuildMethod();
+        long key;
+        try {
+            key = MeshCache.key(objPath, getRotation(), getPosition(), getScale(), method);
+        } catch (Exception e) {
+            return false; // The regular loaders report unreadable files
+        }
+
+        MeshCache.CachedMesh cached = MeshCache.read(objPath, key);
+        TriangleMesh loaded;
+        if (cached != null) {
+            loaded = cached.getMesh();
+        } else {
+            try {
+                loaded = ObjReader.triangleMesh(getRotation(), getPosition(), getScale(), objPath);
+            } catch (Exception e) {
+                return false;
+            }
+            if (loaded.getTriangleCount() == 0) return false;
+            // Normals are rotated in place after loading; the cache keeps them unrotated
+            this.uncachedMesh = compactStorage
+                    ? new TriangleMesh(loaded.getPositions(), loaded.getNormals().clone(), loaded.getUvs(),
+                            loaded.getVertexIndices(), loaded.getUvIndices())
+                    : loaded;
+            this.cachePath = objPath;
+            this.cacheKey = key;
+        }
+
+        if (compactStorage) {
+            mesh = loaded;
+        } else {
+            setTriangleList(loaded.toTriangleList(getColor(), getRotation(), getPosition(), getScale()));
+        }
+
+        if (cached != null) {
+            this.linearBVH = cached.getBVH();
+            this.bvhBuildCost = linearBVH.getSAHCost();
+            this.bvhTriangleCount = getTriangleCount();
+        }
+        System.out.println("Successfully loaded " + getTriangleCount() + " triangles" +
+                (compactStorage ? " (compact)" : "") + (cached != null ? " from mesh cache" : "") +
+                " from OBJ file: " + objPath);
+        return true;
+    }
+
+    /**
+     * Loads triangle data from an OBJ file into packed arrays.
+     *
+     * @param objPath Path to the OBJ file.
+     */
+    private void loadMeshFromObjFile(String objPath) {
+        try {
+            mesh = ObjReader.triangleMesh(getRotation(), getPosition(), getScale(), objPath);
+
+            if (mesh.getTriangleCount() == 0) {
+                System.out.println("Warning: No triangles loaded from OBJ file: " + objPath);
+            } else {
+                System.out.println("Successfully loaded " + mesh.getTriangleCount() +
+                        " triangles (compact) from OBJ file: " + objPath);
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading OBJ file: " + objPath);
+            e.printStackTrace();
+            mesh = null;
+        }
+    }
+
     /**
      * Sets the list of triangles for this object.
      *
      * @param triangleList A list of triangles.
      */
     public void setTriangleList(List<Triangle> triangleList) {
+        joinBVHBuild();
         this.triangleList = triangleList;
     }
 
     /**
      * Returns the list of triangles that compose this object.
      *
-     * @return List of triangles.
+     * @return List of triangles, or null when the object uses compact storage.
      */
     public List<Triangle> getTriangleList() {
         return triangleList;
     }
 
+    /**
+     * Returns the packed mesh of this object.
+     *
+     * @return The mesh, or null when the object stores a triangle list.
+     */
+    public TriangleMesh getMesh() {
+        return mesh;
+    }
+
+    /**
+     * Returns the number of triangles of this object, whichever storage it uses.
+     *
+     * @return Triangle count.
+     */
+    public int getTriangleCount() {
+        if (mesh != null) return mesh.getTriangleCount();
+        return triangleList != null ? triangleList.size() : 0;
+    }
+
+    /**
+     * Returns a triangle of this object. With compact storage a new view is created
+     * on every call, so callers should only request triangles that were hit.
+     *
+     * @param index Triangle index.
+     * @return The triangle.
+     */
+    public Triangle getTriangle(int index) {
+        if (mesh != null) {
+            return mesh.createTriangle(index, getColor(), getMaterial(), texture);
+        }
+        return triangleList.get(index);
+    }
+
     /**
      * Checks if the object has successfully loaded triangles.
      *
      * @return true if loaded, false otherwise.
      */
     public boolean isLoaded() {
-        return triangleList != null && !triangleList.isEmpty();
+        return getTriangleCount() > 0;
     }
 
     /**
@@ -165,7 +348,21 @@ public class ObjObject extends Object3D {
         }
 
         Vector3D min = new Vector3D(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
-        Vector3D max = new Vector3D(Double.MIN_VALUE, Double.MIN_VALUE, Double.MIN_VALUE);
+        Vector3D max = new Vector3D(-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE);
+
+        if (mesh != null) {
+            double[] positions = mesh.getPositions();
+            for (int i = 0; i < positions.length; i += 3) {
+                min.setX(Math.min(min.getX(), positions[i]));
+                min.setY(Math.min(min.getY(), positions[i + 1]));
+                min.setZ(Math.min(min.getZ(), positions[i + 2]));
+                max.setX(Math.max(max.getX(), positions[i]));
+                max.setY(Math.max(max.getY(), positions[i + 1]));
+                max.setZ(Math.max(max.getZ(), positions[i + 2]));
+            }
+            setCube(min, max);
+            return;
+        }
 
         for (Triangle triangle : getTriangleList()) {
             Vector3D[] vertices = { triangle.getVertex1(), triangle.getVertex2(), triangle.getVertex3() };
@@ -188,22 +385,260 @@ public class ObjObject extends Object3D {
     }
 
     /**
-     * Builds the Bounding Volume Hierarchy (BVH) from the object's triangles.
+     * Builds the Bounding Volume Hierarchy (BVH) from the object's triangles
+     * and flattens it into its array-backed form for traversal, precomputing
+     * the triangle edges used by the intersection test.
      */
     public void buildBVH() {
+        joinBVHBuild();
+        buildBVHNow();
+    }
+
+    /**
+     * Starts building the BVH on the shared build pool without waiting for it, so the
+     * BVHs of several objects build concurrently. Does nothing if the BVH is already built
+     * or being built. Call it once the object is fully set up, e.g. after its build method
+     * was chosen with {@link #setBVHBuildMethod(BVHBuildMethod)}.
+     */
+    public synchronized void startBVHBuild() {
+        if (bvhMissing && pendingBVH == null) {
+            pendingBVH = BVHGenerator.getBuildPool().submit(this::buildBVHNow);
+        }
+    }
+
+    /**
+     * Waits for the BVH: joins a build started with {@link #startBVHBuild()}, or builds it
+     * on the calling thread if none was started. A failure of a background build is
+     * rethrown here.
+     */
+    public void awaitBVH() {
+        if (bvhMissing && pendingBVH == null) {
+            synchronized (this) {
+                if (bvhMissing && pendingBVH == null) {
+                    buildBVHNow();
+                }
+            }
+        }
+        joinBVHBuild();
+    }
+
+    /**
+     * Waits for a BVH build started in the background, if one is still running, without
+     * building a missing BVH.
+     */
+    private void joinBVHBuild() {
+        ForkJoinTask<?> pending = pendingBVH;
+        if (pending != null) {
+            pending.join();
+            pendingBVH = null;
+        }
+    }
+
+    /**
+     * Builds the BVH on the calling thread, see {@link #buildBVH()}.
+     */
+    private void buildBVHNow() {
         if (!isLoaded()) return;
 
-        BVHGenerator bvhGenerator = new BVHGenerator(triangleList);
-        this.bvhRoot = bvhGenerator.buildBVH();
+        long start = System.nanoTime();
+        BVHGenerator bvhGenerator = mesh != null ? new BVHGenerator(mesh) : new BVHGenerator(triangleList);
+        if (bvhBuildMethod != null) {
+            bvhGenerator.setBuildMethod(bvhBuildMethod);
+        }
+        BVHNode root = bvhGenerator.buildBVH();
+        this.linearBVH = root != null ? new LinearBVH(root, bvhGenerator.getTriangleVertices()) : null;
+        this.bvhBuildNanos = System.nanoTime() - start;
+        this.bvhBuildCost = linearBVH != null ? linearBVH.getSAHCost() : 0;
+        this.bvhTriangleCount = getTriangleCount();
+        bvhMissing = false;
+
+        TriangleMesh uncached = uncachedMesh;
+        if (uncached != null) {
+            uncachedMesh = null;
+            if (linearBVH != null) {
+                MeshCache.write(cachePath, cacheKey, uncached, linearBVH);
+            }
+        }
+    }
+
+    /**
+     * Updates the BVH to the current vertex positions. The existing hierarchy is refitted
+     * in place, which is linear in the triangle count; it is only rebuilt from scratch
+     * when its SAH cost has grown past {@link #getBVHRebuildThreshold()} times the cost it
+     * had when it was built, or when the triangle count changed.
+     *
+     * @return true if the BVH was rebuilt, false if refitting was enough.
+     */
+    public boolean refitBVH() {
+        joinBVHBuild();
+        if (!isLoaded()) return false;
+        if (linearBVH == null || bvhTriangleCount != getTriangleCount()) {
+            buildBVH();
+            return true;
+        }
+
+        long start = System.nanoTime();
+        linearBVH.refit(packTriangleVertices());
+        this.bvhRefitNanos = System.nanoTime() - start;
+
+        if (linearBVH.getSAHCost() > bvhBuildCost * bvhRebuildThreshold) {
+            buildBVH();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the time the last refit of the BVH took.
+     *
+     * @return Refit time in nanoseconds, or 0 if the BVH was never refitted.
+     */
+    public long getBVHRefitNanos() {
+        return bvhRefitNanos;
+    }
+
+    /**
+     * Returns how much the SAH cost of a refitted BVH may grow before it is rebuilt.
+     *
+     * @return Allowed cost ratio to the freshly built BVH.
+     */
+    public double getBVHRebuildThreshold() {
+        return bvhRebuildThreshold;
+    }
+
+    /**
+     * Sets how much the SAH cost of a refitted BVH may grow before {@link #refitBVH()}
+     * rebuilds it. 1 rebuilds on any degradation; larger values trade traversal speed for
+     * fewer rebuilds while animating.
+     *
+     * @param bvhRebuildThreshold Allowed cost ratio, 1 or more.
+     */
+    public void setBVHRebuildThreshold(double bvhRebuildThreshold) {
+        if (!(bvhRebuildThreshold >= 1)) {
+            throw new IllegalArgumentException("BVH rebuild threshold must be at least 1");
+        }
+        this.bvhRebuildThreshold = bvhRebuildThreshold;
+    }
+
+    /**
+     * Moves the object by an offset without reloading it. Every vertex is translated,
+     * then the bounding box and the BVH are updated; a translation never degrades the
+     * BVH, so it is only refitted.
+     *
+     * @param offset Translation to apply.
+     */
+    public void translate(Vector3D offset) {
+        transformVertices(vertex -> vertex.add(offset));
+        setPosition(getPosition().add(offset));
     }
 
     /**
-     * Returns the root node of the BVH.
+     * Moves the object so its position becomes the given one, see {@link #translate(Vector3D)}.
      *
-     * @return BVH root node.
+     * @param position New position of the object.
      */
-    public BVHNode getBvhRoot() {
-        return bvhRoot;
+    public void moveTo(Vector3D position) {
+        translate(position.subtract(getPosition()));
+    }
+
+    /**
+     * Replaces every vertex position by the result of a function, e.g. to animate or
+     * deform the object between frames, then updates the bounding box and the BVH with
+     * {@link #updateAABB()}. Vertex normals are left unchanged.
+     *
+     * @param transform Function mapping a vertex position to its new position.
+     */
+    public void transformVertices(UnaryOperator<Vector3D> transform) {
+        joinBVHBuild();
+        if (!isLoaded()) return;
+
+        if (mesh != null) {
+            double[] positions = mesh.getPositions();
+            for (int i = 0; i < positions.length; i += 3) {
+                Vector3D moved = transform.apply(new Vector3D(positions[i], positions[i + 1], positions[i + 2]));
+                positions[i] = moved.getX();
+                positions[i + 1] = moved.getY();
+                positions[i + 2] = moved.getZ();
+            }
+        } else {
+            for (Triangle triangle : triangleList) {
+                triangle.setVertex1(transform.apply(triangle.getVertex1()));
+                triangle.setVertex2(transform.apply(triangle.getVertex2()));
+                triangle.setVertex3(transform.apply(triangle.getVertex3()));
+            }
+        }
+
+        updateAABB();
+    }
+
+    /**
+     * Packs the corners of every triangle as nine doubles per triangle, in the order
+     * the BVH builder uses.
+     */
+    private double[] packTriangleVertices() {
+        if (mesh != null) {
+            return mesh.packTriangleVertices();
+        }
+
+        int triangleCount = getTriangleCount();
+        double[] vertices = new double[triangleCount * 9];
+
+        for (int i = 0; i < triangleCount; i++) {
+            Triangle triangle = triangleList.get(i);
+            Vector3D[] corners = { triangle.getVertex1(), triangle.getVertex2(), triangle.getVertex3() };
+            for (int c = 0; c < 3; c++) {
+                vertices[i * 9 + c * 3] = corners[c].getX();
+                vertices[i * 9 + c * 3 + 1] = corners[c].getY();
+                vertices[i * 9 + c * 3 + 2] = corners[c].getZ();
+            }
+        }
+        return vertices;
+    }
+
+    /**
+     * Returns the build method of this object's BVH.
+     *
+     * @return The build method, or null if the generator's default is used.
+     */
+    public BVHBuildMethod getBVHBuildMethod() {
+        return bvhBuildMethod;
+    }
+
+    /**
+     * Sets the build method of this object's BVH and rebuilds it if it was already
+     * built, e.g. {@link BVHBuildMethod#SPATIAL_SPLITS} for scanned meshes
+     * with large overlapping triangles.
+     *
+     * @param bvhBuildMethod The build method, or null to use the generator's default.
+     */
+    public void setBVHBuildMethod(BVHBuildMethod bvhBuildMethod) {
+        joinBVHBuild();
+        this.bvhBuildMethod = bvhBuildMethod;
+        if (linearBVH != null) {
+            buildBVH();
+        }
+    }
+
+    /**
+     * Returns the time the last {@link #buildBVH()} took, flattening included.
+     *
+     * @return Build time in nanoseconds, or 0 if no BVH was built.
+     */
+    public long getBVHBuildNanos() {
+        awaitBVH();
+        return bvhBuildNanos;
+    }
+
+    /**
+     * Returns the flattened BVH used for ray traversal.
+     *
+     * @return The linear BVH, or null if none was built.
+     */
+    public LinearBVH getLinearBVH() {
+        if (pendingBVH != null || bvhMissing) {
+            awaitBVH();
+        }
+        return linearBVH;
     }
 
     /**
@@ -245,10 +680,11 @@ public class ObjObject extends Object3D {
     }
 
     /**
-     * Updates the Axis-Aligned Bounding Box and rebuilds the BVH.
+     * Updates the Axis-Aligned Bounding Box after the geometry changed, and refits the
+     * BVH, rebuilding it only when refitting degraded it too much (see {@link #refitBVH()}).
      */
     public void updateAABB() {
         setCube();
-        buildBVH();
+        refitBVH();
     }
 }
@@ -0,0 +1,226 @@
+package Objects;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters collected while a {@link Camera} renders: rays by kind, BVH nodes visited,
+ * triangle tests and time spent per stage. All counters are {@link LongAdder}s, so the
+ * render threads update them without contending on a single value; hot loops count in
+ * locals and add their totals once per query.
+ * Times are inclusive: shading time contains the shadow rays and texture lookups made
+ * while shading, so the three can be compared to tell where a scene spends its time.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public class RenderStats {
+    private final LongAdder primaryRays = new LongAdder();
+    private final LongAdder reflectionRays = new LongAdder();
+    private final LongAdder refractionRays = new LongAdder();
+    private final LongAdder shadowRays = new LongAdder();
+    private final LongAdder nodesVisited = new LongAdder();
+    private final LongAdder triangleTests = new LongAdder();
+    private final LongAdder intersectionNanos = new LongAdder();
+    private final LongAdder shadowNanos = new LongAdder();
+    private final LongAdder shadingNanos = new LongAdder();
+    private final LongAdder textureNanos = new LongAdder();
+
+    /**
+     * Clears every counter.
+     */
+    public void reset() {
+        primaryRays.reset();
+        reflectionRays.reset();
+        refractionRays.reset();
+        shadowRays.reset();
+        nodesVisited.reset();
+        triangleTests.reset();
+        intersectionNanos.reset();
+        shadowNanos.reset();
+        shadingNanos.reset();
+        textureNanos.reset();
+    }
+
+    /**
+     * Counts a ray cast from the camera through a pixel.
+     */
+    public void addPrimaryRay() {
+        primaryRays.increment();
+    }
+
+    /**
+     * Counts a reflected ray.
+     */
+    public void addReflectionRay() {
+        reflectionRays.increment();
+    }
+
+    /**
+     * Counts a refracted ray.
+     */
+    public void addRefractionRay() {
+        refractionRays.increment();
+    }
+
+    /**
+     * Counts a shadow ray cast towards a light.
+     */
+    public void addShadowRay() {
+        shadowRays.increment();
+    }
+
+    /**
+     * Adds the work done by one traversal.
+     *
+     * @param nodes     BVH nodes visited (scene and mesh levels)
+     * @param triangles Ray-triangle tests performed
+     */
+    public void addTraversal(long nodes, long triangles) {
+        nodesVisited.add(nodes);
+        triangleTests.add(triangles);
+    }
+
+    /**
+     * Adds time spent finding a closest hit.
+     *
+     * @param nanos Time in nanoseconds
+     */
+    public void addIntersectionTime(long nanos) {
+        intersectionNanos.add(nanos);
+    }
+
+    /**
+     * Adds time spent tracing shadow rays.
+     *
+     * @param nanos Time in nanoseconds
+     */
+    public void addShadowTime(long nanos) {
+        shadowNanos.add(nanos);
+    }
+
+    /**
+     * Adds time spent computing direct lighting.
+     *
+     * @param nanos Time in nanoseconds
+     */
+    public void addShadingTime(long nanos) {
+        shadingNanos.add(nanos);
+    }
+
+    /**
+     * Adds time spent sampling textures.
+     *
+     * @param nanos Time in nanoseconds
+     */
+    public void addTextureTime(long nanos) {
+        textureNanos.add(nanos);
+    }
+
+    /**
+     * Gets the rays cast from the camera.
+     * @return Primary ray count
+     */
+    public long getPrimaryRays() {
+        return primaryRays.sum();
+    }
+
+    /**
+     * Gets the reflected rays traced.
+     * @return Reflection ray count
+     */
+    public long getReflectionRays() {
+        return reflectionRays.sum();
+    }
+
+    /**
+     * Gets the refracted rays traced.
+     * @return Refraction ray count
+     */
+    public long getRefractionRays() {
+        return refractionRays.sum();
+    }
+
+    /**
+     * Gets the shadow rays cast towards lights.
+     * @return Shadow ray count
+     */
+    public long getShadowRays() {
+        return shadowRays.sum();
+    }
+
+    /**
+     * Gets the rays traced by the camera: primary, reflection and refraction rays.
+     * @return Traced ray count
+     */
+    public long getTracedRays() {
+        return getPrimaryRays() + getReflectionRays() + getRefractionRays();
+    }
+
+    /**
+     * Gets every ray cast, shadow rays included.
+     * @return Total ray count
+     */
+    public long getTotalRays() {
+        return getTracedRays() + getShadowRays();
+    }
+
+    /**
+     * Gets the BVH nodes visited by every traversal, scene and mesh levels.
+     * @return Visited node count
+     */
+    public long getNodesVisited() {
+        return nodesVisited.sum();
+    }
+
+    /**
+     * Gets the ray-triangle tests performed.
+     * @return Triangle test count
+     */
+    public long getTriangleTests() {
+        return triangleTests.sum();
+    }
+
+    /**
+     * Gets the time spent finding closest hits for camera, reflection and refraction rays.
+     * @return Time in nanoseconds, summed over all threads
+     */
+    public long getIntersectionNanos() {
+        return intersectionNanos.sum();
+    }
+
+    /**
+     * Gets the time spent tracing shadow rays.
+     * @return Time in nanoseconds, summed over all threads
+     */
+    public long getShadowNanos() {
+        return shadowNanos.sum();
+    }
+
+    /**
+     * Gets the time spent computing direct lighting, shadow rays and texture lookups included.
+     * @return Time in nanoseconds, summed over all threads
+     */
+    public long getShadingNanos() {
+        return shadingNanos.sum();
+    }
+
+    /**
+     * Gets the time spent sampling textures.
+     * @return Time in nanoseconds, summed over all threads
+     */
+    public long getTextureNanos() {
+        return textureNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "Rays: primary=%d, reflection=%d, refraction=%d, shadow=%d%n" +
+                        "BVH nodes visited=%d, triangle tests=%d%n" +
+                        "Thread time (ms): intersection=%.1f, shading=%.1f (shadow=%.1f, texture=%.1f)",
+                getPrimaryRays(), getReflectionRays(), getRefractionRays(), getShadowRays(),
+                getNodesVisited(), getTriangleTests(),
+                getIntersectionNanos() / 1e6, getShadingNanos() / 1e6,
+                getShadowNanos() / 1e6, getTextureNanos() / 1e6);
+    }
+}
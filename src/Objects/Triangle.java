@@ -347,26 +347,41 @@ public class Triangle extends Object3D {
      * @return The interpolated normal vector
      */
     public Vector3D getNormal(Vector3D point) {
-        Vector3D v0 = vertex2.subtract(vertex1);
-        Vector3D v1 = vertex3.subtract(vertex1);
-        Vector3D v2 = point.subtract(vertex1);
+        // Edges and point offset relative to vertex 1, kept on primitives
+        double e0x = vertex2.x - vertex1.x, e0y = vertex2.y - vertex1.y, e0z = vertex2.z - vertex1.z;
+        double e1x = vertex3.x - vertex1.x, e1y = vertex3.y - vertex1.y, e1z = vertex3.z - vertex1.z;
+        double px = point.x - vertex1.x, py = point.y - vertex1.y, pz = point.z - vertex1.z;
 
-        double d00 = v0.dot(v0);
-        double d01 = v0.dot(v1);
-        double d11 = v1.dot(v1);
-        double d20 = v2.dot(v0);
-        double d21 = v2.dot(v1);
+        double d00 = Vector3D.dot(e0x, e0y, e0z, e0x, e0y, e0z);
+        double d01 = Vector3D.dot(e0x, e0y, e0z, e1x, e1y, e1z);
+        double d11 = Vector3D.dot(e1x, e1y, e1z, e1x, e1y, e1z);
+        double d20 = Vector3D.dot(px, py, pz, e0x, e0y, e0z);
+        double d21 = Vector3D.dot(px, py, pz, e1x, e1y, e1z);
 
         double denom = d00 * d11 - d01 * d01;
         double v = (d11 * d20 - d01 * d21) / denom;
         double w = (d00 * d21 - d01 * d20) / denom;
+
+        return getNormal(v, w);
+    }
+
+    /**
+     * Calculates the interpolated normal from the barycentric coordinates of a hit,
+     * as returned by the intersection query, without projecting the point again.
+     *
+     * @param v Weight of vertex 2
+     * @param w Weight of vertex 3
+     * @return The interpolated normal vector
+     */
+    public Vector3D getNormal(double v, double w) {
         double u = 1.0 - v - w;
 
-        Vector3D interpolatedNormal = normalEdge1.multiplyByScalar(u)
-                .add(normalEdge2.multiplyByScalar(v))
-                .add(normalEdge3.multiplyByScalar(w));
+        Vector3D interpolatedNormal = new Vector3D(
+                normalEdge1.x * u + normalEdge2.x * v + normalEdge3.x * w,
+                normalEdge1.y * u + normalEdge2.y * v + normalEdge3.y * w,
+                normalEdge1.z * u + normalEdge2.z * v + normalEdge3.z * w);
 
-        return interpolatedNormal.normalize().multiplyByScalar(-1);
+        return interpolatedNormal.normalizeInPlace().scaleInPlace(-1);
     }
 
     /**
@@ -405,15 +420,16 @@ public class Triangle extends Object3D {
             return 0; // Default black color
         }
 
-        Vector3D v0 = vertex2.subtract(vertex1);
-        Vector3D v1 = vertex3.subtract(vertex1);
-        Vector3D v2 = point.subtract(vertex1);
+        // Edges and point offset relative to vertex 1, kept on primitives
+        double e0x = vertex2.x - vertex1.x, e0y = vertex2.y - vertex1.y, e0z = vertex2.z - vertex1.z;
+        double e1x = vertex3.x - vertex1.x, e1y = vertex3.y - vertex1.y, e1z = vertex3.z - vertex1.z;
+        double px = point.x - vertex1.x, py = point.y - vertex1.y, pz = point.z - vertex1.z;
 
-        double d00 = v0.dot(v0);
-        double d01 = v0.dot(v1);
-        double d11 = v1.dot(v1);
-        double d20 = v2.dot(v0);
-        double d21 = v2.dot(v1);
+        double d00 = Vector3D.dot(e0x, e0y, e0z, e0x, e0y, e0z);
+        double d01 = Vector3D.dot(e0x, e0y, e0z, e1x, e1y, e1z);
+        double d11 = Vector3D.dot(e1x, e1y, e1z, e1x, e1y, e1z);
+        double d20 = Vector3D.dot(px, py, pz, e0x, e0y, e0z);
+        double d21 = Vector3D.dot(px, py, pz, e1x, e1y, e1z);
 
         double denom = d00 * d11 - d01 * d01;
         if (Math.abs(denom) < 1e-6) {
@@ -422,6 +438,23 @@ public class Triangle extends Object3D {
 
         double v = (d11 * d20 - d01 * d21) / denom;
         double w = (d00 * d21 - d01 * d20) / denom;
+
+        return getTextureColor(v, w);
+    }
+
+    /**
+     * Gets the texture color from the barycentric coordinates of a hit,
+     * as returned by the intersection query, without projecting the point again.
+     *
+     * @param v Weight of vertex 2
+     * @param w Weight of vertex 3
+     * @return The interpolated texture color as packed RGB integer
+     */
+    public int getTextureColor(double v, double w) {
+        if (texture == null || texture1 == null || texture2 == null || texture3 == null) {
+            return 0; // Default black color
+        }
+
         double u = 1.0 - v - w;
 
         double interpU = texture1.getX() * u + texture2.getX() * v + texture3.getX() * w;
@@ -429,4 +462,49 @@ public class Triangle extends Object3D {
 
         return texture.getColorAt(interpU, interpV);
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the texture color from the barycentric coordinates of a hit for a sample
+     * covering an area of the surface, so mipmapped textures are sampled at a matching
+     * level of detail (see {@link Texture#getColorAt(double, double, double)}).
+     *
+     * @param v         Weight of vertex 2
+     * @param w         Weight of vertex 3
+     * @param footprint Width of the sample on the surface, in world units; 0 for full resolution
+     * @return The interpolated texture color as packed RGB integer
+     */
+    public int getTextureColor(double v, double w, double footprint) {
+        if (texture == null || texture1 == null || texture2 == null || texture3 == null) {
+            return 0; // Default black color
+        }
+        if (!(footprint > 0)) {
+            return getTextureColor(v, w);
+        }
+
+        double u = 1.0 - v - w;
+
+        double interpU = texture1.getX() * u + texture2.getX() * v + texture3.getX() * w;
+        double interpV = texture1.getY() * u + texture2.getY() * v + texture3.getY() * w;
+
+        // Texels per world unit, from the areas of the triangle in texel and world space
+        double t1u = (texture2.getX() - texture1.getX()) * texture.getWidth();
+        double t1v = (texture2.getY() - texture1.getY()) * texture.getHeight();
+        double t2u = (texture3.getX() - texture1.getX()) * texture.getWidth();
+        double t2v = (texture3.getY() - texture1.getY()) * texture.getHeight();
+        double texelArea = Math.abs(t1u * t2v - t1v * t2u);
+
+        double e1x = vertex2.x - vertex1.x, e1y = vertex2.y - vertex1.y, e1z = vertex2.z - vertex1.z;
+        double e2x = vertex3.x - vertex1.x, e2y = vertex3.y - vertex1.y, e2z = vertex3.z - vertex1.z;
+        double cx = e1y * e2z - e1z * e2y;
+        double cy = e1z * e2x - e1x * e2z;
+        double cz = e1x * e2y - e1y * e2x;
+        double worldArea = Math.sqrt(cx * cx + cy * cy + cz * cz);
+
+        if (!(texelArea > 0 && worldArea > 0)) {
+            return texture.getColorAt(interpU, interpV);
+        }
+
+        double lod = Math.log(footprint * Math.sqrt(texelArea / worldArea)) / Math.log(2);
+        return texture.getColorAt(interpU, interpV, lod);
+    }
+}
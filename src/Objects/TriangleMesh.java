@@ -0,0 +1,224 @@
+package Objects;
+
+import Materials.Material;
+import Materials.Texture;
+import vectors.Vector3D;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact triangle storage for meshes loaded from OBJ files.
+ * Instead of one {@link Triangle} object per face, vertex data is kept in packed
+ * primitive arrays (world space positions, per-vertex normals, texture coordinates)
+ * addressed through an index buffer. {@link Triangle} instances are only created
+ * on demand, as lightweight views, when a hit has to be shaded.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public class TriangleMesh {
+    /** Vertex positions in world space (x, y, z per vertex) */
+    private final double[] positions;
+    /** Vertex normals (x, y, z per vertex), indexed like positions */
+    private final double[] normals;
+    /** Texture coordinates (u, v, w per entry) */
+    private final double[] uvs;
+    /** Vertex indices, three per triangle */
+    private final int[] vertexIndices;
+    /** Texture coordinate indices, three per triangle (-1 when the triangle has none) */
+    private final int[] uvIndices;
+
+    /**
+     * Creates a mesh from packed arrays.
+     *
+     * @param positions     Vertex positions in world space (x, y, z per vertex)
+     * @param normals       Vertex normals (x, y, z per vertex)
+     * @param uvs           Texture coordinates (u, v, w per entry)
+     * @param vertexIndices Vertex indices, three per triangle
+     * @param uvIndices     Texture coordinate indices, three per triangle (-1 for none)
+     */
+    public TriangleMesh(double[] positions, double[] normals, double[] uvs,
+                        int[] vertexIndices, int[] uvIndices) {
+        this.positions = positions;
+        this.normals = normals;
+        this.uvs = uvs;
+        this.vertexIndices = vertexIndices;
+        this.uvIndices = uvIndices;
+    }
+
+    /**
+     * Gets the number of triangles in the mesh.
+     * @return Triangle count
+     */
+    public int getTriangleCount() {
+        return vertexIndices.length / 3;
+    }
+
+    /**
+     * Gets the number of vertices in the mesh.
+     * @return Vertex count
+     */
+    public int getVertexCount() {
+        return positions.length / 3;
+    }
+
+    /**
+     * Gets the packed vertex positions.
+     * @return Positions array (x, y, z per vertex)
+     */
+    public double[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * Gets the packed vertex normals.
+     * @return Normals array (x, y, z per vertex)
+     */
+    public double[] getNormals() {
+        return normals;
+    }
+
+    /**
+     * Gets the packed texture coordinates.
+     * @return UV array (u, v, w per entry)
+     */
+    public double[] getUvs() {
+        return uvs;
+    }
+
+    /**
+     * Gets the vertex index buffer.
+     * @return Vertex indices, three per triangle
+     */
+    public int[] getVertexIndices() {
+        return vertexIndices;
+    }
+
+    /**
+     * Gets the texture coordinate index buffer.
+     * @return UV indices, three per triangle
+     */
+    public int[] getUvIndices() {
+        return uvIndices;
+    }
+
+    /**
+     * Rotates every vertex normal by the given Euler angles.
+     *
+     * @param rotation Rotation angles in degrees (X, Y, Z)
+     */
+    public void rotateNormals(Vector3D rotation) {
+        for (int i = 0; i < normals.length; i += 3) {
+            Vector3D rotated = new Vector3D(normals[i], normals[i + 1], normals[i + 2]).rotateVector(rotation);
+            normals[i] = rotated.getX();
+            normals[i + 1] = rotated.getY();
+            normals[i + 2] = rotated.getZ();
+        }
+    }
+
+    /**
+     * Packs the corners of every triangle as nine doubles per triangle, the layout
+     * {@code BVHGenerator} and {@code LinearBVH} work with.
+     *
+     * @return Triangle corners in world space
+     */
+    public double[] packTriangleVertices() {
+        double[] vertices = new double[vertexIndices.length * 3];
+        for (int i = 0; i < vertexIndices.length; i++) {
+            int v = vertexIndices[i];
+            vertices[i * 3] = positions[v * 3];
+            vertices[i * 3 + 1] = positions[v * 3 + 1];
+            vertices[i * 3 + 2] = positions[v * 3 + 2];
+        }
+        return vertices;
+    }
+
+    /**
+     * Creates one {@link Triangle} per face, the same triangles {@code ObjReader.triangleList}
+     * creates for the file and transform this mesh was read with. Positions are already in
+     * world space, so the triangles are built without a transformation and then given the
+     * object's. Texture coordinates are shared between faces, as the reader does.
+     *
+     * @param color    Color of the object
+     * @param rotation Rotation the mesh was transformed with
+     * @param position Position the mesh was transformed with
+     * @param scale    Scale the mesh was transformed with
+     * @return A new triangle list
+     */
+    public List<Triangle> toTriangleList(Vector3D color, Vector3D rotation, Vector3D position, Vector3D scale) {
+        Vector3D identityRotation = new Vector3D(0, 0, 0);
+        Vector3D identityPosition = new Vector3D(0, 0, 0);
+        Vector3D identityScale = new Vector3D(1, 1, 1);
+
+        Vector3D[] vertexNormals = new Vector3D[getVertexCount()];
+        for (int i = 0; i < vertexNormals.length; i++) {
+            vertexNormals[i] = vector(normals, i);
+        }
+        Vector3D[] textureCoordinates = new Vector3D[uvs.length / 3];
+        for (int i = 0; i < textureCoordinates.length; i++) {
+            textureCoordinates[i] = vector(uvs, i);
+        }
+
+        int triangleCount = getTriangleCount();
+        List<Triangle> triangles = new ArrayList<>(triangleCount);
+        for (int index = 0; index < triangleCount; index++) {
+            int i0 = vertexIndices[index * 3];
+            int i1 = vertexIndices[index * 3 + 1];
+            int i2 = vertexIndices[index * 3 + 2];
+
+            Triangle triangle = new Triangle(color, identityRotation, identityPosition, identityScale,
+                    vector(positions, i0), vector(positions, i1), vector(positions, i2),
+                    vertexNormals[i0], vertexNormals[i1], vertexNormals[i2]);
+            triangle.setRotation(rotation);
+            triangle.setPosition(position);
+            triangle.setScale(scale);
+
+            int t0 = uvIndices[index * 3];
+            int t1 = uvIndices[index * 3 + 1];
+            int t2 = uvIndices[index * 3 + 2];
+            if (t0 >= 0 && t1 >= 0 && t2 >= 0) {
+                triangle.setTextures(textureCoordinates[t0], textureCoordinates[t1], textureCoordinates[t2]);
+            }
+            triangles.add(triangle);
+        }
+        return triangles;
+    }
+
+    /**
+     * Creates a {@link Triangle} view of one triangle of the mesh.
+     * The view is built from world space data, so no transformation is applied.
+     *
+     * @param index    Triangle index
+     * @param color    Base color of the owning object
+     * @param material Material of the owning object
+     * @param texture  Texture of the owning object, may be null
+     * @return A new Triangle holding the data of the requested triangle
+     */
+    public Triangle createTriangle(int index, Vector3D color, Material material, Texture texture) {
+        int i0 = vertexIndices[index * 3];
+        int i1 = vertexIndices[index * 3 + 1];
+        int i2 = vertexIndices[index * 3 + 2];
+
+        Triangle triangle = new Triangle(color, new Vector3D(0, 0, 0), new Vector3D(0, 0, 0), new Vector3D(1, 1, 1),
+                vector(positions, i0), vector(positions, i1), vector(positions, i2),
+                vector(normals, i0), vector(normals, i1), vector(normals, i2));
+        triangle.setMaterial(material);
+        triangle.setTexture(texture);
+
+        int t0 = uvIndices[index * 3];
+        int t1 = uvIndices[index * 3 + 1];
+        int t2 = uvIndices[index * 3 + 2];
+        if (t0 >= 0 && t1 >= 0 && t2 >= 0) {
+            triangle.setTextures(vector(uvs, t0), vector(uvs, t1), vector(uvs, t2));
+        }
+
+        return triangle;
+    }
+
+    /**
+     * Reads the three components stored at an index of a packed array.
+     */
+    private static Vector3D vector(double[] data, int index) {
+        return new Vector3D(data[index * 3], data[index * 3 + 1], data[index * 3 + 2]);
+    }
+}
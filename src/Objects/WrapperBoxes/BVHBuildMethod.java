@@ -0,0 +1,44 @@
+package Objects.WrapperBoxes;
+
+/**
+ * Algorithms {@link BVHGenerator} can build a mesh BVH with.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public enum BVHBuildMethod {
+    /**
+     * Original builder: up to eight evenly spaced split planes on the longest axis first,
+     * partitioning into new lists for every candidate.
+     */
+    UNIFORM_SPLITS,
+
+    /**
+     * Binned Surface Area Heuristic: triangle centroids are binned on all three axes, every
+     * bin boundary is evaluated with prefix/suffix bound sweeps and the index array is
+     * partitioned in place.
+     */
+    BINNED_SAH,
+
+    /**
+     * Spatial-split BVH (SBVH): binned SAH where a node may also split space instead of the
+     * triangle list, clipping straddling triangles so they are referenced from both children.
+     * Pays off on meshes with large, long or overlapping triangles such as terrain scans;
+     * the extra references are capped by {@link BVHGenerator#setSpatialSplitBudget(double)}.
+     */
+    SPATIAL_SPLITS,
+
+    /**
+     * Linear BVH: triangles are sorted by the Morton code of their centroid with a parallel
+     * radix sort and the hierarchy is emitted from the Morton bits, in parallel. Much faster
+     * to build than the SAH builders, for scenes rebuilt often, but the trees are of lower
+     * quality.
+     */
+    LBVH,
+
+    /**
+     * {@link #LBVH} refined by treelet optimization: small groups of nodes are rearranged
+     * into their cheapest SAH layout, bottom-up. Brings the tree close to a SAH build for a
+     * few times the LBVH build time.
+     */
+    LBVH_TREELETS
+}
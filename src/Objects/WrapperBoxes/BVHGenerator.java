@@ -2,24 +2,38 @@ package Objects.WrapperBoxes;
 
 import Objects.Cube;
 import Objects.Triangle;
+import Objects.TriangleMesh;
 import vectors.Vector3D;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * A Bounding Volume Hierarchy (BVH) generator that constructs a hierarchical structure
  * of bounding boxes for efficient spatial queries and collision detection.
  * @author José Eduardo Moreno Paredes
  * This implementation uses parallel processing with Fork/Join framework to optimize
- * construction time for large sets of triangles. The BVH is built using Surface Area
- * Heuristic (SAH) for optimal splitting decisions.
+ * construction time for large sets of triangles, on one pool shared by every generator
+ * (see {@link #setBuildPool(ForkJoinPool)}). The BVH is built using Surface Area
+ * Heuristic (SAH) for optimal splitting decisions, either over a few uniform split planes,
+ * over centroid bins on every axis, or over centroid and spatial bins with triangles
+ * referenced from several leaves (see {@link BVHBuildMethod}).
  */
 public class BVHGenerator {
-    /** List of triangles to build the BVH from */
-    private List<Triangle> triangleList;
+    /** Number of triangles to build the BVH from */
+    private final int triangleCount;
+
+    /** Corners of all triangles (nine doubles per triangle) */
+    private double[] triangleVertices;
+
+    /** Pre-computed bounds of all triangles (minX, minY, minZ, maxX, maxY, maxZ per triangle) */
+    private double[] triangleBounds;
 
     /** Maximum depth of the BVH tree */
     private int maxBVHDepth;
@@ -33,169 +47,1866 @@ public class BVHGenerator {
     /** Number of split positions to test along each axis */
     private final int splitCount = 8;
 
-    /** ForkJoinPool for parallel processing of BVH construction */
-    private final ForkJoinPool forkJoinPool;
+    /** Smallest and largest bin counts accepted by the binned SAH builder */
+    public static final int MIN_BINS = 4;
+    public static final int MAX_BINS = 64;
+
+    /**
+     * Cost of visiting a node relative to one ray-triangle test, used by the binned SAH.
+     * A slab test costs about as much as a Möller–Trumbore test in this tracer.
+     */
+    static final double TRAVERSAL_COST = 1.0;
+
+    /** Largest leaf the binned SAH builder creates when splitting does not pay off */
+    private static final int MAX_SAH_LEAF_SIZE = 16;
+
+    /** Depth limit of the binned SAH builder, kept below the traversal stack depth */
+    private static final int MAX_SAH_DEPTH = 48;
+
+    /**
+     * Spatial splits are only tried where the object split's children overlap by more than
+     * this fraction of the root's surface area; elsewhere they rarely win and cost time.
+     */
+    private static final double SPATIAL_SPLIT_ALPHA = 1e-5;
+
+    /** Bits per axis of the Morton codes of the LBVH builder */
+    private static final int MORTON_BITS = 10;
+
+    /** Bits sorted per radix sort pass; three passes cover the 30-bit Morton codes */
+    private static final int RADIX_BITS = 10;
+
+    /** Triangles per parallel chunk of the LBVH code computation and radix sort */
+    private static final int LBVH_CHUNK_SIZE = 1 << 15;
+
+    /** LBVH subtrees with fewer triangles are emitted and optimized without forking */
+    private static final int LBVH_SEQUENTIAL_THRESHOLD = 4096;
+
+    /** Leaves of a treelet reorganised by the LBVH treelet optimization */
+    private static final int TREELET_LEAVES = 7;
+
+    /** Per-thread storage of the treelet optimization */
+    private static final ThreadLocal<TreeletScratch> TREELET_SCRATCH = ThreadLocal.withInitial(TreeletScratch::new);
+
+    /** Per-thread bin arrays of the binned SAH builder, reused by every node */
+    private static final ThreadLocal<BinScratch> BIN_SCRATCH = ThreadLocal.withInitial(BinScratch::new);
+
+    /** Build method used by generators that were not given one explicitly */
+    private static volatile BVHBuildMethod defaultBuildMethod = BVHBuildMethod.BINNED_SAH;
+
+    /** Build method of this generator */
+    private BVHBuildMethod buildMethod = defaultBuildMethod;
+
+    /** Number of centroid bins per axis for the binned SAH builder */
+    private int binCount = 16;
+
+    /** Extra triangle references the spatial-split builder may create, as a fraction of the triangle count */
+    private double spatialSplitBudget = 0.5;
+
+    /** Triangle references created so far by the spatial-split builder */
+    private AtomicInteger referenceCount;
+
+    /** Most triangle references the spatial-split builder may create */
+    private int referenceLimit;
+
+    /** Surface area of the root box, the reference for {@link #SPATIAL_SPLIT_ALPHA} */
+    private double rootSurfaceArea;
+
+    /**
+     * Pool every BVH build runs on, shared by all generators so loading a scene does not
+     * start and stop a pool of worker threads per object
+     */
+    private static volatile ForkJoinPool buildPool = ForkJoinPool.commonPool();
+
+    /** Whether {@link #buildPool} was created by {@link #setBuildParallelism(int)} and is ours to shut down */
+    private static boolean ownsBuildPool = false;
+
+    // Thread-safe statistics counters
+    private final AtomicInteger minTrianglesInLeaf = new AtomicInteger(Integer.MAX_VALUE);
+    private final AtomicInteger maxTrianglesInLeaf = new AtomicInteger(0);
+    private final AtomicInteger totalLeafNodes = new AtomicInteger(0);
+    private final AtomicInteger totalTrianglesInLeaves = new AtomicInteger(0);
+    private final AtomicInteger maxDepthReached = new AtomicInteger(0);
+    private final AtomicInteger totalNodes = new AtomicInteger(0);
+
+    /** Pre-computed centroids of all triangles for faster splitting (x, y, z per triangle) */
+    private double[] triangleCentroids;
+
+    /**
+     * Bounds and centroids used by the binned SAH builder, stored by position in its index
+     * array rather than by triangle. The partition moves them along with the indices, so
+     * every range is scanned sequentially instead of jumping around the triangle arrays.
+     */
+    private double[] slotBounds;
+    private double[] slotCentroids;
+
+    /**
+     * Constructs a BVHGenerator with automatic depth calculation.
+     *
+     * @param triangleList List of triangles to build the BVH from
+     */
+    public BVHGenerator(List<Triangle> triangleList) {
+        this(triangleList, 0);
+    }
+
+    /**
+     * Constructs a BVHGenerator with specified maximum depth.
+     *
+     * @param triangleList List of triangles to build the BVH from
+     * @param maxDepth Maximum depth of the BVH tree (if <= 0, calculates optimal depth)
+     */
+    public BVHGenerator(List<Triangle> triangleList, int maxDepth) {
+        this.triangleCount = triangleList == null ? 0 : triangleList.size();
+        this.maxBVHDepth = maxDepth > 0 ? maxDepth : calculateOptimalDepth(triangleCount);
+
+        double[] vertices = new double[triangleCount * 9];
+        for (int i = 0; i < triangleCount; i++) {
+            Triangle triangle = triangleList.get(i);
+            Vector3D[] corners = { triangle.getVertex1(), triangle.getVertex2(), triangle.getVertex3() };
+            for (int c = 0; c < 3; c++) {
+                vertices[i * 9 + c * 3] = corners[c].getX();
+                vertices[i * 9 + c * 3 + 1] = corners[c].getY();
+                vertices[i * 9 + c * 3 + 2] = corners[c].getZ();
+            }
+        }
+        precomputeTriangleData(vertices);
+    }
+
+    /**
+     * Constructs a BVHGenerator over a packed triangle mesh with automatic depth calculation.
+     *
+     * @param mesh Mesh whose triangles the BVH is built from
+     */
+    public BVHGenerator(TriangleMesh mesh) {
+        this.triangleCount = mesh.getTriangleCount();
+        this.maxBVHDepth = calculateOptimalDepth(triangleCount);
+
+        double[] positions = mesh.getPositions();
+        int[] indices = mesh.getVertexIndices();
+        double[] vertices = new double[triangleCount * 9];
+        for (int i = 0; i < triangleCount * 3; i++) {
+            int v = indices[i];
+            vertices[i * 3] = positions[v * 3];
+            vertices[i * 3 + 1] = positions[v * 3 + 1];
+            vertices[i * 3 + 2] = positions[v * 3 + 2];
+        }
+        precomputeTriangleData(vertices);
+    }
+
+    /**
+     * Builds the BVH structure from the provided triangles.
+     *
+     * @return The root node of the constructed BVH, or null if no triangles are present
+     */
+    public BVHNode buildBVH() {
+        if (triangleCount == 0) return null;
+
+        // Use the shared ForkJoinPool to parallelize BVH construction
+        ForkJoinPool pool = buildPool;
+        BVHNode root;
+        if (buildMethod == BVHBuildMethod.LBVH || buildMethod == BVHBuildMethod.LBVH_TREELETS) {
+            root = buildLinearBVH(pool, buildMethod == BVHBuildMethod.LBVH_TREELETS);
+        } else if (buildMethod == BVHBuildMethod.SPATIAL_SPLITS) {
+            int[] references = new int[triangleCount];
+            for (int i = 0; i < triangleCount; i++) {
+                references[i] = i;
+            }
+            double[] box = new double[6];
+            resetBounds(box, 0);
+            for (int i = 0; i < triangleCount; i++) {
+                growBounds(box, 0, triangleBounds, i * 6);
+            }
+            this.referenceCount = new AtomicInteger(triangleCount);
+            this.referenceLimit = (int) Math.min(Integer.MAX_VALUE, triangleCount * (1.0 + spatialSplitBudget));
+            this.rootSurfaceArea = surfaceArea(box[0], box[1], box[2], box[3], box[4], box[5]);
+            root = pool.invoke(new SpatialBuildTask(references, triangleBounds.clone(), box, 0));
+        } else if (buildMethod == BVHBuildMethod.BINNED_SAH) {
+            int[] triangleIndices = new int[triangleCount];
+            for (int i = 0; i < triangleCount; i++) {
+                triangleIndices[i] = i;
+            }
+            slotBounds = triangleBounds.clone();
+            slotCentroids = triangleCentroids.clone();
+            double[] box = calculateRangeBounds(triangleIndices, 0, triangleCount);
+            root = pool.invoke(new BinnedBuildTask(triangleIndices, 0, triangleCount, box, 0));
+        } else {
+            List<Integer> triangleIndices = new ArrayList<>(triangleCount);
+            for (int i = 0; i < triangleCount; i++) {
+                triangleIndices.add(i);
+            }
+            root = pool.invoke(new BVHBuildTask(triangleIndices, 0));
+        }
+
+        return root;
+    }
+
+    /**
+     * Gets the pool BVH builds run on.
+     *
+     * @return The shared build pool
+     */
+    public static ForkJoinPool getBuildPool() {
+        return buildPool;
+    }
+
+    /**
+     * Sets the pool BVH builds run on. The caller keeps ownership of the pool and shuts
+     * it down when done; a pool created by {@link #setBuildParallelism(int)} is shut down
+     * when it is replaced.
+     *
+     * @param pool The shared build pool
+     */
+    public static synchronized void setBuildPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Build pool cannot be null");
+        }
+        ForkJoinPool previous = buildPool;
+        boolean ownedPrevious = ownsBuildPool;
+        buildPool = pool;
+        ownsBuildPool = false;
+        if (ownedPrevious && previous != pool) {
+            previous.shutdown(); // Running builds finish; new ones go to the new pool
+        }
+    }
+
+    /**
+     * Runs BVH builds on a dedicated pool with the given number of worker threads,
+     * or on the common pool again if {@code threads} is 0.
+     *
+     * @param threads Number of worker threads, or 0 for the common pool
+     */
+    public static synchronized void setBuildParallelism(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Build parallelism cannot be negative");
+        }
+        setBuildPool(threads == 0 ? ForkJoinPool.commonPool() : new ForkJoinPool(threads));
+        ownsBuildPool = threads > 0;
+    }
+
+    /**
+     * Gets the build method used by new generators.
+     *
+     * @return The default build method
+     */
+    public static BVHBuildMethod getDefaultBuildMethod() {
+        return defaultBuildMethod;
+    }
+
+    /**
+     * Sets the build method used by generators created from now on, such as the ones
+     * {@link Objects.ObjObject} creates while loading.
+     *
+     * @param method The default build method
+     */
+    public static void setDefaultBuildMethod(BVHBuildMethod method) {
+        defaultBuildMethod = method;
+    }
+
+    /**
+     * Gets the build method of this generator.
+     *
+     * @return The build method
+     */
+    public BVHBuildMethod getBuildMethod() {
+        return buildMethod;
+    }
+
+    /**
+     * Sets the build method of this generator.
+     *
+     * @param buildMethod The build method
+     */
+    public void setBuildMethod(BVHBuildMethod buildMethod) {
+        this.buildMethod = buildMethod;
+    }
+
+    /**
+     * Gets the number of centroid bins per axis used by the binned SAH builder.
+     *
+     * @return Bin count
+     */
+    public int getBinCount() {
+        return binCount;
+    }
+
+    /**
+     * Sets the number of centroid bins per axis used by the binned SAH builder.
+     * More bins find better split planes at a higher build cost; 16 to 32 is typical.
+     *
+     * @param binCount Bin count, between {@link #MIN_BINS} and {@link #MAX_BINS}
+     */
+    public void setBinCount(int binCount) {
+        if (binCount < MIN_BINS || binCount > MAX_BINS) {
+            throw new IllegalArgumentException("Bin count must be between " + MIN_BINS + " and " + MAX_BINS);
+        }
+        this.binCount = binCount;
+    }
+
+    /**
+     * Gets the reference budget of the spatial-split builder.
+     *
+     * @return Extra references allowed, as a fraction of the triangle count
+     */
+    public double getSpatialSplitBudget() {
+        return spatialSplitBudget;
+    }
+
+    /**
+     * Sets how many extra triangle references the spatial-split builder may create, as a
+     * fraction of the triangle count: 0.5 lets leaves hold up to 1.5 references per triangle.
+     * Once the budget is spent the remaining nodes use object splits only. 0 disables
+     * spatial splits altogether.
+     *
+     * @param spatialSplitBudget Extra references allowed, zero or more
+     */
+    public void setSpatialSplitBudget(double spatialSplitBudget) {
+        if (!(spatialSplitBudget >= 0)) {
+            throw new IllegalArgumentException("Spatial split budget must be zero or positive");
+        }
+        this.spatialSplitBudget = spatialSplitBudget;
+    }
+
+    /**
+     * Returns the number of triangle references in the leaves of the last spatial-split
+     * build, which is at least the triangle count.
+     *
+     * @return Reference count, or the triangle count if no spatial-split build ran
+     */
+    public int getReferenceCount() {
+        return referenceCount != null ? referenceCount.get() : triangleCount;
+    }
+
+    /**
+     * Returns the triangle corners the BVH is built from, packed as nine doubles per
+     * triangle in original triangle order. Used to precompute intersection data.
+     *
+     * @return Packed triangle vertices
+     */
+    public double[] getTriangleVertices() {
+        return triangleVertices;
+    }
+
+    /**
+     * Pre-computes centroids and bounds of all triangles for faster splitting decisions.
+     *
+     * @param vertices Triangle corners packed as nine doubles per triangle
+     */
+    private void precomputeTriangleData(double[] vertices) {
+        triangleVertices = vertices;
+        triangleCentroids = new double[triangleCount * 3];
+        triangleBounds = new double[triangleCount * 6];
+
+        for (int i = 0; i < triangleCount; i++) {
+            int v = i * 9;
+            for (int axis = 0; axis < 3; axis++) {
+                double a = vertices[v + axis];
+                double b = vertices[v + 3 + axis];
+                double c = vertices[v + 6 + axis];
+                triangleCentroids[i * 3 + axis] = (a + b + c) / 3;
+                triangleBounds[i * 6 + axis] = Math.min(a, Math.min(b, c));
+                triangleBounds[i * 6 + 3 + axis] = Math.max(a, Math.max(b, c));
+            }
+        }
+    }
+
+    /**
+     * Calculates the optimal depth for the BVH tree based on triangle count.
+     *
+     * @param triangleCount Number of triangles in the scene
+     * @return Optimal depth for the BVH tree
+     */
+    private int calculateOptimalDepth(int triangleCount) {
+        int maxDepth = 16;
+        int minDepth = 2;
+
+        if (triangleCount <= this.trianglesPerLeaf) {
+            return minDepth;
+        }
+
+        int estimatedDepth = (int) Math.ceil(Math.log(triangleCount / (double) this.trianglesPerLeaf) / Math.log(2));
+        return Math.max(minDepth, Math.min(maxDepth, estimatedDepth));
+    }
+
+    /**
+     * RecursiveTask for parallel BVH construction using Fork/Join framework.
+     */
+    private class BVHBuildTask extends RecursiveTask<BVHNode> {
+        /** List of triangle indices to process in this task */
+        private final List<Integer> triangleIndices;
+
+        /** Current depth in the BVH tree */
+        private final int currentDepth;
+
+        /** Threshold for sequential processing (small subproblems) */
+        private static final int SEQUENTIAL_THRESHOLD = 256;
+
+        /**
+         * Creates a new BVHBuildTask.
+         *
+         * @param triangleIndices List of triangle indices to process
+         * @param currentDepth Current depth in the BVH tree
+         */
+        public BVHBuildTask(List<Integer> triangleIndices, int currentDepth) {
+            this.triangleIndices = triangleIndices;
+            this.currentDepth = currentDepth;
+        }
+
+        /**
+         * The main computation performed by this task.
+         *
+         * @return The BVHNode constructed by this task
+         */
+        @Override
+        protected BVHNode compute() {
+            if (triangleIndices.isEmpty()) {
+                return null;
+            }
+
+            totalNodes.incrementAndGet();
+            maxDepthReached.updateAndGet(d -> Math.max(d, currentDepth));
+
+            Cube nodeBoundingBox = calculateBoundingBox(triangleIndices);
+
+            // If we've reached max depth or have few triangles, create leaf node
+            if (currentDepth >= maxBVHDepth || triangleIndices.size() <= trianglesPerLeaf) {
+                updateLeafStatistics(triangleIndices.size());
+                return new BVHLeafNode(nodeBoundingBox, new ArrayList<>(triangleIndices));
+            }
+
+            // Find the optimal split
+            BVHSplit bestSplit = findOptimalSplit(triangleIndices, nodeBoundingBox);
+
+            // If no good split found, create leaf node
+            if (bestSplit == null || bestSplit.cost >= triangleIndices.size() * 1.0) {
+                updateLeafStatistics(triangleIndices.size());
+                return new BVHLeafNode(nodeBoundingBox, new ArrayList<>(triangleIndices));
+            }
+
+            // Process children - only fork if the subproblems are large enough
+            BVHBuildTask leftTask = new BVHBuildTask(bestSplit.leftIndices, currentDepth + 1);
+            BVHBuildTask rightTask = new BVHBuildTask(bestSplit.rightIndices, currentDepth + 1);
+
+            // For small tasks, just compute sequentially
+            if (triangleIndices.size() <= SEQUENTIAL_THRESHOLD) {
+                BVHNode leftChild = leftTask.compute();
+                BVHNode rightChild = rightTask.compute();
+                return new BVHInternalNode(nodeBoundingBox, leftChild, rightChild);
+            } else {
+                // For larger tasks, compute in parallel
+                leftTask.fork();
+                BVHNode rightChild = rightTask.compute();
+                BVHNode leftChild = leftTask.join();
+                return new BVHInternalNode(nodeBoundingBox, leftChild, rightChild);
+            }
+        }
+    }
+
+    /**
+     * RecursiveTask for the binned SAH builder. Every task owns the range [start, end) of
+     * one shared index array and partitions it in place, so sibling tasks never overlap.
+     */
+    @SuppressWarnings("serial") // Fork/join tasks are never serialized
+    private class BinnedBuildTask extends RecursiveTask<BVHNode> {
+        /** Triangle indices shared by all tasks of one build */
+        private final int[] triangleIndices;
+
+        /** First index of the range handled by this task */
+        private final int start;
+
+        /** End (exclusive) of the range handled by this task */
+        private final int end;
+
+        /** Triangle bounds (0-5) and centroid bounds (6-11) of the range */
+        private final double[] box;
+
+        /** Current depth in the BVH tree */
+        private final int currentDepth;
+
+        /** Threshold for sequential processing (small subproblems) */
+        private static final int SEQUENTIAL_THRESHOLD = 256;
+
+        /**
+         * Creates a new BinnedBuildTask.
+         *
+         * @param triangleIndices Shared triangle index array
+         * @param start First index of the range to process
+         * @param end End (exclusive) of the range to process
+         * @param box Triangle and centroid bounds of the range
+         * @param currentDepth Current depth in the BVH tree
+         */
+        BinnedBuildTask(int[] triangleIndices, int start, int end, double[] box, int currentDepth) {
+            this.triangleIndices = triangleIndices;
+            this.start = start;
+            this.end = end;
+            this.box = box;
+            this.currentDepth = currentDepth;
+        }
+
+        /**
+         * The main computation performed by this task.
+         *
+         * @return The BVHNode constructed by this task
+         */
+        @Override
+        protected BVHNode compute() {
+            int count = end - start;
+            totalNodes.incrementAndGet();
+            maxDepthReached.updateAndGet(d -> Math.max(d, currentDepth));
+
+            Cube nodeBoundingBox = new Cube(new Vector3D(box[0], box[1], box[2]), new Vector3D(box[3], box[4], box[5]));
+
+            if (count <= trianglesPerLeaf || currentDepth >= MAX_SAH_DEPTH) {
+                return createLeaf(nodeBoundingBox);
+            }
+
+            double[] leftBox = new double[12];
+            double[] rightBox = new double[12];
+            int middle = partitionBinned(triangleIndices, start, end, box, leftBox, rightBox);
+            if (middle < 0) {
+                return createLeaf(nodeBoundingBox);
+            }
+
+            BinnedBuildTask leftTask = new BinnedBuildTask(triangleIndices, start, middle, leftBox, currentDepth + 1);
+            BinnedBuildTask rightTask = new BinnedBuildTask(triangleIndices, middle, end, rightBox, currentDepth + 1);
+
+            // For small tasks, just compute sequentially
+            if (count <= SEQUENTIAL_THRESHOLD) {
+                BVHNode leftChild = leftTask.compute();
+                BVHNode rightChild = rightTask.compute();
+                return new BVHInternalNode(nodeBoundingBox, leftChild, rightChild);
+            } else {
+                // For larger tasks, compute in parallel
+                leftTask.fork();
+                BVHNode rightChild = rightTask.compute();
+                BVHNode leftChild = leftTask.join();
+                return new BVHInternalNode(nodeBoundingBox, leftChild, rightChild);
+            }
+        }
+
+        /**
+         * Creates a leaf over the whole range of this task.
+         */
+        private BVHNode createLeaf(Cube nodeBoundingBox) {
+            List<Integer> leafIndices = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                leafIndices.add(triangleIndices[i]);
+            }
+            updateLeafStatistics(leafIndices.size());
+            return new BVHLeafNode(nodeBoundingBox, leafIndices);
+        }
+    }
+
+    /**
+     * RecursiveTask for the spatial-split builder. Unlike the binned builder a node can end up
+     * with more references than its parent, so every task owns its own reference arrays.
+     * A reference is a triangle index plus the part of the triangle's bounds that lies
+     * inside the node.
+     */
+    @SuppressWarnings("serial") // Fork/join tasks are never serialized
+    private class SpatialBuildTask extends RecursiveTask<BVHNode> {
+        /** Triangle index of every reference */
+        private final int[] references;
+
+        /** Clipped bounds of every reference, six doubles each */
+        private final double[] referenceBounds;
+
+        /** Bounds of all references of the node */
+        private final double[] box;
+
+        /** Current depth in the BVH tree */
+        private final int currentDepth;
+
+        /** Threshold for sequential processing (small subproblems) */
+        private static final int SEQUENTIAL_THRESHOLD = 256;
+
+        /**
+         * Creates a new SpatialBuildTask.
+         *
+         * @param references Triangle index of every reference
+         * @param referenceBounds Clipped bounds of every reference
+         * @param box Bounds of all references
+         * @param currentDepth Current depth in the BVH tree
+         */
+        SpatialBuildTask(int[] references, double[] referenceBounds, double[] box, int currentDepth) {
+            this.references = references;
+            this.referenceBounds = referenceBounds;
+            this.box = box;
+            this.currentDepth = currentDepth;
+        }
+
+        /**
+         * The main computation performed by this task.
+         *
+         * @return The BVHNode constructed by this task
+         */
+        @Override
+        protected BVHNode compute() {
+            int count = references.length;
+            totalNodes.incrementAndGet();
+            maxDepthReached.updateAndGet(d -> Math.max(d, currentDepth));
+
+            Cube nodeBoundingBox = new Cube(new Vector3D(box[0], box[1], box[2]), new Vector3D(box[3], box[4], box[5]));
+
+            if (count <= trianglesPerLeaf || currentDepth >= MAX_SAH_DEPTH) {
+                return createLeaf(nodeBoundingBox);
+            }
+
+            // Object split over the centres of the clipped bounds
+            double[] centroids = new double[count * 3];
+            double[] centroidBox = new double[12];
+            System.arraycopy(box, 0, centroidBox, 0, 6);
+            resetBounds(centroidBox, 6);
+            for (int i = 0; i < count; i++) {
+                for (int k = 0; k < 3; k++) {
+                    centroids[i * 3 + k] = (referenceBounds[i * 6 + k] + referenceBounds[i * 6 + 3 + k]) * 0.5;
+                }
+                growPoint(centroidBox, 6, centroids, i * 3);
+            }
+
+            BinScratch scratch = BIN_SCRATCH.get();
+            SplitCandidate objectSplit = scratch.objectSplit;
+            findObjectSplit(referenceBounds, centroids, 0, count, centroidBox, objectSplit);
+
+            // Spatial split, only where the object split leaves the children overlapping and the
+            // node is too big to end up as a leaf; below that the clipping rarely pays for itself
+            SplitCandidate spatialSplit = scratch.spatialSplit;
+            spatialSplit.axis = -1;
+            if (count > MAX_SAH_LEAF_SIZE && referenceCount.get() < referenceLimit && (objectSplit.axis < 0 ||
+                    overlapArea(objectSplit.leftBounds, objectSplit.rightBounds) > SPATIAL_SPLIT_ALPHA * rootSurfaceArea)) {
+                findSpatialSplit(references, referenceBounds, box, spatialSplit);
+            }
+
+            boolean useSpatial = spatialSplit.axis >= 0 && spatialSplit.cost < objectSplit.cost;
+            double bestCost = useSpatial ? spatialSplit.cost : objectSplit.cost;
+            if (bestCost >= count && count <= MAX_SAH_LEAF_SIZE) {
+                return createLeaf(nodeBoundingBox);
+            }
+
+            SpatialBuildTask[] children = null;
+            if (useSpatial) {
+                int axis = spatialSplit.axis;
+                double plane = box[axis] + (box[3 + axis] - box[axis]) * (spatialSplit.bin + 1) / spatialSplit.bins;
+                children = splitReferences(axis, plane);
+            }
+            if (children == null) {
+                if (objectSplit.axis < 0) {
+                    // All centroids coincide; split arbitrarily so leaves stay bounded
+                    if (count <= MAX_SAH_LEAF_SIZE) {
+                        return createLeaf(nodeBoundingBox);
+                    }
+                    children = splitInHalf();
+                } else {
+                    children = splitObjects(centroids, centroidBox, objectSplit);
+                }
+            }
+
+            SpatialBuildTask leftTask = children[0];
+            SpatialBuildTask rightTask = children[1];
+
+            // For small tasks, just compute sequentially
+            if (count <= SEQUENTIAL_THRESHOLD) {
+                BVHNode leftChild = leftTask.compute();
+                BVHNode rightChild = rightTask.compute();
+                return new BVHInternalNode(nodeBoundingBox, leftChild, rightChild);
+            } else {
+                // For larger tasks, compute in parallel
+                leftTask.fork();
+                BVHNode rightChild = rightTask.compute();
+                BVHNode leftChild = leftTask.join();
+                return new BVHInternalNode(nodeBoundingBox, leftChild, rightChild);
+            }
+        }
+
+        /**
+         * Creates a leaf holding every reference of this task.
+         */
+        private BVHNode createLeaf(Cube nodeBoundingBox) {
+            List<Integer> leafIndices = new ArrayList<>(references.length);
+            for (int reference : references) {
+                leafIndices.add(reference);
+            }
+            updateLeafStatistics(leafIndices.size());
+            return new BVHLeafNode(nodeBoundingBox, leafIndices);
+        }
+
+        /**
+         * Splits the references by the bin of their centre, as the binned builder does.
+         */
+        private SpatialBuildTask[] splitObjects(double[] centroids, double[] centroidBox, SplitCandidate split) {
+            int count = references.length;
+            double centroidMin = centroidBox[6 + split.axis];
+            double scale = split.bins / (centroidBox[9 + split.axis] - centroidMin);
+
+            boolean[] left = new boolean[count];
+            int leftCount = 0;
+            for (int i = 0; i < count; i++) {
+                left[i] = binIndex(centroids[i * 3 + split.axis], centroidMin, scale, split.bins) <= split.bin;
+                if (left[i]) leftCount++;
+            }
+
+            ReferenceList leftList = new ReferenceList(leftCount);
+            ReferenceList rightList = new ReferenceList(count - leftCount);
+            for (int i = 0; i < count; i++) {
+                (left[i] ? leftList : rightList).add(references[i], referenceBounds, i * 6);
+            }
+            return new SpatialBuildTask[] { leftList.toTask(currentDepth + 1), rightList.toTask(currentDepth + 1) };
+        }
+
+        /**
+         * Splits the references into two halves of equal size.
+         */
+        private SpatialBuildTask[] splitInHalf() {
+            int count = references.length;
+            ReferenceList leftList = new ReferenceList(count / 2);
+            ReferenceList rightList = new ReferenceList(count - count / 2);
+            for (int i = 0; i < count; i++) {
+                (i < count / 2 ? leftList : rightList).add(references[i], referenceBounds, i * 6);
+            }
+            return new SpatialBuildTask[] { leftList.toTask(currentDepth + 1), rightList.toTask(currentDepth + 1) };
+        }
+
+        /**
+         * Splits the references by a plane. References that straddle it are clipped into
+         * both children unless keeping them whole on one side is cheaper ("unsplitting"),
+         * which also keeps the duplication down.
+         *
+         * @param axis Axis normal to the plane
+         * @param plane Position of the plane on the axis
+         * @return The two children, or null if one would be empty or the budget is spent
+         */
+        private SpatialBuildTask[] splitReferences(int axis, double plane) {
+            int count = references.length;
+            ReferenceList leftList = new ReferenceList(count);
+            ReferenceList rightList = new ReferenceList(count);
+            double[] leftBounds = new double[6];
+            double[] rightBounds = new double[6];
+            resetBounds(leftBounds, 0);
+            resetBounds(rightBounds, 0);
+
+            // References entirely on one side first, so unsplitting sees both sides' bounds
+            boolean[] straddles = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                int o = i * 6;
+                if (referenceBounds[o + 3 + axis] <= plane) {
+                    leftList.add(references[i], referenceBounds, o);
+                    growBounds(leftBounds, 0, referenceBounds, o);
+                } else if (referenceBounds[o + axis] >= plane) {
+                    rightList.add(references[i], referenceBounds, o);
+                    growBounds(rightBounds, 0, referenceBounds, o);
+                } else {
+                    straddles[i] = true;
+                }
+            }
+
+            double[] leftPart = new double[6];
+            double[] rightPart = new double[6];
+            double[] whole = new double[6];
+            for (int i = 0; i < count; i++) {
+                if (!straddles[i]) continue;
+                int o = i * 6;
+                boolean hasLeft = clipTriangle(references[i], axis, referenceBounds[o + axis], plane,
+                        referenceBounds, o, leftPart);
+                boolean hasRight = clipTriangle(references[i], axis, plane, referenceBounds[o + 3 + axis],
+                        referenceBounds, o, rightPart);
+                int nL = leftList.size();
+                int nR = rightList.size();
+
+                double splitCost = unionArea(leftBounds, hasLeft ? leftPart : null) * (nL + (hasLeft ? 1 : 0)) +
+                        unionArea(rightBounds, hasRight ? rightPart : null) * (nR + (hasRight ? 1 : 0));
+                System.arraycopy(referenceBounds, o, whole, 0, 6);
+                double leftCost = unionArea(leftBounds, whole) * (nL + 1) + unionArea(rightBounds, null) * nR;
+                double rightCost = unionArea(leftBounds, null) * nL + unionArea(rightBounds, whole) * (nR + 1);
+
+                if ((leftCost <= splitCost && leftCost <= rightCost) || (!hasLeft && !hasRight)) {
+                    leftList.add(references[i], whole, 0);
+                    growBounds(leftBounds, 0, whole, 0);
+                } else if (rightCost <= splitCost) {
+                    rightList.add(references[i], whole, 0);
+                    growBounds(rightBounds, 0, whole, 0);
+                } else {
+                    if (hasLeft) {
+                        leftList.add(references[i], leftPart, 0);
+                        growBounds(leftBounds, 0, leftPart, 0);
+                    }
+                    if (hasRight) {
+                        rightList.add(references[i], rightPart, 0);
+                        growBounds(rightBounds, 0, rightPart, 0);
+                    }
+                }
+            }
+
+            if (leftList.size() == 0 || rightList.size() == 0) {
+                return null;
+            }
+            if (!reserveReferences(leftList.size() + rightList.size() - count)) {
+                return null;
+            }
+            return new SpatialBuildTask[] { leftList.toTask(currentDepth + 1), rightList.toTask(currentDepth + 1) };
+        }
+    }
+
+    /**
+     * Finds the best spatial split of a node. Every axis of the node box is divided into
+     * equal bins; each reference is clipped against the bins it spans and the clipped
+     * bounds grow those bins, while its first and last bin count an entry and an exit.
+     * A boundary then has the entries to its left and the exits to its right as
+     * reference counts, straddling references being counted on both sides.
+     *
+     * @param references Triangle index of every reference
+     * @param referenceBounds Clipped bounds of every reference
+     * @param box Bounds of the node
+     * @param split Out: the best split; its axis is -1 if none was found
+     */
+    private void findSpatialSplit(int[] references, double[] referenceBounds, double[] box, SplitCandidate split) {
+        int count = references.length;
+        int bins = binCount;
+        double nodeArea = surfaceArea(box[0], box[1], box[2], box[3], box[4], box[5]);
+        if (!(nodeArea > 0)) {
+            nodeArea = 1.0;
+        }
+
+        BinScratch scratch = BIN_SCRATCH.get();
+        double[] binBounds = scratch.binBounds;
+        int[] entries = scratch.binCounts;
+        int[] exits = scratch.exitCounts;
+        double[] rightAreas = scratch.rightAreas;
+        int[] rightCounts = scratch.rightCounts;
+
+        split.axis = -1;
+        split.bins = bins;
+        split.cost = Double.MAX_VALUE;
+
+        for (int axis = 0; axis < 3; axis++) {
+            double origin = box[axis];
+            double extent = box[3 + axis] - origin;
+            if (!(extent > 0)) continue;
+            double scale = bins / extent;
+
+            for (int b = 0; b < bins; b++) {
+                entries[b] = 0;
+                exits[b] = 0;
+                resetBounds(binBounds, b * 6);
+            }
+
+            for (int i = 0; i < count; i++) {
+                int o = i * 6;
+                int first = binIndex(Math.max(referenceBounds[o + axis], origin), origin, scale, bins);
+                int last = binIndex(Math.max(referenceBounds[o + 3 + axis], origin), origin, scale, bins);
+                entries[first]++;
+                exits[last]++;
+
+                if (first == last) {
+                    growBounds(binBounds, first * 6, referenceBounds, o);
+                    continue;
+                }
+
+                // Straddling reference: every corner grows the bin holding it and every point
+                // where an edge crosses an inner bin plane grows the bins on both sides, so
+                // each bin ends up bounding the piece of the triangle inside it
+                int v = references[i] * 9;
+                for (int c = 0; c < 3; c++) {
+                    int p = v + c * 3;
+                    int b = binIndex(Math.max(triangleVertices[p + axis], origin), origin, scale, bins);
+                    b = b < first ? first : Math.min(b, last);
+                    growClampedPoint(binBounds, b * 6, triangleVertices[p], triangleVertices[p + 1],
+                            triangleVertices[p + 2], referenceBounds, o);
+                }
+                for (int e = 0; e < 3; e++) {
+                    int p = v + e * 3;
+                    int q = v + ((e + 1) % 3) * 3;
+                    double pa = triangleVertices[p + axis];
+                    double qa = triangleVertices[q + axis];
+                    if (pa == qa) continue;
+
+                    int firstPlane = Math.max(first + 1, (int) Math.ceil((Math.min(pa, qa) - origin) * scale));
+                    int lastPlane = Math.min(last, (int) Math.floor((Math.max(pa, qa) - origin) * scale));
+                    for (int b = firstPlane; b <= lastPlane; b++) {
+                        double plane = origin + b / scale;
+                        double t = (plane - pa) / (qa - pa);
+                        double x = axis == 0 ? plane : triangleVertices[p] + t * (triangleVertices[q] - triangleVertices[p]);
+                        double y = axis == 1 ? plane : triangleVertices[p + 1] + t * (triangleVertices[q + 1] - triangleVertices[p + 1]);
+                        double z = axis == 2 ? plane : triangleVertices[p + 2] + t * (triangleVertices[q + 2] - triangleVertices[p + 2]);
+                        growClampedPoint(binBounds, (b - 1) * 6, x, y, z, referenceBounds, o);
+                        growClampedPoint(binBounds, b * 6, x, y, z, referenceBounds, o);
+                    }
+                }
+            }
+
+            // Suffix sweep: area of bins [b, bins) and references leaving in them
+            double[] sweep = new double[6];
+            resetBounds(sweep, 0);
+            int rightCount = 0;
+            for (int b = bins - 1; b > 0; b--) {
+                growBounds(sweep, 0, binBounds, b * 6);
+                rightCount += exits[b];
+                rightCounts[b] = rightCount;
+                rightAreas[b] = boundsArea(sweep);
+            }
+
+            // Prefix sweep: evaluate the plane after every bin
+            resetBounds(sweep, 0);
+            int leftCount = 0;
+            for (int b = 0; b < bins - 1; b++) {
+                growBounds(sweep, 0, binBounds, b * 6);
+                leftCount += entries[b];
+                if (leftCount == 0 || rightCounts[b + 1] == 0) continue;
+
+                double cost = TRAVERSAL_COST + (boundsArea(sweep) * leftCount +
+                        rightAreas[b + 1] * rightCounts[b + 1]) / nodeArea;
+                if (cost < split.cost) {
+                    split.cost = cost;
+                    split.axis = axis;
+                    split.bin = b;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the bounds of the part of a triangle between two planes normal to an axis,
+     * limited to the current bounds of its reference. The part is bounded by the corners
+     * between the planes and the points where the edges cross them.
+     *
+     * @param triangle Triangle index
+     * @param axis Axis normal to the planes
+     * @param lo Position of the lower plane
+     * @param hi Position of the upper plane
+     * @param limit Array holding the reference bounds
+     * @param limitOffset Offset of the reference bounds in {@code limit}
+     * @param out Out: the clipped bounds
+     * @return false if no part of the triangle lies within the reference bounds
+     */
+    private boolean clipTriangle(int triangle, int axis, double lo, double hi,
+                                 double[] limit, int limitOffset, double[] out) {
+        resetBounds(out, 0);
+        int v = triangle * 9;
+        for (int e = 0; e < 3; e++) {
+            int p = v + e * 3;
+            int q = v + ((e + 1) % 3) * 3;
+            double pa = triangleVertices[p + axis];
+            double qa = triangleVertices[q + axis];
+
+            if (pa >= lo && pa <= hi) {
+                growPoint(out, 0, triangleVertices, p);
+            }
+            if ((pa < lo) != (qa < lo)) {
+                growEdgePoint(out, p, q, axis, lo);
+            }
+            if ((pa > hi) != (qa > hi)) {
+                growEdgePoint(out, p, q, axis, hi);
+            }
+        }
+
+        for (int k = 0; k < 3; k++) {
+            if (limit[limitOffset + k] > out[k]) out[k] = limit[limitOffset + k];
+            if (limit[limitOffset + 3 + k] < out[3 + k]) out[3 + k] = limit[limitOffset + 3 + k];
+            if (out[k] > out[3 + k]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Grows a box to contain a point moved inside the bounds of a reference.
+     */
+    private static void growClampedPoint(double[] box, int offset, double x, double y, double z,
+                                         double[] limit, int limitOffset) {
+        x = Math.max(limit[limitOffset], Math.min(limit[limitOffset + 3], x));
+        y = Math.max(limit[limitOffset + 1], Math.min(limit[limitOffset + 4], y));
+        z = Math.max(limit[limitOffset + 2], Math.min(limit[limitOffset + 5], z));
+        if (x < box[offset]) box[offset] = x;
+        if (y < box[offset + 1]) box[offset + 1] = y;
+        if (z < box[offset + 2]) box[offset + 2] = z;
+        if (x > box[offset + 3]) box[offset + 3] = x;
+        if (y > box[offset + 4]) box[offset + 4] = y;
+        if (z > box[offset + 5]) box[offset + 5] = z;
+    }
+
+    /**
+     * Grows a box to contain the point where the edge between two triangle corners crosses
+     * a plane normal to an axis.
+     */
+    private void growEdgePoint(double[] out, int p, int q, int axis, double plane) {
+        double pa = triangleVertices[p + axis];
+        double t = (plane - pa) / (triangleVertices[q + axis] - pa);
+        for (int k = 0; k < 3; k++) {
+            double value = k == axis ? plane
+                    : triangleVertices[p + k] + t * (triangleVertices[q + k] - triangleVertices[p + k]);
+            if (value < out[k]) out[k] = value;
+            if (value > out[3 + k]) out[3 + k] = value;
+        }
+    }
+
+    /**
+     * Takes references from the spatial-split budget.
+     *
+     * @param added References a split adds
+     * @return false if the budget cannot cover them
+     */
+    private boolean reserveReferences(int added) {
+        if (added <= 0) return true;
+        int before = referenceCount.getAndUpdate(r -> r + added <= referenceLimit ? r + added : r);
+        return before + added <= referenceLimit;
+    }
+
+    /**
+     * Calculates the surface area of the overlap of two boxes.
+     */
+    private static double overlapArea(double[] a, double[] b) {
+        double[] overlap = new double[6];
+        for (int k = 0; k < 3; k++) {
+            overlap[k] = Math.max(a[k], b[k]);
+            overlap[3 + k] = Math.min(a[3 + k], b[3 + k]);
+        }
+        return boundsArea(overlap);
+    }
+
+    /**
+     * Calculates the surface area of the union of a box and an optional second box.
+     */
+    private static double unionArea(double[] box, double[] other) {
+        if (other == null) return boundsArea(box);
+        double[] union = box.clone();
+        growBounds(union, 0, other, 0);
+        return boundsArea(union);
+    }
+
+    /**
+     * Calculates the surface area of a box, 0 if it is empty.
+     */
+    private static double boundsArea(double[] box) {
+        if (box[0] > box[3] || box[1] > box[4] || box[2] > box[5]) return 0.0;
+        return surfaceArea(box[0], box[1], box[2], box[3], box[4], box[5]);
+    }
+
+    /**
+     * Growable list of spatial-split references with their bounds.
+     */
+    private class ReferenceList {
+        private int[] references;
+        private double[] bounds;
+        private final double[] box = new double[6];
+        private int size;
+
+        ReferenceList(int capacity) {
+            references = new int[Math.max(capacity, 1)];
+            bounds = new double[references.length * 6];
+            resetBounds(box, 0);
+        }
+
+        void add(int triangle, double[] referenceBounds, int offset) {
+            if (size == references.length) {
+                references = Arrays.copyOf(references, size * 2);
+                bounds = Arrays.copyOf(bounds, size * 12);
+            }
+            references[size] = triangle;
+            System.arraycopy(referenceBounds, offset, bounds, size * 6, 6);
+            growBounds(box, 0, referenceBounds, offset);
+            size++;
+        }
 
-    // Thread-safe statistics counters
-    private final AtomicInteger minTrianglesInLeaf = new AtomicInteger(Integer.MAX_VALUE);
-    private final AtomicInteger maxTrianglesInLeaf = new AtomicInteger(0);
-    private final AtomicInteger totalLeafNodes = new AtomicInteger(0);
-    private final AtomicInteger totalTrianglesInLeaves = new AtomicInteger(0);
-    private final AtomicInteger maxDepthReached = new AtomicInteger(0);
-    private final AtomicInteger totalNodes = new AtomicInteger(0);
+        int size() {
+            return size;
+        }
 
-    /** Pre-computed centroids of all triangles for faster splitting */
-    private Vector3D[] triangleCentroids;
+        SpatialBuildTask toTask(int depth) {
+            return new SpatialBuildTask(Arrays.copyOf(references, size), Arrays.copyOf(bounds, size * 6),
+                    box.clone(), depth);
+        }
+    }
 
     /**
-     * Constructs a BVHGenerator with automatic depth calculation.
+     * Builds the BVH from the Morton order of the triangle centroids (LBVH). Morton codes are
+     * computed and radix sorted in parallel chunks, the hierarchy is emitted by splitting each
+     * range where its highest differing Morton bit changes, and an optional treelet pass then
+     * reorganises small groups of nodes to lower their SAH cost. Everything runs on the
+     * shared build pool.
      *
-     * @param triangleList List of triangles to build the BVH from
+     * @param pool Pool to run on
+     * @param optimizeTreelets Whether to run the treelet pass
+     * @return The root node of the constructed BVH
      */
-    public BVHGenerator(List<Triangle> triangleList) {
-        this.triangleList = triangleList;
-        this.maxBVHDepth = calculateOptimalDepth(triangleList.size());
-        this.forkJoinPool = new ForkJoinPool();
-        precomputeCentroids();
+    private BVHNode buildLinearBVH(ForkJoinPool pool, boolean optimizeTreelets) {
+
+        double[] box = new double[6];
+        resetBounds(box, 0);
+        for (int i = 0; i < triangleCount; i++) {
+            growPoint(box, 0, triangleCentroids, i * 3);
+        }
+        double gridSize = 1 << MORTON_BITS;
+        double[] scale = new double[3];
+        for (int k = 0; k < 3; k++) {
+            double extent = box[3 + k] - box[k];
+            scale[k] = extent > 0 ? gridSize / extent : 0.0;
+        }
+
+        // Morton code in the high half of each key, triangle index in the low half
+        long[] keys = new long[triangleCount];
+        int chunks = (triangleCount + LBVH_CHUNK_SIZE - 1) / LBVH_CHUNK_SIZE;
+        parallelFor(pool, chunks, chunk -> {
+            int end = Math.min(triangleCount, (chunk + 1) * LBVH_CHUNK_SIZE);
+            for (int i = chunk * LBVH_CHUNK_SIZE; i < end; i++) {
+                int c = i * 3;
+                long code = mortonCode(quantize(triangleCentroids[c], box[0], scale[0]),
+                        quantize(triangleCentroids[c + 1], box[1], scale[1]),
+                        quantize(triangleCentroids[c + 2], box[2], scale[2]));
+                keys[i] = code << 32 | i;
+            }
+        });
+        long[] sortedKeys = radixSort(pool, keys, chunks);
+
+        MortonTree tree = new MortonTree(triangleCount, sortedKeys);
+        pool.invoke(new MortonBuildTask(tree, tree.allocate(), 0, triangleCount));
+        if (optimizeTreelets) {
+            pool.invoke(new TreeletTask(tree, 0));
+        }
+        return pool.invoke(new MortonNodeTask(tree, 0, 0));
     }
 
     /**
-     * Constructs a BVHGenerator with specified maximum depth.
-     *
-     * @param triangleList List of triangles to build the BVH from
-     * @param maxDepth Maximum depth of the BVH tree (if <= 0, calculates optimal depth)
+     * Runs a loop body for every chunk index on a pool and waits for all of them.
      */
-    public BVHGenerator(List<Triangle> triangleList, int maxDepth) {
-        this.triangleList = triangleList;
-        this.maxBVHDepth = maxDepth > 0 ? maxDepth : calculateOptimalDepth(triangleList.size());
-        this.forkJoinPool = new ForkJoinPool();
-        precomputeCentroids();
+    private static void parallelFor(ForkJoinPool pool, int chunks, IntConsumer body) {
+        if (chunks <= 1) {
+            if (chunks == 1) body.accept(0);
+            return;
+        }
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(body)).join();
     }
 
     /**
-     * Builds the BVH structure from the provided triangles.
+     * Sorts keys by their Morton code (bits 32 and up) with a parallel least significant
+     * digit radix sort. Every pass counts the digits of each chunk in parallel, turns the
+     * counts into per-chunk output offsets, and scatters the chunks in parallel; the scatter
+     * is stable, so keys with equal codes stay in triangle order.
      *
-     * @return The root node of the constructed BVH, or null if no triangles are present
+     * @return Sorted keys, either the input array or a new one
      */
-    public BVHNode buildBVH() {
-        if (triangleList == null || triangleList.isEmpty()) return null;
+    private static long[] radixSort(ForkJoinPool pool, long[] keys, int chunks) {
+        int n = keys.length;
+        int radix = 1 << RADIX_BITS;
+        int[][] offsets = new int[chunks][radix];
+        long[] source = keys;
+        long[] target = new long[n];
+
+        for (int shift = 32; shift < 32 + 3 * MORTON_BITS; shift += RADIX_BITS) {
+            int digitShift = shift;
+            long[] from = source;
+            long[] to = target;
+
+            parallelFor(pool, chunks, chunk -> {
+                int[] histogram = offsets[chunk];
+                Arrays.fill(histogram, 0);
+                int end = Math.min(n, (chunk + 1) * LBVH_CHUNK_SIZE);
+                for (int i = chunk * LBVH_CHUNK_SIZE; i < end; i++) {
+                    histogram[(int) (from[i] >>> digitShift) & (radix - 1)]++;
+                }
+            });
+
+            int offset = 0;
+            for (int digit = 0; digit < radix; digit++) {
+                for (int chunk = 0; chunk < chunks; chunk++) {
+                    int count = offsets[chunk][digit];
+                    offsets[chunk][digit] = offset;
+                    offset += count;
+                }
+            }
+
+            parallelFor(pool, chunks, chunk -> {
+                int[] next = offsets[chunk];
+                int end = Math.min(n, (chunk + 1) * LBVH_CHUNK_SIZE);
+                for (int i = chunk * LBVH_CHUNK_SIZE; i < end; i++) {
+                    long key = from[i];
+                    to[next[(int) (key >>> digitShift) & (radix - 1)]++] = key;
+                }
+            });
 
-        List<Integer> triangleIndices = new ArrayList<>(triangleList.size());
-        for (int i = 0; i < triangleList.size(); i++) {
-            triangleIndices.add(i);
+            source = to;
+            target = from;
         }
+        return source;
+    }
 
-        // Use ForkJoinPool to parallelize BVH construction
-        BVHNode root = forkJoinPool.invoke(new BVHBuildTask(triangleIndices, 0));
+    /**
+     * Maps a centroid coordinate to its Morton grid cell.
+     */
+    private static int quantize(double value, double min, double scale) {
+        int cell = (int) ((value - min) * scale);
+        return Math.min(cell, (1 << MORTON_BITS) - 1);
+    }
 
-        // Ensure we shut down the ForkJoinPool
-        forkJoinPool.shutdown();
+    /**
+     * Interleaves the bits of three grid coordinates into a 30-bit Morton code.
+     */
+    private static long mortonCode(int x, int y, int z) {
+        return (expandBits(x) << 2) | (expandBits(y) << 1) | expandBits(z);
+    }
 
-        return root;
+    /**
+     * Spreads the ten low bits of a value so two zero bits follow each of them.
+     */
+    private static long expandBits(int value) {
+        long v = value & 0x3FF;
+        v = (v * 0x00010001L) & 0xFF0000FFL;
+        v = (v * 0x00000101L) & 0x0F00F00FL;
+        v = (v * 0x00000011L) & 0xC30C30C3L;
+        v = (v * 0x00000005L) & 0x49249249L;
+        return v;
     }
 
     /**
-     * Pre-computes centroids of all triangles for faster splitting decisions.
+     * Finds where a range of sorted keys splits: the first key whose code has the highest
+     * bit that differs across the range set, or the middle if every code is equal.
      */
-    private void precomputeCentroids() {
-        triangleCentroids = new Vector3D[triangleList.size()];
-        for (int i = 0; i < triangleList.size(); i++) {
-            triangleCentroids[i] = triangleList.get(i).getCenter();
+    private static int mortonSplit(long[] keys, int start, int end) {
+        long firstCode = keys[start] >>> 32;
+        long lastCode = keys[end - 1] >>> 32;
+        if (firstCode == lastCode) {
+            return (start + end) >>> 1;
+        }
+
+        int bit = 63 - Long.numberOfLeadingZeros(firstCode ^ lastCode);
+        int lo = start;
+        int hi = end - 1;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (((keys[mid] >>> 32) >>> bit & 1) != 0) {
+                hi = mid;
+            } else {
+                lo = mid;
+            }
         }
+        return hi;
     }
 
     /**
-     * Calculates the optimal depth for the BVH tree based on triangle count.
-     *
-     * @param triangleCount Number of triangles in the scene
-     * @return Optimal depth for the BVH tree
+     * Flat node storage of the LBVH builder. Nodes are written by index from parallel tasks
+     * and only turned into {@link BVHNode} objects once the tree is final, which lets the
+     * treelet pass rewire nodes in place.
      */
-    private int calculateOptimalDepth(int triangleCount) {
-        int maxDepth = 16;
-        int minDepth = 2;
+    private static final class MortonTree {
+        /** Keys sorted by Morton code; the low half of each key is a triangle index */
+        final long[] keys;
+
+        /** Node bounds, six doubles per node */
+        final double[] bounds;
+
+        /** Child nodes of internal nodes, -1 for leaves */
+        final int[] left;
+        final int[] right;
+
+        /** First key of a leaf */
+        final int[] first;
+
+        /** Triangles below a node */
+        final int[] count;
+
+        /** SAH cost of the subtree below a node */
+        final double[] cost;
+
+        /** Height of the subtree below a node, 1 for leaves */
+        final int[] height;
+
+        /** Next free node index */
+        private final AtomicInteger nodes = new AtomicInteger();
+
+        MortonTree(int triangleCount, long[] keys) {
+            int capacity = Math.max(1, 2 * triangleCount - 1);
+            this.keys = keys;
+            this.bounds = new double[capacity * 6];
+            this.left = new int[capacity];
+            this.right = new int[capacity];
+            this.first = new int[capacity];
+            this.count = new int[capacity];
+            this.cost = new double[capacity];
+            this.height = new int[capacity];
+        }
 
-        if (triangleCount <= this.trianglesPerLeaf) {
-            return minDepth;
+        int allocate() {
+            return nodes.getAndIncrement();
         }
 
-        int estimatedDepth = (int) Math.ceil(Math.log(triangleCount / (double) this.trianglesPerLeaf) / Math.log(2));
-        return Math.max(minDepth, Math.min(maxDepth, estimatedDepth));
+        double area(int node) {
+            int o = node * 6;
+            return surfaceArea(bounds[o], bounds[o + 1], bounds[o + 2], bounds[o + 3], bounds[o + 4], bounds[o + 5]);
+        }
     }
 
     /**
-     * RecursiveTask for parallel BVH construction using Fork/Join framework.
+     * Emits the LBVH node of a range of sorted keys and, recursively, its subtree.
      */
-    private class BVHBuildTask extends RecursiveTask<BVHNode> {
-        /** List of triangle indices to process in this task */
-        private final List<Integer> triangleIndices;
+    @SuppressWarnings("serial") // Fork/join tasks are never serialized
+    private class MortonBuildTask extends RecursiveAction {
+        private final MortonTree tree;
+        private final int node;
+        private final int start;
+        private final int end;
+
+        MortonBuildTask(MortonTree tree, int node, int start, int end) {
+            this.tree = tree;
+            this.node = node;
+            this.start = start;
+            this.end = end;
+        }
 
-        /** Current depth in the BVH tree */
-        private final int currentDepth;
+        @Override
+        protected void compute() {
+            int count = end - start;
+            tree.count[node] = count;
+
+            if (count <= trianglesPerLeaf) {
+                int o = node * 6;
+                resetBounds(tree.bounds, o);
+                for (int i = start; i < end; i++) {
+                    growBounds(tree.bounds, o, triangleBounds, (int) tree.keys[i] * 6);
+                }
+                tree.left[node] = -1;
+                tree.right[node] = -1;
+                tree.first[node] = start;
+                tree.cost[node] = tree.area(node) * count;
+                tree.height[node] = 1;
+                return;
+            }
 
-        /** Threshold for sequential processing (small subproblems) */
-        private static final int SEQUENTIAL_THRESHOLD = 256;
+            int split = mortonSplit(tree.keys, start, end);
+            int leftNode = tree.allocate();
+            int rightNode = tree.allocate();
+            MortonBuildTask leftTask = new MortonBuildTask(tree, leftNode, start, split);
+            MortonBuildTask rightTask = new MortonBuildTask(tree, rightNode, split, end);
+            if (count <= LBVH_SEQUENTIAL_THRESHOLD) {
+                leftTask.compute();
+                rightTask.compute();
+            } else {
+                invokeAll(leftTask, rightTask);
+            }
+            tree.left[node] = leftNode;
+            tree.right[node] = rightNode;
+            updateInternal(tree, node);
+        }
+    }
+
+    /**
+     * Recomputes the bounds, cost and height of an internal LBVH node from its children.
+     */
+    private static void updateInternal(MortonTree tree, int node) {
+        int l = tree.left[node];
+        int r = tree.right[node];
+        int o = node * 6;
+        System.arraycopy(tree.bounds, l * 6, tree.bounds, o, 6);
+        growBounds(tree.bounds, o, tree.bounds, r * 6);
+        tree.count[node] = tree.count[l] + tree.count[r];
+        tree.cost[node] = TRAVERSAL_COST * tree.area(node) + tree.cost[l] + tree.cost[r];
+        tree.height[node] = 1 + Math.max(tree.height[l], tree.height[r]);
+    }
+
+    /**
+     * Treelet optimization of the LBVH (Karras and Aila, 2013), applied bottom-up. At each
+     * internal node a treelet is grown by repeatedly opening its largest-area leaf until it
+     * has {@link #TREELET_LEAVES} leaves; the cheapest binary tree over those leaves is then
+     * found by dynamic programming over all subsets of them and replaces the treelet when
+     * it lowers the SAH cost.
+     */
+    @SuppressWarnings("serial") // Fork/join tasks are never serialized
+    private static class TreeletTask extends RecursiveAction {
+        private final MortonTree tree;
+        private final int node;
+
+        TreeletTask(MortonTree tree, int node) {
+            this.tree = tree;
+            this.node = node;
+        }
+
+        @Override
+        protected void compute() {
+            if (tree.left[node] < 0) return;
+            if (tree.count[node] > LBVH_SEQUENTIAL_THRESHOLD) {
+                invokeAll(new TreeletTask(tree, tree.left[node]), new TreeletTask(tree, tree.right[node]));
+            } else {
+                optimizeSubtree(tree, tree.left[node]);
+                optimizeSubtree(tree, tree.right[node]);
+            }
+            restructure(tree, node);
+        }
+
+        private static void optimizeSubtree(MortonTree tree, int node) {
+            if (tree.left[node] < 0) return;
+            optimizeSubtree(tree, tree.left[node]);
+            optimizeSubtree(tree, tree.right[node]);
+            restructure(tree, node);
+        }
 
         /**
-         * Creates a new BVHBuildTask.
-         *
-         * @param triangleIndices List of triangle indices to process
-         * @param currentDepth Current depth in the BVH tree
+         * Replaces the treelet rooted at a node with its cheapest arrangement.
          */
-        public BVHBuildTask(List<Integer> triangleIndices, int currentDepth) {
-            this.triangleIndices = triangleIndices;
-            this.currentDepth = currentDepth;
+        private static void restructure(MortonTree tree, int node) {
+            TreeletScratch scratch = TREELET_SCRATCH.get();
+            int[] leaves = scratch.leaves;
+            int[] internals = scratch.internals;
+
+            leaves[0] = tree.left[node];
+            leaves[1] = tree.right[node];
+            internals[0] = node;
+            int leafCount = 2;
+            int internalCount = 1;
+            while (leafCount < TREELET_LEAVES) {
+                int largest = -1;
+                double largestArea = -1;
+                for (int i = 0; i < leafCount; i++) {
+                    if (tree.left[leaves[i]] >= 0) {
+                        double area = tree.area(leaves[i]);
+                        if (area > largestArea) {
+                            largestArea = area;
+                            largest = i;
+                        }
+                    }
+                }
+                if (largest < 0) break;
+                int opened = leaves[largest];
+                internals[internalCount++] = opened;
+                leaves[largest] = tree.left[opened];
+                leaves[leafCount++] = tree.right[opened];
+            }
+            if (leafCount < 3) return;
+
+            // Cheapest tree over every subset of the leaves; a subset's proper subsets are
+            // numerically smaller, so one ascending pass sees them first
+            int subsets = 1 << leafCount;
+            double[] bounds = scratch.bounds;
+            double[] cost = scratch.cost;
+            int[] partition = scratch.partition;
+            int[] height = scratch.height;
+            for (int set = 1; set < subsets; set++) {
+                int lowest = Integer.numberOfTrailingZeros(set);
+                int rest = set & (set - 1);
+                if (rest == 0) {
+                    System.arraycopy(tree.bounds, leaves[lowest] * 6, bounds, set * 6, 6);
+                    cost[set] = tree.cost[leaves[lowest]];
+                    height[set] = tree.height[leaves[lowest]];
+                    continue;
+                }
+                System.arraycopy(bounds, rest * 6, bounds, set * 6, 6);
+                growBounds(bounds, set * 6, tree.bounds, leaves[lowest] * 6);
+
+                double best = Double.MAX_VALUE;
+                int bestPart = 0;
+                int lowBit = set & -set;
+                for (int part = (set - 1) & set; part > 0; part = (part - 1) & set) {
+                    if ((part & lowBit) == 0) continue;
+                    double partCost = cost[part] + cost[set ^ part];
+                    if (partCost < best) {
+                        best = partCost;
+                        bestPart = part;
+                    }
+                }
+                int o = set * 6;
+                cost[set] = TRAVERSAL_COST * surfaceArea(bounds[o], bounds[o + 1], bounds[o + 2],
+                        bounds[o + 3], bounds[o + 4], bounds[o + 5]) + best;
+                partition[set] = bestPart;
+                height[set] = 1 + Math.max(height[bestPart], height[set ^ bestPart]);
+            }
+
+            int all = subsets - 1;
+            if (cost[all] >= tree.cost[node] * (1 - 1e-9) || height[all] > MAX_SAH_DEPTH) {
+                return;
+            }
+            scratch.cursor = 0;
+            emit(tree, scratch, all);
         }
 
         /**
-         * The main computation performed by this task.
+         * Rewires the treelet's internal nodes into the tree chosen for a subset of its
+         * leaves, the whole set landing on the treelet root.
          *
-         * @return The BVHNode constructed by this task
+         * @return Node of the subset
          */
-        @Override
-        protected BVHNode compute() {
-            if (triangleIndices.isEmpty()) {
-                return null;
+        private static int emit(MortonTree tree, TreeletScratch scratch, int set) {
+            if ((set & (set - 1)) == 0) {
+                return scratch.leaves[Integer.numberOfTrailingZeros(set)];
             }
+            int slot = scratch.internals[scratch.cursor++];
+            int part = scratch.partition[set];
+            int leftNode = emit(tree, scratch, part);
+            int rightNode = emit(tree, scratch, set ^ part);
+            tree.left[slot] = leftNode;
+            tree.right[slot] = rightNode;
+            updateInternal(tree, slot);
+            return slot;
+        }
+    }
+
+    /**
+     * Converts the final LBVH into {@link BVHNode} objects.
+     */
+    @SuppressWarnings("serial") // Fork/join tasks are never serialized
+    private class MortonNodeTask extends RecursiveTask<BVHNode> {
+        private final MortonTree tree;
+        private final int node;
+        private final int depth;
+
+        MortonNodeTask(MortonTree tree, int node, int depth) {
+            this.tree = tree;
+            this.node = node;
+            this.depth = depth;
+        }
 
+        @Override
+        protected BVHNode compute() {
             totalNodes.incrementAndGet();
-            maxDepthReached.updateAndGet(d -> Math.max(d, currentDepth));
+            maxDepthReached.updateAndGet(d -> Math.max(d, depth));
 
-            Cube nodeBoundingBox = calculateBoundingBox(triangleIndices);
+            int o = node * 6;
+            Cube nodeBoundingBox = new Cube(new Vector3D(tree.bounds[o], tree.bounds[o + 1], tree.bounds[o + 2]),
+                    new Vector3D(tree.bounds[o + 3], tree.bounds[o + 4], tree.bounds[o + 5]));
 
-            // If we've reached max depth or have few triangles, create leaf node
-            if (currentDepth >= maxBVHDepth || triangleIndices.size() <= trianglesPerLeaf) {
-                updateLeafStatistics(triangleIndices.size());
-                return new BVHLeafNode(nodeBoundingBox, new ArrayList<>(triangleIndices));
+            if (tree.left[node] < 0) {
+                int count = tree.count[node];
+                List<Integer> leafIndices = new ArrayList<>(count);
+                for (int i = tree.first[node]; i < tree.first[node] + count; i++) {
+                    leafIndices.add((int) tree.keys[i]);
+                }
+                updateLeafStatistics(count);
+                return new BVHLeafNode(nodeBoundingBox, leafIndices);
             }
 
-            // Find the optimal split
-            BVHSplit bestSplit = findOptimalSplit(triangleIndices, nodeBoundingBox);
+            MortonNodeTask leftTask = new MortonNodeTask(tree, tree.left[node], depth + 1);
+            MortonNodeTask rightTask = new MortonNodeTask(tree, tree.right[node], depth + 1);
+            if (tree.count[node] <= LBVH_SEQUENTIAL_THRESHOLD) {
+                return new BVHInternalNode(nodeBoundingBox, leftTask.compute(), rightTask.compute());
+            }
+            leftTask.fork();
+            BVHNode rightChild = rightTask.compute();
+            return new BVHInternalNode(nodeBoundingBox, leftTask.join(), rightChild);
+        }
+    }
 
-            // If no good split found, create leaf node
-            if (bestSplit == null || bestSplit.cost >= triangleIndices.size() * 1.0) {
-                updateLeafStatistics(triangleIndices.size());
-                return new BVHLeafNode(nodeBoundingBox, new ArrayList<>(triangleIndices));
+    /**
+     * Per-thread storage of the treelet optimization, reused by every treelet.
+     */
+    private static class TreeletScratch {
+        final int[] leaves = new int[TREELET_LEAVES];
+        final int[] internals = new int[TREELET_LEAVES - 1];
+        final double[] bounds = new double[(1 << TREELET_LEAVES) * 6];
+        final double[] cost = new double[1 << TREELET_LEAVES];
+        final int[] partition = new int[1 << TREELET_LEAVES];
+        final int[] height = new int[1 << TREELET_LEAVES];
+        int cursor;
+    }
+
+    /**
+     * Finds the best binned SAH split of a range and partitions the range around it.
+     * The bounds of both halves come out of the bins and the partition, so children never
+     * rescan their triangles to find them.
+     *
+     * @param triangleIndices Shared triangle index array, reordered in place
+     * @param start First index of the range
+     * @param end End (exclusive) of the range
+     * @param box Triangle and centroid bounds of the range
+     * @param leftBox Out: triangle and centroid bounds of the left half
+     * @param rightBox Out: triangle and centroid bounds of the right half
+     * @return Index where the right half starts, or -1 if the range should become a leaf
+     */
+    private int partitionBinned(int[] triangleIndices, int start, int end, double[] box,
+                                double[] leftBox, double[] rightBox) {
+        int count = end - start;
+        SplitCandidate split = BIN_SCRATCH.get().objectSplit;
+        findObjectSplit(slotBounds, slotCentroids, start, end, box, split);
+
+        if (split.axis < 0) {
+            // All centroids coincide; split arbitrarily so leaves stay bounded
+            if (count <= MAX_SAH_LEAF_SIZE) {
+                return -1;
             }
+            int middle = start + count / 2;
+            System.arraycopy(calculateRangeBounds(triangleIndices, start, middle), 0, leftBox, 0, 12);
+            System.arraycopy(calculateRangeBounds(triangleIndices, middle, end), 0, rightBox, 0, 12);
+            return middle;
+        }
 
-            // Process children - only fork if the subproblems are large enough
-            BVHBuildTask leftTask = new BVHBuildTask(bestSplit.leftIndices, currentDepth + 1);
-            BVHBuildTask rightTask = new BVHBuildTask(bestSplit.rightIndices, currentDepth + 1);
+        // Keep the range as a leaf when splitting costs more than testing every triangle
+        if (split.cost >= count && count <= MAX_SAH_LEAF_SIZE) {
+            return -1;
+        }
 
-            // For small tasks, just compute sequentially
-            if (triangleIndices.size() <= SEQUENTIAL_THRESHOLD) {
-                BVHNode leftChild = leftTask.compute();
-                BVHNode rightChild = rightTask.compute();
-                return new BVHInternalNode(nodeBoundingBox, leftChild, rightChild);
+        System.arraycopy(split.leftBounds, 0, leftBox, 0, 6);
+        System.arraycopy(split.rightBounds, 0, rightBox, 0, 6);
+
+        // Partition in place around the chosen bin boundary
+        double centroidMin = box[6 + split.axis];
+        double scale = split.bins / (box[9 + split.axis] - centroidMin);
+        int i = start;
+        int j = end - 1;
+        while (i <= j) {
+            if (binIndex(slotCentroids[i * 3 + split.axis], centroidMin, scale, split.bins) <= split.bin) {
+                i++;
             } else {
-                // For larger tasks, compute in parallel
-                leftTask.fork();
-                BVHNode rightChild = rightTask.compute();
-                BVHNode leftChild = leftTask.join();
-                return new BVHInternalNode(nodeBoundingBox, leftChild, rightChild);
+                swapSlots(triangleIndices, i, j);
+                j--;
+            }
+        }
+
+        calculateCentroidBounds(triangleIndices, start, i, leftBox);
+        calculateCentroidBounds(triangleIndices, i, end, rightBox);
+        return i;
+    }
+
+    /**
+     * Finds the best binned SAH object split of a range of bounds. Centroids are binned on
+     * all three axes in one pass; a suffix sweep stores the area and count right of each bin
+     * boundary, and a prefix sweep then evaluates the cost of every boundary.
+     *
+     * @param bounds Bounds of the items, six doubles per position
+     * @param centroids Centroids of the items, three doubles per position
+     * @param start First position of the range
+     * @param end End (exclusive) of the range
+     * @param box Bounds (0-5) and centroid bounds (6-11) of the range
+     * @param split Out: the best split; its axis is -1 if no boundary separates the range
+     */
+    private void findObjectSplit(double[] bounds, double[] centroids, int start, int end, double[] box,
+                                 SplitCandidate split) {
+        int count = end - start;
+        // Small ranges gain nothing from more bins than triangles, but pay to clear them
+        int bins = Math.max(MIN_BINS, Math.min(binCount, count));
+        double nodeArea = surfaceArea(box[0], box[1], box[2], box[3], box[4], box[5]);
+        if (!(nodeArea > 0)) {
+            nodeArea = 1.0; // Degenerate node, only the relative cost of the splits matters
+        }
+
+        BinScratch scratch = BIN_SCRATCH.get();
+        double[] binBounds = scratch.binBounds;
+        int[] binCounts = scratch.binCounts;
+        double[] rightAreas = scratch.rightAreas;
+        int[] rightCounts = scratch.rightCounts;
+        for (int b = 0; b < 3 * bins; b++) {
+            binCounts[b] = 0;
+            resetBounds(binBounds, b * 6);
+        }
+
+        // Axes where every centroid lies on the same plane cannot be split
+        double minX = box[6], minY = box[7], minZ = box[8];
+        double extentX = box[9] - minX, extentY = box[10] - minY, extentZ = box[11] - minZ;
+        double scaleX = extentX > 0 ? bins / extentX : 0.0;
+        double scaleY = extentY > 0 ? bins / extentY : 0.0;
+        double scaleZ = extentZ > 0 ? bins / extentZ : 0.0;
+
+        // Bin every triangle on the three axes at once, reading its bounds once
+        for (int i = start; i < end; i++) {
+            int c = i * 3;
+            int t = i * 6;
+            double loX = bounds[t], loY = bounds[t + 1], loZ = bounds[t + 2];
+            double hiX = bounds[t + 3], hiY = bounds[t + 4], hiZ = bounds[t + 5];
+
+            growBin(binBounds, binCounts, binIndex(centroids[c], minX, scaleX, bins),
+                    loX, loY, loZ, hiX, hiY, hiZ);
+            growBin(binBounds, binCounts, bins + binIndex(centroids[c + 1], minY, scaleY, bins),
+                    loX, loY, loZ, hiX, hiY, hiZ);
+            growBin(binBounds, binCounts, 2 * bins + binIndex(centroids[c + 2], minZ, scaleZ, bins),
+                    loX, loY, loZ, hiX, hiY, hiZ);
+        }
+
+        double bestCost = Double.MAX_VALUE;
+        int bestAxis = -1;
+        int bestBin = -1;
+
+        for (int axis = 0; axis < 3; axis++) {
+            if (!(box[9 + axis] - box[6 + axis] > 0)) continue;
+            int first = axis * bins;
+
+            // Suffix sweep: area and count of bins [b, bins)
+            double aX = Double.MAX_VALUE, aY = Double.MAX_VALUE, aZ = Double.MAX_VALUE;
+            double bX = -Double.MAX_VALUE, bY = -Double.MAX_VALUE, bZ = -Double.MAX_VALUE;
+            int rightCount = 0;
+            for (int b = bins - 1; b > 0; b--) {
+                int binTriangles = binCounts[first + b];
+                if (binTriangles > 0) {
+                    int o = (first + b) * 6;
+                    if (binBounds[o] < aX) aX = binBounds[o];
+                    if (binBounds[o + 1] < aY) aY = binBounds[o + 1];
+                    if (binBounds[o + 2] < aZ) aZ = binBounds[o + 2];
+                    if (binBounds[o + 3] > bX) bX = binBounds[o + 3];
+                    if (binBounds[o + 4] > bY) bY = binBounds[o + 4];
+                    if (binBounds[o + 5] > bZ) bZ = binBounds[o + 5];
+                    rightCount += binTriangles;
+                }
+                rightCounts[b] = rightCount;
+                rightAreas[b] = rightCount > 0 ? surfaceArea(aX, aY, aZ, bX, bY, bZ) : 0.0;
+            }
+
+            // Prefix sweep: evaluate the boundary after every bin
+            aX = Double.MAX_VALUE; aY = Double.MAX_VALUE; aZ = Double.MAX_VALUE;
+            bX = -Double.MAX_VALUE; bY = -Double.MAX_VALUE; bZ = -Double.MAX_VALUE;
+            int leftCount = 0;
+            for (int b = 0; b < bins - 1; b++) {
+                int binTriangles = binCounts[first + b];
+                if (binTriangles > 0) {
+                    int o = (first + b) * 6;
+                    if (binBounds[o] < aX) aX = binBounds[o];
+                    if (binBounds[o + 1] < aY) aY = binBounds[o + 1];
+                    if (binBounds[o + 2] < aZ) aZ = binBounds[o + 2];
+                    if (binBounds[o + 3] > bX) bX = binBounds[o + 3];
+                    if (binBounds[o + 4] > bY) bY = binBounds[o + 4];
+                    if (binBounds[o + 5] > bZ) bZ = binBounds[o + 5];
+                    leftCount += binTriangles;
+                }
+                if (leftCount == 0 || rightCounts[b + 1] == 0) continue;
+
+                // SAH cost: traversal + (areaL * nL + areaR * nR) / areaTotal
+                double cost = TRAVERSAL_COST + (surfaceArea(aX, aY, aZ, bX, bY, bZ) * leftCount +
+                        rightAreas[b + 1] * rightCounts[b + 1]) / nodeArea;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = axis;
+                    bestBin = b;
+                }
+            }
+        }
+
+        split.axis = bestAxis;
+        split.bin = bestBin;
+        split.bins = bins;
+        split.cost = bestCost;
+        if (bestAxis < 0) return;
+
+        // Bounds of both halves are the union of their bins
+        resetBounds(split.leftBounds, 0);
+        resetBounds(split.rightBounds, 0);
+        for (int b = 0; b < bins; b++) {
+            int bin = bestAxis * bins + b;
+            if (binCounts[bin] > 0) {
+                growBounds(b <= bestBin ? split.leftBounds : split.rightBounds, 0, binBounds, bin * 6);
             }
         }
     }
 
+    /**
+     * Adds a triangle's bounds to a bin.
+     */
+    private static void growBin(double[] binBounds, int[] binCounts, int bin,
+                                double loX, double loY, double loZ, double hiX, double hiY, double hiZ) {
+        binCounts[bin]++;
+        int o = bin * 6;
+        if (loX < binBounds[o]) binBounds[o] = loX;
+        if (loY < binBounds[o + 1]) binBounds[o + 1] = loY;
+        if (loZ < binBounds[o + 2]) binBounds[o + 2] = loZ;
+        if (hiX > binBounds[o + 3]) binBounds[o + 3] = hiX;
+        if (hiY > binBounds[o + 4]) binBounds[o + 4] = hiY;
+        if (hiZ > binBounds[o + 5]) binBounds[o + 5] = hiZ;
+    }
+
+    /**
+     * Stores the centroid bounds of a range of positions at offset 6 of a box, kept in
+     * locals while scanning so the loop does not go through the arrays.
+     */
+    private void calculateCentroidBounds(int[] triangleIndices, int start, int end, double[] box) {
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+        for (int i = start; i < end; i++) {
+            int c = i * 3;
+            double x = slotCentroids[c], y = slotCentroids[c + 1], z = slotCentroids[c + 2];
+            if (x < minX) minX = x;
+            if (y < minY) minY = y;
+            if (z < minZ) minZ = z;
+            if (x > maxX) maxX = x;
+            if (y > maxY) maxY = y;
+            if (z > maxZ) maxZ = z;
+        }
+        box[6] = minX;
+        box[7] = minY;
+        box[8] = minZ;
+        box[9] = maxX;
+        box[10] = maxY;
+        box[11] = maxZ;
+    }
+
+    /**
+     * Swaps two positions of the binned builder's index array together with their bounds
+     * and centroids.
+     */
+    private void swapSlots(int[] triangleIndices, int a, int b) {
+        int index = triangleIndices[a];
+        triangleIndices[a] = triangleIndices[b];
+        triangleIndices[b] = index;
+
+        for (int k = 0; k < 6; k++) {
+            double value = slotBounds[a * 6 + k];
+            slotBounds[a * 6 + k] = slotBounds[b * 6 + k];
+            slotBounds[b * 6 + k] = value;
+        }
+        for (int k = 0; k < 3; k++) {
+            double value = slotCentroids[a * 3 + k];
+            slotCentroids[a * 3 + k] = slotCentroids[b * 3 + k];
+            slotCentroids[b * 3 + k] = value;
+        }
+    }
+
+    /**
+     * Sets a box stored at an offset of an array to an empty box.
+     */
+    private static void resetBounds(double[] box, int offset) {
+        for (int k = 0; k < 3; k++) {
+            box[offset + k] = Double.MAX_VALUE;
+            box[offset + 3 + k] = -Double.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Grows a box stored at an offset of an array to contain another box.
+     */
+    private static void growBounds(double[] box, int offset, double[] other, int otherOffset) {
+        // Plain comparisons: bounds are never NaN, and Math.min/max are slower in this hot loop
+        for (int k = 0; k < 3; k++) {
+            double min = other[otherOffset + k];
+            double max = other[otherOffset + 3 + k];
+            if (min < box[offset + k]) box[offset + k] = min;
+            if (max > box[offset + 3 + k]) box[offset + 3 + k] = max;
+        }
+    }
+
+    /**
+     * Grows a box stored at an offset of an array to contain a point.
+     */
+    private static void growPoint(double[] box, int offset, double[] point, int pointOffset) {
+        for (int k = 0; k < 3; k++) {
+            double value = point[pointOffset + k];
+            if (value < box[offset + k]) box[offset + k] = value;
+            if (value > box[offset + 3 + k]) box[offset + 3 + k] = value;
+        }
+    }
+
+    /**
+     * Maps a centroid coordinate to its bin.
+     */
+    private static int binIndex(double centroid, double centroidMin, double scale, int bins) {
+        int b = (int) ((centroid - centroidMin) * scale);
+        return b >= bins ? bins - 1 : b;
+    }
+
+    /**
+     * Calculates the tight triangle bounds and the centroid bounds of a range of positions
+     * of the binned builder's index array.
+     *
+     * @return Triangle min (0-2), triangle max (3-5), centroid min (6-8), centroid max (9-11)
+     */
+    private double[] calculateRangeBounds(int[] triangleIndices, int start, int end) {
+        double[] box = new double[12];
+        resetBounds(box, 0);
+        resetBounds(box, 6);
+
+        for (int i = start; i < end; i++) {
+            growBounds(box, 0, slotBounds, i * 6);
+            growPoint(box, 6, slotCentroids, i * 3);
+        }
+        return box;
+    }
+
+    /**
+     * Calculates the surface area of a box given by its corners.
+     */
+    private static double surfaceArea(double minX, double minY, double minZ,
+                                      double maxX, double maxY, double maxZ) {
+        double x = maxX - minX;
+        double y = maxY - minY;
+        double z = maxZ - minZ;
+        return 2.0 * (x * y + x * z + y * z);
+    }
+
     /**
      * Finds the optimal split for a set of triangles using Surface Area Heuristic.
      *
@@ -235,8 +1946,7 @@ public class BVHGenerator {
                 List<Integer> rightIndices = new ArrayList<>();
 
                 for (int index : triangleIndices) {
-                    Vector3D center = triangleCentroids[index];
-                    if (center.getComponent(axis) <= splitValue) {
+                    if (triangleCentroids[index * 3 + axis] <= splitValue) {
                         leftIndices.add(index);
                     } else {
                         rightIndices.add(index);
@@ -334,27 +2044,22 @@ public class BVHGenerator {
             return new Cube(new Vector3D(0, 0, 0), new Vector3D(1e-6, 1e-6, 1e-6));
         }
 
-        Vector3D min = new Vector3D(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
-        Vector3D max = new Vector3D(-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE);
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
 
         for (int index : triangleIndices) {
-            Triangle triangle = triangleList.get(index);
-            Vector3D[] vertices = { triangle.getVertex1(), triangle.getVertex2(), triangle.getVertex3() };
-
-            for (Vector3D v : vertices) {
-                min = new Vector3D(
-                        Math.min(min.getX(), v.getX()),
-                        Math.min(min.getY(), v.getY()),
-                        Math.min(min.getZ(), v.getZ())
-                );
-                max = new Vector3D(
-                        Math.max(max.getX(), v.getX()),
-                        Math.max(max.getY(), v.getY()),
-                        Math.max(max.getZ(), v.getZ())
-                );
-            }
+            int b = index * 6;
+            minX = Math.min(minX, triangleBounds[b]);
+            minY = Math.min(minY, triangleBounds[b + 1]);
+            minZ = Math.min(minZ, triangleBounds[b + 2]);
+            maxX = Math.max(maxX, triangleBounds[b + 3]);
+            maxY = Math.max(maxY, triangleBounds[b + 4]);
+            maxZ = Math.max(maxZ, triangleBounds[b + 5]);
         }
 
+        Vector3D min = new Vector3D(minX, minY, minZ);
+        Vector3D max = new Vector3D(maxX, maxY, maxZ);
+
         // Apply margin to bounding box
         Vector3D dimensions = new Vector3D(
                 max.getX() - min.getX(),
@@ -381,6 +2086,54 @@ public class BVHGenerator {
         return new Cube(newMin, newMax);
     }
 
+    /**
+     * Bin storage of the binned SAH builder. A node is fully split before its children are
+     * built, so one instance per thread serves every node that thread processes.
+     */
+    private static class BinScratch {
+        /** Triangle bounds of every bin of the three axes */
+        final double[] binBounds = new double[3 * MAX_BINS * 6];
+
+        /** Triangle count of every bin of the three axes */
+        final int[] binCounts = new int[3 * MAX_BINS];
+
+        /** Area of the bins right of each boundary */
+        final double[] rightAreas = new double[MAX_BINS];
+
+        /** Triangle count right of each boundary */
+        final int[] rightCounts = new int[MAX_BINS];
+
+        /** Exit count of every spatial bin */
+        final int[] exitCounts = new int[MAX_BINS];
+
+        /** Result of the last object split search */
+        final SplitCandidate objectSplit = new SplitCandidate();
+
+        /** Result of the last spatial split search */
+        final SplitCandidate spatialSplit = new SplitCandidate();
+    }
+
+    /**
+     * Best binned object split found for a node.
+     */
+    private static class SplitCandidate {
+        /** Split axis, or -1 if no boundary separates the node */
+        int axis;
+
+        /** Last bin of the left half */
+        int bin;
+
+        /** Number of bins the axis was divided into */
+        int bins;
+
+        /** SAH cost of the split */
+        double cost;
+
+        /** Bounds of the left and right halves */
+        final double[] leftBounds = new double[6];
+        final double[] rightBounds = new double[6];
+    }
+
     /**
      * Helper class to store information about a potential BVH split.
      */
@@ -0,0 +1,451 @@
+package Objects.WrapperBoxes;
+
+import Objects.Cube;
+
+import java.util.List;
+
+/**
+ * Compact, array-backed form of a BVH produced by {@link BVHGenerator}.
+ * @author José Eduardo Moreno Paredes
+ * Nodes are stored in depth-first order so the left child of an internal node is always
+ * the next node; only the right child offset is kept. Bounds live in a single double[]
+ * (six values per node) and every leaf references a contiguous range of one shared
+ * triangle index array, so traversal touches primitive arrays only.
+ * Optionally, the Möller–Trumbore data of every triangle (first vertex and two edges) is
+ * precomputed in leaf order, so the intersection test reads it sequentially without
+ * going back to the triangles.
+ */
+public class LinearBVH {
+    /** Number of doubles stored per node in {@link #bounds} */
+    public static final int BOUNDS_STRIDE = 6;
+
+    /** Number of ints stored per node in {@link #nodes} */
+    public static final int NODE_STRIDE = 2;
+
+    /** Number of doubles stored per leaf entry in {@link #triangleData} */
+    public static final int TRIANGLE_STRIDE = 9;
+
+    /** Node bounds as minX, minY, minZ, maxX, maxY, maxZ */
+    private final double[] bounds;
+
+    /**
+     * Node data as pairs: for internal nodes (right child index, -1),
+     * for leaves (first entry in {@link #triangleIndices}, triangle count)
+     */
+    private final int[] nodes;
+
+    /** Triangle indices of all leaves, stored contiguously per leaf */
+    private final int[] triangleIndices;
+
+    /**
+     * Precomputed intersection data aligned with {@link #triangleIndices}:
+     * v0 (x, y, z), v1 - v0 (x, y, z), v2 - v0 (x, y, z). Null if not precomputed.
+     */
+    private final double[] triangleData;
+
+    /** Largest edge change, relative to the triangle's coordinates, still treated as a pure move */
+    private static final double MOVE_TOLERANCE = 1e-9;
+
+    /** Number of nodes in the hierarchy */
+    private final int nodeCount;
+
+    /** Write cursors used while flattening */
+    private int nextNode;
+    private int nextTriangle;
+
+    /**
+     * Flattens a pointer based BVH into its linear form.
+     *
+     * @param root Root node returned by {@link BVHGenerator#buildBVH()}
+     */
+    public LinearBVH(BVHNode root) {
+        this(root, null);
+    }
+
+    /**
+     * Flattens a pointer based BVH and precomputes the edge vectors of its triangles.
+     *
+     * @param root     Root node returned by {@link BVHGenerator#buildBVH()}
+     * @param vertices Triangle corners packed as nine doubles per triangle, as returned by
+     *                 {@link BVHGenerator#getTriangleVertices()}, or null to skip precomputation
+     */
+    public LinearBVH(BVHNode root, double[] vertices) {
+        this.nodeCount = countNodes(root);
+        this.bounds = new double[nodeCount * BOUNDS_STRIDE];
+        this.nodes = new int[nodeCount * NODE_STRIDE];
+        this.triangleIndices = new int[countTriangles(root)];
+        flatten(root);
+        if (vertices != null) {
+            tighten(vertices);
+        }
+        this.triangleData = vertices != null ? precomputeTriangles(vertices) : null;
+    }
+
+    /**
+     * Wraps a hierarchy that is already flattened, e.g. one read back from a mesh cache file.
+     *
+     * @param bounds          Node bounds, six doubles per node
+     * @param nodes           Node data, two ints per node, in depth-first order
+     * @param triangleIndices Triangle indices referenced by the leaves
+     * @param vertices        Triangle corners packed as nine doubles per triangle, or null
+     *                        to skip precomputation
+     * @throws IllegalArgumentException if the array sizes do not match
+     */
+    public LinearBVH(double[] bounds, int[] nodes, int[] triangleIndices, double[] vertices) {
+        if (nodes.length % NODE_STRIDE != 0 || bounds.length != nodes.length / NODE_STRIDE * BOUNDS_STRIDE) {
+            throw new IllegalArgumentException("Bounds and nodes describe different node counts");
+        }
+        this.nodeCount = nodes.length / NODE_STRIDE;
+        this.bounds = bounds;
+        this.nodes = nodes;
+        this.triangleIndices = triangleIndices;
+        if (vertices != null) {
+            tighten(vertices);
+        }
+        this.triangleData = vertices != null ? precomputeTriangles(vertices) : null;
+    }
+
+    /**
+     * Returns the number of nodes in the hierarchy.
+     *
+     * @return Node count
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the packed node bounds (six doubles per node).
+     *
+     * @return Bounds array
+     */
+    public double[] getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Returns the packed node data (two ints per node).
+     *
+     * @return Node array
+     */
+    public int[] getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the triangle indices referenced by the leaves.
+     *
+     * @return Triangle index array
+     */
+    public int[] getTriangleIndices() {
+        return triangleIndices;
+    }
+
+    /**
+     * Returns the precomputed intersection data (nine doubles per leaf entry).
+     *
+     * @return Triangle data array, or null if it was not precomputed
+     */
+    public double[] getTriangleData() {
+        return triangleData;
+    }
+
+    /**
+     * Checks whether a node is a leaf.
+     *
+     * @param node Node index
+     * @return true if the node is a leaf
+     */
+    public boolean isLeaf(int node) {
+        return nodes[node * NODE_STRIDE + 1] >= 0;
+    }
+
+    /**
+     * Updates the hierarchy in place after the triangles moved, keeping its topology:
+     * leaf bounds are recomputed from the new corners and internal bounds grow bottom-up
+     * from their children. Children always come after their parent in depth-first order,
+     * so one backwards pass over the nodes is enough. The precomputed intersection data is
+     * refreshed too. Must not run while rays traverse the hierarchy.
+     * <p>
+     * Leaves of a spatial-split build can be tighter than their triangles, since a triangle
+     * split between nodes only counts its part inside each one. When the intersection data
+     * was precomputed, a triangle whose edges did not change only moved, so its part of the
+     * old leaf box moves with it and the split stays as tight; only reshaped triangles grow
+     * their leaf to their whole bounds. A refit without motion therefore leaves the bounds,
+     * and {@link #getSAHCost()}, unchanged for every build method.
+     *
+     * @param vertices Triangle corners packed as nine doubles per triangle, in the same
+     *                 triangle order the hierarchy was built with
+     */
+    public void refit(double[] vertices) {
+        double[] oldLeaf = new double[BOUNDS_STRIDE];
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            int base = node * BOUNDS_STRIDE;
+            int first = nodes[node * NODE_STRIDE];
+            int count = nodes[node * NODE_STRIDE + 1];
+
+            if (count == 0) {
+                continue; // Empty leaf keeps its inverted box
+            }
+
+            System.arraycopy(bounds, base, oldLeaf, 0, BOUNDS_STRIDE);
+            bounds[base] = bounds[base + 1] = bounds[base + 2] = Double.MAX_VALUE;
+            bounds[base + 3] = bounds[base + 4] = bounds[base + 5] = -Double.MAX_VALUE;
+            if (count > 0) {
+                for (int i = first; i < first + count; i++) {
+                    int v = triangleIndices[i] * 9;
+                    if (triangleData != null && growMovedPart(base, i, vertices, v, oldLeaf)) {
+                        continue;
+                    }
+                    for (int corner = 0; corner < 9; corner += 3) {
+                        growBounds(base, vertices[v + corner], vertices[v + corner + 1], vertices[v + corner + 2]);
+                    }
+                }
+            } else {
+                int left = (node + 1) * BOUNDS_STRIDE;
+                int right = first * BOUNDS_STRIDE;
+                growBounds(base, bounds[left], bounds[left + 1], bounds[left + 2]);
+                growBounds(base, bounds[left + 3], bounds[left + 4], bounds[left + 5]);
+                growBounds(base, bounds[right], bounds[right + 1], bounds[right + 2]);
+                growBounds(base, bounds[right + 3], bounds[right + 4], bounds[right + 5]);
+            }
+        }
+
+        if (triangleData != null) {
+            fillTriangleData(vertices, triangleData);
+        }
+    }
+
+    /**
+     * Shrinks every box to what it holds: leaves to the bounds of their triangles, internal
+     * nodes to their children. Boxes are only ever intersected with those bounds, so the
+     * clipped leaves of a spatial-split build keep their clipping, and a refit without
+     * motion finds the same boxes for every build method.
+     */
+    private void tighten(double[] vertices) {
+        double[] content = new double[BOUNDS_STRIDE];
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            int base = node * BOUNDS_STRIDE;
+            int first = nodes[node * NODE_STRIDE];
+            int count = nodes[node * NODE_STRIDE + 1];
+            if (count == 0) continue;
+
+            content[0] = content[1] = content[2] = Double.MAX_VALUE;
+            content[3] = content[4] = content[5] = -Double.MAX_VALUE;
+            if (count > 0) {
+                for (int i = first; i < first + count; i++) {
+                    int v = triangleIndices[i] * 9;
+                    for (int corner = 0; corner < 9; corner += 3) {
+                        for (int axis = 0; axis < 3; axis++) {
+                            content[axis] = Math.min(content[axis], vertices[v + corner + axis]);
+                            content[3 + axis] = Math.max(content[3 + axis], vertices[v + corner + axis]);
+                        }
+                    }
+                }
+            } else {
+                int left = (node + 1) * BOUNDS_STRIDE;
+                int right = first * BOUNDS_STRIDE;
+                for (int axis = 0; axis < 3; axis++) {
+                    content[axis] = Math.min(bounds[left + axis], bounds[right + axis]);
+                    content[3 + axis] = Math.max(bounds[left + 3 + axis], bounds[right + 3 + axis]);
+                }
+            }
+
+            for (int axis = 0; axis < 3; axis++) {
+                bounds[base + axis] = Math.max(bounds[base + axis], content[axis]);
+                bounds[base + 3 + axis] = Math.min(bounds[base + 3 + axis], content[3 + axis]);
+            }
+        }
+    }
+
+    /**
+     * Grows a leaf by the part of a triangle it held before the refit, moved along with
+     * the triangle, if the triangle was only translated: its edges, compared with the
+     * precomputed ones, are unchanged up to rounding. The moved part is padded by that
+     * rounding, so it still encloses the triangle's part of the leaf.
+     *
+     * @param base    Bounds offset of the leaf
+     * @param entry   Leaf entry of the triangle in {@link #triangleData}
+     * @param v       Offset of the triangle's corners in the new vertices
+     * @param oldLeaf Bounds the leaf had before the refit
+     * @return true if the leaf was grown, false if the triangle changed shape
+     */
+    private boolean growMovedPart(int base, int entry, double[] vertices, int v, double[] oldLeaf) {
+        int d = entry * TRIANGLE_STRIDE;
+        double magnitude = 0;
+        double edgeChange = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            double e1 = vertices[v + 3 + axis] - vertices[v + axis];
+            double e2 = vertices[v + 6 + axis] - vertices[v + axis];
+            magnitude = Math.max(magnitude, Math.max(Math.abs(vertices[v + axis]), Math.abs(triangleData[d + axis])));
+            magnitude = Math.max(magnitude, Math.max(Math.abs(e1), Math.abs(e2)));
+            edgeChange = Math.max(edgeChange, Math.max(Math.abs(e1 - triangleData[d + 3 + axis]),
+                    Math.abs(e2 - triangleData[d + 6 + axis])));
+        }
+        if (edgeChange > MOVE_TOLERANCE * magnitude) {
+            return false;
+        }
+
+        for (int axis = 0; axis < 3; axis++) {
+            double v0 = triangleData[d + axis];
+            double v1 = v0 + triangleData[d + 3 + axis];
+            double v2 = v0 + triangleData[d + 6 + axis];
+            // Corners rebuilt from the edges may be rounded inwards; the old leaf box clamps the pad
+            double rounding = 4 * Math.ulp(magnitude);
+            double min = Math.max(Math.min(v0, Math.min(v1, v2)) - rounding, oldLeaf[axis]);
+            double max = Math.min(Math.max(v0, Math.max(v1, v2)) + rounding, oldLeaf[3 + axis]);
+
+            double offset = vertices[v + axis] - v0;
+            if (offset != 0 || edgeChange != 0) {
+                // Pad by the edge change and the rounding of the move
+                double pad = edgeChange + 4 * Math.ulp(magnitude + Math.abs(offset));
+                min += offset - pad;
+                max += offset + pad;
+            }
+            if (min < bounds[base + axis]) bounds[base + axis] = min;
+            if (max > bounds[base + 3 + axis]) bounds[base + 3 + axis] = max;
+        }
+        return true;
+    }
+
+    /**
+     * Computes the Surface Area Heuristic cost of the hierarchy relative to its root box,
+     * with the same unit node and triangle costs the builder uses: the expected number of
+     * node visits plus triangle tests for a ray that enters the root. It grows as refits
+     * stretch the boxes of a hierarchy built for other vertex positions.
+     *
+     * @return SAH cost, or 0 if the root box has no area
+     */
+    public double getSAHCost() {
+        double rootArea = area(0);
+        if (!(rootArea > 0)) {
+            return 0;
+        }
+
+        double cost = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            int count = nodes[node * NODE_STRIDE + 1];
+            if (count == 0) continue;
+            double area = area(node);
+            cost += count > 0 ? area * count : BVHGenerator.TRAVERSAL_COST * area;
+        }
+        return cost / rootArea;
+    }
+
+    /**
+     * Surface area of a node's box.
+     */
+    private double area(int node) {
+        int base = node * BOUNDS_STRIDE;
+        double x = bounds[base + 3] - bounds[base];
+        double y = bounds[base + 4] - bounds[base + 1];
+        double z = bounds[base + 5] - bounds[base + 2];
+        return 2.0 * (x * y + x * z + y * z);
+    }
+
+    /**
+     * Grows the box of a node to contain a point.
+     */
+    private void growBounds(int base, double x, double y, double z) {
+        if (x < bounds[base]) bounds[base] = x;
+        if (y < bounds[base + 1]) bounds[base + 1] = y;
+        if (z < bounds[base + 2]) bounds[base + 2] = z;
+        if (x > bounds[base + 3]) bounds[base + 3] = x;
+        if (y > bounds[base + 4]) bounds[base + 4] = y;
+        if (z > bounds[base + 5]) bounds[base + 5] = z;
+    }
+
+    /**
+     * Stores the first vertex and both edges of every referenced triangle in leaf order.
+     */
+    private double[] precomputeTriangles(double[] vertices) {
+        double[] data = new double[triangleIndices.length * TRIANGLE_STRIDE];
+        fillTriangleData(vertices, data);
+        return data;
+    }
+
+    /**
+     * Writes the first vertex and both edges of every referenced triangle in leaf order.
+     */
+    private void fillTriangleData(double[] vertices, double[] data) {
+        for (int i = 0; i < triangleIndices.length; i++) {
+            int v = triangleIndices[i] * 9;
+            int d = i * TRIANGLE_STRIDE;
+            for (int axis = 0; axis < 3; axis++) {
+                double v0 = vertices[v + axis];
+                data[d + axis] = v0;
+                data[d + 3 + axis] = vertices[v + 3 + axis] - v0;
+                data[d + 6 + axis] = vertices[v + 6 + axis] - v0;
+            }
+        }
+    }
+
+    /**
+     * Counts the nodes of the pointer based tree. Missing children are
+     * emitted as empty leaves, so they count as one node.
+     */
+    private static int countNodes(BVHNode node) {
+        if (node == null || node.isLeaf()) {
+            return 1;
+        }
+        BVHInternalNode internal = (BVHInternalNode) node;
+        return 1 + countNodes(internal.getLeftChild()) + countNodes(internal.getRightChild());
+    }
+
+    /**
+     * Counts the triangle references stored in the leaves of the tree.
+     */
+    private static int countTriangles(BVHNode node) {
+        if (node == null) {
+            return 0;
+        }
+        if (node.isLeaf()) {
+            return ((BVHLeafNode) node).getTriangleIndices().size();
+        }
+        BVHInternalNode internal = (BVHInternalNode) node;
+        return countTriangles(internal.getLeftChild()) + countTriangles(internal.getRightChild());
+    }
+
+    /**
+     * Writes a node and its subtree in depth-first order.
+     *
+     * @return Index assigned to the node
+     */
+    private int flatten(BVHNode node) {
+        int index = nextNode++;
+        int base = index * BOUNDS_STRIDE;
+
+        if (node == null) {
+            // Empty leaf with an inverted box so no ray ever enters it
+            bounds[base] = bounds[base + 1] = bounds[base + 2] = Double.MAX_VALUE;
+            bounds[base + 3] = bounds[base + 4] = bounds[base + 5] = -Double.MAX_VALUE;
+            nodes[index * NODE_STRIDE] = nextTriangle;
+            nodes[index * NODE_STRIDE + 1] = 0;
+            return index;
+        }
+
+        Cube box = node.getBoundingBox();
+        bounds[base] = box.getMin().getX();
+        bounds[base + 1] = box.getMin().getY();
+        bounds[base + 2] = box.getMin().getZ();
+        bounds[base + 3] = box.getMax().getX();
+        bounds[base + 4] = box.getMax().getY();
+        bounds[base + 5] = box.getMax().getZ();
+
+        if (node.isLeaf()) {
+            List<Integer> leafTriangles = ((BVHLeafNode) node).getTriangleIndices();
+            nodes[index * NODE_STRIDE] = nextTriangle;
+            nodes[index * NODE_STRIDE + 1] = leafTriangles.size();
+            for (int triangle : leafTriangles) {
+                triangleIndices[nextTriangle++] = triangle;
+            }
+        } else {
+            BVHInternalNode internal = (BVHInternalNode) node;
+            flatten(internal.getLeftChild());
+            nodes[index * NODE_STRIDE] = flatten(internal.getRightChild());
+            nodes[index * NODE_STRIDE + 1] = -1;
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,181 @@
+package Objects.WrapperBoxes;
+
+import Objects.Cube;
+import Objects.MeshInstance;
+import Objects.ObjObject;
+import Objects.Object3D;
+import Objects.Sphere;
+import Objects.Triangle;
+import vectors.Vector3D;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Top-level Bounding Volume Hierarchy built over the world bounds of every object in a scene.
+ * @author José Eduardo Moreno Paredes
+ * Leaves reference objects by their index in the scene list, so the same {@link BVHInternalNode}
+ * and {@link BVHLeafNode} types used for triangle meshes are reused here. When a ray reaches an
+ * {@link ObjObject} leaf, traversal hands off to that object's own (bottom-level) BVH; a
+ * {@link MeshInstance} leaf hands off to the BVH of its shared mesh, in the mesh's space.
+ */
+public class SceneBVH {
+    /** Objects of the scene, indexed by the leaves of the hierarchy */
+    private final List<Object3D> objects;
+
+    /** Root node of the top-level hierarchy, or null if no object has bounds */
+    private final BVHNode root;
+
+    /** Maximum number of objects allowed in a leaf node */
+    private final int objectsPerLeaf = 2;
+
+    /**
+     * Builds the top-level BVH for the given scene objects.
+     * Objects without known world bounds are ignored, since they cannot be intersected either.
+     *
+     * @param objects List of objects in the scene
+     */
+    public SceneBVH(List<Object3D> objects) {
+        this.objects = objects;
+
+        Cube[] bounds = new Cube[objects.size()];
+        List<Integer> indices = new ArrayList<>(objects.size());
+        for (int i = 0; i < objects.size(); i++) {
+            bounds[i] = getWorldBounds(objects.get(i));
+            if (bounds[i] != null) {
+                indices.add(i);
+            }
+        }
+
+        this.root = indices.isEmpty() ? null : build(indices, bounds);
+    }
+
+    /**
+     * Returns the root node of the top-level BVH.
+     *
+     * @return BVH root node, or null if the scene is empty
+     */
+    public BVHNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the scene object referenced by a leaf index.
+     *
+     * @param index Index stored in a {@link BVHLeafNode}
+     * @return The referenced object
+     */
+    public Object3D getObject(int index) {
+        return objects.get(index);
+    }
+
+    /**
+     * Returns the list of objects this hierarchy was built from.
+     *
+     * @return List of scene objects
+     */
+    public List<Object3D> getObjects() {
+        return objects;
+    }
+
+    /**
+     * Computes the world space bounding box of an object.
+     *
+     * @param object The object to bound
+     * @return Its bounding box, or null if the object type has no known bounds
+     */
+    public static Cube getWorldBounds(Object3D object) {
+        if (object instanceof ObjObject objObject) {
+            return objObject.isLoaded() ? objObject.getCube() : null;
+        } else if (object instanceof MeshInstance instance) {
+            return instance.isLoaded() ? instance.getCube() : null;
+        } else if (object instanceof Sphere sphere) {
+            Vector3D center = sphere.getPosition();
+            double r = sphere.getRadius();
+            return new Cube(new Vector3D(center.getX() - r, center.getY() - r, center.getZ() - r),
+                    new Vector3D(center.getX() + r, center.getY() + r, center.getZ() + r));
+        } else if (object instanceof Triangle triangle) {
+            Vector3D v1 = triangle.getVertex1();
+            Vector3D v2 = triangle.getVertex2();
+            Vector3D v3 = triangle.getVertex3();
+            return new Cube(
+                    new Vector3D(Math.min(v1.getX(), Math.min(v2.getX(), v3.getX())),
+                            Math.min(v1.getY(), Math.min(v2.getY(), v3.getY())),
+                            Math.min(v1.getZ(), Math.min(v2.getZ(), v3.getZ()))),
+                    new Vector3D(Math.max(v1.getX(), Math.max(v2.getX(), v3.getX())),
+                            Math.max(v1.getY(), Math.max(v2.getY(), v3.getY())),
+                            Math.max(v1.getZ(), Math.max(v2.getZ(), v3.getZ()))));
+        }
+        return null;
+    }
+
+    /**
+     * Recursively builds the hierarchy by splitting objects at the median
+     * of their centers along the longest axis.
+     *
+     * @param indices Indices of the objects to place under this node
+     * @param bounds  World bounds of every object in the scene
+     * @return The constructed node
+     */
+    private BVHNode build(List<Integer> indices, Cube[] bounds) {
+        Cube nodeBox = union(indices, bounds);
+
+        if (indices.size() <= objectsPerLeaf) {
+            return new BVHLeafNode(nodeBox, new ArrayList<>(indices));
+        }
+
+        // Choose the axis along which object centers are most spread out
+        double[] centerMin = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] centerMax = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int index : indices) {
+            Vector3D center = bounds[index].getCenter();
+            for (int axis = 0; axis < 3; axis++) {
+                centerMin[axis] = Math.min(centerMin[axis], center.getComponent(axis));
+                centerMax[axis] = Math.max(centerMax[axis], center.getComponent(axis));
+            }
+        }
+
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (centerMax[a] - centerMin[a] > centerMax[axis] - centerMin[axis]) {
+                axis = a;
+            }
+        }
+
+        final int splitAxis = axis;
+        List<Integer> sorted = new ArrayList<>(indices);
+        sorted.sort(Comparator.comparingDouble(i -> bounds[i].getCenter().getComponent(splitAxis)));
+
+        int middle = sorted.size() / 2;
+        BVHNode left = build(new ArrayList<>(sorted.subList(0, middle)), bounds);
+        BVHNode right = build(new ArrayList<>(sorted.subList(middle, sorted.size())), bounds);
+
+        return new BVHInternalNode(nodeBox, left, right);
+    }
+
+    /**
+     * Calculates the bounding box enclosing the given objects.
+     *
+     * @param indices Indices of the objects to enclose
+     * @param bounds  World bounds of every object in the scene
+     * @return The enclosing bounding box
+     */
+    private Cube union(List<Integer> indices, Cube[] bounds) {
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+
+        for (int index : indices) {
+            Vector3D min = bounds[index].getMin();
+            Vector3D max = bounds[index].getMax();
+            minX = Math.min(minX, min.getX());
+            minY = Math.min(minY, min.getY());
+            minZ = Math.min(minZ, min.getZ());
+            maxX = Math.max(maxX, max.getX());
+            maxY = Math.max(maxY, max.getY());
+            maxZ = Math.max(maxZ, max.getZ());
+        }
+
+        return new Cube(new Vector3D(minX, minY, minZ), new Vector3D(maxX, maxY, maxZ));
+    }
+}
@@ -2,6 +2,7 @@ import Denoisser.Denoisser;
 import Lights.Light;
 import Lights.PointLight;
 import Materials.Texture;
+import Materials.TextureCache;
 import Objects.*;
 import PreBuildScenes.HunterScene;
 import PreBuildScenes.MuseumAngels;
@@ -58,7 +59,7 @@ public class ParrotScene {
             Vector3D scale = new Vector3D(3, 3, 3);             // Scale uniformly by 3x
 
             // Load the texture image for the parrot
-            Texture texture = new Texture("Textures/heavyParrot.png");
+            Texture texture = TextureCache.get("Textures/heavyParrot.png");
 
             // Log loading time (though actual loading of OBJ is inside loop when creating ObjObject)
             LocalDateTime loadObjEnd = LocalDateTime.now();
@@ -1,6 +1,7 @@
 package PreBuildScenes;
 
 import Materials.Texture;
+import Materials.TextureCache;
 import Objects.ObjObject;
 import Objects.Object3D;
 import ResuableElements.TipicalMaterials;
@@ -50,7 +51,7 @@ public class HunterScene {
         );
 
         // Apply a texture to the object
-        texture = new Texture("Textures/concreto.jpg");
+        texture = TextureCache.get("Textures/concreto.jpg");
         hunterModel.setTexture(texture);
 
         // Add the object to the scene
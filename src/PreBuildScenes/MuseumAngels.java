@@ -4,13 +4,14 @@ import Lights.Light;
 import Lights.PointLight;
 import Materials.Texture;
 import Objects.Object3D;
-import Objects.ObjObject;
 import ResuableElements.TipicalMaterials;
 import ResuableElements.TipicalObj;
+import Tools.SceneLoader;
 import vectors.Vector3D;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Represents a pre-built 3D scene resembling a museum setup,
@@ -30,10 +31,10 @@ public class MuseumAngels {
      * @return a list of {@code Object3D} objects composing the scene.
      */
     public static List<Object3D> getObjects() {
-        List<Object3D> object3DList = new ArrayList<>();
+        SceneLoader loader = new SceneLoader("MuseumAngels");
         String pathObj;
         Vector3D color, rotation, position, scale;
-        Texture texture;
+        CompletableFuture<Texture> texture;
 
         // Red carpet in the center
         pathObj = "ObjFiles/Objs/cube.obj";
@@ -41,23 +42,17 @@ public class MuseumAngels {
         rotation = new Vector3D(-90, 0, 0);
         position = new Vector3D(0, -20.5, -50);
         scale = new Vector3D(10.0, 140.0, 1.0);
-        ObjObject redCarpet = new ObjObject(TipicalMaterials.CLOTH_WOOL_RED, color, rotation, position, scale, pathObj);
-        texture = new Texture("Textures/tela_roja.png");
-        redCarpet.setTexture(texture);
-        object3DList.add(redCarpet);
+        texture = loader.texture("Textures/tela_roja.png");
+        loader.obj(TipicalMaterials.CLOTH_WOOL_RED, color, rotation, position, scale, pathObj, texture);
 
         // Yellow carpets on both sides
         position = new Vector3D(11, -20.6, -50);
         scale = new Vector3D(2.0, 140.0, 1.0);
-        ObjObject yellowCarpet1 = new ObjObject(TipicalMaterials.CLOTH_YELLOW, color, rotation, position, scale, pathObj);
-        texture = new Texture("Textures/tela_blanca.jpg");
-        yellowCarpet1.setTexture(texture);
-        object3DList.add(yellowCarpet1);
+        texture = loader.texture("Textures/tela_blanca.jpg");
+        loader.obj(TipicalMaterials.CLOTH_YELLOW, color, rotation, position, scale, pathObj, texture);
 
         position = new Vector3D(-11, -20.6, -50);
-        ObjObject yellowCarpet2 = new ObjObject(TipicalMaterials.CLOTH_YELLOW, color, rotation, position, scale, pathObj);
-        yellowCarpet2.setTexture(texture);
-        object3DList.add(yellowCarpet2);
+        loader.obj(TipicalMaterials.CLOTH_YELLOW, color, rotation, position, scale, pathObj, texture);
 
         // Floor
         pathObj = "ObjFiles/Objs/square.obj";
@@ -65,62 +60,48 @@ public class MuseumAngels {
         rotation = new Vector3D(-90, 0, 0);
         position = new Vector3D(0, -20, -75);
         scale = new Vector3D(90.0, 100.0, 80.0);
-        ObjObject floor = new ObjObject(TipicalMaterials.LEAF, color, rotation, position, scale, pathObj);
-        texture = new Texture("Textures/piso_mosaicos.jpg");
-        floor.setTexture(texture);
-        object3DList.add(floor);
+        texture = loader.texture("Textures/piso_mosaicos.jpg");
+        loader.obj(TipicalMaterials.LEAF, color, rotation, position, scale, pathObj, texture);
 
         // Ceiling
         rotation = new Vector3D(90, 0, 0);
         position = new Vector3D(0, 55, -60);
-        texture = new Texture("Textures/ClayPlasteres.jpg");
-        ObjObject ceiling = new ObjObject(TipicalMaterials.LEAF, color, rotation, position, scale, pathObj);
-        ceiling.setTexture(texture);
-        object3DList.add(ceiling);
+        texture = loader.texture("Textures/ClayPlasteres.jpg");
+        loader.obj(TipicalMaterials.LEAF, color, rotation, position, scale, pathObj, texture);
 
         // Left wall
         rotation = new Vector3D(0, 90, 0);
         position = new Vector3D(-75, 0, -60);
-        ObjObject wallLeft = new ObjObject(TipicalMaterials.MARBLE_OLD_BEIGE, color, rotation, position, scale, pathObj);
-        texture = new Texture("Textures/bricks_white.jpg");
-        wallLeft.setTexture(texture);
-        object3DList.add(wallLeft);
+        texture = loader.texture("Textures/bricks_white.jpg");
+        loader.obj(TipicalMaterials.MARBLE_OLD_BEIGE, color, rotation, position, scale, pathObj, texture);
 
         // Back wall
         rotation = new Vector3D(0, 0, 0);
         position = new Vector3D(0, 0, -140);
-        ObjObject wallBack = new ObjObject(TipicalMaterials.MARBLE_OLD_BEIGE, color, rotation, position, scale, pathObj);
-        wallBack.setTexture(texture);
-        object3DList.add(wallBack);
+        loader.obj(TipicalMaterials.MARBLE_OLD_BEIGE, color, rotation, position, scale, pathObj, texture);
 
         // Right wall
         rotation = new Vector3D(0, -90, 0);
         position = new Vector3D(75, 0, -60);
-        ObjObject wallRight = new ObjObject(TipicalMaterials.MARBLE_OLD_BEIGE, color, rotation, position, scale, pathObj);
-        wallRight.setTexture(texture);
-        object3DList.add(wallRight);
+        loader.obj(TipicalMaterials.MARBLE_OLD_BEIGE, color, rotation, position, scale, pathObj, texture);
 
         // Decorative columns
         pathObj = "ObjFiles/Objs/columna.obj";
         color = new Vector3D(255, 255, 255);
         rotation = new Vector3D(0, 90, 0);
         scale = new Vector3D(5, 7, 5);
-        texture = new Texture("Textures/concreto.jpg");
+        texture = loader.texture("Textures/concreto.jpg");
 
         position = new Vector3D(-55, -30, -80);
-        ObjObject column1 = new ObjObject(TipicalMaterials.CONCRETE_REDDISH, color, rotation, position, scale, pathObj);
-        column1.setTexture(texture);
-        object3DList.add(column1);
+        loader.obj(TipicalMaterials.CONCRETE_REDDISH, color, rotation, position, scale, pathObj, texture);
 
         position = new Vector3D(55, -30, -80);
-        ObjObject column2 = new ObjObject(TipicalMaterials.CONCRETE_REDDISH, color, rotation, position, scale, pathObj);
-        column2.setTexture(texture);
-        object3DList.add(column2);
+        loader.obj(TipicalMaterials.CONCRETE_REDDISH, color, rotation, position, scale, pathObj, texture);
 
         // Angel statue grid
-        object3DList.addAll(TipicalObj.createAngelGrid());
+        loader.group("angelGrid", TipicalObj::createAngelGrid);
 
-        return object3DList;
+        return loader.load();
     }
 
     /**
@@ -4,13 +4,14 @@ import Lights.Light;
 import Lights.PointLight;
 import Lights.SpotLight;
 import Materials.Texture;
-import Objects.ObjObject;
 import Objects.Object3D;
 import ResuableElements.TipicalMaterials;
+import Tools.SceneLoader;
 import vectors.Vector3D;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The Office class provides a preconfigured 3D scene
@@ -24,12 +25,12 @@ public class Office {
      * @return List of Object3D to be rendered in the scene
      */
     public static List<Object3D> getObjects() {
-        List<Object3D> object3DList = new ArrayList<>();
+        SceneLoader loader = new SceneLoader("Office");
 
         // Common variables for object initialization
         String pathObj;
         Vector3D color, rotation, position, scale;
-        Texture texture = new Texture("Textures/dark_wood.jpg");
+        CompletableFuture<Texture> texture = loader.texture("Textures/dark_wood.jpg");
 
         // Desk setup
         pathObj = "ObjFiles/OfficeObjs/desk.obj";
@@ -37,120 +38,104 @@ public class Office {
         rotation = new Vector3D(0, -60, 0);
         position = new Vector3D(0, -25, -55);
         scale = new Vector3D(3.0, 3.0, 3.0);
-        ObjObject desk = new ObjObject(TipicalMaterials.DARK_WOOD, color, rotation, position, scale, pathObj);
-        desk.setTexture(texture);
-        object3DList.add(desk);
+        loader.obj(TipicalMaterials.DARK_WOOD, color, rotation, position, scale, pathObj, texture);
 
         // Plant object
         pathObj = "ObjFiles/OfficeObjs/objPot.obj";
         rotation = new Vector3D(0, 30, 0);
         position = new Vector3D(-35, -25, -40);
         scale = new Vector3D(4.0, 4.0, 4.0);
-        object3DList.add(new ObjObject(TipicalMaterials.LIGHT_LEAF, color, rotation, position, scale, pathObj));
+        loader.obj(TipicalMaterials.LIGHT_LEAF, color, rotation, position, scale, pathObj);
 
         // Pot (cube-shaped)
         pathObj = "ObjFiles/Objs/cube.obj";
         rotation = new Vector3D(0, -30, 180);
         scale = new Vector3D(10,12,10);
-        ObjObject pot = new ObjObject(TipicalMaterials.MARBLE, color, rotation, position, scale, pathObj);
-        object3DList.add(pot);
+        loader.obj(TipicalMaterials.MARBLE, color, rotation, position, scale, pathObj);
 
         // Decorative glass boar statue
         pathObj = "ObjFiles/OfficeObjs/Jabali.obj";
         rotation = new Vector3D(0, 160, 0);
         position = new Vector3D(-15, -3, -50);
         scale = new Vector3D(0.6, 0.6, 0.6);
-        object3DList.add(new ObjObject(TipicalMaterials.GLASS_CLEAR, color, rotation, position, scale, pathObj));
+        loader.obj(TipicalMaterials.GLASS_CLEAR, color, rotation, position, scale, pathObj);
 
         // Framed art - splash art
-        texture = new Texture("Textures/splash_Art.jpg");
+        texture = loader.texture("Textures/splash_Art.jpg");
         pathObj = "ObjFiles/Objs/cube.obj";
         rotation = new Vector3D(0, 30, 0);
         position = new Vector3D(-10, 20, -88);
         scale = new Vector3D(30,15,5);
-        ObjObject painting1 = new ObjObject(TipicalMaterials.WOOD, color, rotation, position, scale, pathObj);
-        painting1.setTexture(texture);
-        object3DList.add(painting1);
+        loader.obj(TipicalMaterials.WOOD, color, rotation, position, scale, pathObj, texture);
 
         // Framed map
-        texture = new Texture("Textures/Mapa.jpg");
+        texture = loader.texture("Textures/Mapa.jpg");
         rotation = new Vector3D(0, -30, 180);
         position = new Vector3D(45, 20, -60);
         scale = new Vector3D(2,15,20);
-        ObjObject painting2 = new ObjObject(TipicalMaterials.WOOD, color, rotation, position, scale, pathObj);
-        painting2.setTexture(texture);
-        object3DList.add(painting2);
+        loader.obj(TipicalMaterials.WOOD, color, rotation, position, scale, pathObj, texture);
 
         // Desk lamp with gold material
         pathObj = "ObjFiles/OfficeObjs/desk_lamp.obj";
-        texture = new Texture("Textures/Gold.jpg");
+        texture = loader.texture("Textures/Gold.jpg");
         rotation = new Vector3D(0, -120, 0);
         position = new Vector3D(20, -4, -55);
         scale = new Vector3D(80,80,80);
-        ObjObject lamp = new ObjObject(TipicalMaterials.GOLD, color, rotation, position, scale, pathObj);
-        lamp.setTexture(texture);
-        object3DList.add(lamp);
+        loader.obj(TipicalMaterials.GOLD, color, rotation, position, scale, pathObj, texture);
 
         // Coffee mug with shark texture
         pathObj = "ObjFiles/OfficeObjs/Tasa.obj";
-        texture = new Texture("Textures/Tiburon.jpg");
+        texture = loader.texture("Textures/Tiburon.jpg");
         rotation = new Vector3D(0, -60, 0);
         position = new Vector3D(16, -3, -52);
         scale = new Vector3D(1.2 ,1.2,1.2);
-        ObjObject mug = new ObjObject(TipicalMaterials.MARBLE_YELLOW, color, rotation, position, scale, pathObj);
-        mug.setTexture(texture);
-        object3DList.add(mug);
+        loader.obj(TipicalMaterials.MARBLE_YELLOW, color, rotation, position, scale, pathObj, texture);
 
         // Decorative transparent sphere
         pathObj = "ObjFiles/Objs/sphere.obj";
         rotation = new Vector3D(0, -60, 0);
         position = new Vector3D(11.2, -0.5, -45);
         scale = new Vector3D(2,2,2);
-        ObjObject sphere = new ObjObject(TipicalMaterials.GLASS_CLEAR, color, rotation, position, scale, pathObj);
-        object3DList.add(sphere);
+        loader.obj(TipicalMaterials.GLASS_CLEAR, color, rotation, position, scale, pathObj);
 
         // Chair setup
         pathObj = "ObjFiles/OfficeObjs/Chair_low.obj";
         rotation = new Vector3D(0, 100, 0);
         position = new Vector3D(15, -25, -25);
         scale = new Vector3D(30.0, 30.0, 30.0);
-        object3DList.add(new ObjObject(TipicalMaterials.LEATHER_BLACK, color, rotation, position, scale, pathObj));
+        loader.obj(TipicalMaterials.LEATHER_BLACK, color, rotation, position, scale, pathObj);
 
         // Floor setup
         pathObj = "ObjFiles/Objs/square.obj";
-        texture = new Texture("Textures/piso_cartago.jpg");
+        texture = loader.texture("Textures/piso_cartago.jpg");
         color = new Vector3D(233, 31, 91);
         rotation = new Vector3D(-90, 0, 0);
         position = new Vector3D(0, -25, -45);
         scale = new Vector3D(80.0, 100.0, 80.0);
-        ObjObject floor = new ObjObject(TipicalMaterials.MARBLE_WORN_BEIGE, color, rotation, position, scale, pathObj);
-        floor.setTexture(texture);
-        object3DList.add(floor);
+        loader.obj(TipicalMaterials.MARBLE_WORN_BEIGE, color, rotation, position, scale, pathObj, texture);
 
         // Ceiling
         rotation = new Vector3D(90, 0, 0);
         position = new Vector3D(0, 55, -45);
-        object3DList.add(new ObjObject(TipicalMaterials.PAINT_WHITE_MATTE, color, rotation, position, scale, pathObj));
+        loader.obj(TipicalMaterials.PAINT_WHITE_MATTE, color, rotation, position, scale, pathObj);
 
         // Left wall
         rotation = new Vector3D(0, 60, 0);
         position = new Vector3D(-75, 0, -45);
-        object3DList.add(new ObjObject(TipicalMaterials.PAINT_LIGHT_BLUE, color, rotation, position, scale, pathObj));
+        loader.obj(TipicalMaterials.PAINT_LIGHT_BLUE, color, rotation, position, scale, pathObj);
 
         // Right wall
         rotation = new Vector3D(0, -60, 0);
         position = new Vector3D(75, 0, -45);
-        object3DList.add(new ObjObject(TipicalMaterials.PAINT_LIGHT_BLUE, color, rotation, position, scale, pathObj));
+        loader.obj(TipicalMaterials.PAINT_LIGHT_BLUE, color, rotation, position, scale, pathObj);
 
         // Back wall with custom clay texture
-        texture = new Texture("Textures/ClayPlasteres.jpg");
+        texture = loader.texture("Textures/ClayPlasteres.jpg");
         rotation = new Vector3D(0, 30, 0);
         position = new Vector3D(0, 0, -90);
-        ObjObject backWall = new ObjObject(TipicalMaterials.PAINT_BLUE_MATTE, color, rotation, position, scale, pathObj);
-        backWall.setTexture(texture);
-        object3DList.add(backWall);
+        loader.obj(TipicalMaterials.PAINT_BLUE_MATTE, color, rotation, position, scale, pathObj, texture);
 
-        return object3DList;
+        return loader.load();
     }
 
     /**
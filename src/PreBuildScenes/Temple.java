@@ -3,22 +3,23 @@ package PreBuildScenes;
 import Lights.Light;
 import Lights.PointLight;
 import Materials.Texture;
-import Objects.ObjObject;
 import Objects.Object3D;
 import ResuableElements.TipicalMaterials;
+import Tools.SceneLoader;
 import vectors.Vector3D;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class Temple {
 
     // Method to generate and return a list of 3D objects that make up the temple scene
     public static List<Object3D> getObjects() {
-        List<Object3D> object3DList = new ArrayList<>();
+        SceneLoader loader = new SceneLoader("Temple");
         String pathObj;
         Vector3D color, rotation, position, scale;
-        Texture texture = null;
+        CompletableFuture<Texture> texture;
 
         // Water plane
         pathObj = "ObjFiles/Objs/square.obj";
@@ -26,173 +27,144 @@ public class Temple {
         rotation = new Vector3D(90, 0, 0);
         position = new Vector3D(0, -10, -20);
         scale = new Vector3D(120, 120, 120);
-        ObjObject agua = new ObjObject(TipicalMaterials.DEEP_WATER, color, rotation, position, scale, pathObj);
-        object3DList.add(agua);
+        loader.obj(TipicalMaterials.DEEP_WATER, color, rotation, position, scale, pathObj);
 
         // Small tree object 1
         pathObj = "ObjFiles/templeObjs/tree.obj";
-        texture = new Texture("Textures/gold.jpg");
+        texture = loader.texture("Textures/gold.jpg");
         color = new Vector3D(255, 255, 255);
         rotation = new Vector3D(30, -15, 0);
         position = new Vector3D(-10, -20, -60);
         scale = new Vector3D(120, 120, 120);
-        ObjObject roca = new ObjObject(TipicalMaterials.SAPPHIRE, color, rotation, position, scale, pathObj);
-        object3DList.add(roca);
+        loader.obj(TipicalMaterials.SAPPHIRE, color, rotation, position, scale, pathObj);
 
         // Small tree object 2
         rotation = new Vector3D(40, 10, 0);
         position = new Vector3D(-5, -10, -300);
         scale = new Vector3D(450, 450, 450);
-        ObjObject roca3 = new ObjObject(TipicalMaterials.SAPPHIRE, color, rotation, position, scale, pathObj);
-        object3DList.add(roca3);
+        loader.obj(TipicalMaterials.SAPPHIRE, color, rotation, position, scale, pathObj);
 
         // Small tree object 3
         rotation = new Vector3D(30, 15, 0);
         position = new Vector3D(20, -20, -60);
         scale = new Vector3D(80, 80, 80);
-        ObjObject roca2 = new ObjObject(TipicalMaterials.SAPPHIRE, color, rotation, position, scale, pathObj);
-        object3DList.add(roca2);
+        loader.obj(TipicalMaterials.SAPPHIRE, color, rotation, position, scale, pathObj);
 
         // Wall made of rock
         pathObj = "ObjFiles/templeObjs/muroRoca.obj";
-        texture = new Texture("Textures/muroRoca.jpg");
+        texture = loader.texture("Textures/muroRoca.jpg");
         rotation = new Vector3D(-15, -30, 0);
         position = new Vector3D(20, -40, -90);
         scale = new Vector3D(50, 30, 30);
-        ObjObject muro1 = new ObjObject(TipicalMaterials.CONCRETE_OFFWHITE, color, rotation, position, scale, pathObj);
-        muro1.setTexture(texture);
-        object3DList.add(muro1);
+        loader.obj(TipicalMaterials.CONCRETE_OFFWHITE, color, rotation, position, scale, pathObj, texture);
 
         // Archway object
         pathObj = "ObjFiles/templeObjs/arcoRoca.obj";
-        texture = new Texture("Textures/arcoRoca.png");
+        texture = loader.texture("Textures/arcoRoca.png");
         rotation = new Vector3D(0, 0, 0);
         position = new Vector3D(0, 10, -30);
         scale = new Vector3D(8, 8, 8);
-        ObjObject arco = new ObjObject(TipicalMaterials.CONCRETE_OFFWHITE, color, rotation, position, scale, pathObj);
-        arco.setTexture(texture);
-        object3DList.add(arco);
+        loader.obj(TipicalMaterials.CONCRETE_OFFWHITE, color, rotation, position, scale, pathObj, texture);
 
         // Left wall section
         pathObj = "ObjFiles/templeObjs/muroRoca.obj";
-        texture = new Texture("Textures/muroRoca.jpg");
+        texture = loader.texture("Textures/muroRoca.jpg");
         rotation = new Vector3D(0, 15, 0);
         position = new Vector3D(-80, -20, -250);
         scale = new Vector3D(100, 160, 100);
-        ObjObject coastScan = new ObjObject(TipicalMaterials.CONCRETE_REDDISH, color, rotation, position, scale, pathObj);
-        coastScan.setTexture(texture);
-        object3DList.add(coastScan);
+        loader.obj(TipicalMaterials.CONCRETE_REDDISH, color, rotation, position, scale, pathObj, texture);
 
         // Right wall section
         rotation = new Vector3D(0, -15, 0);
         position = new Vector3D(80, 0, -250);
         scale = new Vector3D(100, 150, 100);
-        ObjObject coastScan2 = new ObjObject(TipicalMaterials.CONCRETE_WHITE, color, rotation, position, scale, pathObj);
-        coastScan2.setTexture(texture);
-        object3DList.add(coastScan2);
+        loader.obj(TipicalMaterials.CONCRETE_WHITE, color, rotation, position, scale, pathObj, texture);
 
         // Stairs
         pathObj = "ObjFiles/templeObjs/escaleras.obj";
-        texture = new Texture("Textures/gold.jpg");
+        texture = loader.texture("Textures/gold.jpg");
         rotation = new Vector3D(0, 60, 0);
         position = new Vector3D(35, 5, -185);
         scale = new Vector3D(30, 40, 30);
-        ObjObject escaleras = new ObjObject(TipicalMaterials.GOLD, color, rotation, position, scale, pathObj);
-        object3DList.add(escaleras);
+        loader.obj(TipicalMaterials.GOLD, color, rotation, position, scale, pathObj);
 
         // Main temple object
         pathObj = "ObjFiles/templeObjs/temploAzteca.obj";
         position = new Vector3D(40, 15, -190);
         scale = new Vector3D(0.6, 0.9, 0.6);
-        ObjObject templo = new ObjObject(TipicalMaterials.GOLD, color, rotation, position, scale, pathObj);
-        templo.setTexture(texture);
-        object3DList.add(templo);
+        loader.obj(TipicalMaterials.GOLD, color, rotation, position, scale, pathObj, texture);
 
         // Plant objects (senecio_1.obj)
         pathObj = "ObjFiles/templeObjs/senecio_1.obj";
         rotation = new Vector3D(0, 0, 0);
         position = new Vector3D(0, -20, -50);
         scale = new Vector3D(5, 5, 5);
-        object3DList.add(new ObjObject(TipicalMaterials.YOUNG_SPROUT, color, rotation, position, scale, pathObj));
+        loader.obj(TipicalMaterials.YOUNG_SPROUT, color, rotation, position, scale, pathObj);
 
         rotation = new Vector3D(30, 15, 0);
         position = new Vector3D(-30, -16, -40);
-        object3DList.add(new ObjObject(TipicalMaterials.YOUNG_SPROUT, color, rotation, position, scale, pathObj));
+        loader.obj(TipicalMaterials.YOUNG_SPROUT, color, rotation, position, scale, pathObj);
 
         rotation = new Vector3D(-30, -15, 0);
         position = new Vector3D(50, -20, -60);
         scale = new Vector3D(7, 7, 7);
-        object3DList.add(new ObjObject(TipicalMaterials.YOUNG_SPROUT, color, rotation, position, scale, pathObj));
+        loader.obj(TipicalMaterials.YOUNG_SPROUT, color, rotation, position, scale, pathObj);
 
         // Bamboo objects
         pathObj = "ObjFiles/templeObjs/Bamboo.obj";
         rotation = new Vector3D(10, 0, 0);
         position = new Vector3D(-30, -12, -60);
         scale = new Vector3D(0.2, 0.2, 0.2);
-        object3DList.add(new ObjObject(TipicalMaterials.BAMBOO, color, rotation, position, scale, pathObj));
+        loader.obj(TipicalMaterials.BAMBOO, color, rotation, position, scale, pathObj);
 
         rotation = new Vector3D(8, 0, 5);
         position = new Vector3D(-40, -16, -55);
-        object3DList.add(new ObjObject(TipicalMaterials.BAMBOO, color, rotation, position, scale, pathObj));
+        loader.obj(TipicalMaterials.BAMBOO, color, rotation, position, scale, pathObj);
 
         position = new Vector3D(-35, -8, -70);
-        object3DList.add(new ObjObject(TipicalMaterials.BAMBOO, color, rotation, position, scale, pathObj));
+        loader.obj(TipicalMaterials.BAMBOO, color, rotation, position, scale, pathObj);
 
         position = new Vector3D(-50, -15, -70);
-        object3DList.add(new ObjObject(TipicalMaterials.BAMBOO, color, rotation, position, scale, pathObj));
+        loader.obj(TipicalMaterials.BAMBOO, color, rotation, position, scale, pathObj);
 
         // Leafy plant decorations
         pathObj = "ObjFiles/templeObjs/planta.obj";
-        texture = new Texture("Textures/planta.jpg");
+        texture = loader.texture("Textures/planta.jpg");
         rotation = new Vector3D(10, 0, 0);
         position = new Vector3D(-30, -12, -60);
         scale = new Vector3D(0.3, 0.3, 0.3);
-        ObjObject planta1 = new ObjObject(TipicalMaterials.LEAF, color, rotation, position, scale, pathObj);
-        planta1.setTexture(texture);
-        object3DList.add(planta1);
+        loader.obj(TipicalMaterials.LEAF, color, rotation, position, scale, pathObj, texture);
 
         position = new Vector3D(40, -11, -40);
-        ObjObject planta2 = new ObjObject(TipicalMaterials.LEAF, color, rotation, position, scale, pathObj);
-        planta2.setTexture(texture);
-        object3DList.add(planta2);
+        loader.obj(TipicalMaterials.LEAF, color, rotation, position, scale, pathObj, texture);
 
         rotation = new Vector3D(-10, 10, 0);
         position = new Vector3D(50, -11, -35);
-        ObjObject planta3 = new ObjObject(TipicalMaterials.LEAF, color, rotation, position, scale, pathObj);
-        planta3.setTexture(texture);
-        object3DList.add(planta3);
+        loader.obj(TipicalMaterials.LEAF, color, rotation, position, scale, pathObj, texture);
 
         position = new Vector3D(15, -15, -15);
-        ObjObject planta4 = new ObjObject(TipicalMaterials.LEAF, color, rotation, position, scale, pathObj);
-        planta4.setTexture(texture);
-        object3DList.add(planta4);
+        loader.obj(TipicalMaterials.LEAF, color, rotation, position, scale, pathObj, texture);
 
         // Rock objects
         pathObj = "ObjFiles/templeObjs/rocas.obj";
-        texture = new Texture("Textures/Rocky_grass.jpg");
+        texture = loader.texture("Textures/Rocky_grass.jpg");
         rotation = new Vector3D(0, 90, 0);
         position = new Vector3D(-60, -20, -110);
         scale = new Vector3D(20, 20, 20);
-        ObjObject rocas = new ObjObject(TipicalMaterials.WOOD, color, rotation, position, scale, pathObj);
-        rocas.setTexture(texture);
-        object3DList.add(rocas);
+        loader.obj(TipicalMaterials.WOOD, color, rotation, position, scale, pathObj, texture);
 
         rotation = new Vector3D(0, -90, 0);
         position = new Vector3D(60, -20, -120);
-        ObjObject rocas2 = new ObjObject(TipicalMaterials.WOOD, color, rotation, position, scale, pathObj);
-        rocas2.setTexture(texture);
-        object3DList.add(rocas2);
+        loader.obj(TipicalMaterials.WOOD, color, rotation, position, scale, pathObj, texture);
 
         // Rocky terrain
         pathObj = "ObjFiles/templeObjs/terreno_rocos.obj";
         rotation = new Vector3D(-90, 0, 0);
         position = new Vector3D(0, 20, -100);
         scale = new Vector3D(200, 200, 200);
-        ObjObject rocas3 = new ObjObject(TipicalMaterials.WOOD, color, rotation, position, scale, pathObj);
-        rocas3.setTexture(texture);
-        object3DList.add(rocas3);
+        loader.obj(TipicalMaterials.WOOD, color, rotation, position, scale, pathObj, texture);
 
-        return object3DList;
+        return loader.load();
     }
 
     // Method to generate and return a list of lights for the scene
@@ -2,6 +2,7 @@ package ResuableElements;
 
 import Materials.BlingPhongMaterial;
 import Materials.Material;
+import Objects.MeshInstance;
 import Objects.ObjObject;
 import vectors.Vector3D;
 
@@ -20,6 +21,7 @@ public class TipicalObj {
         Vector3D scale = new Vector3D(8.0, 8.0, 8.0);
         //Vector3D color, Vector3D rotation, Vector3D position, Vector3D scale, String objPath
         ObjObject obj = new ObjObject(material, color, rotation, position, scale, path);
+        obj.startBVHBuild();
         return obj;
     }
 
@@ -31,6 +33,7 @@ public class TipicalObj {
         Vector3D scale = new Vector3D(8.0, 8.0, 8.0);
 
         ObjObject obj = new ObjObject(material, color, rotation, position, scale, path);
+        obj.startBVHBuild();
         return obj;
     }
 
@@ -42,23 +45,11 @@ public class TipicalObj {
         Vector3D scale = new Vector3D(80.0, 80.0, 80.0);
 
         ObjObject obj = new ObjObject(material, color, rotation, position, scale, path);
+        obj.startBVHBuild();
         return obj;
     }
 
-    public static List<ObjObject> createAngelGrid() {
-        List<ObjObject> angels = new ArrayList<>();
-
-        double spacingX = 25.0;
-        double spacingZ = 35.0;
-        double startX = 0;
-        double startZ = -50.0;
-
-        Vector3D rotation = new Vector3D(0, 0, 0);
-        Vector3D scale = new Vector3D(8.0, 8.0, 8.0);
-        Vector3D color = new Vector3D(255, 255, 255); // base color (real lighting comes from material)
-
-        String path = "ObjFiles/Objs/Angle.obj";
-
+    public static List<MeshInstance> createAngelGrid() {
         BlingPhongMaterial[] materials = new BlingPhongMaterial[] {
 
                 TipicalMaterials.GOLD,
@@ -70,29 +61,28 @@ public class TipicalObj {
 
         };
 
-        for (int i = 0; i < 6; i++) {
-            int row = i % 3;
-            int col = i / 3;
-
-            double posX=0;
-            if(col == 0) {
-                posX = startX + spacingX;
-            }
-            else {
-                posX = startX - spacingX;
-            }
-            double posZ = startZ - row * spacingZ;
-            Vector3D position = new Vector3D(posX, -20, posZ);
+        return createGrid("ObjFiles/Objs/Angle.obj", materials);
+    }
 
-            ObjObject angel = new ObjObject(materials[i], color, rotation, position, scale, path);
-            angels.add(angel);
-        }
+    public static List<MeshInstance> createTeapotGrid() {
+        BlingPhongMaterial[] materials = new BlingPhongMaterial[] {
+                TipicalMaterials.GOLD,
+                TipicalMaterials.SILVER,
+                TipicalMaterials.BRONZE,
+                TipicalMaterials.EMERALD,
+                TipicalMaterials.MARBLE,
+                TipicalMaterials.SHINY_METAL
+        };
 
-        return angels;
+        return createGrid("ObjFiles/Objs/SmallTeapot.obj", materials);
     }
 
-    public static List<ObjObject> createTeapotGrid() {
-        List<ObjObject> teapots = new ArrayList<>();
+    /**
+     * Places one mesh in two columns of three, one material per placement. The OBJ file is
+     * loaded and its BVH built once; every placement is a {@link MeshInstance} of it.
+     */
+    private static List<MeshInstance> createGrid(String path, BlingPhongMaterial[] materials) {
+        List<MeshInstance> instances = new ArrayList<>();
 
         double spacingX = 25.0;
         double spacingZ = 35.0;
@@ -103,18 +93,12 @@ public class TipicalObj {
         Vector3D scale = new Vector3D(8.0, 8.0, 8.0);
         Vector3D color = new Vector3D(255, 255, 255); // base color (real lighting comes from material)
 
-        String path = "ObjFiles/Objs/SmallTeapot.obj";
+        // Shared mesh at the origin; the placements only translate it
+        ObjObject mesh = new ObjObject(null, color, rotation, new Vector3D(0, 0, 0), scale, path);
+        mesh.startBVHBuild();
+        Vector3D unitScale = new Vector3D(1, 1, 1);
 
-        BlingPhongMaterial[] materials = new BlingPhongMaterial[] {
-                TipicalMaterials.GOLD,
-                TipicalMaterials.SILVER,
-                TipicalMaterials.BRONZE,
-                TipicalMaterials.EMERALD,
-                TipicalMaterials.MARBLE,
-                TipicalMaterials.SHINY_METAL
-        };
-
-        for (int i = 0; i < 6; i++) {
+        for (int i = 0; i < materials.length; i++) {
             int row = i % 3;
             int col = i / 3;
 
@@ -128,11 +112,10 @@ public class TipicalObj {
             double posZ = startZ - row * spacingZ;
             Vector3D position = new Vector3D(posX, -20, posZ);
 
-            ObjObject angel = new ObjObject(materials[i], color, rotation, position, scale, path);
-            teapots.add(angel);
+            instances.add(new MeshInstance(mesh, materials[i], color, rotation, position, unitScale));
         }
 
-        return teapots;
+        return instances;
     }
 
     public static List<ObjObject> createCornellBox() {
@@ -192,6 +175,9 @@ public class TipicalObj {
                 path
         ));
 
+        for (ObjObject wall : walls) {
+            wall.startBVHBuild();
+        }
         return walls;
     }
 
@@ -0,0 +1,62 @@
+package Samplers;
+
+/**
+ * Low-discrepancy samples from the Halton sequence: dimension d of sample i is the radical
+ * inverse of i in the d-th prime base. Every pixel shifts the sequence by a random offset
+ * per dimension (Cranley-Patterson rotation), so neighbouring pixels do not repeat the
+ * same pattern. Any sample count is well distributed; dimensions past the prime table are
+ * plain random values.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public class HaltonSampler extends Sampler {
+    private static final int[] PRIMES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
+
+    /**
+     * Constructs a Halton sampler.
+     *
+     * @param samplesPerPixel Samples per pixel.
+     */
+    public HaltonSampler(int samplesPerPixel) {
+        this(samplesPerPixel, 0);
+    }
+
+    /**
+     * Constructs a Halton sampler.
+     *
+     * @param samplesPerPixel Samples per pixel.
+     * @param seed            Seed of the per pixel shifts.
+     */
+    public HaltonSampler(int samplesPerPixel, long seed) {
+        super(samplesPerPixel, seed);
+    }
+
+    @Override
+    public double get(int dimension) {
+        if (dimension >= PRIMES.length) {
+            return random(dimension);
+        }
+        double value = radicalInverse(PRIMES[dimension], getSampleIndex()) + toUnitInterval(pixelBits(dimension));
+        return value >= 1 ? value - 1 : value;
+    }
+
+    @Override
+    public Sampler copy() {
+        return new HaltonSampler(getSamplesPerPixel(), getSeed());
+    }
+
+    /**
+     * Mirrors the digits of an index in a base around the radix point.
+     */
+    private static double radicalInverse(int base, int index) {
+        double inverseBase = 1.0 / base;
+        double factor = inverseBase;
+        double result = 0;
+        while (index > 0) {
+            result += (index % base) * factor;
+            index /= base;
+            factor *= inverseBase;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,182 @@
+package Samplers;
+
+/**
+ * Generates the sample points a pixel is integrated with: for every sample of a pixel,
+ * one coordinate in [0, 1) per dimension. {@link Objects.Camera} uses dimensions 0 and 1
+ * for the position inside the pixel and 2 and 3 for the position on the lens.
+ * <p>
+ * A sampler keeps the pixel and sample it is generating, so every rendering thread works
+ * on its own {@link #copy()}. Random values are hashed from the seed, the pixel, the sample
+ * and the dimension instead of drawn from a shared generator, so sampling allocates
+ * nothing, needs no locking, and renders the same image whatever thread renders a pixel.
+ * <pre>
+ *     Sampler sampler = new HaltonSampler(16).copy();
+ *     sampler.startPixel(x, y);
+ *     for (int s = 0; s < sampler.getSamplesPerPixel(); s++) {
+ *         sampler.startSample(s);
+ *         double dx = sampler.get(0), dy = sampler.get(1);
+ *     }
+ * </pre>
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public abstract class Sampler {
+    private final int samplesPerPixel;
+    private final long seed;
+    /** Hash of the seed and the current pixel */
+    private long pixelSeed;
+    private int sampleIndex;
+
+    /**
+     * Constructs a sampler.
+     *
+     * @param samplesPerPixel Samples taken in every pixel, 1 or more.
+     * @param seed            Seed of the random values, the same seed gives the same samples.
+     */
+    protected Sampler(int samplesPerPixel, long seed) {
+        if (samplesPerPixel < 1) {
+            throw new IllegalArgumentException("Samples per pixel must be at least 1");
+        }
+        this.samplesPerPixel = samplesPerPixel;
+        this.seed = seed;
+    }
+
+    /**
+     * Gets the number of samples taken in every pixel.
+     *
+     * @return Samples per pixel.
+     */
+    public int getSamplesPerPixel() {
+        return samplesPerPixel;
+    }
+
+    /**
+     * Gets the seed of the random values.
+     *
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Starts generating the samples of a pixel, beginning with sample 0.
+     *
+     * @param x Column of the pixel.
+     * @param y Row of the pixel.
+     */
+    public void startPixel(int x, int y) {
+        pixelSeed = mix(mix(seed, x), y);
+        sampleIndex = 0;
+    }
+
+    /**
+     * Moves to a sample of the current pixel.
+     *
+     * @param index Sample index, 0 to {@link #getSamplesPerPixel()} - 1.
+     */
+    public void startSample(int index) {
+        sampleIndex = index;
+    }
+
+    /**
+     * Gets the index of the current sample.
+     *
+     * @return Sample index within the pixel.
+     */
+    public int getSampleIndex() {
+        return sampleIndex;
+    }
+
+    /**
+     * Gets a coordinate of the current sample.
+     *
+     * @param dimension Dimension of the coordinate, 0 or more.
+     * @return The coordinate, in [0, 1).
+     */
+    public abstract double get(int dimension);
+
+    /**
+     * Creates a sampler with the same settings and its own pixel and sample state, for
+     * another thread.
+     *
+     * @return A new sampler.
+     */
+    public abstract Sampler copy();
+
+    /**
+     * Random value for the current pixel, sample and dimension.
+     *
+     * @param dimension Dimension of the value.
+     * @return A value in [0, 1).
+     */
+    protected double random(int dimension) {
+        return toUnitInterval(mix(mix(pixelSeed, sampleIndex), dimension));
+    }
+
+    /**
+     * Random bits that are the same for every sample of the current pixel, to scramble or
+     * shift a sequence per pixel.
+     *
+     * @param dimension Dimension the bits are for.
+     * @return 64 random bits.
+     */
+    protected long pixelBits(int dimension) {
+        return mix(pixelSeed ^ 0x632BE59BD9B4E019L, dimension);
+    }
+
+    /**
+     * Maps an index to its position in a random permutation of [0, length) without storing
+     * the permutation (A. Kensler, "Correlated Multi-Jittered Sampling").
+     *
+     * @param index  Index to permute, 0 to length - 1.
+     * @param length Length of the permutation.
+     * @param key    Selects the permutation.
+     * @return The permuted index.
+     */
+    protected static int permute(int index, int length, int key) {
+        int w = length - 1;
+        w |= w >>> 1;
+        w |= w >>> 2;
+        w |= w >>> 4;
+        w |= w >>> 8;
+        w |= w >>> 16;
+        // Cycle-walk a bijection on [0, w] until the result falls inside [0, length)
+        do {
+            index ^= key;
+            index *= 0xe170893d;
+            index ^= key >>> 16;
+            index ^= (index & w) >>> 4;
+            index ^= key >>> 8;
+            index *= 0x0929eb3f;
+            index ^= key >>> 23;
+            index ^= (index & w) >>> 1;
+            index *= 1 | key >>> 27;
+            index *= 0x6935fa69;
+            index ^= (index & w) >>> 11;
+            index *= 0x74dcb303;
+            index ^= (index & w) >>> 2;
+            index *= 0x9e501cc3;
+            index ^= (index & w) >>> 2;
+            index *= 0xc860a3df;
+            index &= w;
+            index ^= index >>> 5;
+        } while (Integer.compareUnsigned(index, length) >= 0);
+        return Integer.remainderUnsigned(index + key, length);
+    }
+
+    /**
+     * Converts the top 53 bits of a hash into a value in [0, 1).
+     */
+    protected static double toUnitInterval(long bits) {
+        return (bits >>> 11) * 0x1.0p-53;
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,40 @@
+package Samplers;
+
+/**
+ * Samplers that can be picked by name, for command line options.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public enum SamplerType {
+    /**
+     * {@link StratifiedSampler}: one jittered sample per cell of a square grid, the pixel
+     * center for a single sample.
+     */
+    STRATIFIED,
+
+    /**
+     * {@link HaltonSampler}: the Halton sequence, shifted per pixel. Well distributed for
+     * any sample count.
+     */
+    HALTON,
+
+    /**
+     * {@link SobolSampler}: the Sobol (0,2) sequence, scrambled per pixel. Best with power
+     * of two sample counts.
+     */
+    SOBOL;
+
+    /**
+     * Creates a sampler of this type.
+     *
+     * @param samplesPerPixel Samples per pixel, rounded up as the sampler requires.
+     * @return A new sampler.
+     */
+    public Sampler create(int samplesPerPixel) {
+        return switch (this) {
+            case STRATIFIED -> new StratifiedSampler(samplesPerPixel);
+            case HALTON -> new HaltonSampler(samplesPerPixel);
+            case SOBOL -> new SobolSampler(samplesPerPixel);
+        };
+    }
+}
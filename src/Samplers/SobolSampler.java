@@ -0,0 +1,72 @@
+package Samplers;
+
+/**
+ * Low-discrepancy samples from the first two dimensions of the Sobol sequence, a (0,2)
+ * sequence: with a power of two sample count, every elementary interval of the pixel gets
+ * exactly one sample. Every pair of dimensions uses its own copy of the sequence, with the
+ * samples reordered per pixel so pairs are not correlated, and every dimension is randomly
+ * scrambled per pixel, which keeps the stratification.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public class SobolSampler extends Sampler {
+
+    /**
+     * Constructs a Sobol sampler.
+     *
+     * @param samplesPerPixel Samples per pixel, rounded up to a power of two.
+     */
+    public SobolSampler(int samplesPerPixel) {
+        this(samplesPerPixel, 0);
+    }
+
+    /**
+     * Constructs a Sobol sampler.
+     *
+     * @param samplesPerPixel Samples per pixel, rounded up to a power of two.
+     * @param seed            Seed of the per pixel scrambling.
+     */
+    public SobolSampler(int samplesPerPixel, long seed) {
+        super(powerOfTwo(samplesPerPixel), seed);
+    }
+
+    @Override
+    public double get(int dimension) {
+        int pair = dimension >> 1;
+        int index = getSampleIndex();
+        if (pair > 0) {
+            index = permute(index, getSamplesPerPixel(), (int) pixelBits(pair));
+        }
+        int bits = (dimension & 1) == 0 ? Integer.reverse(index) : secondDimension(index);
+        bits ^= (int) (pixelBits(dimension) >>> 32);
+        return Integer.toUnsignedLong(bits) * 0x1.0p-32;
+    }
+
+    @Override
+    public Sampler copy() {
+        return new SobolSampler(getSamplesPerPixel(), getSeed());
+    }
+
+    /**
+     * Second dimension of the Sobol sequence as 32 fraction bits.
+     */
+    private static int secondDimension(int index) {
+        int result = 0;
+        for (int v = 1 << 31; index != 0; index >>>= 1, v ^= v >>> 1) {
+            if ((index & 1) != 0) {
+                result ^= v;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rounds a sample count up to the next power of two.
+     */
+    private static int powerOfTwo(int samplesPerPixel) {
+        if (samplesPerPixel < 1 || samplesPerPixel > 1 << 30) {
+            throw new IllegalArgumentException("Samples per pixel must be between 1 and 2^30");
+        }
+        return samplesPerPixel == 1 ? 1 : Integer.highestOneBit(samplesPerPixel - 1) << 1;
+    }
+}
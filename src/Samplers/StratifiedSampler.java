@@ -0,0 +1,76 @@
+package Samplers;
+
+/**
+ * Splits the pixel into an n x n grid and takes one sample in every cell, at a random
+ * position inside it when jittered or at its center otherwise. Every pair of dimensions is
+ * stratified the same way, with the cells visited in a different random order per pair
+ * and pixel, so the position on the lens is not tied to the position in the pixel.
+ * <p>
+ * A single unjittered sample is the pixel center, the way the camera always sampled.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public class StratifiedSampler extends Sampler {
+    /** Cells per side of the grid */
+    private final int gridSize;
+    private final boolean jitter;
+
+    /**
+     * Constructs a stratified sampler, jittered unless it takes a single sample.
+     *
+     * @param samplesPerPixel Samples per pixel, rounded up to a square number.
+     */
+    public StratifiedSampler(int samplesPerPixel) {
+        this(samplesPerPixel, samplesPerPixel > 1, 0);
+    }
+
+    /**
+     * Constructs a stratified sampler.
+     *
+     * @param samplesPerPixel Samples per pixel, rounded up to a square number.
+     * @param jitter          true to place samples randomly inside their cells, false for the cell centers.
+     * @param seed            Seed of the random values.
+     */
+    public StratifiedSampler(int samplesPerPixel, boolean jitter, long seed) {
+        super(square(samplesPerPixel), seed);
+        this.gridSize = (int) Math.round(Math.sqrt(getSamplesPerPixel()));
+        this.jitter = jitter;
+    }
+
+    /**
+     * Checks if samples are placed randomly inside their cells.
+     *
+     * @return true if jittered.
+     */
+    public boolean isJitter() {
+        return jitter;
+    }
+
+    @Override
+    public double get(int dimension) {
+        int pair = dimension >> 1;
+        int cell = getSampleIndex();
+        if (pair > 0) {
+            cell = permute(cell, getSamplesPerPixel(), (int) pixelBits(pair));
+        }
+        int column = (dimension & 1) == 0 ? cell % gridSize : cell / gridSize;
+        double offset = jitter ? random(dimension) : 0.5;
+        return (column + offset) / gridSize;
+    }
+
+    @Override
+    public Sampler copy() {
+        return new StratifiedSampler(getSamplesPerPixel(), jitter, getSeed());
+    }
+
+    /**
+     * Rounds a sample count up to the next square number.
+     */
+    private static int square(int samplesPerPixel) {
+        if (samplesPerPixel < 1) {
+            throw new IllegalArgumentException("Samples per pixel must be at least 1");
+        }
+        int side = (int) Math.ceil(Math.sqrt(samplesPerPixel));
+        return side * side;
+    }
+}
@@ -0,0 +1,443 @@
+package Tools;
+
+import Objects.TriangleMesh;
+import Objects.WrapperBoxes.BVHBuildMethod;
+import Objects.WrapperBoxes.LinearBVH;
+import vectors.Vector3D;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary cache of loaded meshes and their BVHs, so an OBJ file is only parsed, smoothed
+ * and partitioned the first time a scene uses it. The cache file of a mesh is written
+ * next to its OBJ file as {@code <obj>.<key>.rtmesh}, where the key is a hash of the OBJ
+ * contents, the transform it was loaded with, the BVH build method and the cache format;
+ * changing any of them simply misses the cache.
+ * <p>
+ * Hashing a large OBJ file costs about as much as reading it, so the CRC of every OBJ file
+ * is remembered in a small {@code <obj>.crc.rtmesh} stamp together with the file's size and
+ * modification time; while both match, the key is computed without reading the OBJ file.
+ * <p>
+ * Cache files are read in 1 MB chunks and copied into the heap arrays of the mesh and its
+ * BVH, so nothing stays mapped or open once a mesh is loaded; the copy costs a pass over
+ * the file, which is still far cheaper than parsing the OBJ file and building the BVH.
+ * <p>
+ * A cache file holds a 40 byte header (magic, version, key and the array lengths), then
+ * the double arrays (positions, normals, texture coordinates, node bounds) and the int
+ * arrays (vertex indices, texture coordinate indices, nodes, leaf triangle indices), all
+ * little-endian. Normals are stored in model orientation, as {@link ObjReader} returns them.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public class MeshCache {
+    /** "RTMC" */
+    private static final int MAGIC = 0x52544D43;
+    /** Bumped whenever the layout or the loaders' output changes */
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+    private static final String EXTENSION = ".rtmesh";
+    /** "RTMS" */
+    private static final int STAMP_MAGIC = 0x52544D53;
+    private static final int STAMP_BYTES = 32;
+    private static final String STAMP_EXTENSION = ".crc" + EXTENSION;
+    /**
+     * Files modified this recently are hashed without being stamped, since a change within
+     * the same timestamp tick would leave the size and modification time unchanged.
+     */
+    private static final long STAMP_SETTLE_MILLIS = 2000;
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private static volatile boolean enabled = true;
+
+    /**
+     * Checks whether objects load through the cache.
+     *
+     * @return true if the cache is used
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets whether objects load through the cache. Disabling it neither deletes nor
+     * writes cache files.
+     *
+     * @param enabled true to use the cache
+     */
+    public static void setEnabled(boolean enabled) {
+        MeshCache.enabled = enabled;
+    }
+
+    /**
+     * Computes the cache key of a mesh: the CRC32C of the OBJ file contents combined with
+     * its size, the exact transform, the BVH build method and the cache version. The CRC
+     * comes from the file's stamp when its size and modification time still match.
+     *
+     * @param objPath  Path to the OBJ file
+     * @param rotation Rotation the mesh is loaded with
+     * @param position Position the mesh is loaded with
+     * @param scale    Scale the mesh is loaded with
+     * @param method   Method the BVH is built with
+     * @return The cache key
+     * @throws IOException if the OBJ file cannot be read
+     */
+    public static long key(String objPath, Vector3D rotation, Vector3D position, Vector3D scale,
+                           BVHBuildMethod method) throws IOException {
+        Path obj = Paths.get(objPath);
+        BasicFileAttributes attributes = Files.readAttributes(obj, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        Path stamp = Paths.get(objPath + STAMP_EXTENSION);
+
+        long crc = readStamp(stamp, size, modified);
+        if (crc < 0) {
+            crc = hash(obj);
+            if (System.currentTimeMillis() - modified > STAMP_SETTLE_MILLIS) {
+                writeStamp(stamp, size, modified, crc);
+            }
+        }
+
+        long key = mix(0x9E3779B97F4A7C15L, VERSION);
+        key = mix(key, size);
+        key = mix(key, crc);
+        for (Vector3D vector : new Vector3D[]{rotation, position, scale}) {
+            key = mix(key, Double.doubleToLongBits(vector.getX()));
+            key = mix(key, Double.doubleToLongBits(vector.getY()));
+            key = mix(key, Double.doubleToLongBits(vector.getZ()));
+        }
+        return mix(key, method.name().hashCode());
+    }
+
+    /**
+     * Hashes the contents of a file.
+     */
+    private static long hash(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Reads the CRC remembered for a file.
+     *
+     * @return The CRC, or -1 if there is no stamp or the file changed since it was written
+     */
+    private static long readStamp(Path stamp, long size, long modified) {
+        try (FileChannel channel = FileChannel.open(stamp, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(STAMP_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the stamp is complete or the file ends
+            }
+            buffer.flip();
+            if (buffer.remaining() != STAMP_BYTES || buffer.getInt() != STAMP_MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != size || buffer.getLong() != modified) {
+                return -1;
+            }
+            return buffer.getLong();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Remembers the CRC of a file. Failures are ignored; the file is simply hashed again.
+     */
+    private static void writeStamp(Path stamp, long size, long modified, long crc) {
+        ByteBuffer buffer = ByteBuffer.allocate(STAMP_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(STAMP_MAGIC).putInt(VERSION).putLong(size).putLong(modified).putLong(crc);
+        buffer.flip();
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(stamp.toAbsolutePath().getParent(), stamp.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            move(temporary, stamp);
+        } catch (IOException e) {
+            try {
+                if (temporary != null) Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // Nothing else to clean up
+            }
+        }
+    }
+
+    /**
+     * Gets the cache file of a mesh.
+     *
+     * @param objPath Path to the OBJ file
+     * @param key     Key from {@link #key}
+     * @return Path of the cache file, next to the OBJ file
+     */
+    public static Path cacheFile(String objPath, long key) {
+        return Paths.get(objPath + "." + String.format("%016x", key) + EXTENSION);
+    }
+
+    /**
+     * Reads a cached mesh and its BVH.
+     *
+     * @param objPath Path to the OBJ file
+     * @param key     Key from {@link #key}
+     * @return The cached mesh, or null if there is no valid cache file for the key
+     */
+    public static CachedMesh read(String objPath, long key) {
+        Path file = cacheFile(objPath, key);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                return invalid(file, "unexpected size");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.limit(0);
+            fill(channel, buffer);
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != key) {
+                return invalid(file, "header mismatch");
+            }
+            int vertexCount = buffer.getInt();
+            int uvCount = buffer.getInt();
+            int triangleCount = buffer.getInt();
+            int nodeCount = buffer.getInt();
+            int referenceCount = buffer.getInt();
+            buffer.getInt(); // Reserved
+
+            long doubles = 6L * vertexCount + 3L * uvCount + (long) LinearBVH.BOUNDS_STRIDE * nodeCount;
+            long ints = 6L * triangleCount + (long) LinearBVH.NODE_STRIDE * nodeCount + referenceCount;
+            if (vertexCount < 0 || uvCount < 0 || triangleCount < 0 || nodeCount <= 0 || referenceCount < 0
+                    || HEADER_BYTES + doubles * Double.BYTES + ints * Integer.BYTES != size) {
+                return invalid(file, "inconsistent lengths");
+            }
+
+            double[] positions = readDoubles(channel, buffer, vertexCount * 3);
+            double[] normals = readDoubles(channel, buffer, vertexCount * 3);
+            double[] uvs = readDoubles(channel, buffer, uvCount * 3);
+            double[] bounds = readDoubles(channel, buffer, nodeCount * LinearBVH.BOUNDS_STRIDE);
+            int[] vertexIndices = readInts(channel, buffer, triangleCount * 3);
+            int[] uvIndices = readInts(channel, buffer, triangleCount * 3);
+            int[] nodes = readInts(channel, buffer, nodeCount * LinearBVH.NODE_STRIDE);
+            int[] triangleIndices = readInts(channel, buffer, referenceCount);
+
+            if (!inRange(vertexIndices, 0, vertexCount) || !inRange(uvIndices, -1, uvCount)
+                    || !inRange(triangleIndices, 0, triangleCount) || !validNodes(nodes, referenceCount)) {
+                return invalid(file, "index out of range");
+            }
+
+            TriangleMesh mesh = new TriangleMesh(positions, normals, uvs, vertexIndices, uvIndices);
+            LinearBVH bvh = new LinearBVH(bounds, nodes, triangleIndices, mesh.packTriangleVertices());
+            return new CachedMesh(mesh, bvh);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return invalid(file, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Writes a mesh and its BVH to the cache. The file is written under a temporary name
+     * and then moved into place, so concurrent loaders never see it half written. Failures
+     * are reported and otherwise ignored; the mesh is simply parsed again next time.
+     *
+     * @param objPath Path to the OBJ file
+     * @param key     Key from {@link #key}
+     * @param mesh    Mesh as returned by {@link ObjReader#triangleMesh}, normals unrotated
+     * @param bvh     BVH built over the mesh's triangles
+     */
+    public static void write(String objPath, long key, TriangleMesh mesh, LinearBVH bvh) {
+        Path file = cacheFile(objPath, key);
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(VERSION).putLong(key);
+                buffer.putInt(mesh.getVertexCount());
+                buffer.putInt(mesh.getUvs().length / 3);
+                buffer.putInt(mesh.getTriangleCount());
+                buffer.putInt(bvh.getNodeCount());
+                buffer.putInt(bvh.getTriangleIndices().length);
+                buffer.putInt(0);
+
+                writeDoubles(channel, buffer, mesh.getPositions());
+                writeDoubles(channel, buffer, mesh.getNormals());
+                writeDoubles(channel, buffer, mesh.getUvs());
+                writeDoubles(channel, buffer, bvh.getBounds());
+                writeInts(channel, buffer, mesh.getVertexIndices());
+                writeInts(channel, buffer, mesh.getUvIndices());
+                writeInts(channel, buffer, bvh.getNodes());
+                writeInts(channel, buffer, bvh.getTriangleIndices());
+                flush(channel, buffer);
+            }
+            move(temporary, file);
+        } catch (IOException e) {
+            System.err.println("Could not write mesh cache " + file + ": " + e.getMessage());
+            try {
+                if (temporary != null) Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // Nothing else to clean up
+            }
+        }
+    }
+
+    /**
+     * Reports a cache file that cannot be used.
+     */
+    private static CachedMesh invalid(Path file, String reason) {
+        System.err.println("Ignoring mesh cache " + file + ": " + reason);
+        return null;
+    }
+
+    /**
+     * Moves a finished file into place, atomically where the file system allows it.
+     */
+    private static void move(Path temporary, Path file) throws IOException {
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Refills a read buffer, keeping its unread bytes, and leaves it ready to be read.
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.compact();
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // Keep reading until the buffer is full or the file ends
+        }
+        buffer.flip();
+    }
+
+    private static double[] readDoubles(FileChannel channel, ByteBuffer buffer, int count) throws IOException {
+        double[] values = new double[count];
+        for (int read = 0; read < count; ) {
+            if (buffer.remaining() < Double.BYTES) {
+                fill(channel, buffer);
+                if (buffer.remaining() < Double.BYTES) throw new IOException("unexpected end of file");
+            }
+            int chunk = Math.min(count - read, buffer.remaining() / Double.BYTES);
+            buffer.asDoubleBuffer().get(values, read, chunk);
+            buffer.position(buffer.position() + chunk * Double.BYTES);
+            read += chunk;
+        }
+        return values;
+    }
+
+    private static int[] readInts(FileChannel channel, ByteBuffer buffer, int count) throws IOException {
+        int[] values = new int[count];
+        for (int read = 0; read < count; ) {
+            if (buffer.remaining() < Integer.BYTES) {
+                fill(channel, buffer);
+                if (buffer.remaining() < Integer.BYTES) throw new IOException("unexpected end of file");
+            }
+            int chunk = Math.min(count - read, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().get(values, read, chunk);
+            buffer.position(buffer.position() + chunk * Integer.BYTES);
+            read += chunk;
+        }
+        return values;
+    }
+
+    private static void writeDoubles(FileChannel channel, ByteBuffer buffer, double[] values) throws IOException {
+        for (double value : values) {
+            if (buffer.remaining() < Double.BYTES) flush(channel, buffer);
+            buffer.putDouble(value);
+        }
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        for (int value : values) {
+            if (buffer.remaining() < Integer.BYTES) flush(channel, buffer);
+            buffer.putInt(value);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Checks that every value lies in [min, limit).
+     */
+    private static boolean inRange(int[] values, int min, int limit) {
+        for (int value : values) {
+            if (value < min || value >= limit) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks that internal nodes point forward to existing nodes and leaves to existing references.
+     */
+    private static boolean validNodes(int[] nodes, int referenceCount) {
+        int nodeCount = nodes.length / LinearBVH.NODE_STRIDE;
+        for (int node = 0; node < nodeCount; node++) {
+            int first = nodes[node * LinearBVH.NODE_STRIDE];
+            int count = nodes[node * LinearBVH.NODE_STRIDE + 1];
+            boolean valid = count < 0
+                    ? count == -1 && first > node + 1 && first < nodeCount
+                    : first >= 0 && (long) first + count <= referenceCount;
+            if (!valid) return false;
+        }
+        return true;
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= 0xff51afd7ed558ccdL;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * A mesh and its BVH read from the cache.
+     */
+    public static class CachedMesh {
+        private final TriangleMesh mesh;
+        private final LinearBVH bvh;
+
+        public CachedMesh(TriangleMesh mesh, LinearBVH bvh) {
+            this.mesh = mesh;
+            this.bvh = bvh;
+        }
+
+        /**
+         * @return The mesh, normals in model orientation
+         */
+        public TriangleMesh getMesh() {
+            return mesh;
+        }
+
+        /**
+         * @return The BVH, with its intersection data precomputed
+         */
+        public LinearBVH getBVH() {
+            return bvh;
+        }
+    }
+}
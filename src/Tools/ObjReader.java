@@ -1,281 +1,160 @@
 package Tools;
 
 import Objects.Triangle;
+import Objects.TriangleMesh;
 import vectors.Vector3D;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import Objects.WrapperBoxes.BVHGenerator;
+
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Utility class for reading and parsing Wavefront OBJ files.
  * Handles vertex positions, normals, faces, smoothing groups and generates triangle data.
+ * Files larger than {@link #getParallelThreshold()} are memory-mapped and parsed in
+ * parallel chunks; the result is the same as reading them in one pass.
  *
  * @author José Eduardo Moreno Paredes
  */
 public class ObjReader {
+    /** Target size of the chunks a large file is split into for parallel parsing */
+    private static final long CHUNK_BYTES = 8L << 20;
+
+    /** Files at least this large are memory-mapped and parsed in parallel chunks */
+    private static volatile long parallelThresholdBytes = 32L << 20;
 
     /**
-     * Reads vertex positions from an OBJ file.
+     * Sets the file size from which OBJ files are memory-mapped and parsed in parallel
+     * chunks on the shared build pool. Smaller files are streamed on the calling thread.
      *
-     * @param filePath Path to the OBJ file
-     * @return Array of Vector3D representing vertices
+     * @param bytes Threshold in bytes, 0 to always parse in parallel or
+     *              {@link Long#MAX_VALUE} to never do so
+     * @throws IllegalArgumentException if the threshold is negative
      */
-    private static Vector3D[] readPoints(String filePath) {
-        List<Vector3D> pointsList = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("v ")) {
-                    String[] parts = line.trim().split("\\s+");
-                    if (parts.length >= 4) {
-                        double x = Double.parseDouble(parts[1]);
-                        double y = Double.parseDouble(parts[2]);
-                        double z = Double.parseDouble(parts[3]);
-                        pointsList.add(new Vector3D(x, y, z));
-                    }
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading points: " + e.getMessage());
+    public static void setParallelThreshold(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Parallel threshold cannot be negative");
         }
-
-        return pointsList.toArray(new Vector3D[0]);
+        parallelThresholdBytes = bytes;
     }
 
-    private static Vector3D[] readTextures(String filePath) {
-        List<Vector3D> texturesList = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("vt ")) {
-                    String[] parts = line.trim().split("\\s+");
-                    if (parts.length >= 3) {  // Changed from 4 to 3
-                        double u = Double.parseDouble(parts[1]);
-                        double v = Double.parseDouble(parts[2]);
-                        // Some OBJ files might include w (3D texture coordinates)
-                        double w = parts.length >= 4 ? Double.parseDouble(parts[3]) : 0;
-                        texturesList.add(new Vector3D(u, v, w));
-                    }
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading texture coordinates: " + e.getMessage());
-        }
-
-        return texturesList.toArray(new Vector3D[0]);
+    /**
+     * Gets the file size from which OBJ files are parsed in parallel chunks.
+     *
+     * @return Threshold in bytes
+     */
+    public static long getParallelThreshold() {
+        return parallelThresholdBytes;
     }
 
-    private static int[][] readTextureIndices(String filePath) {
-        List<int[]> textureIndices = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("f ")) {
-                    String[] parts = line.trim().split("\\s+");
-                    if (parts.length < 4) continue;
-
-                    int[] indices = new int[parts.length - 1];
-                    for (int i = 1; i < parts.length; i++) {
-                        String[] data = parts[i].split("/");
-                        // Texture coordinate is the second component (data[1])
-                        indices[i - 1] = (data.length >= 2 && !data[1].isEmpty()) ? Integer.parseInt(data[1]) : -1;
-                    }
-
-                    // Triangulate the face
-                    for (int i = 1; i < indices.length - 1; i++) {
-                        textureIndices.add(new int[]{
-                                indices[0],
-                                indices[i],
-                                indices[i + 1]
-                        });
-                    }
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading texture indices: " + e.getMessage());
-        }
-
-        return textureIndices.toArray(new int[0][]);
-    }
     /**
-     * Reads vertex normals from an OBJ file.
+     * Reads smoothing groups from an OBJ file.
+     * Properly tracks triangulation of polygons and maintains correct face indices.
      *
      * @param filePath Path to the OBJ file
-     * @return Array of Vector3D representing normals
+     * @return List of triangle index groups per smoothing group
      */
-    private static Vector3D[] readNormals(String filePath) {
-        List<Vector3D> normalsList = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("vn ")) {
-                    String[] parts = line.trim().split("\\s+");
-                    if (parts.length >= 4) {
-                        double x = Double.parseDouble(parts[1]);
-                        double y = Double.parseDouble(parts[2]);
-                        double z = Double.parseDouble(parts[3]);
-                        Vector3D normal = new Vector3D(x, y, z);
-                        // Ensure the normal is normalized
-                        normal = normal.normalize();
-                        normalsList.add(normal);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading normals: " + e.getMessage());
-        }
-
-        return normalsList.toArray(new Vector3D[0]);
+    public static List<List<Integer>> readSmoothingGroups(String filePath) {
+        return readObj(filePath).smoothingGroups;
     }
 
     /**
-     * Reads face indices from an OBJ file, supports triangulation of polygons.
+     * Reads every element of an OBJ file in a single pass.
+     * Prints the error and returns what was read so far if the file cannot be read.
      *
      * @param filePath Path to the OBJ file
-     * @return 2D array of face vertex indices
+     * @return Vertices, normals, texture coordinates, triangulated faces and smoothing groups
      */
-    private static int[][] readFaces(String filePath) {
-        List<int[]> triangleIndices = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("f ")) {
-                    String[] parts = line.trim().split("\\s+");
-                    if (parts.length < 4) continue;
-
-                    int[] vertexIndices = new int[parts.length - 1];
-                    for (int i = 1; i < parts.length; i++) {
-                        vertexIndices[i - 1] = parseSafeIndex(parts[i]);
-                    }
-
-                    // Triangulate the face (fan triangulation for convex polygons)
-                    for (int i = 1; i < vertexIndices.length - 1; i++) {
-                        triangleIndices.add(new int[]{
-                                vertexIndices[0],
-                                vertexIndices[i],
-                                vertexIndices[i + 1]
-                        });
-                    }
+    private static ObjData readObj(String filePath) {
+        ObjParser parser = new ObjParser();
+        try {
+            long size = new File(filePath).length();
+            if (size > 0 && size >= parallelThresholdBytes) {
+                parser = readObjParallel(filePath, size);
+            } else {
+                try (InputStream in = new FileInputStream(filePath)) {
+                    parser.parse(in);
                 }
             }
         } catch (IOException e) {
-            System.err.println("Error reading faces: " + e.getMessage());
+            System.err.println("Error reading OBJ file: " + e.getMessage());
         }
-
-        return triangleIndices.toArray(new int[0][]);
+        return parser.toData();
     }
 
     /**
-     * Reads normal indices from face definitions in the OBJ file.
+     * Memory-maps an OBJ file, splits it at line boundaries and parses the chunks in
+     * parallel on the shared build pool. Face indices in OBJ files are absolute, so chunks
+     * only need their triangle numbers and smoothing groups shifted when they are merged.
      *
      * @param filePath Path to the OBJ file
-     * @return 2D array of normal indices per face
+     * @param size     Size of the file in bytes
+     * @return Parser holding the merged contents of every chunk
      */
-    private static int[][] readNormalIndices(String filePath) {
-        List<int[]> normalIndices = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("f ")) {
-                    String[] parts = line.trim().split("\\s+");
-                    if (parts.length < 4) continue;
-
-                    int[] indices = new int[parts.length - 1];
-                    for (int i = 1; i < parts.length; i++) {
-                        String[] data = parts[i].split("/");
-                        indices[i - 1] = (data.length >= 3 && !data[2].isEmpty()) ? Integer.parseInt(data[2]) : -1;
-                    }
+    private static ObjParser readObjParallel(String filePath, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            int chunks = (int) Math.max(1, (size + CHUNK_BYTES - 1) / CHUNK_BYTES);
+            long[] bounds = new long[chunks + 1];
+            bounds[chunks] = size;
+            for (int i = 1; i < chunks; i++) {
+                bounds[i] = nextLineStart(channel, Math.max(bounds[i - 1], size / chunks * i), size);
+            }
 
-                    // Triangulate the face (maintain corresponding normal indices)
-                    for (int i = 1; i < indices.length - 1; i++) {
-                        normalIndices.add(new int[]{
-                                indices[0],
-                                indices[i],
-                                indices[i + 1]
-                        });
-                    }
+            ForkJoinPool pool = BVHGenerator.getBuildPool();
+            List<ForkJoinTask<ObjParser>> tasks = new ArrayList<>();
+            for (int i = 0; i < chunks; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                if (end <= start) continue;
+                tasks.add(pool.submit(() -> {
+                    ObjParser chunk = new ObjParser();
+                    chunk.parse(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+                    return chunk;
+                }));
+            }
+
+            List<ObjParser> parsed = new ArrayList<>();
+            try {
+                for (ForkJoinTask<ObjParser> task : tasks) {
+                    parsed.add(task.join());
                 }
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof IOException cause) throw cause;
+                throw e;
             }
-        } catch (IOException e) {
-            System.err.println("Error reading normal indices: " + e.getMessage());
+            return ObjParser.merge(parsed);
         }
-
-        return normalIndices.toArray(new int[0][]);
     }
 
     /**
-     * Reads smoothing groups from an OBJ file.
-     * Properly tracks triangulation of polygons and maintains correct face indices.
+     * Finds the start of the first line that begins after a position.
      *
-     * @param filePath Path to the OBJ file
-     * @return List of triangle index groups per smoothing group
+     * @return Offset just past the next line break, or the file size if there is none
      */
-    public static List<List<Integer>> readSmoothingGroups(String filePath) {
-        Map<Integer, List<Integer>> groupMap = new HashMap<>();
-        int currentGroup = 0;
-        int triangleIndex = 0;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-
-                if (line.startsWith("s ")) {
-                    // Parse smoothing group directive
-                    String value = line.substring(2).trim();
-                    if (value.equalsIgnoreCase("off") || value.equals("0")) {
-                        currentGroup = 0; // No smoothing
-                    } else {
-                        try {
-                            currentGroup = Integer.parseInt(value);
-                        } catch (NumberFormatException e) {
-                            // Invalid smoothing group, default to 0
-                            currentGroup = 0;
-                        }
-                    }
-                } else if (line.startsWith("f ")) {
-                    // Process face definition
-                    String[] parts = line.trim().split("\\s+");
-                    if (parts.length < 4) continue; // Skip invalid faces
-
-                    // Calculate how many triangles this face will generate
-                    int vertexCount = parts.length - 1;
-                    int trianglesInFace = vertexCount - 2;
-
-                    // Ensure the current group exists in the map
-                    if (!groupMap.containsKey(currentGroup)) {
-                        groupMap.put(currentGroup, new ArrayList<>());
-                    }
-
-                    // Add indices for all triangles generated from this face
-                    for (int i = 0; i < trianglesInFace; i++) {
-                        groupMap.get(currentGroup).add(triangleIndex++);
-                    }
-                }
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                byte b = window.get(i);
+                if (b == '\n' || b == '\r') return position + i + 1;
             }
-        } catch (IOException e) {
-            System.err.println("Error reading smoothing groups: " + e.getMessage());
-        }
-
-        // Sort groups by smoothing group ID and return as a list
-        List<List<Integer>> result = new ArrayList<>();
-        List<Integer> sortedKeys = new ArrayList<>(groupMap.keySet());
-        Collections.sort(sortedKeys);
-
-        for (Integer key : sortedKeys) {
-            result.add(groupMap.get(key));
+            position += read;
         }
-
-        return result;
+        return size;
     }
 
     /**
@@ -431,13 +310,14 @@ public class ObjReader {
      */
     public static List<Triangle> triangleList(Vector3D color, Vector3D rotation, Vector3D origin, Vector3D scale,
                                               String filePath) {
-        Vector3D[] vertices = readPoints(filePath);
-        int[][] faces = readFaces(filePath);
-        Vector3D[] normals = readNormals(filePath);
-        int[][] normalIndices = readNormalIndices(filePath);
-        List<List<Integer>> smoothingGroups = readSmoothingGroups(filePath);
-        Vector3D[] textures = readTextures(filePath);
-        int[][] textureIndices = readTextureIndices(filePath);  // Added this line
+        ObjData data = readObj(filePath);
+        Vector3D[] vertices = data.vertices;
+        int[][] faces = data.faces;
+        Vector3D[] normals = data.normals;
+        int[][] normalIndices = data.normalIndices;
+        List<List<Integer>> smoothingGroups = data.smoothingGroups;
+        Vector3D[] textures = data.textures;
+        int[][] textureIndices = data.textureIndices;
 
         Vector3D[] smoothedNormals = calculateSmoothedNormals(vertices, faces, normals, normalIndices, smoothingGroups);
 
@@ -487,15 +367,576 @@ public class ObjReader {
     }
 
     /**
-     * Safely parses the vertex index from a face component.
-     * Returns zero-indexed value (OBJ indices are 1-based).
+     * Generates a packed {@link TriangleMesh} using smoothed normals.
+     * Vertices are transformed to world space (scale, rotate, translate) just like
+     * {@link Triangle} does, but no per-face objects are created. Normals are left in
+     * model orientation so the owning object can rotate them, as with triangle lists.
      */
-    private static int parseSafeIndex(String faceComponent) {
-        try {
-            String[] split = faceComponent.split("/");
-            return Integer.parseInt(split[0]) - 1; // Convert to 0-based index
-        } catch (Exception e) {
+    public static TriangleMesh triangleMesh(Vector3D rotation, Vector3D origin, Vector3D scale, String filePath) {
+        ObjData data = readObj(filePath);
+        Vector3D[] vertices = data.vertices;
+        int[][] faces = data.faces;
+        Vector3D[] normals = data.normals;
+        int[][] normalIndices = data.normalIndices;
+        List<List<Integer>> smoothingGroups = data.smoothingGroups;
+        Vector3D[] textures = data.textures;
+        int[][] textureIndices = data.textureIndices;
+
+        Vector3D[] smoothedNormals = calculateSmoothedNormals(vertices, faces, normals, normalIndices, smoothingGroups);
+
+        double[] positions = new double[vertices.length * 3];
+        double[] vertexNormals = new double[vertices.length * 3];
+        for (int i = 0; i < vertices.length; i++) {
+            Vector3D world = vertices[i].scale(scale).rotateVector(rotation).add(origin);
+            positions[i * 3] = world.getX();
+            positions[i * 3 + 1] = world.getY();
+            positions[i * 3 + 2] = world.getZ();
+
+            vertexNormals[i * 3] = smoothedNormals[i].getX();
+            vertexNormals[i * 3 + 1] = smoothedNormals[i].getY();
+            vertexNormals[i * 3 + 2] = smoothedNormals[i].getZ();
+        }
+
+        double[] uvs = new double[textures.length * 3];
+        for (int i = 0; i < textures.length; i++) {
+            uvs[i * 3] = textures[i].getX();
+            uvs[i * 3 + 1] = textures[i].getY();
+            uvs[i * 3 + 2] = textures[i].getZ();
+        }
+
+        int[] vertexIndices = new int[faces.length * 3];
+        int[] uvIndices = new int[faces.length * 3];
+        int triangleCount = 0;
+
+        for (int i = 0; i < faces.length; i++) {
+            int[] face = faces[i];
+            if (face == null || face.length < 3) continue;
+
+            int v1 = face[0];
+            int v2 = face[1];
+            int v3 = face[2];
+
+            if (v1 < 0 || v2 < 0 || v3 < 0 || v1 >= vertices.length || v2 >= vertices.length || v3 >= vertices.length)
+                continue;
+
+            int base = triangleCount * 3;
+            vertexIndices[base] = v1;
+            vertexIndices[base + 1] = v2;
+            vertexIndices[base + 2] = v3;
+            uvIndices[base] = uvIndices[base + 1] = uvIndices[base + 2] = -1;
+
+            // Add texture coordinates only when all three are available (OBJ indices are 1-based)
+            if (i < textureIndices.length && textureIndices[i] != null && textureIndices[i].length >= 3) {
+                int[] texIndices = textureIndices[i];
+                boolean valid = true;
+                for (int k = 0; k < 3; k++) {
+                    valid &= texIndices[k] > 0 && texIndices[k] <= textures.length;
+                }
+                if (valid) {
+                    uvIndices[base] = texIndices[0] - 1;
+                    uvIndices[base + 1] = texIndices[1] - 1;
+                    uvIndices[base + 2] = texIndices[2] - 1;
+                }
+            }
+
+            triangleCount++;
+        }
+
+        return new TriangleMesh(positions, vertexNormals, uvs,
+                Arrays.copyOf(vertexIndices, triangleCount * 3), Arrays.copyOf(uvIndices, triangleCount * 3));
+    }
+
+    /**
+     * Everything read from an OBJ file. Faces are already triangulated, and every index
+     * array has one entry per triangle.
+     */
+    private static class ObjData {
+        Vector3D[] vertices;
+        Vector3D[] normals;
+        Vector3D[] textures;
+        /** Zero-based vertex indices, -1 where an index is invalid */
+        int[][] faces;
+        /** One-based normal indices, -1 where missing */
+        int[][] normalIndices;
+        /** One-based texture coordinate indices, -1 where missing */
+        int[][] textureIndices;
+        List<List<Integer>> smoothingGroups;
+    }
+
+    /**
+     * Single-pass OBJ tokenizer. Lines are read straight from a byte buffer and numbers are
+     * parsed in place, so no strings are created per line or per token. Only {@code v},
+     * {@code vt}, {@code vn}, {@code f} and {@code s} statements are read.
+     */
+    private static class ObjParser {
+        /** Powers of ten that are exact doubles, for the fast number path */
+        private static final double[] POWERS_OF_TEN = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+        };
+        /** Most significant digits a long mantissa holds exactly as a double */
+        private static final int MAX_EXACT_DIGITS = 15;
+        /** Index returned for a missing or malformed face index */
+        private static final int INVALID = Integer.MIN_VALUE;
+
+        private byte[] buffer = new byte[1 << 16];
+        /** Current line, as [position, lineEnd) in the buffer */
+        private int position;
+        private int lineEnd;
+
+        private double[] points = new double[3 * 1024];
+        private int pointCount;
+        private double[] normals = new double[3 * 1024];
+        private int normalCount;
+        private double[] textures = new double[3 * 1024];
+        private int textureCount;
+        /** Per triangle: vertex, texture and normal index of each corner */
+        private int[] faceIndices = new int[9 * 1024];
+        private int triangleCount;
+
+        /** Corners of the face being read */
+        private int[] cornerVertices = new int[8];
+        private int[] cornerTextures = new int[8];
+        private int[] cornerNormals = new int[8];
+
+        private final Map<Integer, List<Integer>> groupMap = new HashMap<>();
+        private List<Integer> currentGroup;
+        /** Id of the last smoothing group statement */
+        private int currentGroupId;
+        /**
+         * Triangles read before the first smoothing group statement. They belong to the
+         * group in effect where the chunk starts: group 0 for a whole file.
+         */
+        private int leadingTriangles;
+
+        /**
+         * Reads a memory-mapped chunk, see {@link #parse(InputStream)}.
+         */
+        void parse(ByteBuffer data) throws IOException {
+            parse(new InputStream() {
+                @Override
+                public int read() {
+                    return data.hasRemaining() ? data.get() & 0xFF : -1;
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) {
+                    if (!data.hasRemaining()) return -1;
+                    int count = Math.min(length, data.remaining());
+                    data.get(bytes, offset, count);
+                    return count;
+                }
+            });
+        }
+
+        /**
+         * Reads the whole stream, one line at a time.
+         */
+        void parse(InputStream in) throws IOException {
+            int start = 0;
+            int end = 0;
+            int scan = 0;
+            while (true) {
+                while (scan < end && buffer[scan] != '\n' && buffer[scan] != '\r') scan++;
+                if (scan < end) {
+                    parseLine(start, scan);
+                    start = ++scan;
+                    continue;
+                }
+
+                // No full line left: keep the partial one and refill the buffer
+                if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    scan -= start;
+                    start = 0;
+                }
+                if (end == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int read = in.read(buffer, end, buffer.length - end);
+                if (read < 0) {
+                    if (end > start) parseLine(start, end);
+                    return;
+                }
+                end += read;
+            }
+        }
+
+        private void parseLine(int start, int end) {
+            position = start;
+            lineEnd = end;
+            if (end - start < 2) return;
+
+            byte first = buffer[start];
+            byte second = buffer[start + 1];
+            if (first == 'v') {
+                if (second == ' ') {
+                    position += 2;
+                    readVertex();
+                } else if (second == 't' && end - start > 2 && buffer[start + 2] == ' ') {
+                    position += 3;
+                    readTextureCoordinate();
+                } else if (second == 'n' && end - start > 2 && buffer[start + 2] == ' ') {
+                    position += 3;
+                    readNormal();
+                }
+            } else if (first == 'f' && second == ' ') {
+                position += 2;
+                readFace();
+            } else {
+                // Smoothing groups are also accepted after leading whitespace
+                skipSpaces();
+                if (lineEnd - position >= 2 && buffer[position] == 's' && buffer[position + 1] == ' ') {
+                    position += 2;
+                    readSmoothingGroup();
+                }
+            }
+        }
+
+        private void readVertex() {
+            int count = countTokens();
+            if (count < 3) return;
+            points = ensureCapacity(points, pointCount * 3 + 3);
+            int base = pointCount * 3;
+            points[base] = nextDouble();
+            points[base + 1] = nextDouble();
+            points[base + 2] = nextDouble();
+            pointCount++;
+        }
+
+        private void readTextureCoordinate() {
+            int count = countTokens();
+            if (count < 2) return;
+            textures = ensureCapacity(textures, textureCount * 3 + 3);
+            int base = textureCount * 3;
+            textures[base] = nextDouble();
+            textures[base + 1] = nextDouble();
+            // Some OBJ files include w (3D texture coordinates)
+            textures[base + 2] = count >= 3 ? nextDouble() : 0;
+            textureCount++;
+        }
+
+        private void readNormal() {
+            int count = countTokens();
+            if (count < 3) return;
+            normals = ensureCapacity(normals, normalCount * 3 + 3);
+            int base = normalCount * 3;
+            normals[base] = nextDouble();
+            normals[base + 1] = nextDouble();
+            normals[base + 2] = nextDouble();
+            normalCount++;
+        }
+
+        private void readFace() {
+            int corners = 0;
+            while (true) {
+                skipSpaces();
+                if (position >= lineEnd) break;
+                int tokenEnd = tokenEnd();
+
+                if (corners == cornerVertices.length) {
+                    cornerVertices = Arrays.copyOf(cornerVertices, corners * 2);
+                    cornerTextures = Arrays.copyOf(cornerTextures, corners * 2);
+                    cornerNormals = Arrays.copyOf(cornerNormals, corners * 2);
+                }
+
+                // v, v/vt, v//vn or v/vt/vn
+                int slash1 = indexOf('/', position, tokenEnd);
+                int slash2 = slash1 < 0 ? -1 : indexOf('/', slash1 + 1, tokenEnd);
+                int slash3 = slash2 < 0 ? -1 : indexOf('/', slash2 + 1, tokenEnd);
+
+                int vertex = parseIndex(position, slash1 < 0 ? tokenEnd : slash1);
+                int texture = slash1 < 0 ? INVALID : parseIndex(slash1 + 1, slash2 < 0 ? tokenEnd : slash2);
+                int normal = slash2 < 0 ? INVALID : parseIndex(slash2 + 1, slash3 < 0 ? tokenEnd : slash3);
+
+                cornerVertices[corners] = vertex == INVALID ? -1 : vertex - 1;
+                cornerTextures[corners] = texture == INVALID ? -1 : texture;
+                cornerNormals[corners] = normal == INVALID ? -1 : normal;
+                corners++;
+                position = tokenEnd;
+            }
+            if (corners < 3) return;
+
+            // Fan triangulation for convex polygons
+            for (int i = 1; i < corners - 1; i++) {
+                faceIndices = ensureCapacity(faceIndices, triangleCount * 9 + 9);
+                int base = triangleCount * 9;
+                faceIndices[base] = cornerVertices[0];
+                faceIndices[base + 1] = cornerVertices[i];
+                faceIndices[base + 2] = cornerVertices[i + 1];
+                faceIndices[base + 3] = cornerTextures[0];
+                faceIndices[base + 4] = cornerTextures[i];
+                faceIndices[base + 5] = cornerTextures[i + 1];
+                faceIndices[base + 6] = cornerNormals[0];
+                faceIndices[base + 7] = cornerNormals[i];
+                faceIndices[base + 8] = cornerNormals[i + 1];
+                if (currentGroup == null) {
+                    leadingTriangles++;
+                } else {
+                    currentGroup.add(triangleCount);
+                }
+                triangleCount++;
+            }
+        }
+
+        private void readSmoothingGroup() {
+            skipSpaces();
+            int end = lineEnd;
+            while (end > position && buffer[end - 1] <= ' ') end--;
+
+            int group = 0;
+            // "off", "0" and invalid groups all mean no smoothing
+            if (!equalsIgnoreCase(position, end, "off")) {
+                int parsed = parseIndex(position, end);
+                group = parsed == INVALID ? 0 : parsed;
+            }
+            currentGroupId = group;
+            currentGroup = groupMap.computeIfAbsent(group, key -> new ArrayList<>());
+        }
+
+        /**
+         * Joins chunks parsed in file order into one parser. Triangle numbers are shifted by
+         * the triangles of the earlier chunks, and the leading triangles of every chunk join
+         * the smoothing group the previous chunks ended in.
+         *
+         * @param chunks Parsed chunks, in file order
+         * @return Parser holding the whole file
+         */
+        static ObjParser merge(List<ObjParser> chunks) {
+            ObjParser merged = new ObjParser();
+            int points = 0, normals = 0, textures = 0, triangles = 0;
+            for (ObjParser chunk : chunks) {
+                points += chunk.pointCount;
+                normals += chunk.normalCount;
+                textures += chunk.textureCount;
+                triangles += chunk.triangleCount;
+            }
+            merged.points = new double[points * 3];
+            merged.normals = new double[normals * 3];
+            merged.textures = new double[textures * 3];
+            merged.faceIndices = new int[triangles * 9];
+
+            int group = 0;
+            for (ObjParser chunk : chunks) {
+                System.arraycopy(chunk.points, 0, merged.points, merged.pointCount * 3, chunk.pointCount * 3);
+                System.arraycopy(chunk.normals, 0, merged.normals, merged.normalCount * 3, chunk.normalCount * 3);
+                System.arraycopy(chunk.textures, 0, merged.textures, merged.textureCount * 3, chunk.textureCount * 3);
+                System.arraycopy(chunk.faceIndices, 0, merged.faceIndices, merged.triangleCount * 9, chunk.triangleCount * 9);
+
+                int offset = merged.triangleCount;
+                List<Integer> leading = merged.groupMap.computeIfAbsent(group, key -> new ArrayList<>());
+                for (int i = 0; i < chunk.leadingTriangles; i++) {
+                    leading.add(offset + i);
+                }
+                for (Map.Entry<Integer, List<Integer>> entry : chunk.groupMap.entrySet()) {
+                    List<Integer> target = merged.groupMap.computeIfAbsent(entry.getKey(), key -> new ArrayList<>());
+                    for (int triangle : entry.getValue()) {
+                        target.add(offset + triangle);
+                    }
+                }
+                if (chunk.currentGroup != null) {
+                    group = chunk.currentGroupId;
+                }
+
+                merged.pointCount += chunk.pointCount;
+                merged.normalCount += chunk.normalCount;
+                merged.textureCount += chunk.textureCount;
+                merged.triangleCount += chunk.triangleCount;
+            }
+            return merged;
+        }
+
+        /**
+         * Builds the arrays the triangle generators work with.
+         */
+        ObjData toData() {
+            ObjData data = new ObjData();
+            data.vertices = new Vector3D[pointCount];
+            for (int i = 0; i < pointCount; i++) {
+                data.vertices[i] = new Vector3D(points[i * 3], points[i * 3 + 1], points[i * 3 + 2]);
+            }
+            data.normals = new Vector3D[normalCount];
+            for (int i = 0; i < normalCount; i++) {
+                // Ensure the normal is normalized
+                data.normals[i] = new Vector3D(normals[i * 3], normals[i * 3 + 1], normals[i * 3 + 2]).normalize();
+            }
+            data.textures = new Vector3D[textureCount];
+            for (int i = 0; i < textureCount; i++) {
+                data.textures[i] = new Vector3D(textures[i * 3], textures[i * 3 + 1], textures[i * 3 + 2]);
+            }
+
+            data.faces = new int[triangleCount][];
+            data.textureIndices = new int[triangleCount][];
+            data.normalIndices = new int[triangleCount][];
+            for (int i = 0; i < triangleCount; i++) {
+                int base = i * 9;
+                data.faces[i] = Arrays.copyOfRange(faceIndices, base, base + 3);
+                data.textureIndices[i] = Arrays.copyOfRange(faceIndices, base + 3, base + 6);
+                data.normalIndices[i] = Arrays.copyOfRange(faceIndices, base + 6, base + 9);
+            }
+
+            // Triangles before any smoothing group statement are not smoothed
+            if (leadingTriangles > 0) {
+                List<Integer> leading = new ArrayList<>(leadingTriangles);
+                for (int i = 0; i < leadingTriangles; i++) leading.add(i);
+                List<Integer> group = groupMap.get(0);
+                if (group != null) leading.addAll(group);
+                groupMap.put(0, leading);
+            }
+
+            // Sort groups by smoothing group ID and return as a list
+            List<Integer> sortedKeys = new ArrayList<>(groupMap.keySet());
+            Collections.sort(sortedKeys);
+            data.smoothingGroups = new ArrayList<>();
+            for (Integer key : sortedKeys) {
+                if (!groupMap.get(key).isEmpty()) {
+                    data.smoothingGroups.add(groupMap.get(key));
+                }
+            }
+            return data;
+        }
+
+        private void skipSpaces() {
+            while (position < lineEnd && buffer[position] <= ' ') position++;
+        }
+
+        private int tokenEnd() {
+            int end = position;
+            while (end < lineEnd && buffer[end] > ' ') end++;
+            return end;
+        }
+
+        /**
+         * Counts the tokens left on the line without consuming them.
+         */
+        private int countTokens() {
+            int count = 0;
+            int i = position;
+            while (true) {
+                while (i < lineEnd && buffer[i] <= ' ') i++;
+                if (i >= lineEnd) return count;
+                while (i < lineEnd && buffer[i] > ' ') i++;
+                count++;
+            }
+        }
+
+        private int indexOf(char c, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (buffer[i] == c) return i;
+            }
             return -1;
         }
+
+        private boolean equalsIgnoreCase(int start, int end, String text) {
+            if (end - start != text.length()) return false;
+            for (int i = 0; i < text.length(); i++) {
+                if (Character.toLowerCase((char) buffer[start + i]) != text.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Parses an optionally signed integer spanning the whole range.
+         *
+         * @return The value, or {@link #INVALID} if the range is empty or not an integer
+         */
+        private int parseIndex(int start, int end) {
+            int i = start;
+            boolean negative = false;
+            if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+                negative = buffer[i] == '-';
+                i++;
+            }
+            if (i >= end) return INVALID;
+
+            long value = 0;
+            for (; i < end; i++) {
+                int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9) return INVALID;
+                value = value * 10 + digit;
+                if (value > Integer.MAX_VALUE + 1L) return INVALID;
+            }
+            value = negative ? -value : value;
+            return value > Integer.MAX_VALUE || value <= INVALID ? INVALID : (int) value;
+        }
+
+        /**
+         * Parses the next token as a double. Plain decimals with up to 15 significant digits
+         * are computed with one exactly rounded multiplication or division, which gives the
+         * same value as {@link Double#parseDouble}; anything else goes through it.
+         */
+        private double nextDouble() {
+            skipSpaces();
+            int start = position;
+            int end = tokenEnd();
+            position = end;
+
+            int i = start;
+            boolean negative = false;
+            if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+                negative = buffer[i] == '-';
+                i++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean seenDigit = false;
+            for (; i < end && buffer[i] >= '0' && buffer[i] <= '9'; i++) {
+                seenDigit = true;
+                mantissa = mantissa * 10 + (buffer[i] - '0');
+                if (mantissa != 0 && ++digits > MAX_EXACT_DIGITS) return slowDouble(start, end);
+            }
+            if (i < end && buffer[i] == '.') {
+                for (i++; i < end && buffer[i] >= '0' && buffer[i] <= '9'; i++) {
+                    seenDigit = true;
+                    mantissa = mantissa * 10 + (buffer[i] - '0');
+                    exponent--;
+                    if (mantissa != 0 && ++digits > MAX_EXACT_DIGITS) return slowDouble(start, end);
+                }
+            }
+            if (!seenDigit) return slowDouble(start, end);
+
+            if (i < end && (buffer[i] == 'e' || buffer[i] == 'E')) {
+                int exponentStart = ++i;
+                boolean negativeExponent = false;
+                if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+                    negativeExponent = buffer[i] == '-';
+                    exponentStart = ++i;
+                }
+                int value = 0;
+                for (; i < end && buffer[i] >= '0' && buffer[i] <= '9' && value < 1000; i++) {
+                    value = value * 10 + (buffer[i] - '0');
+                }
+                if (i == exponentStart) return slowDouble(start, end);
+                exponent += negativeExponent ? -value : value;
+            }
+            if (i != end) return slowDouble(start, end);
+
+            double result;
+            if (mantissa == 0) {
+                result = 0;
+            } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+                result = mantissa * POWERS_OF_TEN[exponent];
+            } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+                result = mantissa / POWERS_OF_TEN[-exponent];
+            } else {
+                return slowDouble(start, end);
+            }
+            return negative ? -result : result;
+        }
+
+        private double slowDouble(int start, int end) {
+            return Double.parseDouble(new String(buffer, start, end - start, StandardCharsets.ISO_8859_1));
+        }
+
+        private static double[] ensureCapacity(double[] array, int size) {
+            return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+        }
+
+        private static int[] ensureCapacity(int[] array, int size) {
+            return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,297 @@
+package Tools;
+
+import Materials.Material;
+import Materials.Texture;
+import Materials.TextureCache;
+import Objects.MeshInstance;
+import Objects.ObjObject;
+import Objects.Object3D;
+import Objects.WrapperBoxes.BVHGenerator;
+import vectors.Vector3D;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Loads the assets of a scene concurrently. Scenes declare their meshes and textures in
+ * order; every OBJ file is parsed and transformed as its own task, every texture is decoded
+ * once per path, and a texture is applied to a mesh as soon as both are ready. Meshes build
+ * their BVHs on the shared build pool once they are parsed, so parsing, decoding and BVH
+ * construction overlap.
+ * <pre>
+ *     SceneLoader loader = new SceneLoader("Office");
+ *     CompletableFuture&lt;Texture&gt; wood = loader.texture("Textures/dark_wood.jpg");
+ *     loader.obj(material, color, rotation, position, scale, "ObjFiles/OfficeObjs/desk.obj", wood);
+ *     List&lt;Object3D&gt; objects = loader.load();
+ * </pre>
+ * {@link #load()} returns the objects in declaration order and prints how long every asset
+ * took. A failing asset fails the whole load with its original exception.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+public class SceneLoader {
+    /** Name of the scene, used in the timing report */
+    private final String sceneName;
+    /** Executor the loading tasks run on */
+    private final Executor executor;
+    /** Pending objects of the scene, in declaration order */
+    private final List<CompletableFuture<? extends Collection<? extends Object3D>>> objects = new ArrayList<>();
+    /** Textures requested so far, by path */
+    private final Map<String, CompletableFuture<Texture>> textures = new HashMap<>();
+    /** Meshes whose BVH build is waited for and timed */
+    private final List<CompletableFuture<ObjObject>> meshes = new ArrayList<>();
+    /** Mesh names, parallel to {@code meshes} */
+    private final List<String> meshNames = new ArrayList<>();
+    /** Timings of the finished assets */
+    private final List<AssetTiming> timings = Collections.synchronizedList(new ArrayList<>());
+    /** Time the loader was created, timings are reported relative to it */
+    private final long startNanos = System.nanoTime();
+    /** Whether {@link #load()} prints the timing report */
+    private boolean printTimings = true;
+
+    /**
+     * Creates a loader whose tasks run on the shared BVH build pool.
+     *
+     * @param sceneName Name of the scene, used in the timing report
+     */
+    public SceneLoader(String sceneName) {
+        this(sceneName, BVHGenerator.getBuildPool());
+    }
+
+    /**
+     * Creates a loader whose tasks run on the given executor.
+     *
+     * @param sceneName Name of the scene, used in the timing report
+     * @param executor  Executor the parsing and decoding tasks run on
+     */
+    public SceneLoader(String sceneName, Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        this.sceneName = sceneName;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts decoding a texture. Asking for the same path again returns the same texture,
+     * and textures already decoded by an earlier scene come from the {@link TextureCache}.
+     *
+     * @param path Path to the texture image file
+     * @return Future of the decoded texture
+     */
+    public synchronized CompletableFuture<Texture> texture(String path) {
+        return textures.computeIfAbsent(path, p -> CompletableFuture.supplyAsync(
+                () -> timed(p, "texture", () -> TextureCache.get(p)), executor));
+    }
+
+    /**
+     * Starts loading an untextured mesh, see {@link ObjObject}.
+     *
+     * @param material Material of the object
+     * @param color    Base color of the object
+     * @param rotation Rotation in degrees
+     * @param position Position of the object
+     * @param scale    Scale of the object
+     * @param objPath  Path to the OBJ file
+     * @return Future of the loaded mesh
+     */
+    public CompletableFuture<ObjObject> obj(Material material, Vector3D color, Vector3D rotation,
+                                           Vector3D position, Vector3D scale, String objPath) {
+        return obj(material, color, rotation, position, scale, objPath, null);
+    }
+
+    /**
+     * Starts loading a mesh and applies a texture to it once both are ready.
+     *
+     * @param material Material of the object
+     * @param color    Base color of the object
+     * @param rotation Rotation in degrees
+     * @param position Position of the object
+     * @param scale    Scale of the object
+     * @param objPath  Path to the OBJ file
+     * @param texture  Texture from {@link #texture(String)}, or null for none
+     * @return Future of the loaded and textured mesh
+     */
+    public synchronized CompletableFuture<ObjObject> obj(Material material, Vector3D color, Vector3D rotation,
+                                                        Vector3D position, Vector3D scale, String objPath,
+                                                        CompletableFuture<Texture> texture) {
+        CompletableFuture<ObjObject> mesh = CompletableFuture.supplyAsync(() -> timed(objPath, "obj",
+                () -> {
+                    ObjObject object = new ObjObject(material, color, rotation, position, scale, objPath);
+                    object.startBVHBuild();
+                    return object;
+                }), executor);
+        if (texture != null) {
+            mesh = mesh.thenCombine(texture, (object, image) -> {
+                object.setTexture(image);
+                return object;
+            });
+        }
+        meshes.add(mesh);
+        meshNames.add(objPath);
+        objects.add(mesh.thenApply(List::of));
+        return mesh;
+    }
+
+    /**
+     * Starts building a group of objects with a factory of its own, such as the grids
+     * in {@code TipicalObj}. The group keeps its place in the scene order.
+     *
+     * @param name    Name of the group, used in the timing report
+     * @param factory Builds the objects of the group
+     * @return Future of the objects of the group
+     */
+    public synchronized CompletableFuture<List<? extends Object3D>> group(String name,
+                                                                        Supplier<List<? extends Object3D>> factory) {
+        CompletableFuture<List<? extends Object3D>> group =
+                CompletableFuture.supplyAsync(() -> timed(name, "group", factory), executor);
+        objects.add(group);
+        return group;
+    }
+
+    /**
+     * Waits for every asset and every mesh BVH, and returns the scene objects in
+     * declaration order.
+     *
+     * @return The objects of the scene
+     * @throws RuntimeException the first failure of an asset, unwrapped
+     */
+    public List<Object3D> load() {
+        List<Object3D> result = new ArrayList<>();
+        List<CompletableFuture<? extends Collection<? extends Object3D>>> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(objects);
+        }
+        try {
+            for (CompletableFuture<? extends Collection<? extends Object3D>> future : pending) {
+                result.addAll(future.join());
+            }
+            // Groups may hold meshes too; every BVH has to be ready before rendering
+            for (Object3D object : result) {
+                if (object instanceof ObjObject objObject) {
+                    objObject.awaitBVH();
+                } else if (object instanceof MeshInstance instance) {
+                    instance.awaitBVH();
+                }
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < meshes.size(); i++) {
+                ObjObject mesh = meshes.get(i).join();
+                timings.add(new AssetTiming(meshNames.get(i), "bvh", -1, mesh.getBVHBuildNanos()));
+            }
+        }
+        long totalNanos = System.nanoTime() - startNanos;
+        if (printTimings) {
+            printTimings(result.size(), totalNanos);
+        }
+        return result;
+    }
+
+    /**
+     * Runs a loading step and records how long it took.
+     */
+    private <T> T timed(String name, String kind, Supplier<T> step) {
+        long start = System.nanoTime();
+        T value = step.get();
+        long end = System.nanoTime();
+        timings.add(new AssetTiming(name, kind, start - startNanos, end - start));
+        return value;
+    }
+
+    /**
+     * Prints the timing of every asset, slowest first.
+     */
+    private void printTimings(int objectCount, long totalNanos) {
+        List<AssetTiming> sorted = getTimings();
+        sorted.sort((a, b) -> Long.compare(b.getNanos(), a.getNanos()));
+
+        long busyNanos = 0;
+        for (AssetTiming timing : sorted) busyNanos += timing.getNanos();
+
+        System.out.println(String.format(Locale.ROOT, "Scene %s loaded in %.1f ms (%d objects, %d textures, %.1f ms of work)",
+                sceneName, totalNanos / 1e6, objectCount, textures.size(), busyNanos / 1e6));
+        for (AssetTiming timing : sorted) {
+            System.out.println("  " + timing);
+        }
+    }
+
+    /**
+     * Gets the timings recorded so far, BVH builds included once {@link #load()} returned.
+     *
+     * @return Copy of the asset timings
+     */
+    public List<AssetTiming> getTimings() {
+        synchronized (timings) {
+            return new ArrayList<>(timings);
+        }
+    }
+
+    /**
+     * Sets whether {@link #load()} prints the timing report.
+     *
+     * @param printTimings True to print the report
+     */
+    public void setPrintTimings(boolean printTimings) {
+        this.printTimings = printTimings;
+    }
+
+    /**
+     * Time spent loading one asset.
+     */
+    public static class AssetTiming {
+        private final String name;
+        private final String kind;
+        private final long startNanos;
+        private final long nanos;
+
+        /**
+         * @param name       Path or name of the asset
+         * @param kind       "obj", "texture", "group" or "bvh"
+         * @param startNanos Start relative to the loader creation, or -1 if unknown
+         * @param nanos      Duration of the step
+         */
+        public AssetTiming(String name, String kind, long startNanos, long nanos) {
+            this.name = name;
+            this.kind = kind;
+            this.startNanos = startNanos;
+            this.nanos = nanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            String start = startNanos < 0 ? "" : String.format(Locale.ROOT, " (at %.1f ms)", startNanos / 1e6);
+            return String.format(Locale.ROOT, "%-8s %9.1f ms  %s%s", kind, nanos / 1e6, name, start);
+        }
+    }
+}
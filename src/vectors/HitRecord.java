@@ -0,0 +1,164 @@
+package vectors;
+
+import Objects.Object3D;
+import Objects.Triangle;
+
+/**
+ * Stores the result of a closest-hit query against the scene.
+ * Holds the distance along the ray, the scene object that was hit and,
+ * for meshes and standalone triangles, the specific triangle that was hit
+ * together with the barycentric coordinates of the hit point, so normals and
+ * texture coordinates are interpolated without projecting the point again.
+ */
+public class HitRecord {
+    /** Distance from the ray origin to the intersection point */
+    private double distance;
+
+    /** The scene object that was hit */
+    private Object3D object;
+
+    /** The triangle that was hit, or null for non-triangle objects */
+    private Triangle triangle;
+
+    /** Index of the hit triangle inside its mesh, or -1 if not hit on a mesh */
+    private int triangleIndex;
+
+    /** Barycentric weight of the second vertex of the hit triangle */
+    private double u;
+
+    /** Barycentric weight of the third vertex of the hit triangle */
+    private double v;
+
+    /** Shading normal at the hit, interpolated on first use */
+    private Vector3D normal;
+
+    /** Width of the pixel's footprint on the surface, or 0 if unknown */
+    private double footprint;
+
+    /**
+     * Creates a new hit record without barycentric coordinates.
+     *
+     * @param distance Distance along the ray to the hit
+     * @param object   The scene object that was hit
+     * @param triangle The triangle that was hit, or null
+     */
+    public HitRecord(double distance, Object3D object, Triangle triangle) {
+        this(distance, object, triangle, -1, 0.0, 0.0);
+    }
+
+    /**
+     * Creates a new hit record on a triangle.
+     *
+     * @param distance      Distance along the ray to the hit
+     * @param object        The scene object that was hit
+     * @param triangle      The triangle that was hit, or null
+     * @param triangleIndex Index of the triangle inside its mesh, or -1
+     * @param u             Barycentric weight of the second vertex
+     * @param v             Barycentric weight of the third vertex
+     */
+    public HitRecord(double distance, Object3D object, Triangle triangle, int triangleIndex, double u, double v) {
+        this.distance = distance;
+        this.object = object;
+        this.triangle = triangle;
+        this.triangleIndex = triangleIndex;
+        this.u = u;
+        this.v = v;
+    }
+
+    /**
+     * Gets the distance from the ray origin to the hit.
+     *
+     * @return Distance along the ray
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Gets the scene object that was hit.
+     *
+     * @return The hit object
+     */
+    public Object3D getObject() {
+        return object;
+    }
+
+    /**
+     * Gets the triangle that was hit.
+     *
+     * @return The hit triangle, or null if the object is not made of triangles
+     */
+    public Triangle getTriangle() {
+        return triangle;
+    }
+
+    /**
+     * Gets the index of the hit triangle inside its mesh.
+     *
+     * @return Triangle index, or -1 if the hit is not on a mesh
+     */
+    public int getTriangleIndex() {
+        return triangleIndex;
+    }
+
+    /**
+     * Gets the barycentric weight of the second vertex of the hit triangle.
+     *
+     * @return The u coordinate
+     */
+    public double getU() {
+        return u;
+    }
+
+    /**
+     * Gets the barycentric weight of the third vertex of the hit triangle.
+     * The first vertex weighs {@code 1 - u - v}.
+     *
+     * @return The v coordinate
+     */
+    public double getV() {
+        return v;
+    }
+
+    /**
+     * Gets the interpolated shading normal of the hit triangle. It is computed once
+     * and shared by every caller, so it must not be modified.
+     *
+     * @return The normal, or null if no triangle was hit
+     */
+    public Vector3D getNormal() {
+        if (normal == null && triangle != null) {
+            normal = triangle.getNormal(u, v);
+        }
+        return normal;
+    }
+
+    /**
+     * Gets the width of the area the sample covers on the hit surface.
+     *
+     * @return Footprint in world units, or 0 if unknown
+     */
+    public double getFootprint() {
+        return footprint;
+    }
+
+    /**
+     * Sets the width of the area the sample covers on the hit surface, so textures are
+     * sampled at a matching level of detail.
+     *
+     * @param footprint Footprint in world units, or 0 to sample at full resolution
+     */
+    public void setFootprint(double footprint) {
+        this.footprint = footprint;
+    }
+
+    /**
+     * Gets the texture color of the hit triangle at the hit point, filtered over the
+     * footprint when one was set.
+     *
+     * @return Packed RGB color, or 0 if no textured triangle was hit
+     */
+    public int getTextureColor() {
+        return triangle != null ? triangle.getTextureColor(u, v, footprint) : 0;
+    }
+}
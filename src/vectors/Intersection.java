@@ -25,14 +25,25 @@ public class Intersection {
     public static double sphere(Ray ray, Sphere sphere, double nearPlane, double farPlane) {
         Vector3D rayOrigin = ray.getOrigin();
         Vector3D sphereCenter = sphere.getPosition();
-        Vector3D rayDir = ray.getDirection().normalize();
+        Vector3D rayDir = ray.getDirection();
         double radius = sphere.getRadius();
 
-        Vector3D oc = rayOrigin.subtract(sphereCenter);
+        // Normalized direction, kept on primitives
+        double length = rayDir.magnitude();
+        double dx = 0, dy = 0, dz = 0;
+        if (length != 0) {
+            dx = rayDir.x / length;
+            dy = rayDir.y / length;
+            dz = rayDir.z / length;
+        }
+
+        double ocx = rayOrigin.x - sphereCenter.x;
+        double ocy = rayOrigin.y - sphereCenter.y;
+        double ocz = rayOrigin.z - sphereCenter.z;
 
         // Since rayDir is normalized, a = 1.0
-        double b = 2.0 * oc.dot(rayDir);
-        double c = oc.dot(oc) - radius * radius;
+        double b = 2.0 * Vector3D.dot(ocx, ocy, ocz, dx, dy, dz);
+        double c = Vector3D.dot(ocx, ocy, ocz, ocx, ocy, ocz) - radius * radius;
         double discriminant = b * b - 4 * c;
 
         if (discriminant < 0) {
@@ -73,55 +84,20 @@ public class Intersection {
 
         // Ray origin and direction (normalized)
         Vector3D O = ray.getOrigin();
-        Vector3D D = ray.getDirection().normalize();
-
-        // Edges of the triangle
-        Vector3D v2v0 = v2.subtract(v0);
-        Vector3D v1v0 = v1.subtract(v0);
-
-        // P = D x v1v0
-        Vector3D P = D.cross(v1v0);
-
-        // Determinant = v2v0 . P
-        double determinant = v2v0.dot(P);
-        double invDet = 1.0 / determinant;
-
-        // If determinant is near zero, ray is parallel to triangle plane
-        if (Math.abs(determinant) < 1e-5) {
-            return -1.0;
-        }
-
-        // Vector from vertex v0 to ray origin
-        Vector3D T = O.subtract(v0);
-
-        // Calculate u parameter
-        double u = invDet * T.dot(P);
-
-        // Check u bounds
-        if (u < 0.0 || u > 1.0) {
-            return -1.0;
+        Vector3D D = ray.getDirection();
+        double length = D.magnitude();
+        double dx = 0, dy = 0, dz = 0;
+        if (length != 0) {
+            dx = D.x / length;
+            dy = D.y / length;
+            dz = D.z / length;
         }
 
-        // Q = T x v2v0
-        Vector3D Q = T.cross(v2v0);
-
-        // Calculate v parameter
-        double v = invDet * D.dot(Q);
-
-        // Check v bounds and u+v
-        if (v < 0.0 || (u + v) > (1.0 + epsilon)) {
-            return -1.0;
-        }
-
-        // Calculate t
-        double t = invDet * Q.dot(v1v0);
-
-        // Check if t is within ray range
-        if (t < nearPlane || t > farPlane) {
-            return -1.0;
-        }
-
-        return t;
+        // Edges of the triangle, computed on primitives to avoid temporaries
+        return mollerTrumbore(v0.x, v0.y, v0.z,
+                v1.x - v0.x, v1.y - v0.y, v1.z - v0.z,
+                v2.x - v0.x, v2.y - v0.y, v2.z - v0.z,
+                O.x, O.y, O.z, dx, dy, dz, nearPlane, farPlane, epsilon);
     }
 
     /**
@@ -141,12 +117,15 @@ public class Intersection {
         }
 
         // Now traverse the BVH
-        BVHNode root = objObject.getBvhRoot();
-        if (root == null) {
+        LinearBVH bvh = objObject.getLinearBVH();
+        if (bvh == null) {
             return -1.0; // No BVH built
         }
 
-        return traverseBVHIterative(ray, root, objObject, nearPlane, farPlane, epsilon);
+        double[] closestT = TraversalStack.get().closestT;
+        closestT[0] = farPlane;
+        int entry = traverseLinearBVH(ray, bvh, objObject, nearPlane, closestT, epsilon);
+        return entry >= 0 ? closestT[0] : -1.0;
     }
 
     /**
@@ -160,12 +139,410 @@ public class Intersection {
         }
 
         // Now traverse the BVH
-        BVHNode root = objObject.getBvhRoot();
-        if (root == null) {
+        LinearBVH bvh = objObject.getLinearBVH();
+        if (bvh == null) {
             return null; // No BVH built
         }
 
-        return traverseBVHForTriangleIterative(ray, root, objObject, nearPlane, farPlane, epsilon);
+        double[] closestT = TraversalStack.get().closestT;
+        closestT[0] = farPlane;
+        int entry = traverseLinearBVH(ray, bvh, objObject, nearPlane, closestT, epsilon);
+        return entry >= 0 ? objObject.getTriangle(bvh.getTriangleIndices()[entry]) : null;
+    }
+
+    /**
+     * Checks whether a ray hits an OBJ object anywhere between the near and far planes.
+     * Unlike {@link #obj(Ray, ObjObject, double, double, double)} it does not look for the
+     * closest hit: the BVH is walked without ordering children and the walk stops at the
+     * first triangle hit, which is all a shadow ray needs.
+     *
+     * @param ray       The ray to test intersection with
+     * @param objObject The OBJ object to test intersection with
+     * @param nearPlane The minimum valid distance
+     * @param farPlane  The maximum valid distance
+     * @param epsilon   Tolerance value for floating point comparisons
+     * @return true if any triangle is hit within the range, false otherwise
+     */
+    public static boolean objOccluded(Ray ray, ObjObject objObject, double nearPlane, double farPlane, double epsilon) {
+        // First check against the root AABB
+        if (!cube(ray, objObject.getCube())) {
+            return false;
+        }
+
+        LinearBVH bvh = objObject.getLinearBVH();
+        if (bvh == null) {
+            return false; // No BVH built
+        }
+
+        return anyHitLinearBVH(ray, bvh, objObject, nearPlane, farPlane, epsilon);
+    }
+
+    /**
+     * Checks if a ray intersects with an instance of a shared mesh. The ray is moved into
+     * the space of the shared mesh and its BVH is traversed there.
+     *
+     * @param ray       The ray to test intersection with
+     * @param instance  The mesh instance to test intersection with
+     * @param nearPlane The minimum valid distance
+     * @param farPlane  The maximum valid distance
+     * @param epsilon   Tolerance value for floating point comparisons
+     * @return The distance to closest intersection point, or -1.0 if no intersection
+     */
+    public static double meshInstance(Ray ray, MeshInstance instance, double nearPlane, double farPlane,
+                                      double epsilon) {
+        double[] closestT = TraversalStack.get().closestT;
+        closestT[0] = farPlane;
+        int entry = traverseInstance(ray, instance, nearPlane, closestT, epsilon);
+        return entry >= 0 ? closestT[0] : -1.0;
+    }
+
+    /**
+     * Checks whether a ray hits an instance of a shared mesh anywhere between the near and
+     * far planes, see {@link #objOccluded(Ray, ObjObject, double, double, double)}.
+     *
+     * @param ray       The ray to test intersection with
+     * @param instance  The mesh instance to test intersection with
+     * @param nearPlane The minimum valid distance
+     * @param farPlane  The maximum valid distance
+     * @param epsilon   Tolerance value for floating point comparisons
+     * @return true if any triangle is hit within the range, false otherwise
+     */
+    public static boolean meshInstanceOccluded(Ray ray, MeshInstance instance, double nearPlane, double farPlane,
+                                               double epsilon) {
+        if (!cube(ray, instance.getCube())) {
+            return false;
+        }
+
+        LinearBVH bvh = instance.getMesh().getLinearBVH();
+        if (bvh == null) {
+            return false;
+        }
+
+        double scale = instance.getDistanceScale(ray);
+        return anyHitLinearBVH(instance.toObjectSpace(ray), bvh, instance.getMesh(),
+                nearPlane * scale, farPlane * scale, epsilon);
+    }
+
+    /**
+     * Traverses the BVH of a shared mesh with a ray moved into the mesh's space. Distances
+     * are scaled into that space for the traversal and back to world distances afterwards.
+     *
+     * @param closestT In: the farthest valid distance. Out: distance to the closest hit
+     * @return Leaf entry of the closest triangle hit, or -1 if no triangle is hit
+     */
+    private static int traverseInstance(Ray ray, MeshInstance instance, double nearPlane, double[] closestT,
+                                        double epsilon) {
+        if (!cube(ray, instance.getCube())) {
+            return -1;
+        }
+
+        LinearBVH bvh = instance.getMesh().getLinearBVH();
+        if (bvh == null) {
+            return -1;
+        }
+
+        double scale = instance.getDistanceScale(ray);
+        double farPlane = closestT[0];
+        closestT[0] = farPlane * scale;
+        int entry = traverseLinearBVH(instance.toObjectSpace(ray), bvh, instance.getMesh(),
+                nearPlane * scale, closestT, epsilon);
+        closestT[0] = entry >= 0 ? closestT[0] / scale : farPlane;
+        return entry;
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the scene using the top-level BVH.
+     * Nodes are visited front-to-back, ObjObject leaves hand off to the object's own BVH and
+     * MeshInstance leaves to the BVH of their shared mesh.
+     * Triangle hits come back with the triangle index and barycentric coordinates filled in.
+     *
+     * @param ray       The ray to test intersection with
+     * @param sceneBVH  The top-level BVH of the scene
+     * @param nearPlane The minimum valid distance
+     * @param farPlane  The maximum valid distance
+     * @param epsilon   Tolerance value for floating point comparisons
+     * @return The closest hit, or null if nothing is hit
+     */
+    public static HitRecord scene(Ray ray, SceneBVH sceneBVH, double nearPlane, double farPlane, double epsilon) {
+        return scene(ray, sceneBVH, nearPlane, farPlane, epsilon, null);
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the scene using the top-level BVH,
+     * adding the nodes visited and triangles tested to the given statistics.
+     *
+     * @param ray       The ray to test intersection with
+     * @param sceneBVH  The top-level BVH of the scene
+     * @param nearPlane The minimum valid distance
+     * @param farPlane  The maximum valid distance
+     * @param epsilon   Tolerance value for floating point comparisons
+     * @param stats     Statistics to update, or null
+     * @return The closest hit, or null if nothing is hit
+     */
+    public static HitRecord scene(Ray ray, SceneBVH sceneBVH, double nearPlane, double farPlane, double epsilon,
+                                  RenderStats stats) {
+        BVHNode root = sceneBVH.getRoot();
+        if (root == null) {
+            return null;
+        }
+
+        TraversalStack scratch = TraversalStack.get();
+        scratch.resetCounters();
+        BVHNode[] nodeStack = scratch.sceneNodes;
+        double[] distStack = scratch.sceneDistances;
+        int stackSize = 0;
+
+        nodeStack[stackSize] = root;
+        distStack[stackSize] = 0.0;
+        stackSize++;
+
+        double closestT = farPlane;
+        Object3D closestObject = null;
+        Triangle closestTriangle = null;
+        // Leaf entry of the closest mesh triangle, resolved to a triangle once traversal ends
+        LinearBVH closestBVH = null;
+        int closestEntry = -1;
+        double[] meshClosestT = scratch.closestT;
+
+        while (stackSize > 0) {
+            stackSize--;
+            BVHNode node = nodeStack[stackSize];
+
+            // Skip this node if we already found a closer intersection
+            if (distStack[stackSize] >= closestT) {
+                continue;
+            }
+
+            scratch.nodesVisited++;
+            if (node.isLeaf()) {
+                for (int index : ((BVHLeafNode) node).getTriangleIndices()) {
+                    Object3D obj = sceneBVH.getObject(index);
+                    double dist = -1.0;
+                    Triangle triangleHit = null;
+                    LinearBVH bvh = null;
+                    int entry = -1;
+
+                    if (obj instanceof Sphere sphere) {
+                        dist = sphere(ray, sphere, nearPlane, closestT);
+                    } else if (obj instanceof Triangle triangle) {
+                        dist = triangle(ray, triangle, nearPlane, closestT, epsilon);
+                        triangleHit = triangle;
+                        scratch.triangleTests++;
+                    } else if (obj instanceof ObjObject objObject) {
+                        // The mesh traversal already yields the distance, no second triangle test
+                        bvh = objObject.getLinearBVH();
+                        if (bvh != null && cube(ray, objObject.getCube())) {
+                            meshClosestT[0] = closestT;
+                            entry = traverseLinearBVH(ray, bvh, objObject, nearPlane, meshClosestT, epsilon);
+                            if (entry >= 0) {
+                                dist = meshClosestT[0];
+                            }
+                        }
+                    } else if (obj instanceof MeshInstance instance) {
+                        bvh = instance.getMesh().getLinearBVH();
+                        meshClosestT[0] = closestT;
+                        entry = traverseInstance(ray, instance, nearPlane, meshClosestT, epsilon);
+                        if (entry >= 0) {
+                            dist = meshClosestT[0];
+                        }
+                    }
+
+                    if (dist > nearPlane && dist < closestT) {
+                        closestT = dist;
+                        closestObject = obj;
+                        closestTriangle = triangleHit;
+                        closestBVH = bvh;
+                        closestEntry = entry;
+                    }
+                }
+            } else {
+                BVHInternalNode internal = (BVHInternalNode) node;
+                stackSize = pushChildrenOrdered(ray, internal.getLeftChild(), internal.getRightChild(),
+                        closestT, nodeStack, distStack, stackSize);
+            }
+        }
+
+        scratch.flushCounters(stats);
+        if (closestObject == null) {
+            return null;
+        }
+
+        int triangleIndex = -1;
+        if (closestEntry >= 0) {
+            triangleIndex = closestBVH.getTriangleIndices()[closestEntry];
+            // Instances hand back their triangle in world space, so shading needs no transform
+            closestTriangle = closestObject instanceof MeshInstance instance
+                    ? instance.getTriangle(triangleIndex)
+                    : ((ObjObject) closestObject).getTriangle(triangleIndex);
+        }
+        if (closestTriangle == null) {
+            return new HitRecord(closestT, closestObject, null);
+        }
+        return triangleHitRecord(ray, closestT, closestObject, closestTriangle, triangleIndex);
+    }
+
+    /**
+     * Builds the hit record of the closest triangle, with the barycentric coordinates of
+     * the hit point. They come from the same Möller–Trumbore terms as the traversal test
+     * and are only computed for the winning triangle, once per query.
+     *
+     * @return Hit record with the triangle, its index and its barycentric coordinates
+     */
+    private static HitRecord triangleHitRecord(Ray ray, double distance, Object3D object,
+                                               Triangle triangle, int triangleIndex) {
+        Vector3D v0 = triangle.getVertex1();
+        Vector3D v1 = triangle.getVertex2();
+        Vector3D v2 = triangle.getVertex3();
+        double e1x = v1.x - v0.x, e1y = v1.y - v0.y, e1z = v1.z - v0.z;
+        double e2x = v2.x - v0.x, e2y = v2.y - v0.y, e2z = v2.z - v0.z;
+
+        Vector3D O = ray.getOrigin();
+        Vector3D D = ray.getDirection();
+        double length = D.magnitude();
+        double dx = D.x / length, dy = D.y / length, dz = D.z / length;
+
+        // P = D x e1, Q = T x e2, as in mollerTrumbore
+        double px = dy * e1z - dz * e1y;
+        double py = dz * e1x - dx * e1z;
+        double pz = dx * e1y - dy * e1x;
+        double invDet = 1.0 / (e2x * px + e2y * py + e2z * pz);
+
+        double tx = O.x - v0.x, ty = O.y - v0.y, tz = O.z - v0.z;
+        double qx = ty * e2z - tz * e2y;
+        double qy = tz * e2x - tx * e2z;
+        double qz = tx * e2y - ty * e2x;
+
+        // The kernel's first coordinate weighs e2 (third vertex), the second weighs e1 (second vertex)
+        double weight3 = invDet * (tx * px + ty * py + tz * pz);
+        double weight2 = invDet * (dx * qx + dy * qy + dz * qz);
+
+        return new HitRecord(distance, object, triangle, triangleIndex, weight2, weight3);
+    }
+
+    /**
+     * Checks whether any object of the scene blocks a ray before the given distance.
+     * Stops at the first blocking object instead of looking for the closest one.
+     *
+     * @param ray       The ray to test intersection with
+     * @param sceneBVH  The top-level BVH of the scene
+     * @param nearPlane The minimum valid distance
+     * @param farPlane  The maximum valid distance
+     * @param epsilon   Tolerance value for floating point comparisons
+     * @param ignore    Object to skip (to prevent self-shadowing), may be null
+     * @return true if the ray is blocked, false otherwise
+     */
+    public static boolean sceneOccluded(Ray ray, SceneBVH sceneBVH, double nearPlane, double farPlane,
+                                        double epsilon, Object3D ignore) {
+        return sceneOccluded(ray, sceneBVH, nearPlane, farPlane, epsilon, ignore, null);
+    }
+
+    /**
+     * Checks whether any object of the scene blocks a ray before the given distance,
+     * adding the nodes visited and triangles tested to the given statistics.
+     *
+     * @param ray       The ray to test intersection with
+     * @param sceneBVH  The top-level BVH of the scene
+     * @param nearPlane The minimum valid distance
+     * @param farPlane  The maximum valid distance
+     * @param epsilon   Tolerance value for floating point comparisons
+     * @param ignore    Object to skip (to prevent self-shadowing), may be null
+     * @param stats     Statistics to update, or null
+     * @return true if the ray is blocked, false otherwise
+     */
+    public static boolean sceneOccluded(Ray ray, SceneBVH sceneBVH, double nearPlane, double farPlane,
+                                        double epsilon, Object3D ignore, RenderStats stats) {
+        BVHNode root = sceneBVH.getRoot();
+        if (root == null) {
+            return false;
+        }
+
+        TraversalStack scratch = TraversalStack.get();
+        scratch.resetCounters();
+        BVHNode[] nodeStack = scratch.sceneNodes;
+        int stackSize = 0;
+        nodeStack[stackSize++] = root;
+
+        while (stackSize > 0) {
+            BVHNode node = nodeStack[--stackSize];
+
+            double entry = getNodeEntryDistance(ray, node);
+            if (entry < 0 || entry > farPlane) {
+                continue;
+            }
+
+            scratch.nodesVisited++;
+            if (node.isLeaf()) {
+                for (int index : ((BVHLeafNode) node).getTriangleIndices()) {
+                    Object3D obj = sceneBVH.getObject(index);
+                    if (obj == ignore) continue;
+
+                    double dist = -1.0;
+                    if (obj instanceof Sphere sphere) {
+                        dist = sphere(ray, sphere, nearPlane, farPlane);
+                    } else if (obj instanceof Triangle triangle) {
+                        dist = triangle(ray, triangle, nearPlane, farPlane, epsilon);
+                        scratch.triangleTests++;
+                    } else if (obj instanceof ObjObject objObject) {
+                        if (objOccluded(ray, objObject, nearPlane, farPlane, epsilon)) {
+                            scratch.flushCounters(stats);
+                            return true;
+                        }
+                    } else if (obj instanceof MeshInstance instance) {
+                        if (meshInstanceOccluded(ray, instance, nearPlane, farPlane, epsilon)) {
+                            scratch.flushCounters(stats);
+                            return true;
+                        }
+                    }
+
+                    if (dist > 0.0 && dist < farPlane) {
+                        scratch.flushCounters(stats);
+                        return true;
+                    }
+                }
+            } else {
+                BVHInternalNode internal = (BVHInternalNode) node;
+                nodeStack[stackSize++] = internal.getLeftChild();
+                nodeStack[stackSize++] = internal.getRightChild();
+            }
+        }
+
+        scratch.flushCounters(stats);
+        return false;
+    }
+
+    /**
+     * Pushes the children of an internal node onto the traversal stack in far-to-near
+     * order, so the nearer child is popped first. Children missed by the ray or farther
+     * than the closest hit found so far are not pushed.
+     *
+     * @return The new stack size
+     */
+    private static int pushChildrenOrdered(Ray ray, BVHNode left, BVHNode right, double closestT,
+                                           BVHNode[] nodeStack, double[] distStack, int stackSize) {
+        double leftDist = getNodeEntryDistance(ray, left);
+        double rightDist = getNodeEntryDistance(ray, right);
+
+        boolean pushLeft = leftDist >= 0 && leftDist < closestT;
+        boolean pushRight = rightDist >= 0 && rightDist < closestT;
+
+        if (pushLeft && pushRight && leftDist < rightDist) {
+            // Left is closer, push right first
+            nodeStack[stackSize] = right;
+            distStack[stackSize++] = rightDist;
+            nodeStack[stackSize] = left;
+            distStack[stackSize++] = leftDist;
+            return stackSize;
+        }
+
+        if (pushLeft) {
+            nodeStack[stackSize] = left;
+            distStack[stackSize++] = leftDist;
+        }
+        if (pushRight) {
+            nodeStack[stackSize] = right;
+            distStack[stackSize++] = rightDist;
+        }
+        return stackSize;
     }
 
     /**
@@ -229,215 +606,340 @@ public class Intersection {
     }
 
     /**
-     * Traverses the BVH to find the closest triangle intersection.
-     */
-
-
-    /**
-     * Traverses the BVH iteratively to find the closest triangle intersection.
-     * This avoids stack overflow and allows for early termination.
+     * Traverses a flattened BVH iteratively to find the closest triangle intersection.
+     * Children are visited near-to-far and nodes farther than the closest hit are skipped.
+     *
+     * @param closestT In: the farthest valid distance. Out: distance to the closest hit
+     * @return Leaf entry of the closest triangle hit (an index into the BVH's triangle
+     *         indices and triangle data), or -1 if no triangle is hit
      */
-    private static double traverseBVHIterative(Ray ray, BVHNode root, ObjObject objObject,
-                                               double nearPlane, double farPlane, double epsilon) {
-        // Stack-based traversal to avoid recursion
-        // Using a simple array as stack with max size to avoid dynamic allocation
-        BVHNode[] nodeStack = new BVHNode[64]; // Adjust size based on expected BVH depth
-        double[] distStack = new double[64];   // Distance to node's AABB
+    private static int traverseLinearBVH(Ray ray, LinearBVH bvh, ObjObject objObject,
+                                         double nearPlane, double[] closestT, double epsilon) {
+        double[] bounds = bvh.getBounds();
+        int[] nodes = bvh.getNodes();
+        int[] triangleIndices = bvh.getTriangleIndices();
+        double[] triangleData = bvh.getTriangleData();
+        List<Triangle> triangles = objObject.getTriangleList();
+        TriangleMesh mesh = objObject.getMesh();
+
+        Vector3D origin = ray.getOrigin();
+        Vector3D direction = ray.getDirection();
+        double ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+        double dx = direction.getX(), dy = direction.getY(), dz = direction.getZ();
+
+        // Stack-based traversal over node indices, reusing the thread's scratch stacks
+        TraversalStack scratch = TraversalStack.get();
+        int[] nodeStack = scratch.meshNodes;
+        double[] distStack = scratch.meshDistances;
         int stackSize = 0;
 
-        // Start with root node
-        nodeStack[stackSize] = root;
+        nodeStack[stackSize] = 0;
         distStack[stackSize] = 0.0;
         stackSize++;
 
-        double closestT = Double.MAX_VALUE;
+        double closest = closestT[0];
+        int closestEntry = -1;
+        int visited = 0;
+        int tests = 0;
 
         while (stackSize > 0) {
-            // Pop node from stack
             stackSize--;
-            BVHNode node = nodeStack[stackSize];
-            double nodeEntryDist = distStack[stackSize];
+            int node = nodeStack[stackSize];
 
             // Skip this node if we already found a closer intersection
-            if (nodeEntryDist >= closestT) {
+            if (distStack[stackSize] >= closest) {
                 continue;
             }
 
-            if (node.isLeaf()) {
-                // Leaf node - check all triangles
-                BVHLeafNode leaf = (BVHLeafNode) node;
-
-                for (int index : leaf.getTriangleIndices()) {
-                    Triangle triangle = objObject.getTriangleList().get(index);
-                    double t = triangle(ray, triangle, nearPlane, Math.min(farPlane, closestT), epsilon);
-
-                    if (t > 0 && t < closestT) {
-                        closestT = t;
+            visited++;
+            int first = nodes[node * LinearBVH.NODE_STRIDE];
+            int count = nodes[node * LinearBVH.NODE_STRIDE + 1];
+
+            if (count >= 0) {
+                tests += count;
+                // Leaf node - check its contiguous range of triangles
+                for (int i = first; i < first + count; i++) {
+                    int index = triangleIndices[i];
+                    double t = leafTriangle(ray, triangleData, mesh, triangles, i, index,
+                            ox, oy, oz, dx, dy, dz, nearPlane, closest, epsilon);
+
+                    if (t > 0 && t < closest) {
+                        closest = t;
+                        closestEntry = i;
                     }
                 }
             } else {
-                // Internal node - push children to stack
-                BVHInternalNode internal = (BVHInternalNode) node;
-                BVHNode left = internal.getLeftChild();
-                BVHNode right = internal.getRightChild();
-
-                // Calculate distances to child nodes
-                double leftDist = getNodeEntryDistance(ray, left);
-                double rightDist = getNodeEntryDistance(ray, right);
-
-                // Push children to stack in far-to-near order
-                // so we process nearer nodes first
-                if (leftDist < 0 && rightDist < 0) {
-                    // No intersection with either child
-                    continue;
-                }
-
-                if (leftDist < 0) {
-                    // Only right child intersects
-                    if (rightDist < closestT) {
-                        nodeStack[stackSize] = right;
-                        distStack[stackSize] = rightDist;
-                        stackSize++;
-                    }
-                } else if (rightDist < 0) {
-                    // Only left child intersects
-                    if (leftDist < closestT) {
+                // Internal node - left child follows the parent, right child is stored
+                int left = node + 1;
+                int right = first;
+
+                double leftDist = nodeEntryDistance(bounds, left, ox, oy, oz, dx, dy, dz);
+                double rightDist = nodeEntryDistance(bounds, right, ox, oy, oz, dx, dy, dz);
+
+                boolean pushLeft = leftDist >= 0 && leftDist < closest;
+                boolean pushRight = rightDist >= 0 && rightDist < closest;
+
+                // Push the farther child first so the nearer one is processed next
+                if (pushLeft && pushRight && leftDist < rightDist) {
+                    nodeStack[stackSize] = right;
+                    distStack[stackSize++] = rightDist;
+                    nodeStack[stackSize] = left;
+                    distStack[stackSize++] = leftDist;
+                } else {
+                    if (pushLeft) {
                         nodeStack[stackSize] = left;
-                        distStack[stackSize] = leftDist;
-                        stackSize++;
+                        distStack[stackSize++] = leftDist;
                     }
-                } else {
-                    // Both children intersect, push farther one first
-                    if (leftDist > rightDist) {
-                        // Right is closer, push left first
-                        if (leftDist < closestT) {
-                            nodeStack[stackSize] = left;
-                            distStack[stackSize] = leftDist;
-                            stackSize++;
-                        }
-                        if (rightDist < closestT) {
-                            nodeStack[stackSize] = right;
-                            distStack[stackSize] = rightDist;
-                            stackSize++;
-                        }
-                    } else {
-                        // Left is closer, push right first
-                        if (rightDist < closestT) {
-                            nodeStack[stackSize] = right;
-                            distStack[stackSize] = rightDist;
-                            stackSize++;
-                        }
-                        if (leftDist < closestT) {
-                            nodeStack[stackSize] = left;
-                            distStack[stackSize] = leftDist;
-                            stackSize++;
-                        }
+                    if (pushRight) {
+                        nodeStack[stackSize] = right;
+                        distStack[stackSize++] = rightDist;
                     }
                 }
             }
         }
 
-        return closestT < Double.MAX_VALUE ? closestT : -1.0;
+        scratch.nodesVisited += visited;
+        scratch.triangleTests += tests;
+        closestT[0] = closest;
+        return closestEntry;
     }
 
     /**
-     * Traverses the BVH iteratively to find the specific intersected triangle.
+     * Möller–Trumbore test against one triangle of a packed mesh.
+     * Reads the vertices straight from the mesh arrays, so no objects are allocated.
+     *
+     * @return The distance to intersection point, or -1.0 if no intersection
      */
-    private static Triangle traverseBVHForTriangleIterative(Ray ray, BVHNode root, ObjObject objObject,
-                                                            double nearPlane, double farPlane, double epsilon) {
-        // Stack-based traversal
-        BVHNode[] nodeStack = new BVHNode[64];
-        double[] distStack = new double[64];
-        int stackSize = 0;
+    private static double meshTriangle(TriangleMesh mesh, int index,
+                                       double ox, double oy, double oz,
+                                       double dx, double dy, double dz,
+                                       double nearPlane, double farPlane, double epsilon) {
+        double[] positions = mesh.getPositions();
+        int[] indices = mesh.getVertexIndices();
+        int i0 = indices[index * 3] * 3;
+        int i1 = indices[index * 3 + 1] * 3;
+        int i2 = indices[index * 3 + 2] * 3;
+
+        double v0x = positions[i0], v0y = positions[i0 + 1], v0z = positions[i0 + 2];
+
+        return mollerTrumbore(v0x, v0y, v0z,
+                positions[i1] - v0x, positions[i1 + 1] - v0y, positions[i1 + 2] - v0z,
+                positions[i2] - v0x, positions[i2 + 1] - v0y, positions[i2 + 2] - v0z,
+                ox, oy, oz, dx, dy, dz, nearPlane, farPlane, epsilon);
+    }
 
-        // Start with root node
-        nodeStack[stackSize] = root;
-        distStack[stackSize] = 0.0;
-        stackSize++;
+    /**
+     * Möller–Trumbore test against a leaf entry of a flattened BVH whose first vertex
+     * and edges were precomputed at build time. Allocation free.
+     *
+     * @return The distance to intersection point, or -1.0 if no intersection
+     */
+    private static double precomputedTriangle(double[] data, int entry,
+                                              double ox, double oy, double oz,
+                                              double dx, double dy, double dz,
+                                              double nearPlane, double farPlane, double epsilon) {
+        int d = entry * LinearBVH.TRIANGLE_STRIDE;
+        return mollerTrumbore(data[d], data[d + 1], data[d + 2],
+                data[d + 3], data[d + 4], data[d + 5],
+                data[d + 6], data[d + 7], data[d + 8],
+                ox, oy, oz, dx, dy, dz, nearPlane, farPlane, epsilon);
+    }
 
-        double closestT = Double.MAX_VALUE;
-        Triangle closestTriangle = null;
+    /**
+     * Möller–Trumbore ray-triangle test on primitive values, shared by every triangle test.
+     * The ray direction is expected to be normalized already.
+     *
+     * @param v0x First vertex
+     * @param e1x Edge from the first to the second vertex
+     * @param e2x Edge from the first to the third vertex
+     * @return The distance to intersection point, or -1.0 if no intersection
+     */
+    private static double mollerTrumbore(double v0x, double v0y, double v0z,
+                                         double e1x, double e1y, double e1z,
+                                         double e2x, double e2y, double e2z,
+                                         double ox, double oy, double oz,
+                                         double dx, double dy, double dz,
+                                         double nearPlane, double farPlane, double epsilon) {
+        // P = D x e1
+        double px = dy * e1z - dz * e1y;
+        double py = dz * e1x - dx * e1z;
+        double pz = dx * e1y - dy * e1x;
+
+        // Determinant = e2 . P
+        double determinant = e2x * px + e2y * py + e2z * pz;
+        if (Math.abs(determinant) < 1e-5) {
+            return -1.0;
+        }
+        double invDet = 1.0 / determinant;
 
-        while (stackSize > 0) {
-            // Pop node from stack
-            stackSize--;
-            BVHNode node = nodeStack[stackSize];
-            double nodeEntryDist = distStack[stackSize];
+        // Vector from vertex v0 to ray origin
+        double tx = ox - v0x, ty = oy - v0y, tz = oz - v0z;
 
-            // Skip this node if we already found a closer intersection
-            if (nodeEntryDist >= closestT) {
-                continue;
-            }
+        double u = invDet * (tx * px + ty * py + tz * pz);
+        if (u < 0.0 || u > 1.0) {
+            return -1.0;
+        }
 
-            if (node.isLeaf()) {
-                // Leaf node - check all triangles
-                BVHLeafNode leaf = (BVHLeafNode) node;
+        // Q = T x e2
+        double qx = ty * e2z - tz * e2y;
+        double qy = tz * e2x - tx * e2z;
+        double qz = tx * e2y - ty * e2x;
 
-                for (int index : leaf.getTriangleIndices()) {
-                    Triangle triangle = objObject.getTriangleList().get(index);
-                    double t = triangle(ray, triangle, nearPlane, Math.min(farPlane, closestT), epsilon);
+        double v = invDet * (dx * qx + dy * qy + dz * qz);
+        if (v < 0.0 || (u + v) > (1.0 + epsilon)) {
+            return -1.0;
+        }
+
+        double t = invDet * (qx * e1x + qy * e1y + qz * e1z);
+        if (t < nearPlane || t > farPlane) {
+            return -1.0;
+        }
 
-                    if (t > 0 && t < closestT) {
-                        closestT = t;
-                        closestTriangle = triangle;
+        return t;
+    }
+
+    /**
+     * Traverses a flattened BVH looking for any triangle hit within the range.
+     * Children are pushed in storage order without computing which one is nearer,
+     * and the traversal returns as soon as one triangle is hit.
+     *
+     * @return true if a triangle is hit between nearPlane and farPlane
+     */
+    private static boolean anyHitLinearBVH(Ray ray, LinearBVH bvh, ObjObject objObject,
+                                           double nearPlane, double farPlane, double epsilon) {
+        double[] bounds = bvh.getBounds();
+        int[] nodes = bvh.getNodes();
+        int[] triangleIndices = bvh.getTriangleIndices();
+        double[] triangleData = bvh.getTriangleData();
+        List<Triangle> triangles = objObject.getTriangleList();
+        TriangleMesh mesh = objObject.getMesh();
+
+        Vector3D origin = ray.getOrigin();
+        Vector3D direction = ray.getDirection();
+        double ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+        double dx = direction.getX(), dy = direction.getY(), dz = direction.getZ();
+
+        TraversalStack scratch = TraversalStack.get();
+        int[] nodeStack = scratch.meshNodes;
+        int stackSize = 0;
+        nodeStack[stackSize++] = 0;
+
+        int visited = 0;
+        int tests = 0;
+        boolean hit = false;
+
+        traversal:
+        while (stackSize > 0) {
+            int node = nodeStack[--stackSize];
+            visited++;
+
+            int first = nodes[node * LinearBVH.NODE_STRIDE];
+            int count = nodes[node * LinearBVH.NODE_STRIDE + 1];
+
+            if (count >= 0) {
+                // Leaf node - stop at the first triangle in range
+                for (int i = first; i < first + count; i++) {
+                    tests++;
+                    double t = leafTriangle(ray, triangleData, mesh, triangles, i, triangleIndices[i],
+                            ox, oy, oz, dx, dy, dz, nearPlane, farPlane, epsilon);
+
+                    if (t > 0 && t < farPlane) {
+                        hit = true;
+                        break traversal;
                     }
                 }
             } else {
-                // Internal node - push children to stack
-                BVHInternalNode internal = (BVHInternalNode) node;
-                BVHNode left = internal.getLeftChild();
-                BVHNode right = internal.getRightChild();
-
-                // Calculate distances to child nodes
-                double leftDist = getNodeEntryDistance(ray, left);
-                double rightDist = getNodeEntryDistance(ray, right);
+                // Internal node - push every child the ray enters before the far plane
+                int left = node + 1;
+                int right = first;
 
-                // Push children to stack in far-to-near order
-                if (leftDist < 0 && rightDist < 0) {
-                    continue;
+                double leftDist = nodeEntryDistance(bounds, left, ox, oy, oz, dx, dy, dz);
+                if (leftDist >= 0 && leftDist <= farPlane) {
+                    nodeStack[stackSize++] = left;
                 }
-
-                if (leftDist < 0) {
-                    if (rightDist < closestT) {
-                        nodeStack[stackSize] = right;
-                        distStack[stackSize] = rightDist;
-                        stackSize++;
-                    }
-                } else if (rightDist < 0) {
-                    if (leftDist < closestT) {
-                        nodeStack[stackSize] = left;
-                        distStack[stackSize] = leftDist;
-                        stackSize++;
-                    }
-                } else {
-                    if (leftDist > rightDist) {
-                        if (leftDist < closestT) {
-                            nodeStack[stackSize] = left;
-                            distStack[stackSize] = leftDist;
-                            stackSize++;
-                        }
-                        if (rightDist < closestT) {
-                            nodeStack[stackSize] = right;
-                            distStack[stackSize] = rightDist;
-                            stackSize++;
-                        }
-                    } else {
-                        if (rightDist < closestT) {
-                            nodeStack[stackSize] = right;
-                            distStack[stackSize] = rightDist;
-                            stackSize++;
-                        }
-                        if (leftDist < closestT) {
-                            nodeStack[stackSize] = left;
-                            distStack[stackSize] = leftDist;
-                            stackSize++;
-                        }
-                    }
+                double rightDist = nodeEntryDistance(bounds, right, ox, oy, oz, dx, dy, dz);
+                if (rightDist >= 0 && rightDist <= farPlane) {
+                    nodeStack[stackSize++] = right;
                 }
             }
         }
 
-        return closestTriangle;
+        scratch.nodesVisited += visited;
+        scratch.triangleTests += tests;
+        return hit;
+    }
+
+    /**
+     * Tests one leaf entry of a flattened BVH with whichever triangle data is available:
+     * precomputed edges, the packed mesh or the triangle objects.
+     *
+     * @param entry Position of the triangle in the BVH's leaf order
+     * @param index Index of the triangle in the object
+     * @return The distance to intersection point, or -1.0 if no intersection
+     */
+    private static double leafTriangle(Ray ray, double[] triangleData, TriangleMesh mesh, List<Triangle> triangles,
+                                       int entry, int index,
+                                       double ox, double oy, double oz,
+                                       double dx, double dy, double dz,
+                                       double nearPlane, double farPlane, double epsilon) {
+        if (triangleData != null) {
+            return precomputedTriangle(triangleData, entry, ox, oy, oz, dx, dy, dz, nearPlane, farPlane, epsilon);
+        }
+        if (mesh != null) {
+            return meshTriangle(mesh, index, ox, oy, oz, dx, dy, dz, nearPlane, farPlane, epsilon);
+        }
+        return triangle(ray, triangles.get(index), nearPlane, farPlane, epsilon);
+    }
+
+    /**
+     * Calculates the entry distance of a ray into a node of a flattened BVH.
+     * Works directly on the packed bounds array. Returns -1.0 if no intersection.
+     */
+    private static double nodeEntryDistance(double[] bounds, int node,
+                                            double ox, double oy, double oz,
+                                            double dx, double dy, double dz) {
+        int base = node * LinearBVH.BOUNDS_STRIDE;
+        double tMin = Double.NEGATIVE_INFINITY;
+        double tMax = Double.POSITIVE_INFINITY;
+
+        // X axis slab
+        if (Math.abs(dx) < 1e-8) {
+            if (ox < bounds[base] || ox > bounds[base + 3]) return -1.0;
+        } else {
+            double invD = 1.0 / dx;
+            double t1 = (bounds[base] - ox) * invD;
+            double t2 = (bounds[base + 3] - ox) * invD;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            if (tMin > tMax) return -1.0;
+        }
+
+        // Y axis slab
+        if (Math.abs(dy) < 1e-8) {
+            if (oy < bounds[base + 1] || oy > bounds[base + 4]) return -1.0;
+        } else {
+            double invD = 1.0 / dy;
+            double t1 = (bounds[base + 1] - oy) * invD;
+            double t2 = (bounds[base + 4] - oy) * invD;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            if (tMin > tMax) return -1.0;
+        }
+
+        // Z axis slab
+        if (Math.abs(dz) < 1e-8) {
+            if (oz < bounds[base + 2] || oz > bounds[base + 5]) return -1.0;
+        } else {
+            double invD = 1.0 / dz;
+            double t1 = (bounds[base + 2] - oz) * invD;
+            double t2 = (bounds[base + 5] - oz) * invD;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            if (tMin > tMax) return -1.0;
+        }
+
+        // Return entry distance, but ensure it's not behind the ray
+        return tMin < 0 && tMax > 0 ? 0.0 : tMin;
     }
 
     /**
@@ -23,6 +23,21 @@ public class Ray {
         this.direction = direction.normalize(); // Ensure the direction is normalized
     }
 
+    /**
+     * Constructs a Ray from a direction given as primitive components.
+     * The direction is normalized into a single new vector, so callers that build
+     * the direction on doubles do not need to allocate an intermediate one.
+     *
+     * @param origin The starting point of the ray.
+     * @param dx The x component of the direction.
+     * @param dy The y component of the direction.
+     * @param dz The z component of the direction.
+     */
+    public Ray(Vector3D origin, double dx, double dy, double dz) {
+        this.origin = origin;
+        this.direction = new Vector3D(dx, dy, dz).normalizeInPlace();
+    }
+
     /**
      * Calculates the point along the ray at distance t from the origin.
      *
@@ -30,7 +45,7 @@ public class Ray {
      * @return A Vector3D representing the point at distance t.
      */
     public Vector3D getPoint(double t) {
-        return origin.add(direction.multiplyByScalar(t));
+        return new Vector3D().setPointAt(origin, direction, t);
     }
 
     /**
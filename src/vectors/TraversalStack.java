@@ -0,0 +1,67 @@
+package vectors;
+
+import Objects.RenderStats;
+import Objects.WrapperBoxes.BVHNode;
+
+/**
+ * Per-thread scratch storage for BVH traversal, plus the counters of the current query.
+ * Every ray used to allocate its own stacks for the scene BVH and for each mesh BVH it
+ * entered; since traversals on one thread never overlap, the same arrays are reused.
+ * The scene and mesh stacks are separate because a mesh traversal runs while a scene
+ * traversal is still in progress.
+ *
+ * @author José Eduardo Moreno Paredes
+ */
+final class TraversalStack {
+    /** Maximum traversal depth supported by the stacks */
+    static final int DEPTH = 64;
+
+    private static final ThreadLocal<TraversalStack> STACKS = ThreadLocal.withInitial(TraversalStack::new);
+
+    /** Top-level BVH nodes pending a visit */
+    final BVHNode[] sceneNodes = new BVHNode[DEPTH];
+    /** Entry distances of the pending top-level nodes */
+    final double[] sceneDistances = new double[DEPTH];
+    /** Mesh BVH node indices pending a visit */
+    final int[] meshNodes = new int[DEPTH];
+    /** Entry distances of the pending mesh nodes */
+    final double[] meshDistances = new double[DEPTH];
+    /** Closest distance written back by a mesh traversal */
+    final double[] closestT = new double[1];
+
+    /** Nodes visited since the last reset, scene and mesh levels */
+    long nodesVisited;
+    /** Ray-triangle tests since the last reset */
+    long triangleTests;
+
+    private TraversalStack() {
+    }
+
+    /**
+     * Clears the traversal counters before a new query.
+     */
+    void resetCounters() {
+        nodesVisited = 0;
+        triangleTests = 0;
+    }
+
+    /**
+     * Adds the counters of the finished query to the statistics, if any are collected.
+     *
+     * @param stats Statistics to update, or null
+     */
+    void flushCounters(RenderStats stats) {
+        if (stats != null) {
+            stats.addTraversal(nodesVisited, triangleTests);
+        }
+    }
+
+    /**
+     * Returns the scratch stacks of the calling thread.
+     *
+     * @return Thread-local traversal stacks
+     */
+    static TraversalStack get() {
+        return STACKS.get();
+    }
+}
@@ -79,11 +79,7 @@ public class Vector3D {
 
     // Magnitude of the point (interpreted as a vector)
     public double magnitude() {
-        return Math.sqrt(
-            Math.pow(getX(),2) +
-            Math.pow(getY(),2) +
-            Math.pow(getZ(),2)
-        );
+        return Math.sqrt(x * x + y * y + z * z);
     }
 
     // Normalize the point (turn it into a unit vector)
@@ -122,6 +118,62 @@ public class Vector3D {
         return Math.sqrt(getX() * getX() + getY() * getY() + getZ() * getZ());
     }
 
+    // Distance between two points, without allocating the difference vector
+    public double distance(Vector3D p) {
+        return length(x - p.x, y - p.y, z - p.z);
+    }
+
+    // In-place operations: they modify this vector and return it, so a scratch
+    // vector can be reused in hot paths instead of allocating a new one per step
+
+    public Vector3D set(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    public Vector3D set(Vector3D p) {
+        return set(p.x, p.y, p.z);
+    }
+
+    public Vector3D setAdd(Vector3D a, Vector3D b) {
+        return set(a.x + b.x, a.y + b.y, a.z + b.z);
+    }
+
+    public Vector3D setSubtract(Vector3D a, Vector3D b) {
+        return set(a.x - b.x, a.y - b.y, a.z - b.z);
+    }
+
+    public Vector3D setCross(Vector3D a, Vector3D b) {
+        return set(a.y * b.z - a.z * b.y, a.z * b.x - a.x * b.z, a.x * b.y - a.y * b.x);
+    }
+
+    // Point along a ray: origin + direction * t
+    public Vector3D setPointAt(Vector3D origin, Vector3D direction, double t) {
+        return set(origin.x + direction.x * t, origin.y + direction.y * t, origin.z + direction.z * t);
+    }
+
+    public Vector3D scaleInPlace(double scale) {
+        return set(x * scale, y * scale, z * scale);
+    }
+
+    public Vector3D normalizeInPlace() {
+        double mag = magnitude();
+        if (mag == 0) return set(0, 0, 0);
+        return set(x / mag, y / mag, z / mag);
+    }
+
+    // Primitive helpers for code that keeps vectors in local doubles
+
+    public static double dot(double ax, double ay, double az, double bx, double by, double bz) {
+        return ax * bx + ay * by + az * bz;
+    }
+
+    public static double length(double x, double y, double z) {
+        return Math.sqrt(x * x + y * y + z * z);
+    }
+
     // Add two points (vector sum)
     public Vector3D add(Vector3D p) {
         return new Vector3D(this.x + p.x, this.y + p.y, this.z + p.z);